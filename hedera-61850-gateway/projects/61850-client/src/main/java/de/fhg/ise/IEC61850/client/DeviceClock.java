@@ -0,0 +1,127 @@
+/*
+ * Copyright 2023 Fraunhofer ISE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package de.fhg.ise.IEC61850.client;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Estimates the offset of the clock of a device against the local clock, such that times written to the device (e.g.
+ * StrTm01) can be given in local time.
+ * <p>
+ * A sample is a timestamp the device set while a request of the gateway was under way, e.g. {@code SchdSt.t} when a
+ * schedule was enabled: the device time is taken for the middle of the round trip. Samples with a long round trip are
+ * too imprecise and ignored, the others are smoothed by an exponentially weighted moving average.
+ */
+public class DeviceClock {
+
+    private static final Logger log = LoggerFactory.getLogger(DeviceClock.class);
+
+    static final long MAX_ROUND_TRIP_MILLIS = 250;
+    // an offset beyond is a timestamp the device did not set (yet), not a clock that is off
+    static final long MAX_OFFSET_MILLIS = Duration.ofDays(1).toMillis();
+    private static final double SMOOTHING = 0.25;
+
+    // by the reference of the timestamp, the local time span of the request that makes the device set it
+    private final Map<String, long[]> pending = new ConcurrentHashMap<>();
+    private double offsetMillis;
+    private long samples;
+
+    /**
+     * Remembers that the device sets the timestamp while a request was under way
+     *
+     * @param sentMillis
+     *         local epoch millis the request was sent at
+     * @param returnedMillis
+     *         local epoch millis the response was received at
+     */
+    public void expect(String timestampReference, long sentMillis, long returnedMillis) {
+        pending.put(timestampReference, new long[] { sentMillis, returnedMillis });
+    }
+
+    /**
+     * Takes a sample from a timestamp announced by {@link #expect(String, long, long)}, once
+     */
+    public void sample(String timestampReference, Instant deviceTime) {
+        long[] request = pending.remove(timestampReference);
+        if (request != null && deviceTime != null) {
+            sample(deviceTime.toEpochMilli(), request[0], request[1]);
+        }
+    }
+
+    // package-private for tests
+    synchronized void sample(long deviceMillis, long sentMillis, long returnedMillis) {
+        long roundTrip = returnedMillis - sentMillis;
+        long offset = deviceMillis - (sentMillis + roundTrip / 2);
+        if (roundTrip < 0 || roundTrip > MAX_ROUND_TRIP_MILLIS || Math.abs(offset) > MAX_OFFSET_MILLIS) {
+            log.debug("Ignoring clock sample with offset {}ms and round trip {}ms", offset, roundTrip);
+            return;
+        }
+        offsetMillis = samples == 0 ? offset : offsetMillis + SMOOTHING * (offset - offsetMillis);
+        samples++;
+        log.debug("Clock sample with offset {}ms and round trip {}ms, estimated offset {}ms", offset, roundTrip,
+                Math.round(offsetMillis));
+    }
+
+    /**
+     * Takes over the estimate of another clock of the same device, e.g. after a reconnect
+     */
+    public void adopt(DeviceClock other) {
+        double otherOffsetMillis;
+        long otherSamples;
+        synchronized (other) {
+            otherOffsetMillis = other.offsetMillis;
+            otherSamples = other.samples;
+        }
+        synchronized (this) {
+            offsetMillis = otherOffsetMillis;
+            samples = otherSamples;
+        }
+    }
+
+    /**
+     * The device time minus the local time, zero until sampled
+     */
+    public synchronized Duration getOffset() {
+        return Duration.ofMillis(Math.round(offsetMillis));
+    }
+
+    public synchronized long getSamples() {
+        return samples;
+    }
+
+    /**
+     * @return the device time at the local time
+     */
+    public Instant toDevice(Instant local) {
+        return local.plus(getOffset());
+    }
+
+    /**
+     * @return the local time at the device time
+     */
+    public Instant toLocal(Instant device) {
+        return device.minus(getOffset());
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "DeviceClock{" + "offsetMillis=" + Math.round(offsetMillis) + ", samples=" + samples + '}';
+    }
+}
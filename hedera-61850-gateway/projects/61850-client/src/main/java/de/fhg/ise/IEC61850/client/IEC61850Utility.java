@@ -28,16 +28,21 @@ import com.beanit.iec61850bean.BdaTimestamp;
 import com.beanit.iec61850bean.BdaVisibleString;
 import com.beanit.iec61850bean.ClientAssociation;
 import com.beanit.iec61850bean.ClientSap;
+import com.beanit.iec61850bean.DataSet;
 import com.beanit.iec61850bean.Fc;
 import com.beanit.iec61850bean.FcModelNode;
 import com.beanit.iec61850bean.ModelNode;
 import com.beanit.iec61850bean.ServerModel;
 import com.beanit.iec61850bean.ServiceError;
+import de.fhg.ise.IEC61850.client.logging.SampledLogger;
 import de.fhg.ise.IEC61850.client.scheduling.PreparedSchedule;
 import de.fhg.ise.IEC61850.client.scheduling.ScheduleDefinitions;
 import de.fhg.ise.IEC61850.client.scheduling.ScheduleEnablingErrorKind;
+import de.fhg.ise.IEC61850.client.scheduling.ScheduleRegistry;
 import de.fhg.ise.IEC61850.client.scheduling.ScheduleState;
 import de.fhg.ise.IEC61850.client.scheduling.ValueAccess;
+import de.fhg.ise.IEC61850.client.tracing.Span;
+import de.fhg.ise.IEC61850.client.tracing.Tracing;
 import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -58,6 +63,8 @@ import java.time.Duration;
 import java.time.Instant;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -67,9 +74,20 @@ import java.util.concurrent.atomic.AtomicLong;
 public class IEC61850Utility implements Closeable {
 
     private final static Logger log = LoggerFactory.getLogger(IEC61850Utility.class);
+    private final static SampledLogger setValueLog = new SampledLogger(
+            IEC61850Utility.class.getName() + ".setDataValues");
 
     private final ClientAssociation association;
     private final ServerModel serverModel;
+    // association specific, by reference
+    private final Map<String, DataSet> dataSets = new ConcurrentHashMap<>();
+    // by reference, found by getNode
+    private final Map<String, ModelNode> nodes = new ConcurrentHashMap<>();
+    private final AtomicBoolean dataSetsUnsupported = new AtomicBoolean();
+    private volatile ScheduleRegistry scheduleRegistry;
+    private final DeviceClock clock = new DeviceClock();
+    // by schedule name, StrTm01 in device time as last written
+    private final Map<String, Instant> writtenScheduleStarts = new ConcurrentHashMap<>();
 
     public ScheduleEnablingErrorKind getSchdEnaErr(String scheduleName) throws ServiceError, IOException {
         BasicDataAttribute errorKind = (BasicDataAttribute) serverModel.findModelNode(
@@ -84,6 +102,41 @@ public class IEC61850Utility implements Closeable {
         return ScheduleState.parse(state.getValueString());
     }
 
+    /**
+     * Reads the nodes with one request, as an association specific data set that is defined on the first read with that
+     * name. Falls back to reading the nodes one by one if the device does not support data sets.
+     */
+    public void readDataValues(String dataSetName, List<FcModelNode> nodes) throws ServiceError, IOException {
+        if (!dataSetsUnsupported.get()) {
+            try {
+                association.getDataSetValues(defineDataSet("@" + dataSetName, nodes));
+                return;
+            } catch (ServiceError e) {
+                log.warn("Unable to read data set {}, reading nodes one by one from now on: {}", dataSetName,
+                        e.getMessage());
+                dataSetsUnsupported.set(true);
+            }
+        }
+        for (FcModelNode node : nodes) {
+            association.getDataValues(node);
+        }
+    }
+
+    private DataSet defineDataSet(String reference, List<FcModelNode> members) throws ServiceError, IOException {
+        DataSet dataSet = dataSets.get(reference);
+        if (dataSet != null && dataSet.getMembers().equals(members)) {
+            return dataSet;
+        }
+        if (dataSet != null) {
+            dataSets.remove(reference);
+            association.deleteDataSet(dataSet);
+        }
+        dataSet = new DataSet(reference, members, true);
+        association.createDataSet(dataSet);
+        dataSets.put(reference, dataSet);
+        return dataSet;
+    }
+
     public String getNodeEntryasString(String scheduleName, String specificNode, String dataType)
             throws ServiceError, IOException {
         BasicDataAttribute nodeEntry = (BasicDataAttribute) serverModel.findModelNode(
@@ -98,12 +151,23 @@ public class IEC61850Utility implements Closeable {
 
     protected IEC61850Utility(InetAddress host, int port) throws IOException, ServiceError {
         log.info("Connecting to {}:{}", host, port);
-        ClientSap clientSap = new ClientSap();
+        try (Span span = Tracing.span("der-connect")) {
+            span.setAttribute("host", host).setAttribute("port", port);
+            ClientSap clientSap = new ClientSap();
+
+            this.association = clientSap.associate(host, port, null, null);
+            log.debug("loading server model");
+            this.serverModel = this.association.retrieveModel();
+            log.debug("done loading server model");
+        }
+    }
 
-        this.association = clientSap.associate(host, port, null, null);
-        log.debug("loading server model");
-        this.serverModel = this.association.retrieveModel();
-        log.debug("done loading server model");
+    /**
+     * For subclasses that do not connect to a device, e.g. to simulate one in tests
+     */
+    protected IEC61850Utility() {
+        this.association = null;
+        this.serverModel = null;
     }
 
     @Override
@@ -158,7 +222,7 @@ public class IEC61850Utility implements Closeable {
             throws ParserConfigurationException, IOException, SAXException, IEC61850MissconfiguredException,
             ServiceError {
         String xml = readFileVia61850("config.xml", 10_000);
-        System.out.println("XML:\n" + xml);
+        log.trace("Read config.xml from IED:\n{}", xml);
         return readConstantSystemReservePowerFromConfigXml(xml);
     }
 
@@ -218,36 +282,63 @@ public class IEC61850Utility implements Closeable {
 
     public void writeAndEnableSchedule(PreparedSchedule.PreparedScheduleValues values, Duration interval, Instant start,
             int prio) throws ServiceError, IOException {
+        try (Span span = Tracing.span("der-write-schedule")) {
+            span.setAttribute("schedule", values.getScheduleName()).setAttribute("values", values.size());
 
-        String scheduleName = writeScheduleValues(values);
+            String scheduleName = writeScheduleValues(values);
 
-        Long intervalInSeconds = interval.getSeconds();
+            Long intervalInSeconds = interval.getSeconds();
 
-        if (intervalInSeconds < 1) {
-            throw new IllegalArgumentException("interval must be larger than one second");
-        }
+            if (intervalInSeconds < 1) {
+                throw new IllegalArgumentException("interval must be larger than one second");
+            }
 
-        setDataValues(scheduleName + ".SchdIntv.setVal", null, intervalInSeconds.toString());
-        setSchedulePrio(scheduleName, prio);
+            setDataValues(scheduleName + ".SchdIntv.setVal", null, intervalInSeconds.toString());
+            setSchedulePrio(scheduleName, prio);
 
-        setScheduleStart(scheduleName, start);
-        BasicDataAttribute disableOp = findAndAssignValue(scheduleName + ".DsaReq.Oper.ctlVal", Fc.CO, "false");
-        BasicDataAttribute enableOp = findAndAssignValue(scheduleName + ".EnaReq.Oper.ctlVal", Fc.CO, "true");
+            setScheduleStart(scheduleName, start);
+            BasicDataAttribute disableOp = findAndAssignValue(scheduleName + ".DsaReq.Oper.ctlVal", Fc.CO, "false");
+            BasicDataAttribute enableOp = findAndAssignValue(scheduleName + ".EnaReq.Oper.ctlVal", Fc.CO, "true");
 
-        operate((FcModelNode) disableOp.getParent().getParent());
-        operate((FcModelNode) enableOp.getParent().getParent());
+            operate((FcModelNode) disableOp.getParent().getParent());
+            long enableSent = System.currentTimeMillis();
+            operate((FcModelNode) enableOp.getParent().getParent());
+            // the device stamps the change of the schedule state with its own clock
+            clock.expect(scheduleName + ".SchdSt.t", enableSent, System.currentTimeMillis());
+        }
     }
 
+    /**
+     * @param start
+     *         local time, written in the time of the device (see {@link #getClock()})
+     */
     public void setScheduleStart(String scheduleName, Instant start) throws ServiceError, IOException {
-        log.info("setting {} start to {}", scheduleName, start);
-        setDataValues(scheduleName + ".StrTm01.setTm", null, Long.toString(start.toEpochMilli()));
+        Instant deviceStart = clock.toDevice(start);
+        log.info("setting {} start to {} (device time {})", scheduleName, start, deviceStart);
+        setDataValues(scheduleName + ".StrTm01.setTm", null, Long.toString(deviceStart.toEpochMilli()));
+        writtenScheduleStarts.put(scheduleName, deviceStart);
     }
 
+    /**
+     * @return the start in local time
+     */
     public Instant getScheduleStart(String scheduleName) throws ServiceError, IOException {
-        BasicDataAttribute schedulePrio = (BasicDataAttribute) serverModel.findModelNode(
-                scheduleName + ".StrTm01.setTm", null);
-        association.getDataValues(schedulePrio);
-        return Instant.parse(schedulePrio.getValueString());
+        return clock.toLocal(Instant.parse(getNodeEntryasString(scheduleName, "StrTm01", "setTm")));
+    }
+
+    /**
+     * @return StrTm01 in device time as last written by {@link #setScheduleStart(String, Instant)}, null if not written
+     * on this connection
+     */
+    public Instant getWrittenScheduleStart(String scheduleName) {
+        return writtenScheduleStarts.get(scheduleName);
+    }
+
+    /**
+     * The estimated clock of the device, sampled whenever a schedule is enabled and read back
+     */
+    public DeviceClock getClock() {
+        return clock;
     }
 
     public void setSchedulePrio(String scheduleName, int prio) throws ServiceError, IOException {
@@ -263,6 +354,9 @@ public class IEC61850Utility implements Closeable {
 
     /**
      * Writes a previously specified Schedule to the device.
+     *
+     * @throws IllegalArgumentException
+     *         if there are no values or more than the schedule can hold, before anything is written
      */
     public String writeScheduleValues(PreparedSchedule.PreparedScheduleValues values) throws ServiceError, IOException {
         String scheduleName = values.getScheduleName();
@@ -270,6 +364,11 @@ public class IEC61850Utility implements Closeable {
         if (values.size() < 1) {
             throw new IllegalArgumentException("At least one value required.");
         }
+        if (!nodeExists(values.getValueReference(values.size()))) {
+            throw new IllegalArgumentException(
+                    "Schedule " + scheduleName + " cannot hold " + values.size() + " values, no node "
+                            + values.getValueReference(values.size()));
+        }
 
         values.writeValues();
 
@@ -285,10 +384,14 @@ public class IEC61850Utility implements Closeable {
     }
 
     protected void operate(FcModelNode node) throws ServiceError, IOException {
-        try {
-            association.operate(node);
-        } catch (ServiceError e) {
-            throw new ServiceError(e.getErrorCode(), "Unable to operate " + node.getReference().toString(), e);
+        try (Span span = Tracing.span("der-operate")) {
+            span.setAttribute("reference", node.getReference());
+            try {
+                association.operate(node);
+            } catch (ServiceError e) {
+                span.setError(e);
+                throw new ServiceError(e.getErrorCode(), "Unable to operate " + node.getReference().toString(), e);
+            }
         }
     }
 
@@ -296,12 +399,13 @@ public class IEC61850Utility implements Closeable {
      * Reads the main power, that should be controlled by our schedule
      */
     public <T> T readGGIOOutput(ScheduleDefinitions constants) throws ServiceError, IOException {
-        String valueNodeName = constants.getGGIOValueReference();
-        ModelNode ggioValue = serverModel.findModelNode(valueNodeName, null);
+        ModelNode ggioValue = getNode(constants.getGGIOValueReference());
         association.getDataValues((FcModelNode) ggioValue);
         ValueAccess<T> valueAccess = constants.getValueAccess();
         T monitoredValue = valueAccess.readToTargetValue((FcModelNode) ggioValue);
-        log.trace("Got output value '{}' at {} UTC", monitoredValue, Instant.now());
+        if (log.isTraceEnabled()) {
+            log.trace("Got output value '{}' at {} UTC", monitoredValue, Instant.now());
+        }
         return monitoredValue;
     }
 
@@ -354,7 +458,7 @@ public class IEC61850Utility implements Closeable {
 
     public BasicDataAttribute setDataValues(String objectReference, Fc fc, String value)
             throws ServiceError, IOException {
-        log.debug("Setting {} to {}", objectReference, value);
+        setValueLog.event("Setting attribute", "reference", objectReference, "value", value);
         BasicDataAttribute bda = findAndAssignValue(objectReference, fc, value);
         try {
             association.setDataValues(bda);
@@ -438,6 +542,22 @@ public class IEC61850Utility implements Closeable {
         return serverModel;
     }
 
+    /**
+     * The schedules of the device, discovered from the server model on the first call
+     */
+    public ScheduleRegistry getScheduleRegistry() {
+        ScheduleRegistry registry = scheduleRegistry;
+        if (registry == null) {
+            synchronized (this) {
+                if (scheduleRegistry == null) {
+                    scheduleRegistry = ScheduleRegistry.discover(this);
+                }
+                registry = scheduleRegistry;
+            }
+        }
+        return registry;
+    }
+
     /**
      * Reads the active schedule reference from the schedule controller
      */
@@ -461,7 +581,17 @@ public class IEC61850Utility implements Closeable {
         return node != null;
     }
 
+    /**
+     * @return null if the model has no such node
+     */
     public ModelNode getNode(String nodeName) {
-        return serverModel.findModelNode(nodeName, null);
+        ModelNode node = nodes.get(nodeName);
+        if (node == null) {
+            node = serverModel.findModelNode(nodeName, null);
+            if (node != null) {
+                nodes.put(nodeName, node);
+            }
+        }
+        return node;
     }
 }
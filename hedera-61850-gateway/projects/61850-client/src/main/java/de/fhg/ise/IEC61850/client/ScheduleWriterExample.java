@@ -36,7 +36,8 @@ import static java.util.stream.Collectors.toList;
  * Command line parameters are:<p> - seconds until schedule start<p> - priority of the schedule<p> - values of the
  * schedule<p>
  * <p>
- * Host, port and schedule name are hard coded.
+ * Host, port and schedule name are hard coded. To push a schedule to many devices at once, see
+ * {@link de.fhg.ise.IEC61850.client.broadcast.ScheduleBroadcastCommand}.
  */
 public class ScheduleWriterExample {
 
@@ -76,7 +77,7 @@ public class ScheduleWriterExample {
                     interval, values);
 
             try (final AllianderDER allianderDER = new AllianderDER(HOST_NAME, PORT)) {
-                PreparedSchedule preparedSchedule = allianderDER.maxPowerSchedules.prepareSchedule(values,
+                PreparedSchedule preparedSchedule = allianderDER.getMaxPowerSchedules().prepareSchedule(values,
                         schedule_number, interval, start, prio);
                 allianderDER.writeAndEnableSchedule(preparedSchedule);
 
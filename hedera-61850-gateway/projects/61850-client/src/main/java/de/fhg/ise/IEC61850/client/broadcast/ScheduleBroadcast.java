@@ -0,0 +1,431 @@
+/*
+ * Copyright 2023 Fraunhofer ISE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package de.fhg.ise.IEC61850.client.broadcast;
+
+import de.fhg.ise.IEC61850.client.models.AllianderDER;
+import de.fhg.ise.IEC61850.client.scheduling.ScheduleDefinitions;
+import de.fhg.ise.IEC61850.client.scheduling.ScheduleVerification;
+import de.fhg.ise.IEC61850.client.tracing.Span;
+import de.fhg.ise.IEC61850.client.tracing.Tracing;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Writes and enables the same schedule on many DERs at once, e.g. for a curtailment of a whole fleet.
+ * <p>
+ * Every device is handled by one task that connects, writes and enables the schedule and reads it back (see
+ * {@link ScheduleVerification}). Up to {@code parallelism} tasks run at the same time, so as long as the fleet is not
+ * larger than that, the push takes as long as the slowest device. Results are passed on in the order devices complete.
+ * <p>
+ * On timeout, devices not done yet are given up. Those still connecting are not written to afterwards and fail. Those
+ * writing already have their association closed, which ends their blocking MMS requests, and are reported as
+ * {@link Outcome#UNKNOWN}: the schedule may run on them.
+ */
+public class ScheduleBroadcast implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(ScheduleBroadcast.class);
+
+    private final ExecutorService executor;
+
+    /**
+     * @param parallelism
+     *         the maximum number of associations open at the same time
+     */
+    public ScheduleBroadcast(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive");
+        }
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "broadcast-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Pushes the schedule to all targets and waits until all completed or the timeout passed. Devices not done by then
+     * are given up, see {@link Outcome}.
+     *
+     * @param onResult
+     *         called with the result of each device as soon as it completed, from the calling thread
+     */
+    public <T> Summary broadcast(Collection<Target> targets, Schedule<T> schedule, Duration timeout,
+            Consumer<DeviceResult> onResult) throws InterruptedException {
+        long startNanos = System.nanoTime();
+        long deadlineNanos = startNanos + timeout.toNanos();
+        log.info("Broadcasting {} to {} devices", schedule, targets.size());
+
+        CompletionService<DeviceResult> completion = new ExecutorCompletionService<>(executor);
+        Map<Future<DeviceResult>, Attempt> pending = new HashMap<>();
+        for (Target target : targets) {
+            Attempt attempt = new Attempt(target);
+            pending.put(completion.submit(() -> push(attempt, schedule, startNanos)), attempt);
+        }
+
+        List<DeviceResult> results = new ArrayList<>(targets.size());
+        try {
+            while (!pending.isEmpty()) {
+                Future<DeviceResult> done = completion.poll(deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+                if (done == null) {
+                    break;
+                }
+                Attempt attempt = pending.remove(done);
+                DeviceResult result;
+                try {
+                    result = done.get();
+                } catch (ExecutionException e) {
+                    // push reports its failures, this is unexpected
+                    result = new DeviceResult(attempt.target, Outcome.FAILED, System.nanoTime() - startNanos,
+                            e.getCause().toString());
+                }
+                results.add(result);
+                onResult.accept(result);
+            }
+        } finally {
+            // timed out or interrupted
+            for (Map.Entry<Future<DeviceResult>, Attempt> timedOut : pending.entrySet()) {
+                // interrupting does not end blocking socket I/O, closing the association does
+                boolean written = timedOut.getValue().abandon();
+                timedOut.getKey().cancel(true);
+                DeviceResult result = new DeviceResult(timedOut.getValue().target,
+                        written ? Outcome.UNKNOWN : Outcome.FAILED, System.nanoTime() - startNanos,
+                        "not completed within " + timeout + (written ? ", the schedule may have been written" : ""));
+                results.add(result);
+                onResult.accept(result);
+            }
+        }
+
+        Summary summary = new Summary(results, System.nanoTime() - startNanos);
+        log.info("Broadcast done: {}", summary);
+        return summary;
+    }
+
+    private <T> DeviceResult push(Attempt attempt, Schedule<T> schedule, long startNanos) {
+        Target target = attempt.target;
+        try (Span span = Tracing.span("broadcast-device")) {
+            span.setAttribute("host", target.host).setAttribute("port", target.port);
+            try (AllianderDER der = new AllianderDER(target.host, target.port)) {
+                ScheduleDefinitions<T> definitions = der.getScheduleRegistry().get(schedule.definitions);
+                if (!attempt.startWriting(der)) {
+                    throw new IOException("Given up before writing");
+                }
+                der.writeAndEnableSchedule(
+                        definitions.prepareSchedule(schedule.values, schedule.scheduleNumber, schedule.interval,
+                                schedule.start, schedule.prio));
+                ScheduleVerification verification = ScheduleVerification.verify(der, definitions,
+                        schedule.scheduleNumber, schedule.values, schedule.interval, schedule.start, schedule.prio);
+                return new DeviceResult(target, verification.isConsistent() ? Outcome.SUCCEEDED : Outcome.FAILED,
+                        System.nanoTime() - startNanos, verification.isConsistent() ? null : verification.toString());
+            }
+        } catch (Exception e) {
+            log.debug("Broadcast to {} failed", target, e);
+            return new DeviceResult(target, Outcome.FAILED, System.nanoTime() - startNanos, e.toString());
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * The push to one device, given up on timeout
+     */
+    private static final class Attempt {
+        private final Target target;
+        // null until the schedule is written
+        private AllianderDER der;
+        private boolean abandoned;
+
+        Attempt(Target target) {
+            this.target = target;
+        }
+
+        /**
+         * @return false if the attempt was given up, the schedule must not be written then
+         */
+        synchronized boolean startWriting(AllianderDER der) {
+            if (abandoned) {
+                return false;
+            }
+            this.der = der;
+            return true;
+        }
+
+        /**
+         * Gives up the attempt and closes its association, if it writes already
+         *
+         * @return true if the schedule may have been written
+         */
+        synchronized boolean abandon() {
+            abandoned = true;
+            if (der == null) {
+                return false;
+            }
+            der.close();
+            return true;
+        }
+    }
+
+    /**
+     * How the push to a device ended
+     */
+    public enum Outcome {
+        /**
+         * The schedule was read back as written and enabled
+         */
+        SUCCEEDED,
+        /**
+         * The schedule was not written, or read back differently
+         */
+        FAILED,
+        /**
+         * Given up while writing, the schedule may or may not run on the device
+         */
+        UNKNOWN
+    }
+
+    /**
+     * A DER to push the schedule to
+     */
+    public static final class Target {
+        private final String host;
+        private final int port;
+
+        public Target(String host, int port) {
+            this.host = host;
+            this.port = port;
+        }
+
+        /**
+         * @param target
+         *         host or host:port, the port defaults to 102
+         */
+        public static Target parse(String target) {
+            int colon = target.lastIndexOf(':');
+            if (colon < 0) {
+                return new Target(target, 102);
+            }
+            return new Target(target.substring(0, colon), Integer.parseInt(target.substring(colon + 1)));
+        }
+
+        public String getHost() {
+            return host;
+        }
+
+        public int getPort() {
+            return port;
+        }
+
+        @Override
+        public String toString() {
+            return host + ":" + port;
+        }
+    }
+
+    /**
+     * The schedule pushed to every device
+     */
+    public static final class Schedule<T> {
+        private final String definitions;
+        private final int scheduleNumber;
+        private final List<T> values;
+        private final Duration interval;
+        private final Instant start;
+        private final int prio;
+
+        /**
+         * @param definitions
+         *         the name of the schedules in the {@link de.fhg.ise.IEC61850.client.scheduling.ScheduleRegistry},
+         *         e.g. MaxPow
+         */
+        public Schedule(String definitions, int scheduleNumber, List<T> values, Duration interval, Instant start,
+                int prio) {
+            this.definitions = definitions;
+            this.scheduleNumber = scheduleNumber;
+            this.values = new ArrayList<>(values);
+            this.interval = interval;
+            this.start = start;
+            this.prio = prio;
+        }
+
+        @Override
+        public String toString() {
+            return definitions + " schedule " + scheduleNumber + " with prio " + prio + " starting at " + start
+                    + " with interval " + interval + " and " + values.size() + " values";
+        }
+    }
+
+    /**
+     * The outcome of the push to one device
+     */
+    public static final class DeviceResult {
+        private final Target target;
+        private final Outcome outcome;
+        private final long completedAfterNanos;
+        private final String error;
+
+        DeviceResult(Target target, Outcome outcome, long completedAfterNanos, String error) {
+            this.target = target;
+            this.outcome = outcome;
+            this.completedAfterNanos = completedAfterNanos;
+            this.error = error;
+        }
+
+        public Target getTarget() {
+            return target;
+        }
+
+        public Outcome getOutcome() {
+            return outcome;
+        }
+
+        /**
+         * @return true if the schedule was read back as written and enabled
+         */
+        public boolean isSuccess() {
+            return outcome == Outcome.SUCCEEDED;
+        }
+
+        /**
+         * @return the time from the start of the broadcast until the device was done
+         */
+        public Duration getCompletedAfter() {
+            return Duration.ofNanos(completedAfterNanos);
+        }
+
+        /**
+         * @return why the push failed or was given up, null on success
+         */
+        public String getError() {
+            return error;
+        }
+
+        @Override
+        public String toString() {
+            return target + (isSuccess() ? " ok" : " " + outcome) + " after " + TimeUnit.NANOSECONDS.toMillis(
+                    completedAfterNanos) + "ms" + (error == null ? "" : ": " + error);
+        }
+    }
+
+    /**
+     * Counts and completion percentiles of a broadcast
+     */
+    public static final class Summary {
+        private final List<DeviceResult> results;
+        private final long durationNanos;
+        private final int succeeded;
+        private final int unknown;
+        // completion times of the successful devices
+        private final long[] completedNanos;
+
+        Summary(List<DeviceResult> results, long durationNanos) {
+            this.results = results;
+            this.durationNanos = durationNanos;
+            long[] completed = new long[results.size()];
+            int count = 0;
+            int unknown = 0;
+            for (DeviceResult result : results) {
+                if (result.isSuccess()) {
+                    completed[count++] = result.completedAfterNanos;
+                }
+                else if (result.outcome == Outcome.UNKNOWN) {
+                    unknown++;
+                }
+            }
+            this.succeeded = count;
+            this.unknown = unknown;
+            this.completedNanos = Arrays.copyOf(completed, count);
+            Arrays.sort(completedNanos);
+        }
+
+        public List<DeviceResult> getResults() {
+            return results;
+        }
+
+        public int getSucceeded() {
+            return succeeded;
+        }
+
+        /**
+         * @return the devices the schedule was not written to or read back differently from
+         */
+        public int getFailed() {
+            return results.size() - succeeded - unknown;
+        }
+
+        /**
+         * @return the devices given up while writing, see {@link Outcome#UNKNOWN}
+         */
+        public int getUnknown() {
+            return unknown;
+        }
+
+        public Duration getDuration() {
+            return Duration.ofNanos(durationNanos);
+        }
+
+        /**
+         * @param percentile
+         *         between 0 and 100
+         * @return the time by which the percentile of the successful devices completed (nearest rank), null if none
+         *         succeeded
+         * @throws IllegalArgumentException
+         *         if the percentile is not between 0 and 100
+         */
+        public Duration getCompletionPercentile(double percentile) throws IllegalArgumentException {
+            if (!(percentile >= 0 && percentile <= 100)) {
+                throw new IllegalArgumentException("Percentile " + percentile + " is not between 0 and 100");
+            }
+            if (completedNanos.length == 0) {
+                return null;
+            }
+            int rank = (int) Math.ceil(percentile / 100 * completedNanos.length);
+            return Duration.ofNanos(completedNanos[Math.max(rank, 1) - 1]);
+        }
+
+        @Override
+        public String toString() {
+            return succeeded + " of " + results.size() + " devices succeeded (" + unknown + " unknown) in "
+                    + TimeUnit.NANOSECONDS.toMillis(durationNanos) + "ms, completed after p50=" + millis(50) + " p90="
+                    + millis(90) + " p99=" + millis(99) + " max=" + millis(100);
+        }
+
+        private String millis(double percentile) {
+            Duration completed = getCompletionPercentile(percentile);
+            return completed == null ? "-" : completed.toMillis() + "ms";
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2023 Fraunhofer ISE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package de.fhg.ise.IEC61850.client.broadcast;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Pushes one schedule to many DERs, see {@link ScheduleBroadcast}.
+ * <p>
+ * Command line parameters are:<p> - options, see below<p> - the targets: host[:port] separated by commas, or @file with
+ * one target per line<p> - seconds until schedule start<p> - priority of the schedule<p> - values of the schedule<p>
+ * <p>
+ * Options are {@code --schedule=MaxPow} (the schedules to write to), {@code --number=1} (the schedule number),
+ * {@code --interval=5} (seconds), {@code --parallelism=64} (associations open at once) and {@code --timeout=60}
+ * (seconds until devices not done are given up).
+ */
+public class ScheduleBroadcastCommand {
+
+    private static final Logger log = LoggerFactory.getLogger(ScheduleBroadcastCommand.class);
+
+    public static void main(String[] args) {
+        List<String> argList = Arrays.asList(args);
+        String scheduleName = "MaxPow";
+        int scheduleNumber = 1;
+        Duration interval = Duration.ofSeconds(5);
+        int parallelism = 64;
+        Duration timeout = Duration.ofSeconds(60);
+        List<ScheduleBroadcast.Target> targets;
+        ScheduleBroadcast.Schedule<Number> schedule;
+        try {
+            int position = 0;
+            while (position < args.length && args[position].startsWith("--")) {
+                String[] option = args[position++].substring(2).split("=", 2);
+                if (option.length < 2) {
+                    throw new IllegalArgumentException("Option " + option[0] + " needs a value");
+                }
+                switch (option[0]) {
+                    case "schedule":
+                        scheduleName = option[1];
+                        break;
+                    case "number":
+                        scheduleNumber = Integer.parseInt(option[1]);
+                        break;
+                    case "interval":
+                        interval = Duration.ofSeconds(Long.parseLong(option[1]));
+                        break;
+                    case "parallelism":
+                        parallelism = Integer.parseInt(option[1]);
+                        break;
+                    case "timeout":
+                        timeout = Duration.ofSeconds(Long.parseLong(option[1]));
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option " + option[0]);
+                }
+            }
+            if (args.length - position < 4) {
+                throw new IllegalArgumentException("Too few arguments");
+            }
+            targets = parseTargets(args[position++]);
+            int seconds = Integer.parseInt(args[position++]);
+            int prio = Integer.parseInt(args[position++]);
+            List<Number> values = new ArrayList<>();
+            while (position < args.length) {
+                values.add(Double.parseDouble(args[position++]));
+            }
+            if (seconds < 1) {
+                throw new IllegalArgumentException("Seconds " + seconds + " needs to be at last 1");
+            }
+            if (prio < 10) {
+                throw new IllegalArgumentException("Prio " + prio + " too low: needs to be equal to or larger than 10");
+            }
+            schedule = new ScheduleBroadcast.Schedule<>(scheduleName, scheduleNumber, values, interval,
+                    Instant.now().plusSeconds(seconds), prio);
+        } catch (Exception e) {
+            log.error("Unable to parse input args '{}', failed with {}: {}", argList, e.getClass(), e.getMessage());
+            log.info("Expecting something like '--parallelism=128 der1:102,der2:102 30 10 0 10 20 30 40'");
+            log.info("where targets may also be given as @file, with one host[:port] per line.");
+            System.exit(2);
+            return;
+        }
+
+        try (ScheduleBroadcast broadcast = new ScheduleBroadcast(Math.min(parallelism, targets.size()))) {
+            ScheduleBroadcast.Summary summary = broadcast.broadcast(targets, schedule, timeout,
+                    result -> log.info("{}", result));
+            log.info("{}", summary);
+            System.exit(summary.getSucceeded() == targets.size() ? 0 : 1);
+        } catch (InterruptedException e) {
+            log.error("Interrupted while broadcasting");
+            Thread.currentThread().interrupt();
+            System.exit(1);
+        }
+    }
+
+    static List<ScheduleBroadcast.Target> parseTargets(String targets) throws IOException {
+        List<String> entries = targets.startsWith("@") ?
+                Files.readAllLines(Paths.get(targets.substring(1))) :
+                Arrays.asList(targets.split(","));
+        List<ScheduleBroadcast.Target> parsed = new ArrayList<>();
+        for (String entry : entries) {
+            String trimmed = entry.trim();
+            if (!trimmed.isEmpty() && !trimmed.startsWith("#")) {
+                parsed.add(ScheduleBroadcast.Target.parse(trimmed));
+            }
+        }
+        if (parsed.isEmpty()) {
+            throw new IllegalArgumentException("No targets given");
+        }
+        return parsed;
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2023 Fraunhofer ISE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package de.fhg.ise.IEC61850.client.logging;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Logs structured events that occur once per schedule value or attribute, i.e. on the hot path of writing a schedule.
+ * <p>
+ * At TRACE level, every event is logged. At DEBUG level, only the first and then every n-th event is logged, together
+ * with the number of events that were skipped since the last one. Events carry their arguments as key value pairs
+ * (use {@code %kvp} in the logback pattern). If neither level is enabled, logging an event does not allocate: the
+ * arguments are passed through as they are and no message is formatted.
+ */
+public class SampledLogger {
+
+    /**
+     * Default for n, can be overridden by the system property {@value #SAMPLE_RATE_PROPERTY}
+     */
+    public static final int DEFAULT_SAMPLE_RATE = 20;
+    public static final String SAMPLE_RATE_PROPERTY = "de.fhg.ise.log.sampleRate";
+
+    private final Logger log;
+    private final int sampleRate;
+    private final AtomicLong events = new AtomicLong();
+
+    public SampledLogger(Logger log, int sampleRate) {
+        if (sampleRate < 1) {
+            throw new IllegalArgumentException("Sample rate needs to be positive, got " + sampleRate);
+        }
+        this.log = log;
+        this.sampleRate = sampleRate;
+    }
+
+    public SampledLogger(String name) {
+        this(LoggerFactory.getLogger(name), Integer.getInteger(SAMPLE_RATE_PROPERTY, DEFAULT_SAMPLE_RATE));
+    }
+
+    public boolean isEnabled() {
+        return log.isDebugEnabled();
+    }
+
+    public void event(String message, String key1, Object value1, String key2, Object value2) {
+        if (!log.isDebugEnabled()) {
+            return;
+        }
+        if (log.isTraceEnabled()) {
+            log.atTrace().addKeyValue(key1, value1).addKeyValue(key2, value2).log(message);
+            return;
+        }
+        long event = events.getAndIncrement();
+        if (event % sampleRate == 0) {
+            log.atDebug()
+                    .addKeyValue(key1, value1)
+                    .addKeyValue(key2, value2)
+                    .addKeyValue("skipped", event == 0 ? 0 : sampleRate - 1)
+                    .log(message);
+        }
+    }
+}
@@ -16,12 +16,14 @@ package de.fhg.ise.IEC61850.client.models;
 import com.beanit.iec61850bean.ServiceError;
 import de.fhg.ise.IEC61850.client.IEC61850Utility;
 import de.fhg.ise.IEC61850.client.scheduling.ScheduleDefinitions;
-import de.fhg.ise.IEC61850.client.scheduling.ScheduleType;
+import de.fhg.ise.IEC61850.client.scheduling.ScheduleRegistry;
 
 import java.io.IOException;
 
 /**
- * Holds schedule names as used in for Allianders ReLevENT IEC 61850 server
+ * Holds the schedules of Allianders ReLevENT IEC 61850 server: active power, maximum power and on/off. They are
+ * discovered from the model of the device when used (see {@link ScheduleRegistry} for the naming the discovery
+ * expects), so a device without some of them can still be connected to, e.g. to broadcast to its other schedules.
  */
 public class AllianderDER extends IEC61850Utility {
 
@@ -38,52 +40,43 @@ public class AllianderDER extends IEC61850Utility {
         return new AllianderDER("127.0.0.1", 102);
     }
 
+    /**
+     * @return a new connection, keeping the estimate of the clock of the device
+     */
     public AllianderDER reconnect() throws ServiceError, IOException {
-        return new AllianderDER(host, port);
+        AllianderDER reconnected = new AllianderDER(host, port);
+        reconnected.getClock().adopt(getClock());
+        return reconnected;
     }
 
-    public final ScheduleDefinitions<Number> powerSchedules = ScheduleType.ASG.withScheduleDefinitions(this,
-            "DER_Scheduler_Control/ActPow_GGIO1",//
-            "DER_Scheduler_Control/ActPow_FSCC1",//
-            "DER_Scheduler_Control/ActPow_Res_FSCH01",//
-            "DER_Scheduler_Control/ActPow_FSCH01", //
-            "DER_Scheduler_Control/ActPow_FSCH02", //
-            "DER_Scheduler_Control/ActPow_FSCH03", //
-            "DER_Scheduler_Control/ActPow_FSCH04", //
-            "DER_Scheduler_Control/ActPow_FSCH05", //
-            "DER_Scheduler_Control/ActPow_FSCH06", //
-            "DER_Scheduler_Control/ActPow_FSCH07", //
-            "DER_Scheduler_Control/ActPow_FSCH08", //
-            "DER_Scheduler_Control/ActPow_FSCH09", //
-            "DER_Scheduler_Control/ActPow_FSCH10");
+    /**
+     * The names of the schedules in the {@link ScheduleRegistry} of the device
+     */
+    public static final String ACTIVE_POWER = "ActPow";
+    public static final String MAX_POWER = "MaxPow";
+    public static final String ON_OFF = "OnOff";
 
-    public final ScheduleDefinitions<Number> maxPowerSchedules = ScheduleType.ASG.withScheduleDefinitions(this,
-            "DER_Scheduler_Control/MaxPow_GGIO1",//
-            "DER_Scheduler_Control/MaxPow_FSCC1",//
-            "DER_Scheduler_Control/MaxPow_Res_FSCH01",//
-            "DER_Scheduler_Control/MaxPow_FSCH01", //
-            "DER_Scheduler_Control/MaxPow_FSCH02", //
-            "DER_Scheduler_Control/MaxPow_FSCH03", //
-            "DER_Scheduler_Control/MaxPow_FSCH04", //
-            "DER_Scheduler_Control/MaxPow_FSCH05", //
-            "DER_Scheduler_Control/MaxPow_FSCH06", //
-            "DER_Scheduler_Control/MaxPow_FSCH07", //
-            "DER_Scheduler_Control/MaxPow_FSCH08", //
-            "DER_Scheduler_Control/MaxPow_FSCH09", //
-            "DER_Scheduler_Control/MaxPow_FSCH10");
+    /**
+     * @throws IllegalArgumentException
+     *         if the device has no such schedules
+     */
+    public ScheduleDefinitions<Number> getPowerSchedules() throws IllegalArgumentException {
+        return getScheduleRegistry().get(ACTIVE_POWER);
+    }
+
+    /**
+     * @throws IllegalArgumentException
+     *         if the device has no such schedules
+     */
+    public ScheduleDefinitions<Number> getMaxPowerSchedules() throws IllegalArgumentException {
+        return getScheduleRegistry().get(MAX_POWER);
+    }
 
-    public final ScheduleDefinitions<Boolean> onOffSchedules = ScheduleType.SPG.withScheduleDefinitions(this,
-            "DER_Scheduler_Control/OnOff_GGIO1",//
-            "DER_Scheduler_Control/OnOff_FSCC1",//
-            "DER_Scheduler_Control/OnOff_Res_FSCH01",//
-            "DER_Scheduler_Control/OnOff_FSCH01", //
-            "DER_Scheduler_Control/OnOff_FSCH02", //
-            "DER_Scheduler_Control/OnOff_FSCH03", //
-            "DER_Scheduler_Control/OnOff_FSCH04", //
-            "DER_Scheduler_Control/OnOff_FSCH05", //
-            "DER_Scheduler_Control/OnOff_FSCH06", //
-            "DER_Scheduler_Control/OnOff_FSCH07", //
-            "DER_Scheduler_Control/OnOff_FSCH08", //
-            "DER_Scheduler_Control/OnOff_FSCH09", //
-            "DER_Scheduler_Control/OnOff_FSCH10");
+    /**
+     * @throws IllegalArgumentException
+     *         if the device has no such schedules
+     */
+    public ScheduleDefinitions<Boolean> getOnOffSchedules() throws IllegalArgumentException {
+        return getScheduleRegistry().get(ON_OFF);
+    }
 }
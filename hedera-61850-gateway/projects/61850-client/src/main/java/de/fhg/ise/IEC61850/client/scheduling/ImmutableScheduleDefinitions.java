@@ -0,0 +1,123 @@
+/*
+ * Copyright 2023 Fraunhofer ISE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package de.fhg.ise.IEC61850.client.scheduling;
+
+import de.fhg.ise.IEC61850.client.IEC61850Utility;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+
+/**
+ * {@link ScheduleDefinitions} built once by {@link ScheduleType}: holds its single {@link ValueAccess}, the GGIO value
+ * reference and a map from schedule names to numbers, so that none of the getters allocates.
+ */
+final class ImmutableScheduleDefinitions<T> implements ScheduleDefinitions<T> {
+
+    private final ScheduleType scheduleType;
+    private final String ggio;
+    private final String controller;
+    private final String reserveSchedule;
+    private final List<String> scheduleNames;
+    private final Map<String, Integer> scheduleNumbers;
+    private final T defaultValue;
+    private final ValueAccess<T> valueAccess;
+    private final String ggioValueReference;
+
+    @SuppressWarnings("unchecked")
+    ImmutableScheduleDefinitions(ScheduleType scheduleType,
+            BiFunction<IEC61850Utility, ScheduleDefinitions, ValueAccess> valueAccessFunction, IEC61850Utility device,
+            String ggio, String controller, String reserveSchedule, T defaultValue, String... schedules) {
+        this.scheduleType = scheduleType;
+        this.ggio = ggio;
+        this.controller = controller;
+        this.reserveSchedule = reserveSchedule;
+        this.scheduleNames = Collections.unmodifiableList(Arrays.asList(schedules.clone()));
+        Map<String, Integer> scheduleNumbers = new HashMap<>();
+        for (int i = 0; i < schedules.length; i++) {
+            scheduleNumbers.putIfAbsent(schedules[i], i + 1);
+        }
+        this.scheduleNumbers = Collections.unmodifiableMap(scheduleNumbers);
+        this.defaultValue = defaultValue;
+        // the value access only keeps this instance, it does not call it while being created
+        this.valueAccess = valueAccessFunction.apply(device, this);
+        this.ggioValueReference = ggio + valueAccess.getGGIOValueSuffix();
+    }
+
+    @Override
+    public ValueAccess<T> getValueAccess() {
+        return valueAccess;
+    }
+
+    @Override
+    public String getScheduleName(int scheduleNumber) throws IllegalArgumentException {
+        if (scheduleNumber <= 0 || scheduleNumber > scheduleNames.size()) {
+            throw new IllegalArgumentException("Schedule number must be between 1 and " + scheduleNames.size());
+        }
+        return scheduleNames.get(scheduleNumber - 1);
+    }
+
+    @Override
+    public int getScheduleNumber(String scheduleName) throws IllegalArgumentException {
+        Integer scheduleNumber = scheduleNumbers.get(scheduleName);
+        if (scheduleNumber == null) {
+            throw new IllegalArgumentException("No schedule with name '" + scheduleName + "' configured");
+        }
+        return scheduleNumber;
+    }
+
+    @Override
+    public String getControlledGGIO() {
+        return ggio;
+    }
+
+    @Override
+    public String getGGIOValueReference() {
+        return ggioValueReference;
+    }
+
+    @Override
+    public String getController() {
+        return controller;
+    }
+
+    @Override
+    public String getReserveSchedule() {
+        return reserveSchedule;
+    }
+
+    @Override
+    public Collection<String> getAllScheduleNames() {
+        return scheduleNames;
+    }
+
+    @Override
+    public ScheduleType getScheduleType() {
+        return scheduleType;
+    }
+
+    @Override
+    public T getDefaultValue() {
+        return defaultValue;
+    }
+
+    @Override
+    public String toString() {
+        return ScheduleDefinitions.class.getSimpleName() + " with GGIO " + ggio;
+    }
+}
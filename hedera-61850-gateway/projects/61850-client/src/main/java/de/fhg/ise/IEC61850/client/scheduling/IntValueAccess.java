@@ -0,0 +1,128 @@
+/*
+ * Copyright 2023 Fraunhofer ISE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package de.fhg.ise.IEC61850.client.scheduling;
+
+import com.beanit.iec61850bean.BasicDataAttribute;
+import com.beanit.iec61850bean.FcModelNode;
+import com.beanit.iec61850bean.ServiceError;
+import de.fhg.ise.IEC61850.client.IEC61850Utility;
+import de.fhg.ise.IEC61850.client.logging.SampledLogger;
+import de.fhg.ise.IEC61850.client.tracing.Span;
+import de.fhg.ise.IEC61850.client.tracing.Tracing;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * Access to integer (ING) and enumerated (ENG) schedule values, both written to {@code setVal}. The values are copied
+ * into an int array when preparing, so writing does not unbox them.
+ */
+class IntValueAccess implements ValueAccess<Integer> {
+
+    private final IEC61850Utility utility;
+    private final ScheduleDefinitions schedules;
+    private final ValueReferences references;
+    private final String ggioValueSuffix;
+    private final int defaultValue;
+    private final SampledLogger log;
+
+    /**
+     * @param valueNodePrefix
+     *         e.g. ValING
+     */
+    IntValueAccess(IEC61850Utility utility, ScheduleDefinitions schedules, String valueNodePrefix,
+            String ggioValueSuffix, int defaultValue) {
+        this.utility = utility;
+        this.schedules = schedules;
+        this.references = new ValueReferences(valueNodePrefix, "setVal");
+        this.ggioValueSuffix = ggioValueSuffix;
+        this.defaultValue = defaultValue;
+        this.log = new SampledLogger(ValueAccess.class.getName() + "." + valueNodePrefix);
+    }
+
+    @Override
+    public String getValueAccessString(int valueIndex, String scheduleName) {
+        return references.get(valueIndex, scheduleName);
+    }
+
+    @Override
+    public String getGGIOValueSuffix() {
+        return ggioValueSuffix;
+    }
+
+    @Override
+    public PreparedSchedule prepareSchedule(Collection<Integer> values, int scheduleNumber, Duration interval,
+            Instant start, int prio) {
+        return prepareWriting(values, schedules.getScheduleName(scheduleNumber)).asSchedule(interval, start, prio);
+    }
+
+    @Override
+    public PreparedSchedule.PreparedScheduleValues prepareWriting(Collection<Integer> values, String scheduleName) {
+        int[] payload = new int[values.size()];
+        int i = 0;
+        for (Integer value : values) {
+            payload[i++] = value;
+        }
+        return new PreparedSchedule.PreparedScheduleValues() {
+            @Override
+            public void writeValues() throws ServiceError, IOException {
+                for (int index = 1; index <= payload.length; index++) {
+                    String valueBasicDataAttribute = getValueAccessString(index, scheduleName);
+                    if (log.isEnabled()) {
+                        log.event("Writing schedule value", "value", payload[index - 1], "reference",
+                                valueBasicDataAttribute);
+                    }
+                    try (Span span = Tracing.span("der-write-value")) {
+                        span.setAttribute("reference", valueBasicDataAttribute);
+                        utility.setDataValues(valueBasicDataAttribute, null, Integer.toString(payload[index - 1]));
+                    }
+                }
+            }
+
+            @Override
+            public int size() {
+                return payload.length;
+            }
+
+            @Override
+            public String getScheduleName() {
+                return scheduleName;
+            }
+
+            @Override
+            public String getValueReference(int valueIndex) {
+                return getValueAccessString(valueIndex, scheduleName);
+            }
+
+            @Override
+            public PreparedSchedule asSchedule(Duration interval, Instant start, int prio) {
+                return ValueAccess.valueWriterToScheduleWriter(this, interval, start, prio);
+            }
+        };
+    }
+
+    @Override
+    public PreparedSchedule.PreparedScheduleValues activateScheduleWithDefaultValue(String scheduleName) {
+        return prepareWriting(Collections.singletonList(defaultValue), scheduleName);
+    }
+
+    @Override
+    public Integer readToTargetValue(FcModelNode node) throws ServiceError, IOException {
+        // INT32 for ING, INT8 for the enumerations of ENG
+        return Integer.parseInt(((BasicDataAttribute) node).getValueString());
+    }
+}
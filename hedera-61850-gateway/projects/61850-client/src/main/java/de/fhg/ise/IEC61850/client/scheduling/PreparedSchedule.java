@@ -40,6 +40,13 @@ public interface PreparedSchedule {
 
         String getScheduleName();
 
+        /**
+         * @param valueIndex
+         *         starting at 1
+         * @return the reference of the node the value with that index is written to
+         */
+        String getValueReference(int valueIndex);
+
         PreparedSchedule asSchedule(Duration interval, Instant start, int prio);
     }
 }
\ No newline at end of file
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2023 Fraunhofer ISE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package de.fhg.ise.IEC61850.client.scheduling;
+
+import java.util.Objects;
+
+/**
+ * A range of schedule priorities (SchdPrio), inclusive. Of schedules running at the same time, the one with the highest
+ * priority is active.
+ */
+public final class PriorityBand {
+
+    private final int min;
+    private final int max;
+
+    public PriorityBand(int min, int max) {
+        if (min < 0 || max < min) {
+            throw new IllegalArgumentException("Invalid priority band " + min + "-" + max);
+        }
+        this.min = min;
+        this.max = max;
+    }
+
+    /**
+     * @param band
+     *         as {@code min-max}, or a single priority
+     */
+    public static PriorityBand parse(String band) throws IllegalArgumentException {
+        String[] bounds = band.trim().split("\\s*-\\s*");
+        try {
+            if (bounds.length == 1) {
+                int prio = Integer.parseInt(bounds[0]);
+                return new PriorityBand(prio, prio);
+            }
+            if (bounds.length == 2) {
+                return new PriorityBand(Integer.parseInt(bounds[0]), Integer.parseInt(bounds[1]));
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid priority band '" + band + "', expected e.g. 20-29", e);
+        }
+        throw new IllegalArgumentException("Invalid priority band '" + band + "', expected e.g. 20-29");
+    }
+
+    public int getMin() {
+        return min;
+    }
+
+    public int getMax() {
+        return max;
+    }
+
+    public boolean contains(int prio) {
+        return prio >= min && prio <= max;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof PriorityBand)) {
+            return false;
+        }
+        PriorityBand that = (PriorityBand) o;
+        return min == that.min && max == that.max;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(min, max);
+    }
+
+    @Override
+    public String toString() {
+        return min == max ? Integer.toString(min) : min + "-" + max;
+    }
+}
@@ -0,0 +1,250 @@
+/*
+ * Copyright 2023 Fraunhofer ISE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package de.fhg.ise.IEC61850.client.scheduling;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Computes locally which value the schedule controller (FSCC) of a device applies over time, following the rules of
+ * IEC 61850-90-10: of the enabled schedules running at a time, the one with the highest priority is active, of equal
+ * priorities the one that started first. If no schedule is running, the value of the reserve schedule applies.
+ * <p>
+ * Knowing the schedules written to a device, this answers "which value applies at time t" without polling
+ * {@code ActSchdRef} and the GGIO, and allows to check a schedule before writing it (see {@link #with(ScheduleImage)}).
+ */
+public final class ScheduleArbitration {
+
+    private final double reserveValue;
+    private final List<ScheduleImage> schedules;
+
+    private ScheduleArbitration(double reserveValue, List<ScheduleImage> schedules) {
+        this.reserveValue = reserveValue;
+        this.schedules = schedules;
+    }
+
+    /**
+     * @param schedules
+     *         the enabled schedules, of equal priority and start the first one wins
+     */
+    public static ScheduleArbitration of(double reserveValue, Collection<ScheduleImage> schedules) {
+        return new ScheduleArbitration(reserveValue, new ArrayList<>(schedules));
+    }
+
+    /**
+     * @return the arbitration with the schedule added, e.g. to check what writing it would change
+     */
+    public ScheduleArbitration with(ScheduleImage schedule) {
+        List<ScheduleImage> extended = new ArrayList<>(schedules);
+        extended.add(schedule);
+        return new ScheduleArbitration(reserveValue, extended);
+    }
+
+    /**
+     * @return the value applied over time, changing only where a schedule entry starts or ends
+     */
+    public EffectiveCurve compute() {
+        long[] boundaries = boundaries();
+        long[] times = new long[boundaries.length + 1];
+        double[] values = new double[boundaries.length + 1];
+        int[] sources = new int[boundaries.length + 1];
+        // before the first schedule
+        times[0] = Long.MIN_VALUE;
+        values[0] = reserveValue;
+        sources[0] = -1;
+        int size = 1;
+        for (long time : boundaries) {
+            int source = activeAt(time);
+            double value = source < 0 ? reserveValue : schedules.get(source).valueAt(time);
+            if (source != sources[size - 1] || Double.compare(value, values[size - 1]) != 0) {
+                times[size] = time;
+                values[size] = value;
+                sources[size] = source;
+                size++;
+            }
+        }
+        String[] names = new String[schedules.size()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = schedules.get(i).name;
+        }
+        return new EffectiveCurve(Arrays.copyOf(times, size), Arrays.copyOf(values, size), Arrays.copyOf(sources, size),
+                names);
+    }
+
+    /**
+     * The start and end of all entries, ordered and without duplicates
+     */
+    private long[] boundaries() {
+        int count = 0;
+        for (ScheduleImage schedule : schedules) {
+            count += schedule.values.length + 1;
+        }
+        long[] boundaries = new long[count];
+        int i = 0;
+        for (ScheduleImage schedule : schedules) {
+            for (int entry = 0; entry <= schedule.values.length; entry++) {
+                boundaries[i++] = schedule.startMillis + entry * schedule.intervalMillis;
+            }
+        }
+        Arrays.sort(boundaries);
+        int distinct = 0;
+        for (int j = 0; j < boundaries.length; j++) {
+            if (distinct == 0 || boundaries[distinct - 1] != boundaries[j]) {
+                boundaries[distinct++] = boundaries[j];
+            }
+        }
+        return Arrays.copyOf(boundaries, distinct);
+    }
+
+    /**
+     * @return the index of the active schedule, -1 if none is running
+     */
+    private int activeAt(long time) {
+        int active = -1;
+        for (int i = 0; i < schedules.size(); i++) {
+            ScheduleImage schedule = schedules.get(i);
+            if (!schedule.isRunningAt(time)) {
+                continue;
+            }
+            if (active < 0) {
+                active = i;
+                continue;
+            }
+            ScheduleImage current = schedules.get(active);
+            if (schedule.prio > current.prio || (schedule.prio == current.prio
+                    && schedule.startMillis < current.startMillis)) {
+                active = i;
+            }
+        }
+        return active;
+    }
+
+    /**
+     * A schedule as enabled on the device
+     */
+    public static final class ScheduleImage {
+        private final String name;
+        private final int prio;
+        private final long startMillis;
+        private final long intervalMillis;
+        private final double[] values;
+
+        public ScheduleImage(String name, int prio, Instant start, Duration interval, double[] values) {
+            if (interval.toMillis() < 1) {
+                throw new IllegalArgumentException("Interval must be positive");
+            }
+            this.name = name;
+            this.prio = prio;
+            this.startMillis = start.toEpochMilli();
+            this.intervalMillis = interval.toMillis();
+            this.values = values.clone();
+        }
+
+        public static ScheduleImage of(String name, int prio, Instant start, Duration interval,
+                Collection<? extends Number> values) {
+            double[] doubles = new double[values.size()];
+            int i = 0;
+            for (Number value : values) {
+                doubles[i++] = value.doubleValue();
+            }
+            return new ScheduleImage(name, prio, start, interval, doubles);
+        }
+
+        boolean isRunningAt(long time) {
+            return time >= startMillis && time < startMillis + values.length * intervalMillis;
+        }
+
+        double valueAt(long time) {
+            return values[(int) ((time - startMillis) / intervalMillis)];
+        }
+
+        @Override
+        public String toString() {
+            return "ScheduleImage{" + "name='" + name + '\'' + ", prio=" + prio + ", start=" + Instant.ofEpochMilli(
+                    startMillis) + ", entries=" + values.length + '}';
+        }
+    }
+
+    /**
+     * The value applied by the device over time, as the times the value changes at
+     */
+    public static final class EffectiveCurve {
+        // epoch millis, the first is Long.MIN_VALUE
+        private final long[] times;
+        private final double[] values;
+        // index into names, -1 for the reserve schedule
+        private final int[] sources;
+        private final String[] names;
+
+        private EffectiveCurve(long[] times, double[] values, int[] sources, String[] names) {
+            this.times = times;
+            this.values = values;
+            this.sources = sources;
+            this.names = names;
+        }
+
+        public double valueAt(Instant time) {
+            return values[indexAt(time.toEpochMilli())];
+        }
+
+        /**
+         * @return the name of the active schedule, null if the reserve schedule applies
+         */
+        public String activeScheduleAt(Instant time) {
+            int source = sources[indexAt(time.toEpochMilli())];
+            return source < 0 ? null : names[source];
+        }
+
+        private int indexAt(long time) {
+            int index = Arrays.binarySearch(times, time);
+            // otherwise the insertion point is after the change that applies
+            return index >= 0 ? index : -index - 2;
+        }
+
+        /**
+         * The number of changes, including the reserve value before the first schedule
+         */
+        public int size() {
+            return times.length;
+        }
+
+        /**
+         * @return the time the change with the index applies from, null for the reserve value before all schedules
+         */
+        public Instant getTime(int index) {
+            return index == 0 ? null : Instant.ofEpochMilli(times[index]);
+        }
+
+        public double getValue(int index) {
+            return values[index];
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder curve = new StringBuilder("EffectiveCurve{");
+            for (int i = 0; i < times.length; i++) {
+                curve.append(i == 0 ? "" : ", ")
+                        .append(i == 0 ? "-" : Instant.ofEpochMilli(times[i]).toString())
+                        .append('=')
+                        .append(values[i])
+                        .append(sources[i] < 0 ? " (reserve)" : " (" + names[sources[i]] + ")");
+            }
+            return curve.append('}').toString();
+        }
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2023 Fraunhofer ISE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package de.fhg.ise.IEC61850.client.scheduling;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Plans the schedules to write for a series of values with a fixed resolution, with as few writes to the device as
+ * possible.
+ * <p>
+ * Runs of equal values are merged: if the lengths of all runs of a schedule are multiples of k, it gets an interval of
+ * k times the resolution and one entry per k values. Where it saves writes, the values are split into several
+ * schedules that follow each other (chained by their start times), each with its own interval. Every schedule costs
+ * {@value #WRITES_PER_SCHEDULE} writes in addition to its entries (see
+ * {@link de.fhg.ise.IEC61850.client.IEC61850Utility#writeAndEnableSchedule(PreparedSchedule.PreparedScheduleValues,
+ * Duration, Instant, int)}).
+ */
+public final class ScheduleCompaction {
+
+    /**
+     * NumEntr, SchdIntv, SchdPrio, StrTm01 and the two operates to enable
+     */
+    public static final int WRITES_PER_SCHEDULE = 6;
+
+    private ScheduleCompaction() {
+    }
+
+    /**
+     * @param capacity
+     *         the number of entries a schedule can hold at most
+     * @param maxSchedules
+     *         the number of schedules the values may be split into at most
+     * @return the schedules, in the order of their start
+     * @throws IllegalArgumentException
+     *         if the values do not fit into maxSchedules schedules
+     */
+    public static <T> List<Segment<T>> plan(List<T> values, Duration resolution, Instant start, int capacity,
+            int maxSchedules) throws IllegalArgumentException {
+        if (values.isEmpty()) {
+            throw new IllegalArgumentException("At least one value required.");
+        }
+        List<T> runValues = new ArrayList<>();
+        List<Integer> runLengths = new ArrayList<>();
+        for (T value : values) {
+            int last = runValues.size() - 1;
+            if (last >= 0 && Objects.equals(runValues.get(last), value)) {
+                runLengths.set(last, runLengths.get(last) + 1);
+            }
+            else {
+                runValues.add(value);
+                runLengths.add(1);
+            }
+        }
+        int runs = runValues.size();
+
+        // writes[k][j]: fewest writes for the first j runs in k schedules, from[k][j]: first run of the last schedule
+        long[][] writes = new long[maxSchedules + 1][runs + 1];
+        int[][] from = new int[maxSchedules + 1][runs + 1];
+        for (long[] row : writes) {
+            Arrays.fill(row, Long.MAX_VALUE);
+        }
+        writes[0][0] = 0;
+        for (int k = 1; k <= maxSchedules; k++) {
+            for (int j = 1; j <= runs; j++) {
+                int gcd = 0;
+                long length = 0;
+                for (int i = j - 1; i >= 0; i--) {
+                    gcd = gcd(gcd, runLengths.get(i));
+                    length += runLengths.get(i);
+                    // only grows with more runs
+                    long entries = length / gcd;
+                    if (entries > capacity) {
+                        break;
+                    }
+                    if (writes[k - 1][i] != Long.MAX_VALUE
+                            && writes[k - 1][i] + WRITES_PER_SCHEDULE + entries < writes[k][j]) {
+                        writes[k][j] = writes[k - 1][i] + WRITES_PER_SCHEDULE + entries;
+                        from[k][j] = i;
+                    }
+                }
+            }
+        }
+        int schedules = -1;
+        for (int k = 1; k <= maxSchedules; k++) {
+            // the fewest schedules on a tie
+            if (writes[k][runs] != Long.MAX_VALUE && (schedules < 0 || writes[k][runs] < writes[schedules][runs])) {
+                schedules = k;
+            }
+        }
+        if (schedules < 0) {
+            throw new IllegalArgumentException(
+                    values.size() + " values do not fit into " + maxSchedules + " schedules of " + capacity
+                            + " entries");
+        }
+
+        List<Segment<T>> plan = new ArrayList<>();
+        long offset = values.size();
+        int end = runs;
+        for (int k = schedules; k > 0; k--) {
+            int first = from[k][end];
+            int gcd = 0;
+            for (int i = first; i < end; i++) {
+                gcd = gcd(gcd, runLengths.get(i));
+            }
+            List<T> entries = new ArrayList<>();
+            for (int i = first; i < end; i++) {
+                entries.addAll(Collections.nCopies(runLengths.get(i) / gcd, runValues.get(i)));
+                offset -= runLengths.get(i);
+            }
+            plan.add(new Segment<>(entries, resolution.multipliedBy(gcd), start.plus(resolution.multipliedBy(offset))));
+            end = first;
+        }
+        Collections.reverse(plan);
+        return plan;
+    }
+
+    /**
+     * @return the number of writes to the device for the schedules
+     */
+    public static int writesOf(List<? extends Segment<?>> plan) {
+        return plan.stream().mapToInt(segment -> WRITES_PER_SCHEDULE + segment.getValues().size()).sum();
+    }
+
+    private static int gcd(int a, int b) {
+        while (b != 0) {
+            int t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+
+    /**
+     * One schedule of a plan
+     */
+    public static final class Segment<T> {
+        private final List<T> values;
+        private final Duration interval;
+        private final Instant start;
+
+        private Segment(List<T> values, Duration interval, Instant start) {
+            this.values = Collections.unmodifiableList(values);
+            this.interval = interval;
+            this.start = start;
+        }
+
+        public List<T> getValues() {
+            return values;
+        }
+
+        public Duration getInterval() {
+            return interval;
+        }
+
+        public Instant getStart() {
+            return start;
+        }
+
+        public Instant getEnd() {
+            return start.plus(interval.multipliedBy(values.size()));
+        }
+
+        @Override
+        public String toString() {
+            return "Segment{" + "start=" + start + ", interval=" + interval + ", entries=" + values.size() + '}';
+        }
+    }
+}
@@ -0,0 +1,271 @@
+/*
+ * Copyright 2023 Fraunhofer ISE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package de.fhg.ise.IEC61850.client.scheduling;
+
+import com.beanit.iec61850bean.ModelNode;
+import com.beanit.iec61850bean.ServerModel;
+import de.fhg.ise.IEC61850.client.IEC61850Utility;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The {@link ScheduleDefinitions} of a device, as discovered from its {@link ServerModel}.
+ * <p>
+ * A schedule controller (FSCC) is grouped with the schedules (FSCH), the reserve schedule (prefix {@code Res_}) and the
+ * GGIO of its logical device that share its prefix, as in the ReLevENT model: {@code MaxPow_FSCC1} controls
+ * {@code MaxPow_GGIO1} with the schedules {@code MaxPow_FSCH01}, {@code MaxPow_FSCH02}, ... and the reserve schedule
+ * {@code MaxPow_Res_FSCH01}. The {@link ScheduleType} is found from the value nodes of the schedules, the capacity from
+ * their number. The definitions are registered by the prefix without the trailing underscore, e.g. {@code MaxPow}.
+ * <p>
+ * What was discovered is cached in memory by a fingerprint of the logical nodes and data objects of the model, so
+ * reconnects and further devices of the same model are not walked again. The cache is not persisted, every start of
+ * the process walks each model once.
+ */
+public class ScheduleRegistry {
+
+    private static final Logger log = LoggerFactory.getLogger(ScheduleRegistry.class);
+
+    private static final Pattern LOGICAL_NODE = Pattern.compile("(.*)(FSCC|FSCH|GGIO)(\\d+)");
+    private static final String RESERVE_PREFIX = "Res_";
+    private static final Map<String, List<Controller>> discovered = new ConcurrentHashMap<>();
+
+    private final Map<String, ScheduleDefinitions<?>> definitions;
+    private final Map<String, Integer> capacities;
+
+    private ScheduleRegistry(Map<String, ScheduleDefinitions<?>> definitions, Map<String, Integer> capacities) {
+        this.definitions = Collections.unmodifiableMap(definitions);
+        this.capacities = Collections.unmodifiableMap(capacities);
+    }
+
+    /**
+     * Discovers the schedules of the device from its server model, or takes them from the cache if a model with the
+     * same logical nodes and data objects was discovered before
+     */
+    public static ScheduleRegistry discover(IEC61850Utility device) {
+        ServerModel model = device.getCachedServerModel();
+        List<Controller> controllers = discovered.computeIfAbsent(fingerprint(model), fingerprint -> {
+            List<Controller> found = walk(model);
+            log.info("Discovered {} schedule controllers in model {}: {}", found.size(), fingerprint, found);
+            return found;
+        });
+
+        Map<String, ScheduleDefinitions<?>> definitions = new LinkedHashMap<>();
+        Map<String, Integer> capacities = new LinkedHashMap<>();
+        for (Controller controller : controllers) {
+            definitions.put(controller.name,
+                    controller.type.withScheduleDefinitions(device, controller.ggio, controller.controller,
+                            controller.reserveSchedule, controller.schedules.toArray(new String[0])));
+            capacities.put(controller.name, controller.capacity);
+        }
+        return new ScheduleRegistry(definitions, capacities);
+    }
+
+    /**
+     * @param name
+     *         the prefix of the controller without the trailing underscore, e.g. {@code MaxPow}
+     * @throws IllegalArgumentException
+     *         if the model has no such schedules
+     */
+    @SuppressWarnings("unchecked")
+    public <T> ScheduleDefinitions<T> get(String name) throws IllegalArgumentException {
+        ScheduleDefinitions<?> found = definitions.get(name);
+        if (found == null) {
+            throw new IllegalArgumentException(
+                    "No schedules '" + name + "' in the model of the device, found " + definitions.keySet());
+        }
+        return (ScheduleDefinitions<T>) found;
+    }
+
+    public Collection<String> getNames() {
+        return definitions.keySet();
+    }
+
+    public Collection<ScheduleDefinitions<?>> getAll() {
+        return definitions.values();
+    }
+
+    /**
+     * The number of entries every schedule of the controller can hold, as counted from the value nodes of the model
+     *
+     * @throws IllegalArgumentException
+     *         if the model has no such schedules
+     */
+    public int getCapacity(String name) {
+        get(name);
+        return capacities.get(name);
+    }
+
+    private static List<Controller> walk(ServerModel model) {
+        List<Controller> controllers = new ArrayList<>();
+        for (ModelNode logicalDevice : model.getChildren()) {
+            // by prefix, the schedules ordered by their number
+            Map<String, String> fscc = new TreeMap<>();
+            Map<String, String> ggio = new TreeMap<>();
+            Map<String, TreeMap<Integer, ModelNode>> fsch = new TreeMap<>();
+            Map<String, String> reserve = new TreeMap<>();
+            for (ModelNode logicalNode : logicalDevice.getChildren()) {
+                Matcher matcher = LOGICAL_NODE.matcher(logicalNode.getName());
+                if (!matcher.matches()) {
+                    continue;
+                }
+                String prefix = matcher.group(1);
+                String reference = logicalDevice.getName() + "/" + logicalNode.getName();
+                switch (matcher.group(2)) {
+                    case "FSCC":
+                        fscc.putIfAbsent(prefix, reference);
+                        break;
+                    case "GGIO":
+                        ggio.putIfAbsent(prefix, reference);
+                        break;
+                    default:
+                        if (prefix.endsWith(RESERVE_PREFIX)) {
+                            reserve.putIfAbsent(prefix.substring(0, prefix.length() - RESERVE_PREFIX.length()),
+                                    reference);
+                        }
+                        else {
+                            fsch.computeIfAbsent(prefix, p -> new TreeMap<>())
+                                    .put(Integer.parseInt(matcher.group(3)), logicalNode);
+                        }
+                }
+            }
+            for (Map.Entry<String, String> controller : fscc.entrySet()) {
+                String prefix = controller.getKey();
+                TreeMap<Integer, ModelNode> schedules = fsch.get(prefix);
+                if (schedules == null || !ggio.containsKey(prefix)) {
+                    log.warn("Ignoring schedule controller {} without schedules or GGIO", controller.getValue());
+                    continue;
+                }
+                ScheduleType type = typeOf(schedules.firstEntry().getValue());
+                if (type == null) {
+                    log.warn("Ignoring schedule controller {}, the values of its schedules are of no known type",
+                            controller.getValue());
+                    continue;
+                }
+                List<String> scheduleNames = new ArrayList<>();
+                int capacity = Integer.MAX_VALUE;
+                for (ModelNode schedule : schedules.values()) {
+                    scheduleNames.add(logicalDevice.getName() + "/" + schedule.getName());
+                    capacity = Math.min(capacity, capacityOf(schedule, type));
+                }
+                String name = prefix.endsWith("_") ? prefix.substring(0, prefix.length() - 1) : prefix;
+                controllers.add(new Controller(name.isEmpty() ? controller.getValue() : name, type,
+                        controller.getValue(), ggio.get(prefix), reserve.get(prefix), scheduleNames, capacity));
+            }
+        }
+        return controllers;
+    }
+
+    private static ScheduleType typeOf(ModelNode schedule) {
+        for (ScheduleType type : ScheduleType.values()) {
+            if (schedule.getChild(type.getValueNodePrefix() + "001") != null) {
+                return type;
+            }
+        }
+        return null;
+    }
+
+    private static int capacityOf(ModelNode schedule, ScheduleType type) {
+        Set<String> valueNodes = new HashSet<>();
+        for (ModelNode dataObject : schedule.getChildren()) {
+            // the same data object may be listed once per functional constraint
+            if (dataObject.getName().matches(type.getValueNodePrefix() + "\\d{3}")) {
+                valueNodes.add(dataObject.getName());
+            }
+        }
+        return valueNodes.size();
+    }
+
+    /**
+     * Identifies a model by its logical nodes and the names of their data objects, which include the value nodes of
+     * the schedules
+     */
+    static String fingerprint(ServerModel model) {
+        StringBuilder nodes = new StringBuilder();
+        for (ModelNode logicalDevice : model.getChildren()) {
+            for (ModelNode logicalNode : logicalDevice.getChildren()) {
+                nodes.append(logicalDevice.getName()).append('/').append(logicalNode.getName()).append(':');
+                // the same data object may be listed once per functional constraint
+                Set<String> dataObjects = new TreeSet<>();
+                for (ModelNode dataObject : logicalNode.getChildren()) {
+                    dataObjects.add(dataObject.getName());
+                }
+                nodes.append(String.join(",", dataObjects)).append('\n');
+            }
+        }
+        try {
+            StringBuilder fingerprint = new StringBuilder();
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(nodes.toString().getBytes(StandardCharsets.UTF_8));
+            for (int i = 0; i < 8; i++) {
+                fingerprint.append(String.format("%02x", digest[i]));
+            }
+            return fingerprint.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform supports SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ScheduleRegistry{" + "definitions=" + definitions.keySet() + ", capacities=" + capacities + '}';
+    }
+
+    /**
+     * What was discovered for one FSCC, independent of the connection
+     */
+    private static final class Controller {
+        private final String name;
+        private final ScheduleType type;
+        private final String controller;
+        private final String ggio;
+        // null if there is none
+        private final String reserveSchedule;
+        private final List<String> schedules;
+        private final int capacity;
+
+        Controller(String name, ScheduleType type, String controller, String ggio, String reserveSchedule,
+                List<String> schedules, int capacity) {
+            this.name = name;
+            this.type = type;
+            this.controller = controller;
+            this.ggio = ggio;
+            this.reserveSchedule = reserveSchedule;
+            this.schedules = Collections.unmodifiableList(schedules);
+            this.capacity = capacity;
+        }
+
+        @Override
+        public String toString() {
+            return name + "{" + type + ", " + schedules.size() + " schedules of " + capacity + " entries}";
+        }
+    }
+}
@@ -0,0 +1,320 @@
+/*
+ * Copyright 2023 Fraunhofer ISE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package de.fhg.ise.IEC61850.client.scheduling;
+
+import com.beanit.iec61850bean.ServiceError;
+import de.fhg.ise.IEC61850.client.IEC61850Utility;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Manages the schedules (FSCH01, FSCH02, ...) of one {@link ScheduleDefinitions}, such that schedules overlapping in
+ * time are written to schedules of their own instead of overwriting each other.
+ * <p>
+ * A schedule is free if it is not enabled on the device ({@link ScheduleState#NOT_READY} or
+ * {@link ScheduleState#START_TIME_REQUIRED}), or if the schedule assigned to it has ended. The state is read back from
+ * the device only for schedules that are not known to have ended. Enabled schedules not assigned by this allocator
+ * (e.g. before a restart) are adopted with the end and priority read from the device.
+ * <p>
+ * An allocated schedule is reserved until it is {@link #confirm(Slot) confirmed} after writing it, or
+ * {@link #release(Slot) released}: until then it is not handed out again and its state is not read from the device,
+ * which shows it as not enabled before it is written.
+ * <p>
+ * The priority of a new schedule is the lowest of its {@link PriorityBand} that is above all schedules of the same band
+ * it overlaps with, so the newest of overlapping schedules is active. If that is above the band, the priorities of the
+ * band are renumbered on the device to close their gaps, keeping their order. If the band is still saturated, the
+ * schedule is not allocated.
+ * <p>
+ * The device may change between calls (reconnects), the allocator only depends on the schedule names.
+ */
+public class ScheduleSlotAllocator {
+
+    private static final Logger log = LoggerFactory.getLogger(ScheduleSlotAllocator.class);
+
+    /**
+     * The state of a schedule as seen by the allocator
+     */
+    public enum SlotState {
+        FREE,
+        /**
+         * Enabled, waiting for its start time
+         */
+        STAGED,
+        RUNNING,
+        /**
+         * Its schedule has ended, it can be reused
+         */
+        EXPIRED
+    }
+
+    private final ScheduleDefinitions<?> definitions;
+    // index is the schedule number - 1, null if the schedule is not known to be in use
+    private final Slot[] assigned;
+    // index is the schedule number - 1, true if allocated and neither confirmed nor released
+    private final boolean[] reserved;
+
+    public ScheduleSlotAllocator(ScheduleDefinitions<?> definitions) {
+        this.definitions = definitions;
+        this.assigned = new Slot[definitions.getAllScheduleNames().size()];
+        this.reserved = new boolean[assigned.length];
+    }
+
+    /**
+     * Assigns a schedule of its own to every segment of a plan, such that chained schedules are not written to the same
+     * schedule. If none of them can be allocated, none is.
+     *
+     * @return the schedules, in the order of the segments
+     * @throws IOException
+     *         see {@link #allocate(IEC61850Utility, Instant, Instant, PriorityBand)}
+     */
+    public synchronized List<Slot> allocate(IEC61850Utility device, List<? extends ScheduleCompaction.Segment<?>> plan,
+            PriorityBand band) throws ServiceError, IOException {
+        List<Slot> allocated = new ArrayList<>();
+        try {
+            for (ScheduleCompaction.Segment<?> segment : plan) {
+                // the ones allocated before are reserved, so they are not handed out again
+                allocated.add(allocate(device, segment.getStart(), segment.getEnd(), band));
+            }
+        } catch (Exception e) {
+            allocated.forEach(this::release);
+            throw e;
+        }
+        return allocated;
+    }
+
+    /**
+     * Assigns a schedule to a new schedule. If all schedules are in use, the one ending first is reused. The schedule
+     * is reserved until it is confirmed or released.
+     *
+     * @param device
+     *         to read the state of the schedules from
+     * @throws IOException
+     *         if all schedules are in use and being written or their end is not known, or if the band has no
+     *         priority left above the schedules the new one overlaps with
+     */
+    public synchronized Slot allocate(IEC61850Utility device, Instant start, Instant end, PriorityBand band)
+            throws ServiceError, IOException {
+        Instant now = Instant.now();
+        int chosen = -1;
+        for (int i = 0; i < assigned.length && chosen < 0; i++) {
+            SlotState state = getSlotState(device, i + 1, now);
+            if (state == SlotState.FREE || state == SlotState.EXPIRED) {
+                chosen = i;
+            }
+        }
+        if (chosen < 0) {
+            chosen = endingFirst();
+            if (chosen < 0) {
+                throw new IOException("All " + assigned.length + " schedules of " + definitions
+                        + " are in use, being written or with unknown end");
+            }
+            log.warn("All schedules of {} are in use, reusing {} ending at {}", definitions, assigned[chosen].name,
+                    assigned[chosen].end);
+        }
+
+        int prio = aboveOverlapping(chosen, start, end, band);
+        if (prio > band.getMax()) {
+            renumber(device, chosen, band, now);
+            prio = aboveOverlapping(chosen, start, end, band);
+            if (prio > band.getMax()) {
+                throw new IOException("Priority band " + band + " of " + definitions + " is saturated, no priority left"
+                        + " above the schedules overlapping " + start + " - " + end);
+            }
+        }
+        Slot slot = new Slot(chosen + 1, definitions.getScheduleName(chosen + 1), prio, start, end);
+        assigned[chosen] = slot;
+        reserved[chosen] = true;
+        log.debug("Allocated {}", slot);
+        return slot;
+    }
+
+    /**
+     * @return the lowest priority of the band above all schedules of the band overlapping the span, may be above the
+     *         band
+     */
+    private int aboveOverlapping(int chosen, Instant start, Instant end, PriorityBand band) {
+        int prio = band.getMin();
+        for (int i = 0; i < assigned.length; i++) {
+            Slot other = assigned[i];
+            if (i != chosen && other != null && band.contains(other.prio) && other.overlaps(start, end)) {
+                prio = Math.max(prio, other.prio + 1);
+            }
+        }
+        return prio;
+    }
+
+    /**
+     * Closes the gaps between the priorities of the schedules of the band that have not ended, keeping their order
+     */
+    private void renumber(IEC61850Utility device, int chosen, PriorityBand band, Instant now)
+            throws ServiceError, IOException {
+        List<Slot> slots = new ArrayList<>();
+        for (int i = 0; i < assigned.length; i++) {
+            Slot slot = assigned[i];
+            boolean ended = slot != null && slot.end != null && !slot.end.isAfter(now);
+            if (i != chosen && slot != null && band.contains(slot.prio) && !ended) {
+                slots.add(slot);
+            }
+        }
+        int[] prios = slots.stream().mapToInt(Slot::getPrio).distinct().sorted().toArray();
+        for (Slot slot : slots) {
+            int prio = band.getMin() + Arrays.binarySearch(prios, slot.prio);
+            if (prio != slot.prio) {
+                device.setSchedulePrio(slot.name, prio);
+                log.info("Renumbered {} of saturated band {} to priority {}", slot, band, prio);
+                slot.prio = prio;
+            }
+        }
+    }
+
+    /**
+     * Ends the reservation of a schedule that was written and verified, from now on its state is read from the device
+     */
+    public synchronized void confirm(Slot slot) {
+        if (assigned[slot.scheduleNumber - 1] == slot) {
+            reserved[slot.scheduleNumber - 1] = false;
+        }
+    }
+
+    /**
+     * Makes a schedule free again, e.g. because writing it failed
+     */
+    public synchronized void release(Slot slot) {
+        if (assigned[slot.scheduleNumber - 1] == slot) {
+            assigned[slot.scheduleNumber - 1] = null;
+            reserved[slot.scheduleNumber - 1] = false;
+        }
+    }
+
+    /**
+     * Reads the state of a schedule, unless it is reserved or its schedule is known to have ended
+     */
+    public synchronized SlotState getSlotState(IEC61850Utility device, int scheduleNumber, Instant now)
+            throws ServiceError, IOException {
+        Slot slot = assigned[scheduleNumber - 1];
+        if (reserved[scheduleNumber - 1]) {
+            // being written, the device does not show it as enabled yet
+            return SlotState.STAGED;
+        }
+        if (slot != null && slot.end != null && !slot.end.isAfter(now)) {
+            return SlotState.EXPIRED;
+        }
+        String name = definitions.getScheduleName(scheduleNumber);
+        ScheduleState state = device.getScheduleState(name);
+        if (state != ScheduleState.READY && state != ScheduleState.RUNNING) {
+            // disabled, or never enabled
+            assigned[scheduleNumber - 1] = null;
+            return SlotState.FREE;
+        }
+        if (slot == null) {
+            slot = adopt(device, scheduleNumber, name);
+            assigned[scheduleNumber - 1] = slot;
+            if (slot.end != null && !slot.end.isAfter(now)) {
+                return SlotState.EXPIRED;
+            }
+        }
+        return state == ScheduleState.RUNNING ? SlotState.RUNNING : SlotState.STAGED;
+    }
+
+    private static Slot adopt(IEC61850Utility device, int scheduleNumber, String name) {
+        try {
+            Instant start = device.getScheduleStart(name);
+            long entries = Long.parseLong(device.getNodeEntryasString(name, "NumEntr", "setVal"));
+            long intervalSeconds = Long.parseLong(device.getNodeEntryasString(name, "SchdIntv", "setVal"));
+            Slot slot = new Slot(scheduleNumber, name, device.readSchedulePrio(name), start,
+                    start.plus(Duration.ofSeconds(intervalSeconds).multipliedBy(entries)));
+            log.info("Adopted schedule enabled before: {}", slot);
+            return slot;
+        } catch (Exception e) {
+            log.warn("Unable to read end of schedule {} enabled before, not reusing it while enabled: {}", name,
+                    e.getMessage());
+            return new Slot(scheduleNumber, name, -1, null, null);
+        }
+    }
+
+    private int endingFirst() {
+        int first = -1;
+        for (int i = 0; i < assigned.length; i++) {
+            // reserved ones are being written, possibly as part of the same plan
+            if (assigned[i] != null && !reserved[i] && assigned[i].end != null && (first < 0
+                    || assigned[i].end.isBefore(assigned[first].end))) {
+                first = i;
+            }
+        }
+        return first;
+    }
+
+    @Override
+    public String toString() {
+        return "ScheduleSlotAllocator{" + "definitions=" + definitions + '}';
+    }
+
+    /**
+     * A schedule assigned to a time span
+     */
+    public static final class Slot {
+        private final int scheduleNumber;
+        private final String name;
+        // changed when the band is renumbered
+        private volatile int prio;
+        // null if unknown
+        private final Instant start;
+        private final Instant end;
+
+        Slot(int scheduleNumber, String name, int prio, Instant start, Instant end) {
+            this.scheduleNumber = scheduleNumber;
+            this.name = name;
+            this.prio = prio;
+            this.start = start;
+            this.end = end;
+        }
+
+        public int getScheduleNumber() {
+            return scheduleNumber;
+        }
+
+        public String getScheduleName() {
+            return name;
+        }
+
+        public int getPrio() {
+            return prio;
+        }
+
+        public Instant getStart() {
+            return start;
+        }
+
+        public Instant getEnd() {
+            return end;
+        }
+
+        boolean overlaps(Instant otherStart, Instant otherEnd) {
+            // unknown spans overlap with everything
+            return start == null || end == null || (start.isBefore(otherEnd) && otherStart.isBefore(end));
+        }
+
+        @Override
+        public String toString() {
+            return "Slot{" + "name='" + name + '\'' + ", prio=" + prio + ", start=" + start + ", end=" + end + '}';
+        }
+    }
+}
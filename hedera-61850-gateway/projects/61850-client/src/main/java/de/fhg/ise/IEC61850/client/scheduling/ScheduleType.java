@@ -15,20 +15,17 @@ package de.fhg.ise.IEC61850.client.scheduling;
 
 import de.fhg.ise.IEC61850.client.IEC61850Utility;
 
-import java.util.Arrays;
-import java.util.Collection;
-import java.util.List;
 import java.util.function.BiFunction;
 
 /**
- * Represents different types of schedules regarding the values they represent, or in other words what type of GGIO (for
- * now analogue values, boolean values) they control.
+ * Represents different types of schedules regarding the values they represent, or in other words what type of GGIO
+ * (analogue, boolean, integer or enumerated values) they control.
  */
 public enum ScheduleType {
     /**
      * Used to schedule analogue values (that are mapped as floats) such as power schedules
      */
-    ASG((device, schedule) -> ValueAccess.asgAccess(device, schedule)) {
+    ASG("ValASG", (device, schedule) -> ValueAccess.asgAccess(device, schedule)) {
         @Override
         public ScheduleDefinitions<Float> withScheduleDefinitions(IEC61850Utility device, String ggio,
                 String controller, String reserveSchedule, String... schedules) {
@@ -38,92 +35,56 @@ public enum ScheduleType {
     /**
      * Used to schedule boolean values, such as OnOff schedules
      */
-    SPG((device, schedule) -> ValueAccess.spgAccess(device, schedule)) {
+    SPG("ValSPG", (device, schedule) -> ValueAccess.spgAccess(device, schedule)) {
         @Override
         public ScheduleDefinitions<Boolean> withScheduleDefinitions(IEC61850Utility device, String ggio,
                 String controller, String reserveSchedule, String... schedules) {
             return SPG.createScheduleDefinitionsFrom(device, ggio, controller, reserveSchedule, false, schedules);
         }
+    },
+    /**
+     * Used to schedule integer values, such as step setpoints
+     */
+    ING("ValING", (device, schedule) -> ValueAccess.ingAccess(device, schedule)) {
+        @Override
+        public ScheduleDefinitions<Integer> withScheduleDefinitions(IEC61850Utility device, String ggio,
+                String controller, String reserveSchedule, String... schedules) {
+            return ING.createScheduleDefinitionsFrom(device, ggio, controller, reserveSchedule, 0, schedules);
+        }
+    },
+    /**
+     * Used to schedule enumerated values, such as operating modes. Enumerations of IEC 61850 start at 1.
+     */
+    ENG("ValENG", (device, schedule) -> ValueAccess.engAccess(device, schedule)) {
+        @Override
+        public ScheduleDefinitions<Integer> withScheduleDefinitions(IEC61850Utility device, String ggio,
+                String controller, String reserveSchedule, String... schedules) {
+            return ENG.createScheduleDefinitionsFrom(device, ggio, controller, reserveSchedule, 1, schedules);
+        }
     };
 
-    private BiFunction<IEC61850Utility, ScheduleDefinitions, ValueAccess> valueAccessFunction;
+    private final String valueNodePrefix;
+    private final BiFunction<IEC61850Utility, ScheduleDefinitions, ValueAccess> valueAccessFunction;
 
-    ScheduleType(BiFunction<IEC61850Utility, ScheduleDefinitions, ValueAccess> valueAccessFunction) {
+    ScheduleType(String valueNodePrefix,
+            BiFunction<IEC61850Utility, ScheduleDefinitions, ValueAccess> valueAccessFunction) {
+        this.valueNodePrefix = valueNodePrefix;
         this.valueAccessFunction = valueAccessFunction;
     }
 
+    /**
+     * The name of the value nodes of a schedule of this type, without their number (e.g. ValASG for ValASG001)
+     */
+    public String getValueNodePrefix() {
+        return valueNodePrefix;
+    }
+
     public abstract <X> ScheduleDefinitions<X> withScheduleDefinitions(IEC61850Utility device, String ggio,
             String controller, String reserveSchedule, String... schedules);
 
     private <T> ScheduleDefinitions<T> createScheduleDefinitionsFrom(IEC61850Utility device, String ggio,
             String controller, String reserveSchedule, T defaultValue, String... schedules) {
-
-        List<String> scheduleNames = Arrays.asList(schedules);
-
-        return new ScheduleDefinitions() {
-            @Override
-            public String getScheduleName(int scheduleNumber) {
-                if (scheduleNumber <= 0 || scheduleNumber > scheduleNames.size()) {
-                    throw new IllegalArgumentException("Schedule number must be between 1 and " + scheduleNames.size());
-                }
-                return scheduleNames.get(scheduleNumber - 1);
-            }
-
-            @Override
-            public int getScheduleNumber(String scheduleName) throws IllegalArgumentException {
-                for (int i = 0; i < scheduleNames.size(); i++) {
-                    if (scheduleNames.get(i).equals(scheduleName)) {
-                        int scheduleNumber = i + 1;
-                        return scheduleNumber;
-                    }
-                }
-                throw new IllegalArgumentException("No schedule with name '" + scheduleName + "' configured");
-            }
-
-            @Override
-            public String getControlledGGIO() {
-                return ggio;
-            }
-
-            @Override
-            public String getGGIOValueReference() {
-                return getControlledGGIO() + getValueAccess().getGGIOValueSuffix();
-            }
-
-            @Override
-            public Collection<String> getAllScheduleNames() {
-                return scheduleNames;
-            }
-
-            @Override
-            public ValueAccess getValueAccess() {
-                return valueAccessFunction.apply(device, this);
-            }
-
-            @Override
-            public ScheduleType getScheduleType() {
-                return ScheduleType.this;
-            }
-
-            @Override
-            public T getDefaultValue() {
-                return defaultValue;
-            }
-
-            @Override
-            public String getController() {
-                return controller;
-            }
-
-            @Override
-            public String getReserveSchedule() {
-                return reserveSchedule;
-            }
-
-            @Override
-            public String toString() {
-                return ScheduleDefinitions.class.getSimpleName() + " with GGIO " + getControlledGGIO();
-            }
-        };
+        return new ImmutableScheduleDefinitions<>(this, valueAccessFunction, device, ggio, controller, reserveSchedule,
+                defaultValue, schedules);
     }
 }
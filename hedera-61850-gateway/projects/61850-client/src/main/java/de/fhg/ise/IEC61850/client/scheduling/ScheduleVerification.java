@@ -0,0 +1,178 @@
+/*
+ * Copyright 2023 Fraunhofer ISE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package de.fhg.ise.IEC61850.client.scheduling;
+
+import com.beanit.iec61850bean.BasicDataAttribute;
+import com.beanit.iec61850bean.BdaTimestamp;
+import com.beanit.iec61850bean.FcModelNode;
+import com.beanit.iec61850bean.ServiceError;
+import de.fhg.ise.IEC61850.client.IEC61850Utility;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * The result of reading a schedule back from the device after it was written and enabled. The values, NumEntr,
+ * SchdIntv, SchdPrio and StrTm01 are read together with SchdSt and SchdEnaErr in one request (see
+ * {@link IEC61850Utility#readDataValues(String, List)}) and compared against what was written. The time the device
+ * stamped the change of SchdSt with is a sample of its clock (see {@link de.fhg.ise.IEC61850.client.DeviceClock}).
+ */
+public final class ScheduleVerification {
+
+    private final String scheduleName;
+    private final ScheduleState state;
+    private final ScheduleEnablingErrorKind enablingError;
+    private final List<String> mismatches;
+    private final ScheduleEnablingErrorKind failure;
+
+    private ScheduleVerification(String scheduleName, ScheduleState state, ScheduleEnablingErrorKind enablingError,
+            List<String> mismatches, ScheduleEnablingErrorKind failure) {
+        this.scheduleName = scheduleName;
+        this.state = state;
+        this.enablingError = enablingError;
+        this.mismatches = Collections.unmodifiableList(mismatches);
+        this.failure = failure;
+    }
+
+    /**
+     * Reads the schedule back and compares it to the intended one
+     */
+    public static <T> ScheduleVerification verify(IEC61850Utility device, ScheduleDefinitions<T> definitions,
+            int scheduleNumber, List<T> values, Duration interval, Instant start, int prio)
+            throws ServiceError, IOException {
+        String name = definitions.getScheduleName(scheduleNumber);
+        ValueAccess<T> valueAccess = definitions.getValueAccess();
+        List<FcModelNode> nodes = new ArrayList<>();
+        for (int i = 1; i <= values.size(); i++) {
+            nodes.add(node(device, valueAccess.getValueAccessString(i, name)));
+        }
+        BasicDataAttribute numEntr = node(device, name + ".NumEntr.setVal");
+        BasicDataAttribute schdIntv = node(device, name + ".SchdIntv.setVal");
+        BasicDataAttribute schdPrio = node(device, name + ".SchdPrio.setVal");
+        BasicDataAttribute strTm = node(device, name + ".StrTm01.setTm");
+        BasicDataAttribute schdSt = node(device, name + ".SchdSt.stVal");
+        BasicDataAttribute schdStTime = node(device, name + ".SchdSt.t");
+        BasicDataAttribute schdEnaErr = node(device, name + ".SchdEnaErr.stVal");
+        nodes.addAll(Arrays.asList(numEntr, schdIntv, schdPrio, strTm, schdSt, schdStTime, schdEnaErr));
+
+        // the data set name is an MMS identifier, without the logical device
+        device.readDataValues("verify_" + name.substring(name.lastIndexOf('/') + 1), nodes);
+
+        List<String> mismatches = new ArrayList<>();
+        ScheduleEnablingErrorKind failure = ScheduleEnablingErrorKind.NONE;
+        for (int i = 0; i < values.size(); i++) {
+            T actual = valueAccess.readToTargetValue(nodes.get(i));
+            if (!sameValue(values.get(i), actual)) {
+                mismatches.add(valueAccess.getValueAccessString(i + 1, name) + "=" + actual + " instead of "
+                        + values.get(i));
+                failure = ScheduleEnablingErrorKind.MISSING_VALID_SCHEDULE_VALUES;
+            }
+        }
+        if (!String.valueOf(values.size()).equals(numEntr.getValueString())) {
+            mismatches.add("NumEntr=" + numEntr.getValueString() + " instead of " + values.size());
+            failure = ScheduleEnablingErrorKind.MISSING_VALID_NUMENTR;
+        }
+        if (!String.valueOf(interval.getSeconds()).equals(schdIntv.getValueString())) {
+            mismatches.add("SchdIntv=" + schdIntv.getValueString() + " instead of " + interval.getSeconds());
+            failure = ScheduleEnablingErrorKind.MISSING_VALID_SCHDINTV;
+        }
+        if (!String.valueOf(prio).equals(schdPrio.getValueString())) {
+            mismatches.add("SchdPrio=" + schdPrio.getValueString() + " instead of " + prio);
+        }
+        Instant actualStart = Instant.parse(strTm.getValueString());
+        // in device time, as written with the clock offset estimated at the time
+        Instant writtenStart = device.getWrittenScheduleStart(name);
+        Instant expectedStart = writtenStart == null ? device.getClock().toDevice(start) : writtenStart;
+        // the fraction of a timestamp is not exact to the millisecond
+        if (Math.abs(actualStart.toEpochMilli() - expectedStart.toEpochMilli()) > 1) {
+            mismatches.add("StrTm01=" + actualStart + " instead of " + expectedStart);
+        }
+        device.getClock().sample(name + ".SchdSt.t", ((BdaTimestamp) schdStTime).getInstant());
+
+        ScheduleState state = ScheduleState.parse(schdSt.getValueString());
+        ScheduleEnablingErrorKind enablingError = ScheduleEnablingErrorKind.parse(schdEnaErr.getValueString());
+        // the device knows best why it did not enable the schedule
+        if (enablingError != ScheduleEnablingErrorKind.NONE) {
+            failure = enablingError;
+        }
+        return new ScheduleVerification(name, state, enablingError, mismatches, failure);
+    }
+
+    private static BasicDataAttribute node(IEC61850Utility device, String reference) throws IOException {
+        BasicDataAttribute node = (BasicDataAttribute) device.getNode(reference);
+        if (node == null) {
+            throw new IOException("No node " + reference + " in the model of the device");
+        }
+        return node;
+    }
+
+    private static boolean sameValue(Object intended, Object actual) {
+        if (intended instanceof Number && actual instanceof Number) {
+            // written as float
+            return Float.compare(((Number) intended).floatValue(), ((Number) actual).floatValue()) == 0;
+        }
+        return Objects.equals(intended, actual);
+    }
+
+    public String getScheduleName() {
+        return scheduleName;
+    }
+
+    public ScheduleState getState() {
+        return state;
+    }
+
+    /**
+     * SchdEnaErr as read from the device
+     */
+    public ScheduleEnablingErrorKind getEnablingError() {
+        return enablingError;
+    }
+
+    /**
+     * The attributes that differ from what was written, e.g. {@code NumEntr=0 instead of 96}
+     */
+    public List<String> getMismatches() {
+        return mismatches;
+    }
+
+    /**
+     * Why the schedule is not as intended: SchdEnaErr if the device reports one, otherwise the kind of the last
+     * mismatch. {@link ScheduleEnablingErrorKind#NONE} if the schedule is consistent or only its priority or start
+     * differ.
+     */
+    public ScheduleEnablingErrorKind getFailure() {
+        return failure;
+    }
+
+    /**
+     * True if the schedule was written as intended and is enabled
+     */
+    public boolean isConsistent() {
+        return mismatches.isEmpty() && enablingError == ScheduleEnablingErrorKind.NONE && (state == ScheduleState.READY
+                || state == ScheduleState.RUNNING);
+    }
+
+    @Override
+    public String toString() {
+        return "ScheduleVerification{" + "scheduleName='" + scheduleName + '\'' + ", state=" + state
+                + ", enablingError=" + enablingError + ", mismatches=" + mismatches + '}';
+    }
+}
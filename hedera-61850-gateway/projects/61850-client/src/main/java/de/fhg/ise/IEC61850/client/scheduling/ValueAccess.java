@@ -18,8 +18,9 @@ import com.beanit.iec61850bean.BdaFloat32;
 import com.beanit.iec61850bean.FcModelNode;
 import com.beanit.iec61850bean.ServiceError;
 import de.fhg.ise.IEC61850.client.IEC61850Utility;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import de.fhg.ise.IEC61850.client.logging.SampledLogger;
+import de.fhg.ise.IEC61850.client.tracing.Span;
+import de.fhg.ise.IEC61850.client.tracing.Tracing;
 
 import java.io.IOException;
 import java.time.Duration;
@@ -61,13 +62,14 @@ public interface ValueAccess<T> {
 
     static ValueAccess<? extends Number> asgAccess(IEC61850Utility utility, ScheduleDefinitions schedule) {
 
-        Logger log = LoggerFactory.getLogger(ValueAccess.class.getName() + ".asgAccess");
+        SampledLogger log = new SampledLogger(ValueAccess.class.getName() + ".asgAccess");
+        ValueReferences references = new ValueReferences("ValASG", "setMag.f");
 
         return new ValueAccess<Number>() {
 
             @Override
             public String getValueAccessString(int valueIndex, String scheduleName) {
-                return String.format("%s.ValASG%03d.setMag.f", scheduleName, valueIndex);
+                return references.get(valueIndex, scheduleName);
             }
 
             @Override
@@ -91,8 +93,11 @@ public interface ValueAccess<T> {
                         int index = 1;
                         for (Number value : values) {
                             String valueBasicDataAttribute = getValueAccessString(index++, scheduleName);
-                            log.debug("Writing {} to {}", value, valueBasicDataAttribute);
-                            utility.setDataValues(valueBasicDataAttribute, null, value.toString());
+                            log.event("Writing schedule value", "value", value, "reference", valueBasicDataAttribute);
+                            try (Span span = Tracing.span("der-write-value")) {
+                                span.setAttribute("reference", valueBasicDataAttribute);
+                                utility.setDataValues(valueBasicDataAttribute, null, value.toString());
+                            }
                         }
                     }
 
@@ -106,6 +111,11 @@ public interface ValueAccess<T> {
                         return scheduleName;
                     }
 
+                    @Override
+                    public String getValueReference(int valueIndex) {
+                        return getValueAccessString(valueIndex, scheduleName);
+                    }
+
                     @Override
                     public PreparedSchedule asSchedule(Duration interval, Instant start, int prio) {
                         return valueWriterToScheduleWriter(this, interval, start, prio);
@@ -126,14 +136,29 @@ public interface ValueAccess<T> {
         };
     }
 
+    /**
+     * Integer values, controlling an integer status output of the GGIO
+     */
+    static ValueAccess<Integer> ingAccess(IEC61850Utility utility, ScheduleDefinitions schedules) {
+        return new IntValueAccess(utility, schedules, "ValING", ".ISCSO1.stVal", 0);
+    }
+
+    /**
+     * Enumerated values, which the GGIO maps to an integer status output as well
+     */
+    static ValueAccess<Integer> engAccess(IEC61850Utility utility, ScheduleDefinitions schedules) {
+        return new IntValueAccess(utility, schedules, "ValENG", ".ISCSO1.stVal", 1);
+    }
+
     static ValueAccess<Boolean> spgAccess(IEC61850Utility utility, ScheduleDefinitions schedules) {
 
-        Logger log = LoggerFactory.getLogger(ValueAccess.class.getName() + ".spgAccess");
+        SampledLogger log = new SampledLogger(ValueAccess.class.getName() + ".spgAccess");
+        ValueReferences references = new ValueReferences("ValSPG", "setVal");
 
         return new ValueAccess<Boolean>() {
             @Override
             public String getValueAccessString(int valueIndex, String scheduleName) {
-                return String.format("%s.ValSPG%03d.setVal", scheduleName, valueIndex);
+                return references.get(valueIndex, scheduleName);
             }
 
             @Override
@@ -157,8 +182,11 @@ public interface ValueAccess<T> {
                         int index = 1;
                         for (Boolean value : values) {
                             String valueBasicDataAttribute = getValueAccessString(index++, scheduleName);
-                            log.debug("Writing {} to {}", value, valueBasicDataAttribute);
-                            utility.setDataValues(valueBasicDataAttribute, null, value.toString());
+                            log.event("Writing schedule value", "value", value, "reference", valueBasicDataAttribute);
+                            try (Span span = Tracing.span("der-write-value")) {
+                                span.setAttribute("reference", valueBasicDataAttribute);
+                                utility.setDataValues(valueBasicDataAttribute, null, value.toString());
+                            }
                         }
                     }
 
@@ -172,6 +200,11 @@ public interface ValueAccess<T> {
                         return scheduleName;
                     }
 
+                    @Override
+                    public String getValueReference(int valueIndex) {
+                        return getValueAccessString(valueIndex, scheduleName);
+                    }
+
                     @Override
                     public PreparedSchedule asSchedule(Duration interval, Instant start, int prio) {
                         return valueWriterToScheduleWriter(this, interval, start, prio);
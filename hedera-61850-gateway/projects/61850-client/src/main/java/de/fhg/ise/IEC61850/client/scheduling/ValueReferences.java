@@ -0,0 +1,59 @@
+/*
+ * Copyright 2023 Fraunhofer ISE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package de.fhg.ise.IEC61850.client.scheduling;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The references of the value nodes of schedules (e.g. {@code <schedule>.ValASG001.setMag.f}), formatted once per
+ * schedule and index and then taken from a table.
+ */
+final class ValueReferences {
+
+    // value nodes are numbered with three digits
+    private static final int MAX_INDEX = 999;
+
+    private final String format;
+    private final Map<String, String[]> bySchedule = new ConcurrentHashMap<>();
+
+    /**
+     * @param valueNodePrefix
+     *         e.g. ValASG
+     * @param attribute
+     *         the attribute of the value node, e.g. setMag.f
+     */
+    ValueReferences(String valueNodePrefix, String attribute) {
+        this.format = "%s." + valueNodePrefix + "%03d." + attribute;
+    }
+
+    String get(int valueIndex, String scheduleName) {
+        if (valueIndex < 1 || valueIndex > MAX_INDEX) {
+            // no such node in any model, but the reference is still reported in errors
+            return String.format(format, scheduleName, valueIndex);
+        }
+        String[] references = bySchedule.get(scheduleName);
+        if (references == null) {
+            bySchedule.putIfAbsent(scheduleName, new String[MAX_INDEX + 1]);
+            references = bySchedule.get(scheduleName);
+        }
+        String reference = references[valueIndex];
+        if (reference == null) {
+            // racing threads format the same string, either one may end up in the table
+            reference = String.format(format, scheduleName, valueIndex);
+            references[valueIndex] = reference;
+        }
+        return reference;
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2023 Fraunhofer ISE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package de.fhg.ise.IEC61850.client.tracing;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A timed processing stage of a request. Spans are created by {@link Tracing#startTrace(String)}, {@link
+ * Tracing#span(String)} or {@link Tracing#span(String, Span)} and need to be closed on the thread that opened them,
+ * preferably using try-with-resources.
+ */
+public final class Span implements AutoCloseable {
+
+    private final String name;
+    private final String correlationId;
+    private final String spanId;
+    private final Span parent;
+    // active on the opening thread before this span, active again when this span is closed
+    private final Span previous;
+    private final long startEpochNanos;
+    private final long startNanoTime;
+    private final SpanEvent event = new SpanEvent();
+    private Map<String, String> attributes = Collections.emptyMap();
+    private String error;
+    // read by exporters on other threads
+    private volatile long durationNanos = -1;
+
+    Span(String name, String correlationId, String spanId, Span parent, Span previous) {
+        this.name = name;
+        this.correlationId = correlationId;
+        this.spanId = spanId;
+        this.parent = parent;
+        this.previous = previous;
+        Instant now = Instant.now();
+        this.startEpochNanos = now.getEpochSecond() * 1_000_000_000L + now.getNano();
+        this.startNanoTime = System.nanoTime();
+        event.begin();
+    }
+
+    /**
+     * Adds a key-value pair that is exported together with this span
+     */
+    public Span setAttribute(String key, Object value) {
+        if (attributes.isEmpty()) {
+            attributes = new LinkedHashMap<>();
+        }
+        attributes.put(key, String.valueOf(value));
+        return this;
+    }
+
+    /**
+     * Marks this span as failed
+     */
+    public Span setError(Throwable throwable) {
+        this.error = throwable.getClass().getSimpleName() + ": " + throwable.getMessage();
+        return this;
+    }
+
+    @Override
+    public void close() {
+        if (durationNanos >= 0) {
+            return;
+        }
+        durationNanos = System.nanoTime() - startNanoTime;
+        if (event.shouldCommit()) {
+            event.correlationId = correlationId;
+            event.stage = name;
+            event.spanId = spanId;
+            event.parentSpanId = getParentSpanId();
+            event.error = error;
+            event.commit();
+        }
+        Tracing.onClose(this);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getCorrelationId() {
+        return correlationId;
+    }
+
+    public String getSpanId() {
+        return spanId;
+    }
+
+    /**
+     * The span id of the parent or null if this is the root span of a trace
+     */
+    public String getParentSpanId() {
+        return parent == null ? null : parent.spanId;
+    }
+
+    Span getParent() {
+        return parent;
+    }
+
+    Span getPrevious() {
+        return previous;
+    }
+
+    public boolean isRoot() {
+        return parent == null;
+    }
+
+    /**
+     * The root span of the trace of this span, the span itself if it is the root
+     */
+    public Span getRoot() {
+        Span root = this;
+        while (root.parent != null) {
+            root = root.parent;
+        }
+        return root;
+    }
+
+    public boolean isClosed() {
+        return durationNanos >= 0;
+    }
+
+    public long getStartEpochNanos() {
+        return startEpochNanos;
+    }
+
+    /**
+     * Duration in nanoseconds, -1 if the span is not yet closed
+     */
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    public Map<String, String> getAttributes() {
+        return Collections.unmodifiableMap(attributes);
+    }
+
+    /**
+     * Error message if the span failed, otherwise null
+     */
+    public String getError() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        return "Span{" + name + ", correlationId=" + correlationId + ", durationNanos=" + durationNanos + '}';
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2023 Fraunhofer ISE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package de.fhg.ise.IEC61850.client.tracing;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR representation of a {@link Span}. The duration of the event is the duration of the span.
+ * <p>
+ * Record with e.g. {@code java -XX:StartFlightRecording:filename=gateway.jfr ...} and evaluate with {@code jfr print
+ * --events de.fhg.ise.Span gateway.jfr}.
+ */
+@Name("de.fhg.ise.Span")
+@Label("Gateway Span")
+@Category({ "ReLevENT", "Gateway" })
+@Description("One processing stage of a request from the EMS to the DER")
+@StackTrace(false)
+class SpanEvent extends Event {
+
+    @Label("Correlation ID")
+    String correlationId;
+
+    @Label("Stage")
+    String stage;
+
+    @Label("Span ID")
+    String spanId;
+
+    @Label("Parent Span ID")
+    String parentSpanId;
+
+    @Label("Error")
+    String error;
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2023 Fraunhofer ISE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package de.fhg.ise.IEC61850.client.tracing;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Entry point to trace requests from their receipt at the EMS interface until the schedule is running at the DER.
+ * <p>
+ * A trace is started with {@link #startTrace(String)}, which assigns a correlation ID. All spans opened on the same
+ * thread until the root span is closed are part of that trace. Work handed to other threads joins the trace with
+ * {@link #span(String, Span)}. Every span is recorded as JFR event and handed to the
+ * registered {@link SpanExporter}s. While a trace is active, the correlation ID is available in the SLF4J MDC under
+ * {@value #MDC_KEY}.
+ */
+public final class Tracing {
+
+    public static final String MDC_KEY = "correlationId";
+
+    private static final Logger log = LoggerFactory.getLogger(Tracing.class);
+
+    private static final ThreadLocal<Span> current = new ThreadLocal<>();
+    private static final List<SpanExporter> exporters = new CopyOnWriteArrayList<>();
+
+    private Tracing() {
+    }
+
+    public static void addExporter(SpanExporter exporter) {
+        exporters.add(exporter);
+    }
+
+    public static void removeExporter(SpanExporter exporter) {
+        exporters.remove(exporter);
+    }
+
+    /**
+     * Starts a new trace with a random correlation ID
+     */
+    public static Span startTrace(String name) {
+        return startTrace(name, UUID.randomUUID().toString());
+    }
+
+    /**
+     * Starts a new trace with the given correlation ID. A trace that is still active on this thread is suspended until
+     * the returned span is closed, the new trace is not part of it.
+     */
+    public static Span startTrace(String name, String correlationId) {
+        Span span = new Span(name, correlationId, newSpanId(), null, current.get());
+        current.set(span);
+        MDC.put(MDC_KEY, correlationId);
+        return span;
+    }
+
+    /**
+     * Opens a span as child of the currently active span. If no trace is active, a new trace is started.
+     */
+    public static Span span(String name) {
+        Span parent = current.get();
+        if (parent == null) {
+            return startTrace(name);
+        }
+        Span span = new Span(name, parent.getCorrelationId(), newSpanId(), parent, parent);
+        current.set(span);
+        return span;
+    }
+
+    /**
+     * Opens a span as child of a span of another thread, e.g. for work handed to an executor, such that it is part of
+     * the same trace. The parent needs to stay open until the returned span is closed. If parent is null, a new trace
+     * is started.
+     */
+    public static Span span(String name, Span parent) {
+        if (parent == null) {
+            return startTrace(name);
+        }
+        Span span = new Span(name, parent.getCorrelationId(), newSpanId(), parent, current.get());
+        current.set(span);
+        MDC.put(MDC_KEY, parent.getCorrelationId());
+        return span;
+    }
+
+    /**
+     * The span that is active on this thread, null if there is none
+     */
+    public static Span currentSpan() {
+        return current.get();
+    }
+
+    /**
+     * The correlation ID of the trace that is active on this thread, null if there is none
+     */
+    public static String currentCorrelationId() {
+        Span span = current.get();
+        return span == null ? null : span.getCorrelationId();
+    }
+
+    static void onClose(Span span) {
+        if (current.get() == span) {
+            Span previous = span.getPrevious();
+            if (previous == null) {
+                current.remove();
+                MDC.remove(MDC_KEY);
+            }
+            else {
+                current.set(previous);
+                MDC.put(MDC_KEY, previous.getCorrelationId());
+            }
+        }
+        for (SpanExporter exporter : exporters) {
+            try {
+                exporter.export(span);
+            } catch (RuntimeException e) {
+                log.warn("Unable to export {} with {}", span, exporter, e);
+            }
+        }
+    }
+
+    private static String newSpanId() {
+        return String.format("%016x", ThreadLocalRandom.current().nextLong());
+    }
+}
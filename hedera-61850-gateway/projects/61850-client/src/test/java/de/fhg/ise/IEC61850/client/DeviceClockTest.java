@@ -0,0 +1,234 @@
+/*
+ * Copyright 2023 Fraunhofer ISE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package de.fhg.ise.IEC61850.client;
+
+import com.beanit.iec61850bean.BasicDataAttribute;
+import com.beanit.iec61850bean.BdaFloat32;
+import com.beanit.iec61850bean.BdaInt32;
+import com.beanit.iec61850bean.BdaInt8;
+import com.beanit.iec61850bean.BdaTimestamp;
+import com.beanit.iec61850bean.Fc;
+import com.beanit.iec61850bean.FcModelNode;
+import com.beanit.iec61850bean.ModelNode;
+import com.beanit.iec61850bean.ObjectReference;
+import de.fhg.ise.IEC61850.client.scheduling.ScheduleDefinitions;
+import de.fhg.ise.IEC61850.client.scheduling.ScheduleType;
+import de.fhg.ise.IEC61850.client.scheduling.ScheduleVerification;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+class DeviceClockTest {
+
+    private static final long T0 = Instant.parse("2024-01-01T00:00:00Z").toEpochMilli();
+    private static final String SCHEDULE = "DER_Scheduling/MaxPow_FSCH01";
+
+    @Test
+    void theDeviceTimeIsTakenForTheMiddleOfTheRoundTrip() {
+        DeviceClock clock = new DeviceClock();
+        Assertions.assertEquals(Duration.ZERO, clock.getOffset(), "until sampled");
+
+        clock.sample(T0 + 150, T0, T0 + 100);
+
+        Assertions.assertEquals(Duration.ofMillis(100), clock.getOffset());
+        Assertions.assertEquals(1, clock.getSamples());
+        Assertions.assertEquals(Instant.ofEpochMilli(T0 + 100), clock.toDevice(Instant.ofEpochMilli(T0)));
+        Assertions.assertEquals(Instant.ofEpochMilli(T0), clock.toLocal(Instant.ofEpochMilli(T0 + 100)));
+    }
+
+    @Test
+    void impreciseAndImplausibleSamplesAreIgnored() {
+        DeviceClock clock = new DeviceClock();
+
+        clock.sample(T0, T0, T0 + DeviceClock.MAX_ROUND_TRIP_MILLIS + 1);
+        clock.sample(T0, T0 + 10, T0);
+        clock.sample(T0 + DeviceClock.MAX_OFFSET_MILLIS + 1, T0, T0);
+        clock.sample(T0 - DeviceClock.MAX_OFFSET_MILLIS - 1, T0, T0);
+        Assertions.assertEquals(0, clock.getSamples(), "round trip too long or negative, offset beyond a day");
+
+        clock.sample(T0 + 125 + 1000, T0, T0 + DeviceClock.MAX_ROUND_TRIP_MILLIS);
+        Assertions.assertEquals(Duration.ofMillis(1000), clock.getOffset(), "a round trip of 250ms is fine");
+
+        DeviceClock offByADay = new DeviceClock();
+        offByADay.sample(T0 + DeviceClock.MAX_OFFSET_MILLIS, T0, T0);
+        Assertions.assertEquals(Duration.ofDays(1), offByADay.getOffset());
+    }
+
+    @Test
+    void samplesAreSmoothed() {
+        DeviceClock clock = new DeviceClock();
+
+        clock.sample(T0 + 100, T0, T0);
+        clock.sample(T0 + 200, T0, T0);
+        Assertions.assertEquals(Duration.ofMillis(125), clock.getOffset(), "a quarter of the way to the new sample");
+        clock.sample(T0 + 25, T0, T0);
+        Assertions.assertEquals(Duration.ofMillis(100), clock.getOffset());
+        Assertions.assertEquals(3, clock.getSamples());
+    }
+
+    @Test
+    void expectedTimestampsAreSampledOnce() {
+        DeviceClock clock = new DeviceClock();
+
+        clock.sample(SCHEDULE + ".SchdSt.t", Instant.ofEpochMilli(T0 + 500));
+        Assertions.assertEquals(0, clock.getSamples(), "not expected");
+
+        clock.expect(SCHEDULE + ".SchdSt.t", T0, T0 + 20);
+        clock.sample(SCHEDULE + ".SchdSt.t", null);
+        clock.sample(SCHEDULE + ".SchdSt.t", Instant.ofEpochMilli(T0 + 510));
+        Assertions.assertEquals(0, clock.getSamples(), "not set by the device, nor expected anymore");
+
+        clock.expect(SCHEDULE + ".SchdSt.t", T0, T0 + 20);
+        clock.sample(SCHEDULE + ".SchdSt.t", Instant.ofEpochMilli(T0 + 510));
+        Assertions.assertEquals(Duration.ofMillis(500), clock.getOffset());
+    }
+
+    @Test
+    void theEstimateIsAdoptedOnReconnect() {
+        DeviceClock clock = new DeviceClock();
+        clock.sample(T0 + 100, T0, T0);
+        clock.sample(T0 + 200, T0, T0);
+
+        DeviceClock reconnected = new DeviceClock();
+        reconnected.adopt(clock);
+
+        Assertions.assertEquals(Duration.ofMillis(125), reconnected.getOffset());
+        Assertions.assertEquals(2, reconnected.getSamples());
+        reconnected.sample(T0 + 225, T0, T0);
+        Assertions.assertEquals(Duration.ofMillis(150), reconnected.getOffset(), "smoothed further, not restarted");
+        Assertions.assertEquals(Duration.ofMillis(125), clock.getOffset(), "unchanged");
+    }
+
+    @Test
+    void scheduleStartsAreWrittenAndReadInDeviceTime() throws Exception {
+        FakeDevice device = new FakeDevice();
+        device.getClock().sample(T0 + 60_000, T0, T0);
+        Instant start = Instant.ofEpochMilli(T0).plus(Duration.ofHours(1));
+
+        device.setScheduleStart(SCHEDULE, start);
+
+        Assertions.assertEquals(start.plusSeconds(60), device.startTime().getInstant());
+        Assertions.assertEquals(start.plusSeconds(60), device.getWrittenScheduleStart(SCHEDULE));
+        Assertions.assertEquals(start, device.getScheduleStart(SCHEDULE), "in local time");
+    }
+
+    @Test
+    void verificationComparesTheStartInDeviceTime() throws Exception {
+        FakeDevice device = new FakeDevice();
+        device.getClock().sample(T0 + 60_000, T0, T0);
+        Instant start = Instant.ofEpochMilli(T0).plus(Duration.ofHours(1));
+        device.setScheduleStart(SCHEDULE, start);
+        device.getClock().expect(SCHEDULE + ".SchdSt.t", T0 + 1000, T0 + 1000);
+        device.stateTime().setInstant(Instant.ofEpochMilli(T0 + 1000 + 80_000));
+
+        Assertions.assertTrue(device.verify(start).isConsistent(), "as written");
+        Assertions.assertEquals(2, device.getClock().getSamples(), "sampled from the time of the schedule state");
+        Assertions.assertEquals(Duration.ofMillis(65_000), device.getClock().getOffset());
+        Assertions.assertTrue(device.verify(start).isConsistent(),
+                "compared to the start as written, not as converted by the estimate changed since");
+
+        FakeDevice reconnected = new FakeDevice();
+        reconnected.getClock().adopt(device.getClock());
+        reconnected.startTime().setInstant(start.plusSeconds(65));
+        Assertions.assertTrue(reconnected.verify(start).isConsistent(), "converted by the adopted estimate");
+
+        reconnected.startTime().setInstant(start);
+        ScheduleVerification inLocalTime = reconnected.verify(start);
+        Assertions.assertFalse(inLocalTime.isConsistent());
+        Assertions.assertTrue(inLocalTime.getMismatches().get(0).startsWith("StrTm01="), inLocalTime.toString());
+    }
+
+    /**
+     * Holds the nodes of one enabled schedule with a single value
+     */
+    private static class FakeDevice extends IEC61850Utility {
+        private static final float VALUE = 5;
+        private static final Duration INTERVAL = Duration.ofMinutes(5);
+        private static final int PRIO = 20;
+
+        private final Map<String, BasicDataAttribute> nodes = new HashMap<>();
+        private final ScheduleDefinitions<Float> definitions = ScheduleType.ASG.withScheduleDefinitions(this,
+                "DER_Scheduling/MaxPow_GGIO1", "DER_Scheduling/MaxPow_FSCC1", null, SCHEDULE);
+
+        FakeDevice() {
+            String valueReference = definitions.getValueAccess().getValueAccessString(1, SCHEDULE);
+            BdaFloat32 value = new BdaFloat32(new ObjectReference(valueReference), Fc.SP, null, false, false);
+            value.setFloat(VALUE);
+            nodes.put(valueReference, value);
+            putInt(SCHEDULE + ".NumEntr.setVal", 1);
+            putInt(SCHEDULE + ".SchdIntv.setVal", (int) INTERVAL.getSeconds());
+            putInt(SCHEDULE + ".SchdPrio.setVal", PRIO);
+            putEnum(SCHEDULE + ".SchdSt.stVal", 3);
+            putEnum(SCHEDULE + ".SchdEnaErr.stVal", 1);
+            for (String timestamp : new String[] { ".StrTm01.setTm", ".SchdSt.t" }) {
+                nodes.put(SCHEDULE + timestamp,
+                        new BdaTimestamp(new ObjectReference(SCHEDULE + timestamp), Fc.SP, null, false, false));
+            }
+        }
+
+        private void putInt(String reference, int value) {
+            BdaInt32 node = new BdaInt32(new ObjectReference(reference), Fc.SP, null, false, false);
+            node.setValue(value);
+            nodes.put(reference, node);
+        }
+
+        private void putEnum(String reference, int value) {
+            BdaInt8 node = new BdaInt8(new ObjectReference(reference), Fc.ST, null, false, false);
+            node.setValue((byte) value);
+            nodes.put(reference, node);
+        }
+
+        BdaTimestamp startTime() {
+            return (BdaTimestamp) nodes.get(SCHEDULE + ".StrTm01.setTm");
+        }
+
+        BdaTimestamp stateTime() {
+            return (BdaTimestamp) nodes.get(SCHEDULE + ".SchdSt.t");
+        }
+
+        ScheduleVerification verify(Instant start) throws Exception {
+            return ScheduleVerification.verify(this, definitions, 1, Collections.singletonList(VALUE), INTERVAL,
+                    start, PRIO);
+        }
+
+        @Override
+        public BasicDataAttribute setDataValues(String objectReference, Fc fc, String value) {
+            // only the start is written by these tests
+            BdaTimestamp node = (BdaTimestamp) nodes.get(objectReference);
+            node.setInstant(Instant.ofEpochMilli(Long.parseLong(value)));
+            return node;
+        }
+
+        @Override
+        public String getNodeEntryasString(String scheduleName, String specificNode, String dataType) {
+            return nodes.get(scheduleName + "." + specificNode + "." + dataType).getValueString();
+        }
+
+        @Override
+        public ModelNode getNode(String nodeName) {
+            return nodes.get(nodeName);
+        }
+
+        @Override
+        public void readDataValues(String dataSetName, List<FcModelNode> members) {
+            // the nodes hold the values of the device already
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2023 Fraunhofer ISE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package de.fhg.ise.IEC61850.client.broadcast;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+class ScheduleBroadcastTest {
+
+    private static final ScheduleBroadcast.Target TARGET = new ScheduleBroadcast.Target("der", 102);
+
+    @Test
+    void summaryCountsTheOutcomes() {
+        ScheduleBroadcast.Summary summary = new ScheduleBroadcast.Summary(
+                Arrays.asList(result(ScheduleBroadcast.Outcome.SUCCEEDED, 30),
+                        result(ScheduleBroadcast.Outcome.FAILED, 10),
+                        result(ScheduleBroadcast.Outcome.UNKNOWN, 60),
+                        result(ScheduleBroadcast.Outcome.SUCCEEDED, 20)), Duration.ofMillis(60).toNanos());
+
+        Assertions.assertEquals(2, summary.getSucceeded());
+        Assertions.assertEquals(1, summary.getFailed());
+        Assertions.assertEquals(1, summary.getUnknown());
+        Assertions.assertEquals(4, summary.getResults().size());
+        Assertions.assertEquals(Duration.ofMillis(60), summary.getDuration());
+    }
+
+    @Test
+    void percentilesAreTheNearestRankOfTheSuccessfulDevices() {
+        List<ScheduleBroadcast.DeviceResult> results = new ArrayList<>();
+        for (int millis = 100; millis > 0; millis--) {
+            results.add(result(ScheduleBroadcast.Outcome.SUCCEEDED, millis));
+        }
+        results.add(result(ScheduleBroadcast.Outcome.FAILED, 1000));
+        ScheduleBroadcast.Summary summary = new ScheduleBroadcast.Summary(results, 0);
+
+        Assertions.assertEquals(Duration.ofMillis(1), summary.getCompletionPercentile(0));
+        Assertions.assertEquals(Duration.ofMillis(1), summary.getCompletionPercentile(0.5));
+        Assertions.assertEquals(Duration.ofMillis(50), summary.getCompletionPercentile(50));
+        Assertions.assertEquals(Duration.ofMillis(91), summary.getCompletionPercentile(90.5));
+        Assertions.assertEquals(Duration.ofMillis(100), summary.getCompletionPercentile(100), "failures do not count");
+    }
+
+    @Test
+    void percentilesOutsideOfTheRangeAreRejected() {
+        ScheduleBroadcast.Summary summary = new ScheduleBroadcast.Summary(
+                Collections.singletonList(result(ScheduleBroadcast.Outcome.SUCCEEDED, 10)), 0);
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> summary.getCompletionPercentile(100.1));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> summary.getCompletionPercentile(-1));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> summary.getCompletionPercentile(Double.NaN));
+        Assertions.assertNull(new ScheduleBroadcast.Summary(
+                        Collections.singletonList(result(ScheduleBroadcast.Outcome.UNKNOWN, 10)), 0)
+                .getCompletionPercentile(50), "none succeeded");
+    }
+
+    @Test
+    void targetsDefaultToThePortOfMms() {
+        ScheduleBroadcast.Target target = ScheduleBroadcast.Target.parse("der1");
+        Assertions.assertEquals("der1", target.getHost());
+        Assertions.assertEquals(102, target.getPort());
+
+        target = ScheduleBroadcast.Target.parse("10.0.0.7:10102");
+        Assertions.assertEquals("10.0.0.7", target.getHost());
+        Assertions.assertEquals(10102, target.getPort());
+
+        Assertions.assertThrows(NumberFormatException.class, () -> ScheduleBroadcast.Target.parse("der1:mms"));
+    }
+
+    @Test
+    void targetsAreParsedFromTheArgumentOrAFile() throws Exception {
+        Assertions.assertEquals(Arrays.asList("der1:102", "der2:10102"),
+                namesOf(ScheduleBroadcastCommand.parseTargets("der1, der2:10102,")));
+
+        File file = File.createTempFile("ders", ".txt");
+        file.deleteOnExit();
+        Files.write(file.toPath(), Arrays.asList("# the fleet", "der1", "", "  der2:10102  "), StandardCharsets.UTF_8);
+        Assertions.assertEquals(Arrays.asList("der1:102", "der2:10102"),
+                namesOf(ScheduleBroadcastCommand.parseTargets("@" + file.getPath())));
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> ScheduleBroadcastCommand.parseTargets(" , "));
+    }
+
+    private static ScheduleBroadcast.DeviceResult result(ScheduleBroadcast.Outcome outcome, long millis) {
+        return new ScheduleBroadcast.DeviceResult(TARGET, outcome, Duration.ofMillis(millis).toNanos(),
+                outcome == ScheduleBroadcast.Outcome.SUCCEEDED ? null : "error");
+    }
+
+    private static List<String> namesOf(List<ScheduleBroadcast.Target> targets) {
+        return targets.stream().map(ScheduleBroadcast.Target::toString).collect(Collectors.toList());
+    }
+}
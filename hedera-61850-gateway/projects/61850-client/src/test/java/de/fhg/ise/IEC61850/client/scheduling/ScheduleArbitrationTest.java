@@ -0,0 +1,118 @@
+/*
+ * Copyright 2023 Fraunhofer ISE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package de.fhg.ise.IEC61850.client.scheduling;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+
+class ScheduleArbitrationTest {
+
+    private static final double RESERVE = 100;
+    private static final Instant T0 = Instant.parse("2024-01-01T00:00:00Z");
+    private static final Duration INTERVAL = Duration.ofMinutes(5);
+
+    @Test
+    void theHighestPriorityIsActive() {
+        ScheduleArbitration.EffectiveCurve curve = ScheduleArbitration.of(RESERVE,
+                Arrays.asList(schedule("low", 10, 0, 1, 2, 3, 4), schedule("high", 20, 5, 9, 8))).compute();
+
+        Assertions.assertEquals(1.0, curve.valueAt(minutes(0)));
+        Assertions.assertEquals("low", curve.activeScheduleAt(minutes(0)));
+        Assertions.assertEquals(9.0, curve.valueAt(minutes(5)));
+        Assertions.assertEquals(8.0, curve.valueAt(minutes(12)));
+        Assertions.assertEquals("high", curve.activeScheduleAt(minutes(12)));
+        Assertions.assertEquals(4.0, curve.valueAt(minutes(15)), "the lower one again once the higher one ended");
+        Assertions.assertEquals("low", curve.activeScheduleAt(minutes(15)));
+    }
+
+    @Test
+    void ofEqualPrioritiesTheOneStartedFirstIsActive() {
+        ScheduleArbitration.EffectiveCurve curve = ScheduleArbitration.of(RESERVE,
+                Arrays.asList(schedule("later", 10, 5, 5, 6, 7), schedule("earlier", 10, 0, 1, 2, 3))).compute();
+
+        Assertions.assertEquals(2.0, curve.valueAt(minutes(5)));
+        Assertions.assertEquals("earlier", curve.activeScheduleAt(minutes(10)));
+        Assertions.assertEquals(7.0, curve.valueAt(minutes(15)), "once the earlier one ended");
+
+        curve = ScheduleArbitration.of(RESERVE,
+                Arrays.asList(schedule("first", 10, 0, 1), schedule("second", 10, 0, 2))).compute();
+        Assertions.assertEquals("first", curve.activeScheduleAt(minutes(0)), "of equal start the first one");
+    }
+
+    @Test
+    void theReserveValueAppliesWhileNoScheduleRuns() {
+        ScheduleArbitration.EffectiveCurve curve = ScheduleArbitration.of(RESERVE,
+                Arrays.asList(schedule("morning", 10, 0, 1), schedule("evening", 10, 10, 2))).compute();
+
+        Assertions.assertEquals(RESERVE, curve.valueAt(minutes(-60)));
+        Assertions.assertNull(curve.activeScheduleAt(minutes(-60)));
+        Assertions.assertEquals(RESERVE, curve.valueAt(minutes(7)), "in between");
+        Assertions.assertNull(curve.activeScheduleAt(minutes(7)));
+        Assertions.assertEquals(RESERVE, curve.valueAt(minutes(60)));
+        Assertions.assertNull(curve.getTime(0), "the reserve value before all schedules");
+        Assertions.assertEquals(5, curve.size());
+
+        ScheduleArbitration.EffectiveCurve none = ScheduleArbitration.of(RESERVE, Collections.emptyList()).compute();
+        Assertions.assertEquals(1, none.size());
+        Assertions.assertEquals(RESERVE, none.valueAt(T0));
+    }
+
+    @Test
+    void withChecksAScheduleBeforeItIsWritten() {
+        ScheduleArbitration arbitration = ScheduleArbitration.of(RESERVE,
+                Collections.singletonList(schedule("running", 20, 0, 1, 2, 3, 4)));
+
+        ScheduleArbitration.EffectiveCurve lower = arbitration.with(schedule("planned", 10, 5, 7, 7)).compute();
+        Assertions.assertEquals("running", lower.activeScheduleAt(minutes(5)), "would be overridden");
+        Assertions.assertEquals(RESERVE, lower.valueAt(minutes(20)), "would not extend it either");
+
+        ScheduleArbitration.EffectiveCurve higher = arbitration.with(schedule("planned", 30, 5, 7, 7)).compute();
+        Assertions.assertEquals(7.0, higher.valueAt(minutes(5)));
+        Assertions.assertEquals(4.0, higher.valueAt(minutes(15)));
+
+        Assertions.assertEquals(2.0, arbitration.compute().valueAt(minutes(5)), "unchanged by the what-if");
+    }
+
+    @Test
+    void valuesChangeExactlyAtTheBoundariesOfTheEntries() {
+        ScheduleArbitration.EffectiveCurve curve = ScheduleArbitration.of(RESERVE,
+                Collections.singletonList(schedule("only", 10, 0, 1, 1, 2))).compute();
+
+        Assertions.assertEquals(RESERVE, curve.valueAt(minutes(0).minusMillis(1)));
+        Assertions.assertEquals(1.0, curve.valueAt(minutes(0)));
+        Assertions.assertEquals(1.0, curve.valueAt(minutes(10).minusMillis(1)));
+        Assertions.assertEquals(2.0, curve.valueAt(minutes(10)));
+        Assertions.assertEquals(2.0, curve.valueAt(minutes(15).minusMillis(1)));
+        Assertions.assertEquals(RESERVE, curve.valueAt(minutes(15)), "the end belongs to what follows");
+
+        Assertions.assertEquals(4, curve.size(), "equal entries are one change");
+        Assertions.assertEquals(minutes(0), curve.getTime(1));
+        Assertions.assertEquals(minutes(10), curve.getTime(2));
+        Assertions.assertEquals(minutes(15), curve.getTime(3));
+    }
+
+    private static Instant minutes(int minutes) {
+        return T0.plus(Duration.ofMinutes(minutes));
+    }
+
+    private static ScheduleArbitration.ScheduleImage schedule(String name, int prio, int startMinutes,
+            double... values) {
+        return new ScheduleArbitration.ScheduleImage(name, prio, minutes(startMinutes), INTERVAL, values);
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2023 Fraunhofer ISE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package de.fhg.ise.IEC61850.client.scheduling;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+class ScheduleCompactionTest {
+
+    private static final Duration RESOLUTION = Duration.ofMinutes(5);
+    private static final Instant START = Instant.ofEpochSecond(1704721020);
+
+    @Test
+    void runsOfEqualValuesAreMerged() {
+        List<ScheduleCompaction.Segment<Integer>> plan = ScheduleCompaction.plan(Arrays.asList(1, 1, 2, 2, 3, 3),
+                RESOLUTION, START, 10, 1);
+
+        Assertions.assertEquals(1, plan.size());
+        Assertions.assertEquals(Arrays.asList(1, 2, 3), plan.get(0).getValues());
+        Assertions.assertEquals(Duration.ofMinutes(10), plan.get(0).getInterval());
+        Assertions.assertEquals(START, plan.get(0).getStart());
+        Assertions.assertEquals(START.plus(Duration.ofMinutes(30)), plan.get(0).getEnd());
+        Assertions.assertEquals(ScheduleCompaction.WRITES_PER_SCHEDULE + 3, ScheduleCompaction.writesOf(plan));
+    }
+
+    @Test
+    void valuesAreSplitWhereItSavesWrites() {
+        List<Integer> values = new ArrayList<>(Collections.nCopies(12, 5));
+        values.addAll(Arrays.asList(1, 2, 3, 4));
+
+        List<ScheduleCompaction.Segment<Integer>> plan = ScheduleCompaction.plan(values, RESOLUTION, START, 100, 2);
+
+        Assertions.assertEquals(2, plan.size());
+        Assertions.assertEquals(Collections.singletonList(5), plan.get(0).getValues());
+        Assertions.assertEquals(Duration.ofHours(1), plan.get(0).getInterval());
+        Assertions.assertEquals(START, plan.get(0).getStart());
+        Assertions.assertEquals(Arrays.asList(1, 2, 3, 4), plan.get(1).getValues());
+        Assertions.assertEquals(RESOLUTION, plan.get(1).getInterval());
+        Assertions.assertEquals(START.plus(Duration.ofHours(1)), plan.get(1).getStart(), "starts where the first ends");
+        Assertions.assertEquals(2 * ScheduleCompaction.WRITES_PER_SCHEDULE + 5, ScheduleCompaction.writesOf(plan));
+
+        Assertions.assertEquals(1, ScheduleCompaction.plan(values, RESOLUTION, START, 100, 1).size(),
+                "one schedule if no more are allowed");
+    }
+
+    @Test
+    void valuesAreSplitByCapacity() {
+        List<Integer> values = Arrays.asList(1, 2, 3, 4, 5, 6);
+
+        List<ScheduleCompaction.Segment<Integer>> plan = ScheduleCompaction.plan(values, RESOLUTION, START, 4, 2);
+
+        Assertions.assertEquals(2, plan.size());
+        List<Integer> planned = new ArrayList<>();
+        Instant next = START;
+        for (ScheduleCompaction.Segment<Integer> segment : plan) {
+            Assertions.assertTrue(segment.getValues().size() <= 4, segment.toString());
+            Assertions.assertEquals(next, segment.getStart(), "chained without gaps");
+            planned.addAll(segment.getValues());
+            next = segment.getEnd();
+        }
+        Assertions.assertEquals(values, planned);
+        Assertions.assertEquals(START.plus(RESOLUTION.multipliedBy(6)), next);
+
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> ScheduleCompaction.plan(values, RESOLUTION, START, 4, 1));
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> ScheduleCompaction.plan(Collections.emptyList(), RESOLUTION, START, 4, 1));
+    }
+}
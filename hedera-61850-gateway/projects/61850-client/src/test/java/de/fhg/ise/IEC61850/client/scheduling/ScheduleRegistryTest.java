@@ -0,0 +1,141 @@
+/*
+ * Copyright 2023 Fraunhofer ISE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package de.fhg.ise.IEC61850.client.scheduling;
+
+import com.beanit.iec61850bean.Fc;
+import com.beanit.iec61850bean.FcDataObject;
+import com.beanit.iec61850bean.LogicalDevice;
+import com.beanit.iec61850bean.LogicalNode;
+import com.beanit.iec61850bean.ObjectReference;
+import com.beanit.iec61850bean.ServerModel;
+import de.fhg.ise.IEC61850.client.IEC61850Utility;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+class ScheduleRegistryTest {
+
+    @Test
+    void schedulesAreGroupedWithTheControllerOfTheirPrefix() {
+        String ld = "DER_Scheduling";
+        ScheduleRegistry registry = ScheduleRegistry.discover(new FakeDevice(model(ld,
+                logicalNode(ld, "LLN0", "Mod", "Beh"),
+                logicalNode(ld, "MaxPow_FSCC1", "Beh", "CtlEnt"),
+                logicalNode(ld, "MaxPow_GGIO1", "AnOut1"),
+                logicalNode(ld, "MaxPow_FSCH02", "NumEntr", "ValASG001", "ValASG002", "ValASG003"),
+                logicalNode(ld, "MaxPow_FSCH01", "NumEntr", "ValASG001", "ValASG002", "ValASG003", "ValASG004"),
+                logicalNode(ld, "MaxPow_Res_FSCH01", "NumEntr", "ValASG001"),
+                logicalNode(ld, "OnOff_FSCC1", "CtlEnt"),
+                logicalNode(ld, "OnOff_GGIO1", "SPCSO1"),
+                logicalNode(ld, "OnOff_FSCH01", "NumEntr", "ValSPG001", "ValSPG002"),
+                logicalNode(ld, "Lonely_FSCC1", "CtlEnt"),
+                logicalNode(ld, "Lonely_FSCH01", "ValASG001"))));
+
+        Assertions.assertEquals(Arrays.asList("MaxPow", "OnOff"), new ArrayList<>(registry.getNames()),
+                "Lonely has no GGIO");
+
+        ScheduleDefinitions<Float> maxPow = registry.get("MaxPow");
+        Assertions.assertEquals(ScheduleType.ASG, maxPow.getScheduleType());
+        Assertions.assertEquals(ld + "/MaxPow_FSCC1", maxPow.getController());
+        Assertions.assertEquals(ld + "/MaxPow_GGIO1", maxPow.getControlledGGIO());
+        Assertions.assertEquals(ld + "/MaxPow_Res_FSCH01", maxPow.getReserveSchedule());
+        Assertions.assertEquals(Arrays.asList(ld + "/MaxPow_FSCH01", ld + "/MaxPow_FSCH02"),
+                new ArrayList<>(maxPow.getAllScheduleNames()), "ordered by their number");
+        Assertions.assertEquals(3, registry.getCapacity("MaxPow"), "the smallest schedule");
+
+        ScheduleDefinitions<Boolean> onOff = registry.get("OnOff");
+        Assertions.assertEquals(ScheduleType.SPG, onOff.getScheduleType());
+        Assertions.assertNull(onOff.getReserveSchedule());
+        Assertions.assertEquals(2, registry.getCapacity("OnOff"));
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> registry.get("Lonely"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> registry.getCapacity("Lonely"));
+    }
+
+    @Test
+    void valueNodesAreCountedOncePerDataObject() {
+        String ld = "DER_Fc";
+        List<FcDataObject> values = new ArrayList<>();
+        for (String value : new String[] { "ValASG001", "ValASG002" }) {
+            values.add(dataObject(ld, "MaxPow_FSCH01", value, Fc.SP));
+            values.add(dataObject(ld, "MaxPow_FSCH01", value, Fc.CF));
+        }
+        ScheduleRegistry registry = ScheduleRegistry.discover(new FakeDevice(model(ld,
+                logicalNode(ld, "MaxPow_FSCC1", "CtlEnt"),
+                logicalNode(ld, "MaxPow_GGIO1", "AnOut1"),
+                new LogicalNode(new ObjectReference(ld + "/MaxPow_FSCH01"), values))));
+
+        Assertions.assertEquals(2, registry.getCapacity("MaxPow"));
+    }
+
+    @Test
+    void fingerprintCoversTheNamesOfTheDataObjects() {
+        String ld = "DER_Fingerprint";
+        ServerModel threeValues = schedulingModel(ld, "NumEntr", "ValASG001", "ValASG002", "ValASG003");
+        ServerModel twoValues = schedulingModel(ld, "NumEntr", "SchdPrio", "ValASG001", "ValASG002");
+
+        Assertions.assertEquals(ScheduleRegistry.fingerprint(threeValues),
+                ScheduleRegistry.fingerprint(schedulingModel(ld, "ValASG003", "ValASG002", "ValASG001", "NumEntr")),
+                "independent of the order of the data objects");
+        Assertions.assertNotEquals(ScheduleRegistry.fingerprint(threeValues), ScheduleRegistry.fingerprint(twoValues),
+                "same logical nodes with as many data objects");
+
+        Assertions.assertEquals(3, ScheduleRegistry.discover(new FakeDevice(threeValues)).getCapacity("MaxPow"));
+        Assertions.assertEquals(2, ScheduleRegistry.discover(new FakeDevice(twoValues)).getCapacity("MaxPow"),
+                "not taken from the cache");
+    }
+
+    private static ServerModel schedulingModel(String ld, String... scheduleDataObjects) {
+        return model(ld, logicalNode(ld, "MaxPow_FSCC1", "CtlEnt"), logicalNode(ld, "MaxPow_GGIO1", "AnOut1"),
+                logicalNode(ld, "MaxPow_FSCH01", scheduleDataObjects));
+    }
+
+    private static ServerModel model(String ld, LogicalNode... logicalNodes) {
+        return new ServerModel(
+                Collections.singletonList(new LogicalDevice(new ObjectReference(ld), Arrays.asList(logicalNodes))),
+                new ArrayList<>());
+    }
+
+    private static LogicalNode logicalNode(String ld, String name, String... dataObjects) {
+        List<FcDataObject> children = new ArrayList<>();
+        for (String dataObject : dataObjects) {
+            children.add(dataObject(ld, name, dataObject, Fc.SP));
+        }
+        return new LogicalNode(new ObjectReference(ld + "/" + name), children);
+    }
+
+    private static FcDataObject dataObject(String ld, String logicalNode, String name, Fc fc) {
+        return new FcDataObject(new ObjectReference(ld + "/" + logicalNode + "." + name), fc, new ArrayList<>());
+    }
+
+    /**
+     * A device known by its server model only
+     */
+    private static class FakeDevice extends IEC61850Utility {
+        private final ServerModel model;
+
+        FakeDevice(ServerModel model) {
+            this.model = model;
+        }
+
+        @Override
+        public ServerModel getCachedServerModel() {
+            return model;
+        }
+    }
+}
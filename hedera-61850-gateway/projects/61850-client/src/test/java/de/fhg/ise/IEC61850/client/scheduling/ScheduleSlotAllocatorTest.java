@@ -0,0 +1,211 @@
+/*
+ * Copyright 2023 Fraunhofer ISE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package de.fhg.ise.IEC61850.client.scheduling;
+
+import de.fhg.ise.IEC61850.client.IEC61850Utility;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+class ScheduleSlotAllocatorTest {
+
+    private static final PriorityBand BAND = new PriorityBand(20, 29);
+
+    private final FakeDevice device = new FakeDevice();
+    private final ScheduleSlotAllocator allocator = new ScheduleSlotAllocator(
+            ScheduleType.ASG.withScheduleDefinitions(device, "GGIO1", "FSCC1", "FSCH_Res", "FSCH01", "FSCH02",
+                    "FSCH03", "FSCH04"));
+    private final Instant now = Instant.now();
+
+    @Test
+    void freeSchedulesGetPrioritiesAboveTheOverlappingOnes() throws Exception {
+        ScheduleSlotAllocator.Slot first = write(allocator.allocate(device, hours(1), hours(3), BAND));
+        ScheduleSlotAllocator.Slot second = write(allocator.allocate(device, hours(2), hours(4), BAND));
+        ScheduleSlotAllocator.Slot later = write(allocator.allocate(device, hours(5), hours(6), BAND));
+
+        Assertions.assertEquals("FSCH01", first.getScheduleName());
+        Assertions.assertEquals(20, first.getPrio());
+        Assertions.assertEquals("FSCH02", second.getScheduleName());
+        Assertions.assertEquals(21, second.getPrio());
+        Assertions.assertEquals("FSCH03", later.getScheduleName());
+        Assertions.assertEquals(20, later.getPrio(), "overlaps with none");
+        Assertions.assertEquals(10, allocator.allocate(device, hours(2), hours(4), new PriorityBand(10, 19)).getPrio(),
+                "other bands do not count");
+    }
+
+    @Test
+    void expiredAndDisabledSchedulesAreReused() throws Exception {
+        ScheduleSlotAllocator.Slot running = write(allocator.allocate(device, hours(-1), hours(1), BAND));
+        ScheduleSlotAllocator.Slot ended = write(allocator.allocate(device, hours(-2), hours(-1), BAND));
+        Assertions.assertEquals("FSCH02", ended.getScheduleName());
+        Assertions.assertEquals(ScheduleSlotAllocator.SlotState.EXPIRED, allocator.getSlotState(device, 2, now));
+        Assertions.assertEquals("FSCH02", allocator.allocate(device, hours(1), hours(2), BAND).getScheduleName());
+
+        Assertions.assertEquals(ScheduleSlotAllocator.SlotState.RUNNING, allocator.getSlotState(device, 1, now));
+        device.states.put(running.getScheduleName(), ScheduleState.NOT_READY);
+        Assertions.assertEquals(ScheduleSlotAllocator.SlotState.FREE, allocator.getSlotState(device, 1, now));
+    }
+
+    @Test
+    void enabledSchedulesAreAdopted() throws Exception {
+        device.enable("FSCH01", hours(1), 24, 25);
+        device.enable("FSCH02", hours(-3), 12, 22);
+
+        ScheduleSlotAllocator.Slot slot = allocator.allocate(device, hours(2), hours(3), BAND);
+
+        Assertions.assertEquals("FSCH02", slot.getScheduleName(), "adopted schedule ended two hours ago");
+        Assertions.assertEquals(26, slot.getPrio(), "above the adopted one overlapping it");
+        Assertions.assertEquals(ScheduleSlotAllocator.SlotState.STAGED, allocator.getSlotState(device, 1, now));
+    }
+
+    @Test
+    void schedulesWithUnknownEndAreNotReused() throws Exception {
+        for (String name : new String[] { "FSCH01", "FSCH02", "FSCH03", "FSCH04" }) {
+            device.states.put(name, ScheduleState.RUNNING);
+        }
+        IOException e = Assertions.assertThrows(IOException.class,
+                () -> allocator.allocate(device, hours(1), hours(2), BAND));
+        Assertions.assertTrue(e.getMessage().contains("unknown end"), e.getMessage());
+    }
+
+    @Test
+    void saturatedBandsAreRenumbered() throws Exception {
+        PriorityBand band = new PriorityBand(20, 21);
+        ScheduleSlotAllocator.Slot first = write(allocator.allocate(device, hours(1), hours(3), band));
+        ScheduleSlotAllocator.Slot second = write(allocator.allocate(device, hours(2), hours(4), band));
+        allocator.release(first);
+        device.states.put(first.getScheduleName(), ScheduleState.NOT_READY);
+
+        ScheduleSlotAllocator.Slot third = write(allocator.allocate(device, hours(3), hours(5), band));
+
+        Assertions.assertEquals(20, second.getPrio());
+        Assertions.assertEquals(Integer.valueOf(20), device.prios.get(second.getScheduleName()),
+                "renumbered on the device");
+        Assertions.assertEquals(21, third.getPrio());
+
+        IOException e = Assertions.assertThrows(IOException.class,
+                () -> allocator.allocate(device, hours(3), hours(4), band));
+        Assertions.assertTrue(e.getMessage().contains("saturated"), e.getMessage());
+        Assertions.assertEquals(21, third.getPrio(), "unchanged");
+    }
+
+    @Test
+    void chunksOfAPlanGetSchedulesOfTheirOwn() throws Exception {
+        List<ScheduleCompaction.Segment<Integer>> plan = ScheduleCompaction.plan(Arrays.asList(1, 2, 3, 4, 5, 6),
+                Duration.ofMinutes(5), hours(1), 2, 3);
+
+        List<ScheduleSlotAllocator.Slot> slots = allocator.allocate(device, plan, BAND);
+
+        Assertions.assertEquals(Arrays.asList("FSCH01", "FSCH02", "FSCH03"),
+                slots.stream().map(ScheduleSlotAllocator.Slot::getScheduleName).collect(Collectors.toList()));
+        Assertions.assertEquals(ScheduleSlotAllocator.SlotState.STAGED, allocator.getSlotState(device, 1, now),
+                "reserved although the device shows it as not enabled yet");
+        Assertions.assertEquals("FSCH04", allocator.allocate(device, hours(1), hours(2), BAND).getScheduleName());
+        IOException e = Assertions.assertThrows(IOException.class,
+                () -> allocator.allocate(device, hours(1), hours(2), BAND), "reserved ones are not reused");
+        Assertions.assertTrue(e.getMessage().contains("being written"), e.getMessage());
+
+        slots.forEach(allocator::release);
+        Assertions.assertEquals(ScheduleSlotAllocator.SlotState.FREE, allocator.getSlotState(device, 1, now));
+    }
+
+    @Test
+    void plansAreAllocatedAsAWhole() throws Exception {
+        write(allocator.allocate(device, hours(1), hours(2), BAND));
+        write(allocator.allocate(device, hours(1), hours(2), BAND));
+        device.states.put("FSCH03", ScheduleState.RUNNING);
+        List<ScheduleCompaction.Segment<Integer>> plan = ScheduleCompaction.plan(Arrays.asList(1, 2, 3, 4, 5, 6),
+                Duration.ofMinutes(5), hours(3), 2, 3);
+
+        List<ScheduleSlotAllocator.Slot> slots = allocator.allocate(device, plan, BAND);
+        Assertions.assertEquals(Arrays.asList("FSCH04", "FSCH01", "FSCH02"),
+                slots.stream().map(ScheduleSlotAllocator.Slot::getScheduleName).collect(Collectors.toList()),
+                "the ones ending first are reused, each once");
+        slots.forEach(allocator::release);
+
+        Assertions.assertThrows(IOException.class, () -> allocator.allocate(device,
+                ScheduleCompaction.plan(Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8), Duration.ofMinutes(5), hours(3), 2,
+                        4), BAND), "FSCH03 has an unknown end");
+        Assertions.assertEquals(ScheduleSlotAllocator.SlotState.FREE, allocator.getSlotState(device, 4, now),
+                "released again");
+    }
+
+    private Instant hours(int hours) {
+        return now.plus(Duration.ofHours(hours));
+    }
+
+    /**
+     * Enables the schedule on the device and confirms it, as the writer would
+     */
+    private ScheduleSlotAllocator.Slot write(ScheduleSlotAllocator.Slot slot) {
+        device.enable(slot.getScheduleName(), slot.getStart(),
+                (int) Duration.between(slot.getStart(), slot.getEnd()).toMinutes() / 5, slot.getPrio());
+        allocator.confirm(slot);
+        return slot;
+    }
+
+    /**
+     * Holds the state, start, number of 5 minute entries and priority of the schedules
+     */
+    private static class FakeDevice extends IEC61850Utility {
+        final Map<String, ScheduleState> states = new HashMap<>();
+        final Map<String, Instant> starts = new HashMap<>();
+        final Map<String, Integer> entries = new HashMap<>();
+        final Map<String, Integer> prios = new HashMap<>();
+
+        void enable(String name, Instant start, int numberOfEntries, int prio) {
+            states.put(name, start.isAfter(Instant.now()) ? ScheduleState.READY : ScheduleState.RUNNING);
+            starts.put(name, start);
+            entries.put(name, numberOfEntries);
+            prios.put(name, prio);
+        }
+
+        @Override
+        public ScheduleState getScheduleState(String scheduleName) {
+            return states.getOrDefault(scheduleName, ScheduleState.NOT_READY);
+        }
+
+        @Override
+        public Instant getScheduleStart(String scheduleName) throws IOException {
+            Instant start = starts.get(scheduleName);
+            if (start == null) {
+                throw new IOException("No start of " + scheduleName);
+            }
+            return start;
+        }
+
+        @Override
+        public String getNodeEntryasString(String scheduleName, String specificNode, String dataType) {
+            return "NumEntr".equals(specificNode) ? entries.get(scheduleName).toString() : "300";
+        }
+
+        @Override
+        public int readSchedulePrio(String scheduleName) {
+            return prios.get(scheduleName);
+        }
+
+        @Override
+        public void setSchedulePrio(String scheduleName, int prio) {
+            prios.put(scheduleName, prio);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2023 Fraunhofer ISE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package de.fhg.ise.IEC61850.client;
+
+import com.beanit.iec61850bean.BasicDataAttribute;
+import com.beanit.iec61850bean.Fc;
+import com.beanit.iec61850bean.ServiceError;
+import com.beanit.iec61850bean.SclParseException;
+import de.fhg.ise.IEC61850.client.models.AllianderDER;
+import de.fhg.ise.IEC61850.client.scheduling.PreparedSchedule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Assignment of values to the cached server model and writing a complete schedule to a {@link LoopbackServer}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class IEC61850UtilityBenchmark {
+
+    private static final String SCHEDULE = "DER_Scheduler_Control/MaxPow_FSCH01";
+
+    @Param({ "2", "96" })
+    int numberOfValues;
+
+    LoopbackServer server;
+    AllianderDER der;
+    List<Number> values;
+
+    @Setup
+    public void setUp() throws IOException, ServiceError, SclParseException {
+        server = new LoopbackServer();
+        der = new AllianderDER(server.host, server.port);
+        values = new ArrayList<>(numberOfValues);
+        for (int i = 0; i < numberOfValues; i++) {
+            values.add(1000f + i);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        der.close();
+        server.close();
+    }
+
+    @Benchmark
+    public BasicDataAttribute findAndAssignFloat() {
+        return der.findAndAssignValue(SCHEDULE + ".ValASG001.setMag.f", null, "1337.42");
+    }
+
+    @Benchmark
+    public BasicDataAttribute findAndAssignInt() {
+        return der.findAndAssignValue(SCHEDULE + ".NumEntr.setVal", null, "96");
+    }
+
+    @Benchmark
+    public BasicDataAttribute findAndAssignTimestamp() {
+        return der.findAndAssignValue(SCHEDULE + ".StrTm01.setTm", null, "1704807420000");
+    }
+
+    @Benchmark
+    public BasicDataAttribute findAndAssignOperate() {
+        return der.findAndAssignValue(SCHEDULE + ".EnaReq.Oper.ctlVal", Fc.CO, "true");
+    }
+
+    /**
+     * One complete schedule: values, NumEntr, SchdIntv, SchdPrio, StrTm01 and the disable/enable operates
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void writeAndEnableSchedule() throws ServiceError, IOException {
+        PreparedSchedule schedule = der.getMaxPowerSchedules().prepareSchedule(values, 1, Duration.ofMinutes(15),
+                Instant.ofEpochSecond(1704807420), 20);
+        der.writeAndEnableSchedule(schedule);
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2023 Fraunhofer ISE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package de.fhg.ise.IEC61850.client;
+
+import com.beanit.iec61850bean.BasicDataAttribute;
+import com.beanit.iec61850bean.SclParseException;
+import com.beanit.iec61850bean.SclParser;
+import com.beanit.iec61850bean.ServerEventListener;
+import com.beanit.iec61850bean.ServerModel;
+import com.beanit.iec61850bean.ServerSap;
+import com.beanit.iec61850bean.ServiceError;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A 61850 server on the loopback interface that serves the model of the DER scheduler simulator. All writes and
+ * operates are accepted, there is no scheduling logic behind it.
+ */
+public class LoopbackServer implements Closeable {
+
+    private static final String MODEL_RESOURCE = "/model.cid";
+
+    private final ServerSap serverSap;
+    public final String host = InetAddress.getLoopbackAddress().getHostAddress();
+    public final int port;
+
+    public LoopbackServer() throws IOException, SclParseException {
+        ServerModel model;
+        try (InputStream sclFile = LoopbackServer.class.getResourceAsStream(MODEL_RESOURCE)) {
+            if (sclFile == null) {
+                throw new IOException("Model " + MODEL_RESOURCE + " not found on class path");
+            }
+            model = SclParser.parse(sclFile).get(0);
+        }
+        try (ServerSocket freePort = new ServerSocket(0)) {
+            port = freePort.getLocalPort();
+        }
+        serverSap = new ServerSap(port, 0, InetAddress.getLoopbackAddress(), model, null);
+        serverSap.startListening(new ServerEventListener() {
+            @Override
+            public List<ServiceError> write(List<BasicDataAttribute> bdas) {
+                return Collections.emptyList();
+            }
+
+            @Override
+            public void serverStoppedListening(ServerSap serverSap) {
+                // nothing to clean up
+            }
+        });
+    }
+
+    @Override
+    public void close() {
+        serverSap.stop();
+    }
+}
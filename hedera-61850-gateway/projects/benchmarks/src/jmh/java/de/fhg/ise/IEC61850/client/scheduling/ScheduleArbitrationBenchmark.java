@@ -0,0 +1,78 @@
+/*
+ * Copyright 2023 Fraunhofer ISE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package de.fhg.ise.IEC61850.client.scheduling;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Local arbitration of ten overlapping schedules of 100 entries, as written to the FSCH of the ReLevENT model
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ScheduleArbitrationBenchmark {
+
+    static final Instant START = Instant.parse("2023-01-01T00:00:00Z");
+    static final Duration INTERVAL = Duration.ofMinutes(15);
+
+    ScheduleArbitration arbitration;
+    ScheduleArbitration.EffectiveCurve curve;
+    ScheduleArbitration.ScheduleImage candidate;
+    Instant query;
+
+    @Setup
+    public void setUp() {
+        List<ScheduleArbitration.ScheduleImage> schedules = new ArrayList<>();
+        for (int schedule = 0; schedule < 10; schedule++) {
+            double[] values = new double[100];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = 1000 * schedule + i;
+            }
+            schedules.add(new ScheduleArbitration.ScheduleImage("FSCH" + (schedule + 1), 20 + schedule % 3,
+                    START.plus(INTERVAL.multipliedBy(10L * schedule)), INTERVAL, values));
+        }
+        arbitration = ScheduleArbitration.of(0, schedules);
+        curve = arbitration.compute();
+        candidate = new ScheduleArbitration.ScheduleImage("candidate", 29, START.plus(Duration.ofHours(30)), INTERVAL,
+                new double[96]);
+        query = START.plus(Duration.ofHours(40));
+    }
+
+    @Benchmark
+    public double valueAt() {
+        return curve.valueAt(query);
+    }
+
+    @Benchmark
+    public ScheduleArbitration.EffectiveCurve compute() {
+        return arbitration.compute();
+    }
+
+    @Benchmark
+    public double whatIf() {
+        return arbitration.with(candidate).compute().valueAt(query);
+    }
+}
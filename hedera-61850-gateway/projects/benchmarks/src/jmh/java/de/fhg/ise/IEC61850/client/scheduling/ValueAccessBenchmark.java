@@ -0,0 +1,66 @@
+/*
+ * Copyright 2023 Fraunhofer ISE
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package de.fhg.ise.IEC61850.client.scheduling;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Formatting of the object references of the schedule values, done once per written value
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ValueAccessBenchmark {
+
+    static final int VALUES_PER_SCHEDULE = 100;
+    static final String SCHEDULE_NAME = "DER_Scheduler_Control/MaxPow_FSCH01";
+
+    // getValueAccessString() does neither touch the device nor the schedule definitions
+    final ValueAccess<? extends Number> asgAccess = ValueAccess.asgAccess(null, null);
+    final ValueAccess<Boolean> spgAccess = ValueAccess.spgAccess(null, null);
+    final ValueAccess<Integer> ingAccess = ValueAccess.ingAccess(null, null);
+
+    @Benchmark
+    @OperationsPerInvocation(VALUES_PER_SCHEDULE)
+    public void asgValueAccessString(Blackhole blackhole) {
+        for (int i = 1; i <= VALUES_PER_SCHEDULE; i++) {
+            blackhole.consume(asgAccess.getValueAccessString(i, SCHEDULE_NAME));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VALUES_PER_SCHEDULE)
+    public void spgValueAccessString(Blackhole blackhole) {
+        for (int i = 1; i <= VALUES_PER_SCHEDULE; i++) {
+            blackhole.consume(spgAccess.getValueAccessString(i, SCHEDULE_NAME));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VALUES_PER_SCHEDULE)
+    public void ingValueAccessString(Blackhole blackhole) {
+        for (int i = 1; i <= VALUES_PER_SCHEDULE; i++) {
+            blackhole.consume(ingAccess.getValueAccessString(i, SCHEDULE_NAME));
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package de.fhg.ise.gateway.interfaces.ems.DTO;
+
+import de.fhg.ise.gateway.interfaces.hedera.HederaDirection;
+import de.fhg.ise.gateway.interfaces.hedera.HederaScheduleInterval;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing of the EMS requests as received via MQTT
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ExtensionRequestBenchmark {
+
+    /**
+     * 2 values as in the test scripts, one day in 15 min resolution and one day in 5 min resolution
+     */
+    @Param({ "2", "96", "288" })
+    int numberOfValues;
+
+    String json;
+    ByteBuffer payload;
+    final ExtensionRequestDecoder decoder = new ExtensionRequestDecoder();
+    final DecodedExtensionRequest decoded = new DecodedExtensionRequest();
+
+    @Setup
+    public void setUp() {
+        List<Double> values = new ArrayList<>(numberOfValues);
+        for (int i = 0; i < numberOfValues; i++) {
+            values.add(1000d + i);
+        }
+        ExtensionRequest request = new ExtensionRequest();
+        request.setDirection(HederaDirection.IMPORT);
+        request.setStart(Instant.ofEpochSecond(1704807420));
+        request.setResolution(HederaScheduleInterval.FIFTEEN_MINUTES);
+        request.setValues(values);
+        json = request.toJson();
+        payload = ByteBuffer.wrap(json.getBytes(StandardCharsets.UTF_8)).asReadOnlyBuffer();
+    }
+
+    @Benchmark
+    public ExtensionRequest fromJson() {
+        return ExtensionRequest.fromJson(json);
+    }
+
+    /**
+     * Decoding as done by the MQTT interface, should not allocate
+     */
+    @Benchmark
+    public DecodedExtensionRequest decode() throws MalformedRequestException {
+        return decoder.decode(payload, decoded);
+    }
+}
@@ -0,0 +1,47 @@
+package de.fhg.ise.gateway.interfaces.hedera;
+
+import io.swagger.client.model.RegisteredInterTie;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creation of the HEDERA request body out of an EMS request
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class HederaApiBenchmark {
+
+    @Param({ "2", "96", "288" })
+    int numberOfValues;
+
+    final UUID mrid = UUID.fromString("12345678-1234-1234-1234-123456789012");
+    final Instant start = Instant.ofEpochSecond(1704807420);
+    List<Double> values;
+
+    @Setup
+    public void setUp() {
+        values = new ArrayList<>(numberOfValues);
+        for (int i = 0; i < numberOfValues; i++) {
+            values.add(1000d + i);
+        }
+    }
+
+    @Benchmark
+    public RegisteredInterTie getRegisteredInterTies() {
+        return HederaApi.getRegisteredInterTies(mrid, start, HederaScheduleInterval.FIFTEEN_MINUTES, values,
+                HederaDirection.IMPORT);
+    }
+}
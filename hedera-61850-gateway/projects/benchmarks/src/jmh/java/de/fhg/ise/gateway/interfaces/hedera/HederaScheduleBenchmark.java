@@ -0,0 +1,81 @@
+package de.fhg.ise.gateway.interfaces.hedera;
+
+import com.google.gson.Gson;
+import io.swagger.client.JSON;
+import io.swagger.client.model.Schedule;
+import io.swagger.client.model.ScheduleGetResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Access to a schedule as returned by HEDERA, as done after every poll and before writing to the DER
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class HederaScheduleBenchmark {
+
+    @Param({ "2", "96", "288" })
+    int numberOfValues;
+
+    HederaSchedule schedule;
+    String json;
+    Gson reflectiveGson;
+    Gson hederaGson;
+
+    @Setup
+    public void setUp() {
+        List<Double> values = new ArrayList<>(numberOfValues);
+        for (int i = 0; i < numberOfValues; i++) {
+            values.add(1000d + i);
+        }
+        UUID mrid = UUID.fromString("12345678-1234-1234-1234-123456789012");
+        ScheduleGetResponse response = new ScheduleGetResponse().schedule(new Schedule().mRID(mrid));
+        response.getSchedule()
+                .getRegisteredInterTies()
+                .add(HederaApi.getRegisteredInterTies(mrid, Instant.ofEpochSecond(1704807420),
+                        HederaScheduleInterval.FIFTEEN_MINUTES, values, HederaDirection.IMPORT));
+        schedule = new HederaSchedule(response);
+        reflectiveGson = new JSON().getGson();
+        hederaGson = HederaJson.register(reflectiveGson.newBuilder()).create();
+        json = hederaGson.toJson(response);
+    }
+
+    @Benchmark
+    public List<Double> getValues() {
+        return schedule.getValues();
+    }
+
+    /**
+     * Decoding of a polled schedule as done by the autogenerated code
+     */
+    @Benchmark
+    public List<Double> decodeReflective() {
+        return new HederaSchedule(reflectiveGson.fromJson(json, ScheduleGetResponse.class)).getValues();
+    }
+
+    /**
+     * Decoding of a polled schedule as done by {@link HederaApi}
+     */
+    @Benchmark
+    public List<Double> decode() {
+        return new HederaSchedule(hederaGson.fromJson(json, ScheduleGetResponse.class)).getValues();
+    }
+
+    @Benchmark
+    public Instant getStart() {
+        return schedule.getStart();
+    }
+}
@@ -0,0 +1,10 @@
+package de.fhg.ise.gateway;
+
+/**
+ * To be thrown when HEDERA declined to calculate a schedule
+ */
+public class HederaDeclinedException extends HederaException {
+    public HederaDeclinedException(String message) {
+        super(message);
+    }
+}
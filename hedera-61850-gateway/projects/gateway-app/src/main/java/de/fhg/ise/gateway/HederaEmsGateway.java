@@ -1,13 +1,23 @@
 package de.fhg.ise.gateway;
 
+import ch.qos.logback.classic.LoggerContext;
 import com.beanit.iec61850bean.ServiceError;
 import de.fhg.ise.IEC61850.client.models.AllianderDER;
+import de.fhg.ise.IEC61850.client.tracing.Tracing;
 import de.fhg.ise.gateway.configuration.EmsInterfaceSettings;
 import de.fhg.ise.gateway.configuration.Settings;
 import de.fhg.ise.gateway.configuration.SettingsException;
+import de.fhg.ise.gateway.interfaces.der.DerScheduleWriter;
+import de.fhg.ise.gateway.interfaces.der.Portfolio;
+import de.fhg.ise.gateway.interfaces.der.ScheduleTarget;
 import de.fhg.ise.gateway.interfaces.ems.EmsInterface;
 import de.fhg.ise.gateway.interfaces.hedera.HederaApi;
 import de.fhg.ise.gateway.interfaces.hedera.HederaRefresh;
+import de.fhg.ise.gateway.lifecycle.Checkpoint;
+import de.fhg.ise.gateway.lifecycle.GatewayLifecycle;
+import de.fhg.ise.gateway.metrics.GatewayMetrics;
+import de.fhg.ise.gateway.metrics.MetricsHttpServer;
+import de.fhg.ise.gateway.tracing.OtlpJsonFileExporter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -27,23 +37,58 @@ public class HederaEmsGateway {
 
         Settings settings = new Settings(new File(INI_PATH));
 
+        GatewayLifecycle lifecycle = new GatewayLifecycle(settings.shutdownTimeout);
+        lifecycle.stopOnJvmShutdown();
+        // stopped last, so the log messages of all other components are flushed
+        lifecycle.started("logging", remaining -> stopLogging());
+
+        if (settings.tracingOtlpFile != null) {
+            Tracing.addExporter(new OtlpJsonFileExporter(new File(settings.tracingOtlpFile)));
+        }
+        if (settings.metricsPort != null) {
+            Tracing.addExporter(GatewayMetrics.STAGE_LATENCY_EXPORTER);
+            GatewayMetrics.REGISTRY.gauge("gateway_ready", "1 if the gateway accepts requests from the EMS",
+                    () -> lifecycle.isReady() ? 1 : 0);
+            MetricsHttpServer metricsHttpServer = new MetricsHttpServer(GatewayMetrics.REGISTRY, settings.metricsPort);
+            metricsHttpServer.addReadinessCheck(lifecycle::isReady);
+            lifecycle.started("metrics endpoint", remaining -> metricsHttpServer.close());
+        }
+
         HederaApi hederaApi = new HederaApi(settings);
 
         EmsInterface emsInterface = EmsInterfaceSettings.parseIniCreateInterface(settings.ini);
         log.debug("Parsed settings from ini to {}", emsInterface);
         try {
             // TODO: make it more explicit that these two lines actually connect HEDERA with the DER (probably by splitting up code in EmsInterface / MqttEmsInterface)
-            AllianderDER der = new AllianderDER(settings.derHost, settings.derPort);
-            emsInterface.start(new HederaRefresh(hederaApi, der, settings));
+            Portfolio.PortfolioSettings portfolioSettings = Portfolio.PortfolioSettings.parse(settings.ini);
+            ScheduleTarget target = portfolioSettings == null ? new DerScheduleWriter(
+                    new AllianderDER(settings.derHost, settings.derPort)) : Portfolio.connect(portfolioSettings);
+            HederaRefresh hederaRefresh = new HederaRefresh(hederaApi, target, settings);
+            // the DER may have been reconnected in the meantime, the target closes the current connection
+            lifecycle.started("DER connection", remaining -> target.close());
+
+            Checkpoint checkpoint = new Checkpoint(settings.checkpointFile);
+            lifecycle.started("request processing", remaining -> hederaRefresh.close(remaining, checkpoint));
+            // before subscribing, otherwise a new request would delete the resumed schedules at HEDERA. Returns once
+            // the resumed requests are in flight, they are processed in the background
+            hederaRefresh.resume(checkpoint);
+
+            emsInterface.start(hederaRefresh);
+            lifecycle.started("EMS interface", emsInterface::stop);
             log.info("Successfully started interface and set up connection between HEDERA and EMS successfully");
+            lifecycle.setReady();
 
-            while (true) {
-                // Keep the app from closing, the ems interface will handle all EMS requests, so we do not need to do anything here.
-                Thread.sleep(1000);
-            }
+            // the ems interface will handle all EMS requests, so we do not need to do anything here.
+            lifecycle.awaitShutdown();
         } catch (UnknownHostException e) {
-            log.error("Unable to connect to host '{}'. Is the DER (docker container) running?", settings.derHost);
+            log.error("Unable to connect to host '{}'. Is the DER (docker container) running?", e.getMessage());
             System.exit(1);
         }
     }
+
+    private static void stopLogging() {
+        if (LoggerFactory.getILoggerFactory() instanceof LoggerContext) {
+            ((LoggerContext) LoggerFactory.getILoggerFactory()).stop();
+        }
+    }
 }
@@ -0,0 +1,10 @@
+package de.fhg.ise.gateway;
+
+/**
+ * To be thrown when HEDERA did not finish the calculation of a schedule in time
+ */
+public class HederaTimeoutException extends HederaException {
+    public HederaTimeoutException(String message) {
+        super(message);
+    }
+}
@@ -1,22 +1,51 @@
 package de.fhg.ise.gateway.configuration;
 
+import de.fhg.ise.gateway.interfaces.ems.CompositeEmsInterface;
 import de.fhg.ise.gateway.interfaces.ems.EmsInterface;
+import de.fhg.ise.gateway.interfaces.ems.EmsTransportProvider;
+import de.fhg.ise.gateway.interfaces.ems.HttpEmsInterface;
+import de.fhg.ise.gateway.interfaces.ems.Mqtt5EmsInterface;
 import de.fhg.ise.gateway.interfaces.ems.MqttEmsInterface;
+import de.fhg.ise.gateway.interfaces.ems.UdsEmsInterface;
 import org.ini4j.Ini;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.ServiceLoader;
 import java.util.stream.Collectors;
 
 /**
  * Creates a interface for the Energy Management System by parsing the settings from an ini file.
+ * <p>
+ * The built-in transports are listed here, further ones are found as {@link EmsTransportProvider} services. Several
+ * transports can be used at once by listing their types separated by ','.
  */
-public enum EmsInterfaceSettings {
+public enum EmsInterfaceSettings implements EmsTransportProvider {
 
     MQTT_SETTINGS("mqtt") {
         @Override
         public EmsInterface createInterface(Ini ini) {
             return new MqttEmsInterface(ini);
         }
+    },
+    MQTT5_SETTINGS("mqtt5") {
+        @Override
+        public EmsInterface createInterface(Ini ini) {
+            return new Mqtt5EmsInterface(ini);
+        }
+    },
+    HTTP_SETTINGS("http") {
+        @Override
+        public EmsInterface createInterface(Ini ini) {
+            return new HttpEmsInterface(ini);
+        }
+    },
+    UDS_SETTINGS("uds") {
+        @Override
+        public EmsInterface createInterface(Ini ini) {
+            return new UdsEmsInterface(ini);
+        }
     };
 
     private final String iniInterfaceTypeString;
@@ -25,9 +54,15 @@ public enum EmsInterfaceSettings {
         this.iniInterfaceTypeString = iniInterfaceTypeString;
     }
 
+    @Override
+    public String getType() {
+        return iniInterfaceTypeString;
+    }
+
     /**
      * Start with the settings parsed from the {@link Ini}
      */
+    @Override
     public abstract EmsInterface createInterface(Ini ini);
 
     /**
@@ -35,16 +70,22 @@ public enum EmsInterfaceSettings {
      * in the {@link Ini}.
      */
     public static EmsInterface parseIniCreateInterface(Ini ini) {
-        String interfaceType = ini.get("ems-interface", "type");
-        EmsInterfaceSettings emsInterfaceSettings = Arrays.stream(EmsInterfaceSettings.values())
-                .filter(eis -> eis.iniInterfaceTypeString.equals(interfaceType))
-                .findFirst()
-                .orElseThrow(() -> new RuntimeException(
-                        "Unable to start EMS interface: interface type '" + interfaceType
-                                + "' unknown. Known keys are: '" + Arrays.stream(EmsInterfaceSettings.values())
-                                .map(s -> s.iniInterfaceTypeString)
-                                .collect(Collectors.joining("', '")) + "'."));
-        return emsInterfaceSettings.createInterface(ini);
+        List<EmsTransportProvider> providers = new ArrayList<>(Arrays.asList(EmsInterfaceSettings.values()));
+        ServiceLoader.load(EmsTransportProvider.class).forEach(providers::add);
+
+        List<EmsInterface> interfaces = new ArrayList<>();
+        for (String interfaceType : String.valueOf(ini.get("ems-interface", "type")).split(",")) {
+            EmsTransportProvider provider = providers.stream()
+                    .filter(p -> p.getType().equals(interfaceType.trim()))
+                    .findFirst()
+                    .orElseThrow(() -> new RuntimeException(
+                            "Unable to start EMS interface: interface type '" + interfaceType.trim()
+                                    + "' unknown. Known keys are: '" + providers.stream()
+                                    .map(EmsTransportProvider::getType)
+                                    .collect(Collectors.joining("', '")) + "'."));
+            interfaces.add(provider.createInterface(ini));
+        }
+        return interfaces.size() == 1 ? interfaces.get(0) : new CompositeEmsInterface(interfaces);
     }
 
     @Override
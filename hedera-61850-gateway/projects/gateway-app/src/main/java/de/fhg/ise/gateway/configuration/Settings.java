@@ -1,11 +1,13 @@
 package de.fhg.ise.gateway.configuration;
 
+import de.fhg.ise.gateway.interfaces.der.PriorityBands;
 import org.ini4j.Ini;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
+import java.time.Duration;
 import java.util.UUID;
 
 /**
@@ -21,8 +23,39 @@ public class Settings {
     public final double exportLimitWatts;
     public final UUID exportMrid;
     public final double importLimitWatts;
+    /**
+     * Null in portfolio mode, see {@link de.fhg.ise.gateway.interfaces.der.Portfolio}
+     */
     public final String derHost;
     public final int derPort;
+    /**
+     * File to append traces to in OTLP/JSON format, null if traces are only recorded as JFR events
+     */
+    public final String tracingOtlpFile;
+    /**
+     * Port to serve metrics for Prometheus at, null if metrics are not served
+     */
+    public final Integer metricsPort;
+    /**
+     * Time the gateway has to finish requests in flight on shutdown before they are checkpointed
+     */
+    public final Duration shutdownTimeout;
+    /**
+     * File that holds the requests that were in flight on the last shutdown
+     */
+    public final File checkpointFile;
+    /**
+     * Time a request whose schedule was written to the DER is remembered to recognize duplicates
+     */
+    public final Duration dedupTtl;
+    /**
+     * Number of requests remembered at most to recognize duplicates
+     */
+    public final int dedupMaxEntries;
+    /**
+     * The priorities DER schedules are written with, by the source of the request
+     */
+    public final PriorityBands priorityBands;
     public final Ini ini;
 
     public Settings(File file) throws SettingsException {
@@ -41,8 +74,28 @@ public class Settings {
             importLimitWatts = Double.valueOf(getNonNull(ini, "hedera-import", "limitWatts"));
             exportMrid = UUID.fromString(getNonNull(ini, "hedera-export", "mrid"));
             exportLimitWatts = Double.valueOf(getNonNull(ini, "hedera-export", "limitWatts"));
-            derHost = getNonNull(ini, "der", "host");
-            derPort = Integer.valueOf(getNonNull(ini, "der", "port"));
+            if (ini.get("portfolio", "members") == null) {
+                derHost = getNonNull(ini, "der", "host");
+                derPort = Integer.valueOf(getNonNull(ini, "der", "port"));
+            }
+            else {
+                // the DERs of the portfolio are configured in sections of their own
+                derHost = null;
+                derPort = 0;
+            }
+            tracingOtlpFile = ini.get("tracing", "otlpFile");
+            String metricsPortString = ini.get("metrics", "port");
+            metricsPort = metricsPortString == null ? null : Integer.valueOf(metricsPortString);
+            String shutdownTimeoutString = ini.get("lifecycle", "shutdownTimeoutSeconds");
+            shutdownTimeout = Duration.ofSeconds(shutdownTimeoutString == null ? 25 : Long.parseLong(
+                    shutdownTimeoutString));
+            String checkpointFileString = ini.get("lifecycle", "checkpointFile");
+            checkpointFile = new File(checkpointFileString == null ? "state/checkpoint.json" : checkpointFileString);
+            String dedupTtlString = ini.get("dedup", "ttlSeconds");
+            dedupTtl = Duration.ofSeconds(dedupTtlString == null ? 3600 : Long.parseLong(dedupTtlString));
+            String dedupMaxEntriesString = ini.get("dedup", "maxEntries");
+            dedupMaxEntries = dedupMaxEntriesString == null ? 1024 : Integer.parseInt(dedupMaxEntriesString);
+            priorityBands = PriorityBands.parse(ini);
         } catch (Exception e) {
             throw new SettingsException(
                     "Unable to parse required settings from ini file " + file.toPath().toAbsolutePath(), e);
@@ -0,0 +1,88 @@
+package de.fhg.ise.gateway.interfaces.der;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.ServiceLoader;
+import java.util.stream.Collectors;
+
+/**
+ * The built-in {@link AllocationStrategy}s
+ */
+public enum AllocationStrategies implements AllocationStrategy {
+
+    /**
+     * Every member gets the share of its weight
+     */
+    PROPORTIONAL("proportional") {
+        @Override
+        public List<List<Double>> allocate(List<Double> aggregate, List<PortfolioMember> members) {
+            double totalWeight = members.stream().mapToDouble(PortfolioMember::getWeight).sum();
+            if (totalWeight <= 0) {
+                throw new IllegalArgumentException("The weights of the members need to add up to more than 0");
+            }
+            List<List<Double>> allocated = new ArrayList<>();
+            for (PortfolioMember member : members) {
+                List<Double> values = new ArrayList<>(aggregate.size());
+                for (Double value : aggregate) {
+                    values.add(value == null ? null : value * member.getWeight() / totalWeight);
+                }
+                allocated.add(values);
+            }
+            return allocated;
+        }
+    },
+    /**
+     * Members are filled up to their maximum power (in either direction) in the order they are configured, the last
+     * one gets the rest
+     */
+    IN_ORDER("inOrder") {
+        @Override
+        public List<List<Double>> allocate(List<Double> aggregate, List<PortfolioMember> members) {
+            List<List<Double>> allocated = new ArrayList<>();
+            members.forEach(member -> allocated.add(new ArrayList<>(aggregate.size())));
+            for (Double value : aggregate) {
+                if (value == null) {
+                    // no quantity for this interval, neither for the members
+                    allocated.forEach(values -> values.add(null));
+                    continue;
+                }
+                double remaining = value;
+                for (int i = 0; i < members.size(); i++) {
+                    boolean last = i == members.size() - 1;
+                    double share = last ? remaining
+                            : Math.signum(remaining) * Math.min(Math.abs(remaining), members.get(i).getMaxWatts());
+                    allocated.get(i).add(share);
+                    remaining -= share;
+                }
+            }
+            return allocated;
+        }
+    };
+
+    private final String name;
+
+    AllocationStrategies(String name) {
+        this.name = name;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the built-in strategy or the one found via {@link ServiceLoader} with that name
+     */
+    public static AllocationStrategy byName(String name) {
+        List<AllocationStrategy> strategies = new ArrayList<>(Arrays.asList(values()));
+        ServiceLoader.load(AllocationStrategy.class).forEach(strategies::add);
+        return strategies.stream()
+                .filter(strategy -> strategy.getName().equals(name))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException(
+                        "Allocation strategy '" + name + "' unknown. Known names are: '" + strategies.stream()
+                                .map(AllocationStrategy::getName)
+                                .collect(Collectors.joining("', '")) + "'."));
+    }
+}
@@ -0,0 +1,23 @@
+package de.fhg.ise.gateway.interfaces.der;
+
+import java.util.List;
+
+/**
+ * Splits the schedule HEDERA accepted for the aggregated resource of a {@link Portfolio} into the schedules of its
+ * members. Besides the built-in strategies (see {@link AllocationStrategies}), strategies on the class path are found
+ * via {@link java.util.ServiceLoader}: list the implementing class in
+ * {@code META-INF/services/de.fhg.ise.gateway.interfaces.der.AllocationStrategy}.
+ */
+public interface AllocationStrategy {
+
+    /**
+     * @return the value of {@code allocation} in the section {@code [portfolio]} that selects this strategy
+     */
+    String getName();
+
+    /**
+     * @return the values of every member, in the order of the members. Each list has as many values as the
+     *         aggregate, and the values of all members add up to the value of the aggregate.
+     */
+    List<List<Double>> allocate(List<Double> aggregate, List<PortfolioMember> members);
+}
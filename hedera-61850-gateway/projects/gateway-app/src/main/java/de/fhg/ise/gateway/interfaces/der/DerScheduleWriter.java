@@ -0,0 +1,245 @@
+package de.fhg.ise.gateway.interfaces.der;
+
+import de.fhg.ise.IEC61850.client.models.AllianderDER;
+import de.fhg.ise.IEC61850.client.scheduling.PriorityBand;
+import de.fhg.ise.IEC61850.client.scheduling.ScheduleCompaction;
+import de.fhg.ise.IEC61850.client.scheduling.ScheduleSlotAllocator;
+import de.fhg.ise.IEC61850.client.scheduling.ScheduleVerification;
+import de.fhg.ise.IEC61850.client.tracing.Span;
+import de.fhg.ise.IEC61850.client.tracing.Tracing;
+import de.fhg.ise.gateway.interfaces.ems.DTO.Schedule;
+import de.fhg.ise.gateway.metrics.GatewayMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Writes schedules to the max power schedules of one DER, each to a schedule that is free for its time span. Runs of
+ * equal values are compacted, possibly into several chained schedules (see {@link ScheduleCompaction}). Schedules
+ * longer than a single schedule of the DER can hold are chained as well; the chained schedules are written one after
+ * another, as the association to the DER serves one request at a time, and read back (see
+ * {@link ScheduleVerification}). Reconnects once if writing fails, if that fails as well
+ * the schedules written so far are disabled.
+ */
+public class DerScheduleWriter implements ScheduleTarget {
+
+    private static final Logger log = LoggerFactory.getLogger(DerScheduleWriter.class);
+
+    private volatile AllianderDER der;
+    // kept on reconnects, the schedule names do not change
+    private final ScheduleSlotAllocator slots;
+    private final int schedules;
+
+    public DerScheduleWriter(AllianderDER der) {
+        this.der = der;
+        this.slots = new ScheduleSlotAllocator(der.getMaxPowerSchedules());
+        this.schedules = der.getMaxPowerSchedules().getAllScheduleNames().size();
+    }
+
+    /**
+     * The current connection to the DER, changes on reconnects
+     */
+    public AllianderDER getDer() {
+        return der;
+    }
+
+    @Override
+    public String write(Schedule schedule, PriorityBand band) throws Exception {
+        List<Number> values = schedule.getValues()
+                .stream()
+                .collect(Collectors.toList()); // List<Double> -> List<Number> seems to need that
+        List<ScheduleCompaction.Segment<Number>> plan = plan(values, schedule);
+        log.debug("Writing {} values as {} with {} writes", values.size(), plan, ScheduleCompaction.writesOf(plan));
+        // kept for the retry, such that it overwrites the schedules of the first attempt
+        List<ScheduleSlotAllocator.Slot> allocated = new ArrayList<>();
+        // of both attempts, disabled if both fail
+        Set<ScheduleSlotAllocator.Slot> writtenSlots = new HashSet<>();
+        try {
+            return writeToDer(plan, allocated, writtenSlots, band);
+        } catch (Exception e) {
+            log.warn(
+                    "Unable to forward schedule to DER @ {}:{}. Reason: {}:{}. Trying to solve the problem by a reconnect.",
+                    der.host, der.port, e.getClass(), e.getMessage());
+
+            try {
+                this.der = this.der.reconnect();
+                GatewayMetrics.DER_RECONNECTS.increment();
+                log.info("Reconnected successfully.");
+                return writeToDer(plan, allocated, writtenSlots, band);
+            } catch (UnknownHostException | ConnectException ex) {
+                log.error("Unable to reconnect to host '{}': {}:{}. Giving up.", der.host, ex.getClass(),
+                        ex.getMessage());
+                discard(allocated, writtenSlots);
+                throw new IOException("Unable to reconnect to the DER: " + ex.getMessage(), ex);
+            } catch (Exception ex) {
+                log.error("Unable to reconnect and forward schedule to DER @ {}:{}. Giving up.", der.host, der.port,
+                        ex);
+                discard(allocated, writtenSlots);
+                throw new IOException("Unable to forward schedule to the DER: " + ex.getMessage(), ex);
+            }
+        }
+    }
+
+    /**
+     * Disables the schedules that were written, possibly in part, such that no part of the failed schedule runs, and
+     * makes all allocated schedules free again
+     */
+    private void discard(List<ScheduleSlotAllocator.Slot> allocated, Set<ScheduleSlotAllocator.Slot> writtenSlots) {
+        for (ScheduleSlotAllocator.Slot slot : allocated) {
+            if (writtenSlots.contains(slot)) {
+                try {
+                    der.disableSchedule(slot.getScheduleName());
+                } catch (Exception e) {
+                    log.warn("Unable to disable schedule {} after writing failed: {}", slot.getScheduleName(),
+                            e.getMessage());
+                }
+            }
+            slots.release(slot);
+        }
+    }
+
+    /**
+     * Chains at most half of the schedules, leaving the others for overlapping requests. Only schedules too long for
+     * that may take all of them.
+     */
+    private List<ScheduleCompaction.Segment<Number>> plan(List<Number> values, Schedule schedule) {
+        int capacity = der.getScheduleRegistry().getCapacity(AllianderDER.MAX_POWER);
+        Duration resolution = schedule.getInterval().getAsDuration();
+        try {
+            return ScheduleCompaction.plan(values, resolution, schedule.getStart(), capacity,
+                    Math.max(1, schedules / 2));
+        } catch (IllegalArgumentException e) {
+            log.info("{}, chaining up to all {} schedules", e.getMessage(), schedules);
+            return ScheduleCompaction.plan(values, resolution, schedule.getStart(), capacity, schedules);
+        }
+    }
+
+    /**
+     * Writes the schedules of the plan and reads them back. Schedules that were not written as intended are
+     * written once more, the others are kept.
+     *
+     * @param allocated
+     *         the schedules allocated for the plan, allocated on the first attempt
+     * @param writtenSlots
+     *         extended by the schedules written to
+     */
+    private String writeToDer(List<ScheduleCompaction.Segment<Number>> plan, List<ScheduleSlotAllocator.Slot> allocated,
+            Set<ScheduleSlotAllocator.Slot> writtenSlots, PriorityBand band) throws Exception {
+        long startNanos = System.nanoTime();
+        AllianderDER der = this.der;
+        if (allocated.isEmpty()) {
+            // all at once, such that every chunk gets a schedule of its own
+            allocated.addAll(slots.allocate(der, plan, band));
+        }
+        List<Integer> all = new ArrayList<>();
+        for (int i = 0; i < plan.size(); i++) {
+            all.add(i);
+        }
+        ScheduleVerification[] verifications = new ScheduleVerification[plan.size()];
+        writeChunks(der, plan, allocated, all, verifications, writtenSlots);
+
+        List<Integer> inconsistent = inconsistent(verifications);
+        if (!inconsistent.isEmpty()) {
+            log.warn("{} of {} schedules differ from what was written, writing them again", inconsistent.size(),
+                    plan.size());
+            writeChunks(der, plan, allocated, inconsistent, verifications, writtenSlots);
+            List<Integer> stillInconsistent = inconsistent(verifications);
+            if (!stillInconsistent.isEmpty()) {
+                throw new IOException("Schedules not written as intended: " + stillInconsistent.stream()
+                        .map(i -> String.valueOf(verifications[i]))
+                        .collect(Collectors.joining("; ")));
+            }
+        }
+        allocated.forEach(slots::confirm);
+        GatewayMetrics.DER_WRITE.recordSince(startNanos);
+        log.info("Transmitted schedule to DER. Schedule will start to run in @ {}", plan.get(0).getStart());
+
+        List<String> details = new ArrayList<>();
+        for (int i = 0; i < plan.size(); i++) {
+            ScheduleSlotAllocator.Slot slot = allocated.get(i);
+            String detail = "Schedule " + slot.getScheduleName() + " (prio " + slot.getPrio() + ") starts at "
+                    + plan.get(i).getStart();
+            details.add(verifications[i] == null ? detail : detail + ", state " + verifications[i].getState());
+        }
+        return String.join("; ", details);
+    }
+
+    /**
+     * Writes and verifies the chunks with the indices one after another. The association to the DER matches each
+     * response to the single request it waits for, so it cannot carry the writes of several chunks at once.
+     */
+    private void writeChunks(AllianderDER der, List<ScheduleCompaction.Segment<Number>> plan,
+            List<ScheduleSlotAllocator.Slot> allocated, List<Integer> indices, ScheduleVerification[] verifications,
+            Set<ScheduleSlotAllocator.Slot> writtenSlots) throws Exception {
+        for (int i : indices) {
+            ScheduleCompaction.Segment<Number> segment = plan.get(i);
+            ScheduleSlotAllocator.Slot slot = allocated.get(i);
+            try (Span span = Tracing.span("der-write-chunk")) {
+                span.setAttribute("schedule", slot.getScheduleName());
+                writtenSlots.add(slot);
+                der.writeAndEnableSchedule(der.getMaxPowerSchedules().prepareSchedule(segment.getValues(),
+                        slot.getScheduleNumber(), segment.getInterval(), segment.getStart(), slot.getPrio()));
+                verifications[i] = verify(der, slot, segment);
+            }
+        }
+    }
+
+    /**
+     * @return null if the schedule could not be read back
+     */
+    private static ScheduleVerification verify(AllianderDER der, ScheduleSlotAllocator.Slot slot,
+            ScheduleCompaction.Segment<Number> segment) {
+        try (Span span = Tracing.span("der-verify")) {
+            span.setAttribute("schedule", slot.getScheduleName());
+            try {
+                ScheduleVerification verification = ScheduleVerification.verify(der, der.getMaxPowerSchedules(),
+                        slot.getScheduleNumber(), segment.getValues(), segment.getInterval(), segment.getStart(),
+                        slot.getPrio());
+                span.setAttribute("state", verification.getState());
+                GatewayMetrics.scheduleState(verification.getState()).increment();
+                if (!verification.isConsistent()) {
+                    GatewayMetrics.verificationFailure(verification.getFailure()).increment();
+                    log.warn("Schedule {} differs from what was written: {}", slot.getScheduleName(), verification);
+                }
+                else {
+                    log.debug("Schedule {} is in state {}", slot.getScheduleName(), verification.getState());
+                }
+                return verification;
+            } catch (Exception e) {
+                // the schedule was written already, not being able to read it is no reason to write it again
+                span.setError(e);
+                log.warn("Unable to read back schedule {}: {}", slot.getScheduleName(), e.getMessage());
+                return null;
+            }
+        }
+    }
+
+    private static List<Integer> inconsistent(ScheduleVerification[] verifications) {
+        List<Integer> inconsistent = new ArrayList<>();
+        for (int i = 0; i < verifications.length; i++) {
+            if (verifications[i] != null && !verifications[i].isConsistent()) {
+                inconsistent.add(i);
+            }
+        }
+        return inconsistent;
+    }
+
+    @Override
+    public void close() {
+        der.close();
+    }
+
+    @Override
+    public String toString() {
+        return "DerScheduleWriter{" + "host=" + der.host + ", port=" + der.port + '}';
+    }
+}
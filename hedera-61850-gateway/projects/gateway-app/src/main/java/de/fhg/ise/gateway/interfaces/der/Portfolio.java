@@ -0,0 +1,206 @@
+package de.fhg.ise.gateway.interfaces.der;
+
+import com.beanit.iec61850bean.ServiceError;
+import de.fhg.ise.IEC61850.client.models.AllianderDER;
+import de.fhg.ise.IEC61850.client.scheduling.PriorityBand;
+import de.fhg.ise.IEC61850.client.tracing.Span;
+import de.fhg.ise.IEC61850.client.tracing.Tracing;
+import de.fhg.ise.gateway.configuration.Settings;
+import de.fhg.ise.gateway.interfaces.ems.DTO.Schedule;
+import de.fhg.ise.gateway.interfaces.hedera.HederaScheduleInterval;
+import org.ini4j.Ini;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Several DERs behind one grid connection point, requested at HEDERA as one aggregated resource. The schedule HEDERA
+ * accepted for the aggregate is split by an {@link AllocationStrategy} and written to all members in parallel, so the
+ * traffic to HEDERA does not grow with the number of DERs.
+ */
+public class Portfolio implements ScheduleTarget {
+
+    private static final Logger log = LoggerFactory.getLogger(Portfolio.class);
+
+    private final List<PortfolioMember> members;
+    private final List<? extends ScheduleTarget> writers;
+    private final AllocationStrategy allocation;
+    private final ExecutorService executor;
+
+    /**
+     * @param writers
+     *         one per member, in the order of the members
+     */
+    public Portfolio(List<PortfolioMember> members, List<? extends ScheduleTarget> writers,
+            AllocationStrategy allocation) {
+        if (members.size() != writers.size()) {
+            throw new IllegalArgumentException("Need one writer per member");
+        }
+        this.members = members;
+        this.writers = writers;
+        this.allocation = allocation;
+        AtomicInteger threads = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(members.size(),
+                runnable -> new Thread(runnable, "der-write-" + threads.incrementAndGet()));
+    }
+
+    /**
+     * Connects to all members
+     */
+    public static Portfolio connect(PortfolioSettings settings) throws ServiceError, IOException {
+        List<DerScheduleWriter> writers = new ArrayList<>();
+        try {
+            for (PortfolioMember member : settings.members) {
+                writers.add(new DerScheduleWriter(new AllianderDER(member.getHost(), member.getPort())));
+            }
+        } catch (ServiceError | IOException e) {
+            writers.forEach(DerScheduleWriter::close);
+            throw e;
+        }
+        log.info("Connected to {} DERs of the portfolio, allocating with '{}'", writers.size(),
+                settings.allocation.getName());
+        return new Portfolio(settings.members, writers, settings.allocation);
+    }
+
+    @Override
+    public String write(Schedule aggregate, PriorityBand band) throws Exception {
+        List<List<Double>> allocated = allocation.allocate(aggregate.getValues(), members);
+        // the members are written on threads of their own, as part of the trace of the request
+        Span parent = Tracing.currentSpan();
+        List<Future<String>> results = new ArrayList<>();
+        for (int i = 0; i < members.size(); i++) {
+            PortfolioMember member = members.get(i);
+            ScheduleTarget writer = writers.get(i);
+            Schedule share = new Share(aggregate, allocated.get(i));
+            results.add(executor.submit(() -> {
+                try (Span span = Tracing.span("der-write", parent)) {
+                    span.setAttribute("der", member.getName());
+                    return writer.write(share, band);
+                }
+            }));
+        }
+
+        List<String> details = new ArrayList<>();
+        List<String> failures = new ArrayList<>();
+        for (int i = 0; i < members.size(); i++) {
+            String name = members.get(i).getName();
+            try {
+                details.add(name + ": " + results.get(i).get());
+            } catch (ExecutionException e) {
+                log.error("Unable to write schedule to DER '{}' of the portfolio: {}", name, e.getCause().getMessage());
+                failures.add(name + ": " + e.getCause().getMessage());
+            }
+        }
+        if (!failures.isEmpty()) {
+            throw new IOException("Unable to write to " + failures.size() + " of " + members.size() + " DERs: "
+                    + String.join("; ", failures));
+        }
+        return String.join("; ", details);
+    }
+
+    @Override
+    public List<UUID> getAggregatedNodes() {
+        return members.stream().map(PortfolioMember::getNodeMrid).collect(Collectors.toList());
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        writers.forEach(ScheduleTarget::close);
+    }
+
+    @Override
+    public String toString() {
+        return "Portfolio{" + "members=" + members + ", allocation=" + allocation.getName() + '}';
+    }
+
+    /**
+     * The share of a member, running at the same time as the aggregate
+     */
+    private static class Share implements Schedule {
+        private final Schedule aggregate;
+        private final List<Double> values;
+
+        Share(Schedule aggregate, List<Double> values) {
+            this.aggregate = aggregate;
+            this.values = values;
+        }
+
+        @Override
+        public List<Double> getValues() {
+            return values;
+        }
+
+        @Override
+        public HederaScheduleInterval getInterval() {
+            return aggregate.getInterval();
+        }
+
+        @Override
+        public Instant getStart() {
+            return aggregate.getStart();
+        }
+    }
+
+    /**
+     * The section {@code [portfolio]} lists the names of the members, every member is configured in a section
+     * {@code [portfolio-<name>]}
+     */
+    public static class PortfolioSettings {
+        final List<PortfolioMember> members;
+        final AllocationStrategy allocation;
+
+        private PortfolioSettings(List<PortfolioMember> members, AllocationStrategy allocation) {
+            this.members = members;
+            this.allocation = allocation;
+        }
+
+        /**
+         * @return null if no portfolio is configured
+         */
+        public static PortfolioSettings parse(Ini ini) {
+            String memberNames = ini.get("portfolio", "members");
+            if (memberNames == null) {
+                return null;
+            }
+            try {
+                List<PortfolioMember> members = new ArrayList<>();
+                for (String name : memberNames.split(",")) {
+                    String section = "portfolio-" + name.trim();
+                    UUID mrid = UUID.fromString(Settings.getNonNull(ini, section, "mrid"));
+                    String host = Settings.getNonNull(ini, section, "host");
+                    int port = Integer.parseInt(Settings.getNonNull(ini, section, "port"));
+                    String weight = ini.get(section, "weight");
+                    String maxWatts = ini.get(section, "maxWatts");
+                    members.add(new PortfolioMember(name.trim(), mrid, host, port,
+                            weight == null ? 1 : Double.parseDouble(weight),
+                            maxWatts == null ? Double.POSITIVE_INFINITY : Double.parseDouble(maxWatts)));
+                }
+                if (members.stream().allMatch(member -> member.getWeight() == 0)) {
+                    throw new IllegalArgumentException("At least one member needs a weight other than 0");
+                }
+                String allocation = ini.get("portfolio", "allocation");
+                return new PortfolioSettings(members,
+                        AllocationStrategies.byName(allocation == null ? "proportional" : allocation.trim()));
+            } catch (Exception e) {
+                throw new RuntimeException("Unable to parse settings", e);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "PortfolioSettings{" + "members=" + members + ", allocation=" + allocation.getName() + '}';
+        }
+    }
+}
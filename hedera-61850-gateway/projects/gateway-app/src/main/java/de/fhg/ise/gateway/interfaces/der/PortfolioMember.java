@@ -0,0 +1,61 @@
+package de.fhg.ise.gateway.interfaces.der;
+
+import java.util.UUID;
+
+/**
+ * A DER of a {@link Portfolio}, registered at HEDERA as node of the aggregated resource
+ */
+public class PortfolioMember {
+
+    private final String name;
+    private final UUID nodeMrid;
+    private final String host;
+    private final int port;
+    private final double weight;
+    private final double maxWatts;
+
+    public PortfolioMember(String name, UUID nodeMrid, String host, int port, double weight, double maxWatts) {
+        this.name = name;
+        this.nodeMrid = nodeMrid;
+        this.host = host;
+        this.port = port;
+        this.weight = weight;
+        this.maxWatts = maxWatts;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public UUID getNodeMrid() {
+        return nodeMrid;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    /**
+     * Relative share of the member, e.g. its rated power
+     */
+    public double getWeight() {
+        return weight;
+    }
+
+    /**
+     * Power the member can take at most, {@link Double#POSITIVE_INFINITY} if not configured
+     */
+    public double getMaxWatts() {
+        return maxWatts;
+    }
+
+    @Override
+    public String toString() {
+        return "PortfolioMember{" + "name='" + name + '\'' + ", nodeMrid=" + nodeMrid + ", host='" + host + '\''
+                + ", port=" + port + ", weight=" + weight + ", maxWatts=" + maxWatts + '}';
+    }
+}
@@ -0,0 +1,62 @@
+package de.fhg.ise.gateway.interfaces.der;
+
+import de.fhg.ise.IEC61850.client.scheduling.PriorityBand;
+import org.ini4j.Ini;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The {@link PriorityBand} the schedules of a request are written with, by the source of the request: the EMS
+ * transport it was received by (e.g. {@code mqtt}, {@code http}) or {@value #RESUMED} for requests resumed from the
+ * checkpoint. Configured in the section {@code [schedule-priority]}, with {@code default} for all other sources.
+ */
+public class PriorityBands {
+
+    public static final String RESUMED = "resumed";
+    static final PriorityBand DEFAULT_BAND = new PriorityBand(20, 29);
+    private static final String SECTION = "schedule-priority";
+
+    private final Ini ini;
+    private final PriorityBand defaultBand;
+    private final Map<String, PriorityBand> bySource = new ConcurrentHashMap<>();
+
+    private PriorityBands(Ini ini, PriorityBand defaultBand) {
+        this.ini = ini;
+        this.defaultBand = defaultBand;
+    }
+
+    public static PriorityBands parse(Ini ini) {
+        try {
+            String configuredDefault = ini.get(SECTION, "default");
+            PriorityBands bands = new PriorityBands(ini,
+                    configuredDefault == null ? DEFAULT_BAND : PriorityBand.parse(configuredDefault));
+            // invalid bands of the built-in sources are reported on start
+            for (String source : new String[] { "mqtt", "http", "uds", RESUMED }) {
+                bands.forSource(source);
+            }
+            return bands;
+        } catch (Exception e) {
+            throw new RuntimeException("Unable to parse settings", e);
+        }
+    }
+
+    /**
+     * @param source
+     *         null if unknown
+     */
+    public PriorityBand forSource(String source) {
+        if (source == null) {
+            return defaultBand;
+        }
+        return bySource.computeIfAbsent(source, s -> {
+            String band = ini.get(SECTION, s);
+            return band == null ? defaultBand : PriorityBand.parse(band);
+        });
+    }
+
+    @Override
+    public String toString() {
+        return "PriorityBands{" + "default=" + defaultBand + ", bySource=" + bySource + '}';
+    }
+}
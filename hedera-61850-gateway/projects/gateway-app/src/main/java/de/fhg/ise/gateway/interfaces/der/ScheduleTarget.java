@@ -0,0 +1,40 @@
+package de.fhg.ise.gateway.interfaces.der;
+
+import de.fhg.ise.IEC61850.client.scheduling.PriorityBand;
+import de.fhg.ise.gateway.interfaces.ems.DTO.Schedule;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Where the schedules accepted by HEDERA are written to: a single DER ({@link DerScheduleWriter}) or the DERs of a
+ * {@link Portfolio}. Calls are serialized by the caller.
+ */
+public interface ScheduleTarget {
+
+    /**
+     * Writes and enables the schedule, in a DER schedule that is free for its time span (see
+     * {@link de.fhg.ise.IEC61850.client.scheduling.ScheduleSlotAllocator})
+     *
+     * @param band
+     *         the priorities the schedule may be written with
+     * @return the detail to tell the EMS
+     * @throws Exception
+     *         with a message for the EMS, if the schedule could not be written
+     */
+    String write(Schedule schedule, PriorityBand band) throws Exception;
+
+    /**
+     * @return the mrids of the nodes to request at HEDERA as one aggregated resource, empty if the target is no
+     *         aggregate
+     */
+    default List<UUID> getAggregatedNodes() {
+        return Collections.emptyList();
+    }
+
+    /**
+     * Closes the connections to the DERs
+     */
+    void close();
+}
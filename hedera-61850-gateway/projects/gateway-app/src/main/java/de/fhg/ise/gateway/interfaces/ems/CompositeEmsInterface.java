@@ -0,0 +1,56 @@
+package de.fhg.ise.gateway.interfaces.ems;
+
+import de.fhg.ise.gateway.interfaces.hedera.HederaRefresh;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Serves EMSs via several transports at once, e.g. MQTT for remote EMSs and a Unix domain socket for a co-located one.
+ * All transports feed the same {@link HederaRefresh}.
+ */
+public class CompositeEmsInterface implements EmsInterface {
+
+    private static final Logger log = LoggerFactory.getLogger(CompositeEmsInterface.class);
+
+    private final List<EmsInterface> interfaces;
+
+    public CompositeEmsInterface(List<EmsInterface> interfaces) {
+        this.interfaces = new ArrayList<>(interfaces);
+    }
+
+    @Override
+    public void start(HederaRefresh hederaApi) {
+        for (EmsInterface emsInterface : interfaces) {
+            emsInterface.start(hederaApi);
+        }
+    }
+
+    /**
+     * Stops the transports in reverse order, sharing the timeout
+     */
+    @Override
+    public void stop(Duration timeout) {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        for (int i = interfaces.size() - 1; i >= 0; i--) {
+            try {
+                interfaces.get(i).stop(Duration.ofNanos(Math.max(0, deadline - System.nanoTime())));
+            } catch (Exception e) {
+                log.warn("Unable to stop {} cleanly", interfaces.get(i), e);
+            }
+        }
+    }
+
+    @Override
+    public void onNewRequestFromEms(HederaRefresh hederaApi, String message) {
+        interfaces.get(0).onNewRequestFromEms(hederaApi, message);
+    }
+
+    @Override
+    public String toString() {
+        return "CompositeEmsInterface{" + "interfaces=" + interfaces + '}';
+    }
+}
@@ -0,0 +1,84 @@
+package de.fhg.ise.gateway.interfaces.ems.DTO;
+
+import de.fhg.ise.gateway.Context;
+import de.fhg.ise.gateway.HederaException;
+import de.fhg.ise.gateway.configuration.Settings;
+import de.fhg.ise.gateway.interfaces.hedera.HederaApi;
+import de.fhg.ise.gateway.interfaces.hedera.HederaSchedule;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Several {@link ExtensionRequest}s, e.g. for import and export or for several connection points, that are requested
+ * at HEDERA as one schedule and processed as one unit: they are accepted or declined together and the EMS is told one
+ * status for all of them.
+ * <p>
+ * The schedule of every request is written to a DER schedule of its own, in the order of the requests. All requests
+ * of a batch have the same direction: the DER has one limit schedule controller, so it cannot tell an import limit
+ * from an export limit.
+ */
+public class BatchExtensionRequest {
+
+    /**
+     * One DER schedule per request
+     */
+    public static final int MAX_REQUESTS = 10;
+
+    List<ExtensionRequest> requests;
+    /**
+     * Optional, chosen by the EMS to relate the status messages of the gateway to this batch
+     */
+    private String correlationId;
+
+    public BatchExtensionRequest() {
+    }
+
+    public BatchExtensionRequest(List<ExtensionRequest> requests, String correlationId) {
+        this.requests = requests;
+        this.correlationId = correlationId;
+    }
+
+    public List<ExtensionRequest> getRequests() {
+        return requests;
+    }
+
+    public void setRequests(List<ExtensionRequest> requests) {
+        this.requests = requests;
+    }
+
+    public String getCorrelationId() {
+        return correlationId;
+    }
+
+    public void setCorrelationId(String correlationId) {
+        this.correlationId = correlationId;
+    }
+
+    public HederaSchedule requestExtensionAwaitCalculation(HederaApi api, Settings settings,
+            Consumer<UUID> onScheduleCreated) throws HederaException {
+        return api.requestAwaitCalculation(requests, settings, onScheduleCreated);
+    }
+
+    /**
+     * @return false if the requests have different directions, see {@link BatchExtensionRequest}
+     */
+    public static boolean hasOneDirection(List<ExtensionRequest> requests) {
+        return requests.stream().map(ExtensionRequest::getDirection).distinct().count() <= 1;
+    }
+
+    public String toJson() {
+        return Context.GSON.toJson(this);
+    }
+
+    public static BatchExtensionRequest fromJson(String json) {
+        return Context.GSON.fromJson(json, BatchExtensionRequest.class);
+    }
+
+    @Override
+    public String toString() {
+        return "BatchExtensionRequest{" + "requests=" + requests + (correlationId == null ? ""
+                : ", correlationId=" + correlationId) + '}';
+    }
+}
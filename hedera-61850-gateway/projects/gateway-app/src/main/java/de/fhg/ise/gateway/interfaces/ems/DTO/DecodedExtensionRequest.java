@@ -0,0 +1,137 @@
+package de.fhg.ise.gateway.interfaces.ems.DTO;
+
+import de.fhg.ise.gateway.interfaces.hedera.HederaDirection;
+import de.fhg.ise.gateway.interfaces.hedera.HederaScheduleInterval;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * An {@link ExtensionRequest} as decoded by {@link ExtensionRequestDecoder}. Values are kept in a primitive array that
+ * is reused for the next request, so an instance is only valid until it is decoded into again.
+ */
+public class DecodedExtensionRequest {
+
+    HederaDirection direction;
+    boolean hasStart;
+    long startEpochSecond;
+    int startNanos;
+    HederaScheduleInterval resolution;
+    double[] values = new double[96];
+    int valueCount;
+    boolean skipHedera;
+    String correlationId;
+    UUID mrid;
+
+    void reset() {
+        direction = null;
+        hasStart = false;
+        startEpochSecond = 0;
+        startNanos = 0;
+        resolution = null;
+        valueCount = 0;
+        skipHedera = false;
+        correlationId = null;
+        mrid = null;
+    }
+
+    void addValue(double value) {
+        if (valueCount == values.length) {
+            values = Arrays.copyOf(values, values.length * 2);
+        }
+        values[valueCount++] = value;
+    }
+
+    public HederaDirection getDirection() {
+        return direction;
+    }
+
+    public HederaScheduleInterval getResolution() {
+        return resolution;
+    }
+
+    /**
+     * @return false if the request did not contain a start, i.e. the default start of {@link ExtensionRequest}
+     *         applies
+     */
+    public boolean hasStart() {
+        return hasStart;
+    }
+
+    public long getStartEpochSecond() {
+        return startEpochSecond;
+    }
+
+    public int getStartNanos() {
+        return startNanos;
+    }
+
+    public int size() {
+        return valueCount;
+    }
+
+    public double getValue(int index) {
+        if (index >= valueCount) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + valueCount);
+        }
+        return values[index];
+    }
+
+    public boolean getSkipHedera() {
+        return skipHedera;
+    }
+
+    /**
+     * @return the id the EMS chose for this request, or null
+     */
+    public String getCorrelationId() {
+        return correlationId;
+    }
+
+    /**
+     * @return the connection point the EMS chose for this request, or null
+     */
+    public UUID getMrid() {
+        return mrid;
+    }
+
+    /**
+     * Creates an {@link ExtensionRequest} that stays valid after this instance is reused
+     */
+    public ExtensionRequest toExtensionRequest() {
+        ExtensionRequest request = new ExtensionRequest();
+        request.setDirection(direction);
+        if (hasStart) {
+            request.setStart(Instant.ofEpochSecond(startEpochSecond, startNanos));
+        }
+        request.setResolution(resolution);
+        List<Double> list = new ArrayList<>(valueCount);
+        for (int i = 0; i < valueCount; i++) {
+            list.add(values[i]);
+        }
+        request.setValues(list);
+        request.setSkipHedera(skipHedera);
+        request.setCorrelationId(correlationId);
+        request.setMrid(mrid);
+        return request;
+    }
+
+    /**
+     * @return the duration covered by all values
+     */
+    public Duration getDuration() {
+        return resolution.getAsDuration().multipliedBy(valueCount);
+    }
+
+    @Override
+    public String toString() {
+        String start = hasStart ? Instant.ofEpochSecond(startEpochSecond, startNanos).toString() : "default";
+        return "DecodedExtensionRequest{" + "direction=" + direction + ", start=" + start + ", resolution=" + resolution
+                + ", values=" + Arrays.toString(Arrays.copyOf(values, valueCount)) + ", skipHedera=" + skipHedera
+                + ", correlationId=" + correlationId + ", mrid=" + mrid + '}';
+    }
+}
@@ -11,23 +11,37 @@ import de.fhg.ise.gateway.interfaces.hedera.HederaScheduleInterval;
 
 import java.time.Duration;
 import java.time.Instant;
+import java.util.Collections;
 import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
 
 /**
  * A request to HEDERA to modify the limit at the grid connection point. Usually delivered via HTTP.
  */
 public class ExtensionRequest {
     HederaDirection direction;
+    /**
+     * As received, null if the request has none
+     */
     Instant start;
+    // start schedule 3 min in the future per default
+    private final transient Instant defaultStart = Instant.now().plus(Duration.ofMinutes(3));
     HederaScheduleInterval resolution;
     List<Double> values;
     @Expose(serialize = false,
             deserialize = true)
     private Boolean skipHedera = false;
+    /**
+     * Optional, chosen by the EMS to relate the status messages of the gateway to this request
+     */
+    private String correlationId;
+    /**
+     * Optional, the connection point to request the extension for. Defaults to the one configured for the direction.
+     */
+    private UUID mrid;
 
     public ExtensionRequest() {
-        // start schedule 3 min in the future per default
-        this.start = Instant.now().plus(Duration.ofMinutes(3));
     }
 
     public HederaDirection getDirection() {
@@ -38,7 +52,17 @@ public class ExtensionRequest {
         this.direction = direction;
     }
 
+    /**
+     * @return the start of the request or, if it has none, 3 minutes after the request was received
+     */
     public Instant getStart() {
+        return start != null ? start : defaultStart;
+    }
+
+    /**
+     * @return the start as received, null if the request has none
+     */
+    public Instant getReceivedStart() {
         return start;
     }
 
@@ -72,13 +96,19 @@ public class ExtensionRequest {
 
     @Override
     public String toString() {
-        return "ExtensionRequest{" + "direction=" + direction + ", start=" + start + ", resolution=" + resolution
-                + ", values=" + values + '}';
+        return "ExtensionRequest{" + "direction=" + direction + ", start=" + getStart() + ", resolution=" + resolution
+                + ", values=" + values + (mrid == null ? "" : ", mrid=" + mrid) + (correlationId == null ? ""
+                : ", correlationId=" + correlationId) + '}';
     }
 
     public HederaSchedule requestExtensionAwaitCalculation(HederaApi api, Settings settings) throws HederaException {
-        return api.requestExtensionAwaitCalculation(this.getStart(), this.getResolution(), this.getValues(),
-                this.getDirection(), settings);
+        return requestExtensionAwaitCalculation(api, settings, scheduleId -> {
+        });
+    }
+
+    public HederaSchedule requestExtensionAwaitCalculation(HederaApi api, Settings settings,
+            Consumer<UUID> onScheduleCreated) throws HederaException {
+        return api.requestAwaitCalculation(Collections.singletonList(this), settings, onScheduleCreated);
     }
 
     public Boolean getSkipHedera() {
@@ -88,4 +118,30 @@ public class ExtensionRequest {
     public void setSkipHedera(Boolean skipHedera) {
         this.skipHedera = skipHedera;
     }
+
+    public String getCorrelationId() {
+        return correlationId;
+    }
+
+    public void setCorrelationId(String correlationId) {
+        this.correlationId = correlationId;
+    }
+
+    /**
+     * @return the connection point chosen by the EMS, or null
+     */
+    public UUID getMrid() {
+        return mrid;
+    }
+
+    public void setMrid(UUID mrid) {
+        this.mrid = mrid;
+    }
+
+    /**
+     * @return the connection point to request the extension for
+     */
+    public UUID getMRID(Settings settings) {
+        return mrid != null ? mrid : direction.getMRID(settings);
+    }
 }
@@ -0,0 +1,553 @@
+package de.fhg.ise.gateway.interfaces.ems.DTO;
+
+import de.fhg.ise.gateway.interfaces.hedera.HederaDirection;
+import de.fhg.ise.gateway.interfaces.hedera.HederaScheduleInterval;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Decodes the JSON of an {@link ExtensionRequest} (as written by {@link ExtensionRequest#toJson()}) directly from the
+ * UTF-8 bytes of an MQTT payload into a reusable {@link DecodedExtensionRequest}. The request is validated while it is
+ * read.
+ * <p>
+ * Neither the payload is copied nor a String created: keys and enum constants are compared byte by byte and numbers
+ * are parsed in place. Only numbers that cannot be converted exactly from their decimal digits (more than 15
+ * significant digits or large exponents) fall back to {@link Double#parseDouble(String)}.
+ * <p>
+ * Instances are not thread safe, use one per thread.
+ */
+public class ExtensionRequestDecoder {
+
+    private static final int MAX_DEPTH = 32;
+
+    private static final byte[] DIRECTION = ascii("direction");
+    private static final byte[] START = ascii("start");
+    private static final byte[] SECONDS = ascii("seconds");
+    private static final byte[] NANOS = ascii("nanos");
+    private static final byte[] RESOLUTION = ascii("resolution");
+    private static final byte[] VALUES = ascii("values");
+    private static final byte[] SKIP_HEDERA = ascii("skipHedera");
+    private static final byte[] CORRELATION_ID = ascii("correlationId");
+    private static final int MAX_CORRELATION_ID_LENGTH = 128;
+    private static final byte[] MRID = ascii("mrid");
+    private static final byte[] REQUESTS = ascii("requests");
+
+    private static final HederaDirection[] DIRECTIONS = HederaDirection.values();
+    private static final byte[][] DIRECTION_NAMES = names(DIRECTIONS);
+    private static final HederaScheduleInterval[] RESOLUTIONS = HederaScheduleInterval.values();
+    private static final byte[][] RESOLUTION_NAMES = names(RESOLUTIONS);
+
+    /**
+     * Powers of ten that are exactly representable as double
+     */
+    private static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12,
+            1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    private ByteBuffer in;
+    private int offset;
+    private int pos;
+    private int limit;
+
+    // bounds of the string read last, excluding the quotes
+    private int stringStart;
+    private int stringEnd;
+    private boolean stringEscaped;
+
+    /**
+     * Decodes the remaining bytes of the payload into the target. The position of the payload is not changed.
+     *
+     * @return the target
+     */
+    public DecodedExtensionRequest decode(ByteBuffer payload, DecodedExtensionRequest target)
+            throws MalformedRequestException {
+        begin(payload);
+        try {
+            target.reset();
+            readRequest(target);
+            expectEnd();
+            validate(target);
+            return target;
+        } finally {
+            in = null;
+        }
+    }
+
+    /**
+     * @return true if the payload is a {@link BatchExtensionRequest}, i.e. an object with the field 'requests'. False
+     *         for anything else, including malformed payloads.
+     */
+    public boolean isBatch(ByteBuffer payload) {
+        begin(payload);
+        try {
+            expect('{');
+            if (consumeIf('}')) {
+                return false;
+            }
+            do {
+                readString();
+                expect(':');
+                if (keyIs(REQUESTS)) {
+                    return true;
+                }
+                skipValue(0);
+            } while (consumeIf(','));
+            return false;
+        } catch (MalformedRequestException e) {
+            return false;
+        } finally {
+            in = null;
+        }
+    }
+
+    /**
+     * Decodes the remaining bytes of the payload into a {@link BatchExtensionRequest}. Every request of the batch is
+     * decoded into {@code scratch} and copied from there. The position of the payload is not changed.
+     */
+    public BatchExtensionRequest decodeBatch(ByteBuffer payload, DecodedExtensionRequest scratch)
+            throws MalformedRequestException {
+        begin(payload);
+        try {
+            List<ExtensionRequest> requests = null;
+            String correlationId = null;
+            expect('{');
+            if (!consumeIf('}')) {
+                do {
+                    readString();
+                    expect(':');
+                    if (keyIs(REQUESTS)) {
+                        requests = readRequests(scratch);
+                    }
+                    else if (keyIs(CORRELATION_ID)) {
+                        correlationId = readCorrelationId();
+                    }
+                    else {
+                        skipValue(0);
+                    }
+                } while (consumeIf(','));
+                expect('}');
+            }
+            expectEnd();
+            if (requests == null) {
+                throw new MalformedRequestException("Missing field 'requests'");
+            }
+            if (!BatchExtensionRequest.hasOneDirection(requests)) {
+                throw new MalformedRequestException("The requests of a batch must have the same direction");
+            }
+            return new BatchExtensionRequest(requests, correlationId);
+        } finally {
+            in = null;
+        }
+    }
+
+    private void begin(ByteBuffer payload) {
+        in = payload;
+        offset = payload.position();
+        pos = offset;
+        limit = payload.limit();
+    }
+
+    private void expectEnd() throws MalformedRequestException {
+        skipWhitespace();
+        if (pos != limit) {
+            throw malformed("Unexpected content after the request");
+        }
+    }
+
+    private List<ExtensionRequest> readRequests(DecodedExtensionRequest scratch) throws MalformedRequestException {
+        expect('[');
+        List<ExtensionRequest> requests = new ArrayList<>();
+        if (consumeIf(']')) {
+            throw malformed("Field 'requests' needs to contain at least one request");
+        }
+        do {
+            if (requests.size() == BatchExtensionRequest.MAX_REQUESTS) {
+                throw malformed("Field 'requests' must not contain more than " + BatchExtensionRequest.MAX_REQUESTS
+                        + " requests");
+            }
+            scratch.reset();
+            readRequest(scratch);
+            validate(scratch);
+            if (scratch.skipHedera) {
+                throw malformed("Requests of a batch cannot skip HEDERA");
+            }
+            requests.add(scratch.toExtensionRequest());
+        } while (consumeIf(','));
+        expect(']');
+        return requests;
+    }
+
+    private void readRequest(DecodedExtensionRequest target) throws MalformedRequestException {
+        expect('{');
+        if (consumeIf('}')) {
+            return;
+        }
+        do {
+            readString();
+            expect(':');
+            if (keyIs(DIRECTION)) {
+                readString();
+                target.direction = DIRECTIONS[matchName(DIRECTION_NAMES, "direction")];
+            }
+            else if (keyIs(START)) {
+                readStart(target);
+            }
+            else if (keyIs(RESOLUTION)) {
+                readString();
+                target.resolution = RESOLUTIONS[matchName(RESOLUTION_NAMES, "resolution")];
+            }
+            else if (keyIs(VALUES)) {
+                readValues(target);
+            }
+            else if (keyIs(SKIP_HEDERA)) {
+                target.skipHedera = readBoolean();
+            }
+            else if (keyIs(CORRELATION_ID)) {
+                target.correlationId = readCorrelationId();
+            }
+            else if (keyIs(MRID)) {
+                target.mrid = readMrid();
+            }
+            else {
+                // unknown fields are ignored, as Gson does
+                skipValue(0);
+            }
+        } while (consumeIf(','));
+        expect('}');
+    }
+
+    private void readStart(DecodedExtensionRequest target) throws MalformedRequestException {
+        expect('{');
+        boolean hasSeconds = false;
+        if (!consumeIf('}')) {
+            do {
+                readString();
+                expect(':');
+                if (keyIs(SECONDS)) {
+                    target.startEpochSecond = readLong();
+                    hasSeconds = true;
+                }
+                else if (keyIs(NANOS)) {
+                    long nanos = readLong();
+                    if (nanos < 0 || nanos > 999_999_999) {
+                        throw malformed("Field 'start.nanos' needs to be within [0, 999999999]");
+                    }
+                    target.startNanos = (int) nanos;
+                }
+                else {
+                    skipValue(0);
+                }
+            } while (consumeIf(','));
+            expect('}');
+        }
+        if (!hasSeconds) {
+            throw malformed("Missing field 'start.seconds'");
+        }
+        target.hasStart = true;
+    }
+
+    private void readValues(DecodedExtensionRequest target) throws MalformedRequestException {
+        expect('[');
+        target.valueCount = 0;
+        if (consumeIf(']')) {
+            return;
+        }
+        do {
+            target.addValue(readDouble());
+        } while (consumeIf(','));
+        expect(']');
+    }
+
+    private static void validate(DecodedExtensionRequest target) throws MalformedRequestException {
+        if (target.direction == null) {
+            throw new MalformedRequestException("Missing field 'direction'");
+        }
+        if (target.resolution == null) {
+            throw new MalformedRequestException("Missing field 'resolution'");
+        }
+        if (target.valueCount == 0) {
+            throw new MalformedRequestException("Field 'values' needs to contain at least one value");
+        }
+    }
+
+    private boolean readBoolean() throws MalformedRequestException {
+        skipWhitespace();
+        if (consumeLiteral("true")) {
+            return true;
+        }
+        if (consumeLiteral("false")) {
+            return false;
+        }
+        throw malformed("Expected true or false");
+    }
+
+    private long readLong() throws MalformedRequestException {
+        skipWhitespace();
+        boolean negative = consumeIf('-');
+        int digitsStart = pos;
+        long value = 0;
+        while (pos < limit && isDigit(in.get(pos))) {
+            int digit = in.get(pos++) - '0';
+            if (value > (Long.MAX_VALUE - digit) / 10) {
+                throw malformed("Integer out of range");
+            }
+            value = value * 10 + digit;
+        }
+        if (pos == digitsStart) {
+            throw malformed("Expected an integer");
+        }
+        if (pos < limit && (in.get(pos) == '.' || in.get(pos) == 'e' || in.get(pos) == 'E')) {
+            throw malformed("Expected an integer");
+        }
+        return negative ? -value : value;
+    }
+
+    private double readDouble() throws MalformedRequestException {
+        skipWhitespace();
+        int numberStart = pos;
+        boolean negative = consumeIf('-');
+        long mantissa = 0;
+        int exponent = 0;
+        boolean exact = true;
+        int digitsStart = pos;
+        while (pos < limit && isDigit(in.get(pos))) {
+            int digit = in.get(pos++) - '0';
+            if (mantissa < MAX_EXACT_MANTISSA) {
+                mantissa = mantissa * 10 + digit;
+            }
+            else {
+                exponent++;
+                exact &= digit == 0;
+            }
+        }
+        if (pos == digitsStart) {
+            throw malformed("Expected a number");
+        }
+        if (consumeIf('.')) {
+            int fractionStart = pos;
+            while (pos < limit && isDigit(in.get(pos))) {
+                int digit = in.get(pos++) - '0';
+                if (mantissa < MAX_EXACT_MANTISSA) {
+                    mantissa = mantissa * 10 + digit;
+                    exponent--;
+                }
+                else {
+                    exact &= digit == 0;
+                }
+            }
+            if (pos == fractionStart) {
+                throw malformed("Expected digits after the decimal point");
+            }
+        }
+        if (pos < limit && (in.get(pos) == 'e' || in.get(pos) == 'E')) {
+            pos++;
+            boolean negativeExponent = consumeIf('-');
+            if (!negativeExponent) {
+                consumeIf('+');
+            }
+            int exponentStart = pos;
+            int explicitExponent = 0;
+            while (pos < limit && isDigit(in.get(pos))) {
+                explicitExponent = Math.min(explicitExponent * 10 + in.get(pos++) - '0', 10_000);
+            }
+            if (pos == exponentStart) {
+                throw malformed("Expected digits in the exponent");
+            }
+            exponent += negativeExponent ? -explicitExponent : explicitExponent;
+        }
+
+        double value;
+        if (exact && mantissa <= MAX_EXACT_MANTISSA && Math.abs(exponent) < POWERS_OF_TEN.length) {
+            // both operands are exact, so the result is correctly rounded
+            value = exponent < 0 ? mantissa / POWERS_OF_TEN[-exponent] : mantissa * POWERS_OF_TEN[exponent];
+            value = negative ? -value : value;
+        }
+        else {
+            value = Double.parseDouble(asciiString(numberStart, pos));
+        }
+        if (Double.isInfinite(value)) {
+            throw malformed("Number out of range");
+        }
+        return value;
+    }
+
+    /**
+     * Reads a string and remembers its bounds, see {@link #keyIs(byte[])} and {@link #matchName(byte[][], String)}
+     */
+    private void readString() throws MalformedRequestException {
+        skipWhitespace();
+        expect('"');
+        stringStart = pos;
+        stringEscaped = false;
+        while (pos < limit) {
+            byte b = in.get(pos);
+            if (b == '"') {
+                stringEnd = pos++;
+                return;
+            }
+            if (b == '\\') {
+                stringEscaped = true;
+                pos++;
+            }
+            else if (b >= 0 && b < 0x20) {
+                throw malformed("Control character in string");
+            }
+            pos++;
+        }
+        throw malformed("Unterminated string");
+    }
+
+    /**
+     * The only string that is copied, it is echoed in the status messages to the EMS
+     */
+    private String readCorrelationId() throws MalformedRequestException {
+        readString();
+        if (stringEscaped) {
+            throw malformed("Field 'correlationId' must not contain escape sequences");
+        }
+        if (stringEnd - stringStart > MAX_CORRELATION_ID_LENGTH) {
+            throw malformed("Field 'correlationId' must not be longer than " + MAX_CORRELATION_ID_LENGTH + " bytes");
+        }
+        return asciiString(stringStart, stringEnd);
+    }
+
+    private UUID readMrid() throws MalformedRequestException {
+        readString();
+        if (!stringEscaped) {
+            try {
+                return UUID.fromString(asciiString(stringStart, stringEnd));
+            } catch (IllegalArgumentException e) {
+                // reported below
+            }
+        }
+        throw malformed("Field 'mrid' needs to be a UUID");
+    }
+
+    private boolean keyIs(byte[] key) {
+        if (stringEscaped || stringEnd - stringStart != key.length) {
+            return false;
+        }
+        for (int i = 0; i < key.length; i++) {
+            if (in.get(stringStart + i) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int matchName(byte[][] names, String field) throws MalformedRequestException {
+        for (int i = 0; i < names.length; i++) {
+            if (keyIs(names[i])) {
+                return i;
+            }
+        }
+        throw malformed("Unknown value '" + asciiString(stringStart, stringEnd) + "' for field '" + field + "'");
+    }
+
+    private void skipValue(int depth) throws MalformedRequestException {
+        if (depth > MAX_DEPTH) {
+            throw malformed("Nested too deeply");
+        }
+        skipWhitespace();
+        if (pos >= limit) {
+            throw malformed("Unexpected end of request");
+        }
+        byte b = in.get(pos);
+        if (b == '{') {
+            pos++;
+            if (!consumeIf('}')) {
+                do {
+                    readString();
+                    expect(':');
+                    skipValue(depth + 1);
+                } while (consumeIf(','));
+                expect('}');
+            }
+        }
+        else if (b == '[') {
+            pos++;
+            if (!consumeIf(']')) {
+                do {
+                    skipValue(depth + 1);
+                } while (consumeIf(','));
+                expect(']');
+            }
+        }
+        else if (b == '"') {
+            readString();
+        }
+        else if (!(consumeLiteral("true") || consumeLiteral("false") || consumeLiteral("null"))) {
+            readDouble();
+        }
+    }
+
+    private boolean consumeLiteral(String literal) {
+        if (limit - pos < literal.length()) {
+            return false;
+        }
+        for (int i = 0; i < literal.length(); i++) {
+            if (in.get(pos + i) != literal.charAt(i)) {
+                return false;
+            }
+        }
+        pos += literal.length();
+        return true;
+    }
+
+    private void expect(char c) throws MalformedRequestException {
+        if (!consumeIf(c)) {
+            throw malformed(pos < limit ? "Expected '" + c + "'" : "Unexpected end of request, expected '" + c + "'");
+        }
+    }
+
+    private boolean consumeIf(char c) {
+        skipWhitespace();
+        if (pos < limit && in.get(pos) == c) {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+
+    private void skipWhitespace() {
+        while (pos < limit) {
+            byte b = in.get(pos);
+            if (b != ' ' && b != '\n' && b != '\r' && b != '\t') {
+                return;
+            }
+            pos++;
+        }
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    private String asciiString(int from, int to) {
+        byte[] bytes = new byte[to - from];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = in.get(from + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private MalformedRequestException malformed(String message) {
+        return new MalformedRequestException(message, pos - offset);
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static byte[][] names(Enum<?>[] constants) {
+        byte[][] names = new byte[constants.length][];
+        for (int i = 0; i < constants.length; i++) {
+            names[i] = ascii(constants[i].name());
+        }
+        return names;
+    }
+}
@@ -0,0 +1,14 @@
+package de.fhg.ise.gateway.interfaces.ems.DTO;
+
+/**
+ * To be thrown when a request from the EMS is no valid JSON or misses required fields
+ */
+public class MalformedRequestException extends Exception {
+    public MalformedRequestException(String message, int position) {
+        super(message + " (at byte " + position + ")");
+    }
+
+    public MalformedRequestException(String message) {
+        super(message);
+    }
+}
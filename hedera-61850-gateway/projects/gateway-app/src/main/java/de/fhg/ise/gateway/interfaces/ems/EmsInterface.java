@@ -2,6 +2,8 @@ package de.fhg.ise.gateway.interfaces.ems;
 
 import de.fhg.ise.gateway.interfaces.hedera.HederaRefresh;
 
+import java.time.Duration;
+
 /**
  * Basic interface to the Engery Management System (EMS).
  * <p>
@@ -13,6 +15,14 @@ public interface EmsInterface {
 
     void start(HederaRefresh hederaApi);
 
+    /**
+     * Stops receiving requests from the EMS and closes the connection to it
+     *
+     * @param timeout
+     *         time to wait for the connection to be closed cleanly
+     */
+    void stop(Duration timeout) throws Exception;
+
     /**
      * Forward a new request from the EMS to HEDERA
      *
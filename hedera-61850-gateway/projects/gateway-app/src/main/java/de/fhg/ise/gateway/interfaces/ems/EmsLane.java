@@ -0,0 +1,100 @@
+package de.fhg.ise.gateway.interfaces.ems;
+
+import de.fhg.ise.gateway.metrics.Counter;
+import de.fhg.ise.gateway.metrics.GatewayMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Processes the messages of one topic filter (or of one other source of requests) in order of their arrival on a
+ * thread of its own. Lanes run in parallel, so a slow or noisy EMS only delays its own requests.
+ * <p>
+ * At most {@code capacity} messages wait in a lane. Messages arriving at a full lane are dropped (and counted in
+ * {@code gateway_ems_lane_dropped_total}) instead of blocking the MQTT client, which serves all lanes.
+ */
+class EmsLane<T> {
+
+    private static final Logger log = LoggerFactory.getLogger(EmsLane.class);
+
+    private final String topicFilter;
+    private final ThreadPoolExecutor executor;
+    private final Consumer<T> handler;
+    private final Counter dropped;
+
+    EmsLane(String topicFilter, int capacity, Consumer<T> handler) {
+        this.topicFilter = topicFilter;
+        this.handler = handler;
+        this.executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(capacity),
+                runnable -> new Thread(runnable, "ems-lane-" + topicFilter));
+        this.dropped = GatewayMetrics.REGISTRY.counter("gateway_ems_lane_dropped_total",
+                "Messages from the EMS dropped because their lane was full", "lane", topicFilter);
+        GatewayMetrics.REGISTRY.gauge("gateway_ems_lane_queued", "Messages from the EMS waiting in their lane",
+                () -> executor.getQueue().size(), "lane", topicFilter);
+    }
+
+    /**
+     * @return false if the message was dropped because the lane is full or stopped
+     */
+    boolean offer(T message) {
+        try {
+            executor.execute(new Task(message));
+            return true;
+        } catch (RejectedExecutionException e) {
+            dropped.increment();
+            log.error("Dropping message on topic '{}': {} messages are waiting already", topicFilter,
+                    executor.getQueue().size());
+            return false;
+        }
+    }
+
+    /**
+     * Stops accepting messages. The message that is processed currently is finished, the messages still waiting are
+     * not processed but returned.
+     */
+    @SuppressWarnings("unchecked")
+    List<T> stop() {
+        List<Runnable> waiting = new ArrayList<>();
+        executor.getQueue().drainTo(waiting);
+        executor.shutdown();
+        List<T> messages = new ArrayList<>(waiting.size());
+        for (Runnable task : waiting) {
+            messages.add(((Task) task).message);
+        }
+        return messages;
+    }
+
+    String getTopicFilter() {
+        return topicFilter;
+    }
+
+    @Override
+    public String toString() {
+        return "EmsLane{" + "topicFilter='" + topicFilter + '\'' + ", capacity=" + (executor.getQueue().size()
+                + executor.getQueue().remainingCapacity()) + '}';
+    }
+
+    private class Task implements Runnable {
+        final T message;
+
+        Task(T message) {
+            this.message = message;
+        }
+
+        @Override
+        public void run() {
+            try {
+                handler.accept(message);
+            } catch (Exception e) {
+                log.error("Unable to process message on topic '{}'", topicFilter, e);
+            }
+        }
+    }
+}
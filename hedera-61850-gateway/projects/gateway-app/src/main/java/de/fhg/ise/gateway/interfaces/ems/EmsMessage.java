@@ -0,0 +1,69 @@
+package de.fhg.ise.gateway.interfaces.ems;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A message as received from the EMS, independent of the MQTT version
+ */
+class EmsMessage {
+
+    private final String topic;
+    private final ByteBuffer payload;
+    private final String responseTopic;
+    private final ByteBuffer correlationData;
+    private final Runnable acknowledgement;
+    private final AtomicBoolean acknowledged = new AtomicBoolean();
+
+    EmsMessage(String topic, ByteBuffer payload) {
+        this(topic, payload, null, null, null);
+    }
+
+    /**
+     * @param acknowledgement
+     *         acknowledges the message at the broker, null if it was acknowledged on receipt already
+     */
+    EmsMessage(String topic, ByteBuffer payload, String responseTopic, ByteBuffer correlationData,
+            Runnable acknowledgement) {
+        this.topic = topic;
+        this.payload = payload;
+        this.responseTopic = responseTopic;
+        this.correlationData = correlationData;
+        this.acknowledgement = acknowledgement;
+    }
+
+    String getTopic() {
+        return topic;
+    }
+
+    /**
+     * @return the read-only payload as received, without a copy
+     */
+    ByteBuffer getPayload() {
+        return payload;
+    }
+
+    /**
+     * @return the MQTT 5 response topic the EMS wants the status of this request on, or null
+     */
+    String getResponseTopic() {
+        return responseTopic;
+    }
+
+    /**
+     * @return the MQTT 5 correlation data to be echoed in the status of this request, or null
+     */
+    ByteBuffer getCorrelationData() {
+        return correlationData;
+    }
+
+    /**
+     * Acknowledges the message at the broker, once. Until then, the broker redelivers the message if the gateway
+     * disconnects.
+     */
+    void acknowledge() {
+        if (acknowledgement != null && acknowledged.compareAndSet(false, true)) {
+            acknowledgement.run();
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package de.fhg.ise.gateway.interfaces.ems;
+
+import com.google.gson.JsonObject;
+import de.fhg.ise.IEC61850.client.tracing.Span;
+import de.fhg.ise.IEC61850.client.tracing.Tracing;
+import de.fhg.ise.gateway.interfaces.ems.DTO.BatchExtensionRequest;
+import de.fhg.ise.gateway.interfaces.ems.DTO.DecodedExtensionRequest;
+import de.fhg.ise.gateway.interfaces.ems.DTO.ExtensionRequest;
+import de.fhg.ise.gateway.interfaces.ems.DTO.ExtensionRequestDecoder;
+import de.fhg.ise.gateway.interfaces.ems.DTO.MalformedRequestException;
+import de.fhg.ise.gateway.interfaces.hedera.HederaRefresh;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+
+/**
+ * The part of processing a request from the EMS that is the same for every transport: reporting its status and
+ * handing it to {@link HederaRefresh}.
+ */
+final class EmsRequestPipeline {
+
+    private static final Logger log = LoggerFactory.getLogger(EmsRequestPipeline.class);
+
+    private EmsRequestPipeline() {
+    }
+
+    /**
+     * Sends the status of a request back to the EMS, the way of the transport it came from. Must not block for long.
+     */
+    @FunctionalInterface
+    interface StatusSink {
+        void send(String correlationId, RequestStatus status, String detail);
+    }
+
+    /**
+     * Decodes a request or, if the payload is one, a batch of requests (see {@link BatchExtensionRequest})
+     *
+     * @param defaultCorrelationId
+     *         the correlation id unless the EMS chose one
+     */
+    static Pending decode(ByteBuffer payload, ExtensionRequestDecoder decoder, DecodedExtensionRequest scratch,
+            String defaultCorrelationId, StatusSink sink) throws MalformedRequestException {
+        if (decoder.isBatch(payload)) {
+            BatchExtensionRequest batch = decoder.decodeBatch(payload, scratch);
+            return new Pending(null, batch, batch.getCorrelationId(), defaultCorrelationId, sink);
+        }
+        ExtensionRequest request = decoder.decode(payload, scratch).toExtensionRequest();
+        return new Pending(request, null, request.getCorrelationId(), defaultCorrelationId, sink);
+    }
+
+    /**
+     * @return the status of a request as it is sent to the EMS
+     */
+    static JsonObject toJson(String correlationId, RequestStatus status, String detail) {
+        JsonObject event = new JsonObject();
+        event.addProperty("correlationId", correlationId);
+        event.addProperty("status", status.name());
+        event.addProperty("final", status.isFinal());
+        event.addProperty("detail", detail);
+        event.addProperty("timestamp", Instant.now().toString());
+        return event;
+    }
+
+    /**
+     * A request or batch that was decoded as soon as it was received, e.g. waiting in a {@link EmsLane}. Its
+     * correlation id is known before processing starts, so it can be told to the EMS right away.
+     */
+    static final class Pending {
+        // exactly one of them is set
+        final ExtensionRequest request;
+        final BatchExtensionRequest batch;
+        final String correlationId;
+        final StatusSink sink;
+
+        private Pending(ExtensionRequest request, BatchExtensionRequest batch, String chosenCorrelationId,
+                String defaultCorrelationId, StatusSink sink) {
+            this.request = request;
+            this.batch = batch;
+            this.correlationId = chosenCorrelationId != null ? chosenCorrelationId : defaultCorrelationId;
+            this.sink = sink;
+        }
+
+        /**
+         * Processes the request in a trace with its correlation id
+         */
+        void process(HederaRefresh hederaRefresh, String transport) {
+            try (Span trace = Tracing.startTrace("ems-request", correlationId)) {
+                trace.setAttribute("transport", transport);
+                forward(hederaRefresh, transport);
+            } catch (Exception e) {
+                log.error("Unable to forward new EMS request to HEDERA / error occured while processing", e);
+            }
+        }
+
+        /**
+         * Hands the request to HEDERA on the current thread
+         *
+         * @param transport
+         *         the source of the request, see {@link de.fhg.ise.gateway.interfaces.der.PriorityBands}
+         */
+        void forward(HederaRefresh hederaRefresh, String transport) {
+            RequestStatusListener listener = (status, detail) -> sink.send(correlationId, status, detail);
+            listener.onStatus(RequestStatus.RECEIVED, null);
+            if (batch != null) {
+                hederaRefresh.newBatchFromEms(batch, transport, listener);
+            }
+            else {
+                hederaRefresh.newRequestFromEms(request, transport, listener);
+            }
+        }
+
+        /**
+         * Keeps the request to be processed after the next start
+         */
+        void defer(HederaRefresh hederaRefresh) {
+            if (batch != null) {
+                hederaRefresh.defer(batch);
+            }
+            else {
+                hederaRefresh.defer(request);
+            }
+            sink.send(correlationId, RequestStatus.DEFERRED, "Gateway is shutting down");
+        }
+    }
+}
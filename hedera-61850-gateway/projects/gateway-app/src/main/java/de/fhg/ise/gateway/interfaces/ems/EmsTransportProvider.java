@@ -0,0 +1,22 @@
+package de.fhg.ise.gateway.interfaces.ems;
+
+import org.ini4j.Ini;
+
+/**
+ * Service provider interface for transports to the EMS. Besides the built-in transports (see
+ * {@link de.fhg.ise.gateway.configuration.EmsInterfaceSettings}), transports on the class path are found via
+ * {@link java.util.ServiceLoader}: list the implementing class in
+ * {@code META-INF/services/de.fhg.ise.gateway.interfaces.ems.EmsTransportProvider}.
+ */
+public interface EmsTransportProvider {
+
+    /**
+     * @return the value of {@code type} in the section {@code [ems-interface]} that selects this transport
+     */
+    String getType();
+
+    /**
+     * Creates the transport with the settings parsed from the {@link Ini}
+     */
+    EmsInterface createInterface(Ini ini);
+}
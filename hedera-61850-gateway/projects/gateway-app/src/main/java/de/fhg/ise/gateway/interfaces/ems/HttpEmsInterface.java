@@ -0,0 +1,213 @@
+package de.fhg.ise.gateway.interfaces.ems;
+
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import de.fhg.ise.gateway.Context;
+import de.fhg.ise.gateway.configuration.Settings;
+import de.fhg.ise.gateway.interfaces.ems.DTO.DecodedExtensionRequest;
+import de.fhg.ise.gateway.interfaces.ems.DTO.ExtensionRequestDecoder;
+import de.fhg.ise.gateway.interfaces.ems.DTO.MalformedRequestException;
+import de.fhg.ise.gateway.interfaces.hedera.HederaRefresh;
+import org.ini4j.Ini;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An interface to the EMS using HTTP push, for an EMS that cannot do MQTT. Served by the HTTP server of the JDK.
+ * <p>
+ * The EMS posts a request (JSON as for MQTT) to {@value #PATH}. It is answered with 202 and the correlation id of the
+ * request as soon as it is queued, with 400 if it is malformed and with 503 if too many requests are waiting. The
+ * status of the request can be polled at {@value #PATH}{@code /<correlationId>}.
+ */
+public class HttpEmsInterface implements EmsInterface {
+
+    static final String PATH = "/requests";
+    private static final int MAX_REQUEST_BYTES = 1 << 20;
+    private static final int REMEMBERED_STATUSES = 1024;
+
+    private static final Logger log = LoggerFactory.getLogger(HttpEmsInterface.class);
+
+    private final HttpSettings settings;
+    private final Map<String, JsonObject> statuses = new LinkedHashMap<String, JsonObject>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, JsonObject> eldest) {
+            return size() > REMEMBERED_STATUSES;
+        }
+    };
+    private HttpServer server;
+    private ExecutorService executor;
+    private EmsLane<EmsRequestPipeline.Pending> lane;
+    private HederaRefresh hederaRefresh;
+
+    public HttpEmsInterface(Ini ini) {
+        settings = new HttpSettings(ini);
+    }
+
+    @Override
+    public void start(HederaRefresh hederaApi) {
+        this.hederaRefresh = hederaApi;
+        log.info("Starting {}", this);
+        lane = new EmsLane<>("http", settings.laneCapacity, pending -> pending.process(hederaApi, "http"));
+        try {
+            server = HttpServer.create(new InetSocketAddress(settings.bindAddress, settings.port), 0);
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to serve EMS requests at port " + settings.port, e);
+        }
+        executor = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "ems-http"));
+        server.setExecutor(executor);
+        server.createContext(PATH, this::handle);
+        server.start();
+        log.info("Accepting EMS requests at http://{}:{}{}", settings.bindAddress, getPort(), PATH);
+    }
+
+    int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String path = exchange.getRequestURI().getPath();
+            if ("POST".equals(exchange.getRequestMethod()) && PATH.equals(path)) {
+                post(exchange);
+            }
+            else if ("GET".equals(exchange.getRequestMethod()) && path.startsWith(PATH + "/")) {
+                JsonObject status;
+                synchronized (statuses) {
+                    status = statuses.get(path.substring(PATH.length() + 1));
+                }
+                if (status == null) {
+                    exchange.sendResponseHeaders(404, -1);
+                }
+                else {
+                    respond(exchange, 200, status);
+                }
+            }
+            else {
+                exchange.sendResponseHeaders(405, -1);
+            }
+        }
+    }
+
+    private void post(HttpExchange exchange) throws IOException {
+        byte[] body = readBody(exchange.getRequestBody());
+        if (body == null) {
+            exchange.sendResponseHeaders(413, -1);
+            return;
+        }
+        EmsRequestPipeline.Pending pending;
+        try {
+            pending = EmsRequestPipeline.decode(ByteBuffer.wrap(body), new ExtensionRequestDecoder(),
+                    new DecodedExtensionRequest(), UUID.randomUUID().toString(), this::remember);
+        } catch (MalformedRequestException e) {
+            log.error("Rejected malformed request from the EMS: {}", e.getMessage());
+            respond(exchange, 400, EmsRequestPipeline.toJson(null, RequestStatus.REJECTED, e.getMessage()));
+            return;
+        }
+        if (!lane.offer(pending)) {
+            respond(exchange, 503, EmsRequestPipeline.toJson(pending.correlationId, RequestStatus.DROPPED,
+                    "Too many requests waiting"));
+            return;
+        }
+        JsonObject accepted = new JsonObject();
+        accepted.addProperty("correlationId", pending.correlationId);
+        accepted.addProperty("status", PATH + "/" + pending.correlationId);
+        respond(exchange, 202, accepted);
+    }
+
+    /**
+     * @return null if the body is too large
+     */
+    private static byte[] readBody(InputStream in) throws IOException {
+        byte[] body = in.readNBytes(MAX_REQUEST_BYTES + 1);
+        return body.length > MAX_REQUEST_BYTES ? null : body;
+    }
+
+    private void remember(String correlationId, RequestStatus status, String detail) {
+        JsonObject event = EmsRequestPipeline.toJson(correlationId, status, detail);
+        synchronized (statuses) {
+            statuses.put(correlationId, event);
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int code, JsonObject json) throws IOException {
+        byte[] body = Context.GSON.toJson(json).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(code, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    @Override
+    public void stop(Duration timeout) throws InterruptedException {
+        if (server == null) {
+            return;
+        }
+        long deadline = System.nanoTime() + timeout.toNanos();
+        server.stop(0);
+        executor.shutdown();
+        executor.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        // requests still waiting are processed after the next start
+        for (EmsRequestPipeline.Pending pending : lane.stop()) {
+            pending.defer(hederaRefresh);
+        }
+        log.info("Stopped accepting EMS requests via HTTP");
+    }
+
+    @Override
+    public void onNewRequestFromEms(HederaRefresh hederaApi, String message) {
+        try {
+            EmsRequestPipeline.decode(ByteBuffer.wrap(message.getBytes(StandardCharsets.UTF_8)),
+                    new ExtensionRequestDecoder(), new DecodedExtensionRequest(), UUID.randomUUID().toString(),
+                    this::remember).process(hederaApi, "http");
+        } catch (MalformedRequestException e) {
+            log.error("Rejected malformed request from the EMS: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "HttpEmsInterface{" + "settings=" + settings + '}';
+    }
+
+    static class HttpSettings {
+        final String bindAddress;
+        final int port;
+        final int laneCapacity;
+
+        HttpSettings(Ini ini) {
+            try {
+                port = Integer.parseInt(Settings.getNonNull(ini, "ems-http", "port"));
+                String configuredBindAddress = ini.get("ems-http", "bindAddress");
+                // only co-located EMSs by default, the endpoint is not authenticated
+                bindAddress = configuredBindAddress == null ? "127.0.0.1" : configuredBindAddress;
+                String capacity = ini.get("ems-http", "laneCapacity");
+                laneCapacity = capacity == null ? MqttEmsInterface.MqttSettings.DEFAULT_LANE_CAPACITY
+                        : Integer.parseInt(capacity);
+            } catch (Exception e) {
+                throw new RuntimeException("Unable to parse settings", e);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "HttpSettings{" + "bindAddress='" + bindAddress + '\'' + ", port=" + port + ", laneCapacity="
+                    + laneCapacity + '}';
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package de.fhg.ise.gateway.interfaces.ems;
+
+import com.hivemq.client.mqtt.MqttGlobalPublishFilter;
+import com.hivemq.client.mqtt.datatypes.MqttQos;
+import com.hivemq.client.mqtt.mqtt5.Mqtt5AsyncClient;
+import com.hivemq.client.mqtt.mqtt5.Mqtt5Client;
+import org.ini4j.Ini;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * An interface to the EMS using MQTT 5, for running several gateway replicas side by side.
+ * <p>
+ * If a share group is configured, the replicas subscribe to {@code $share/<group>/<topic>}: the broker delivers each
+ * request to one replica of the group only, and to the remaining ones if a replica is gone. Every replica connects
+ * with a stable client id and a persistent session, so the broker keeps its subscriptions and QoS 1 requests across
+ * short connection losses.
+ * <p>
+ * The receive maximum limits the requests the broker sends before they are acknowledged. With manual acknowledgement,
+ * it defaults to the capacity of all lanes, so the broker holds back requests instead of the gateway dropping them.
+ * <p>
+ * The status of a request is published to its response topic, echoing its correlation data, if the EMS set one.
+ */
+public class Mqtt5EmsInterface extends MqttEmsInterface {
+
+    private final Mqtt5Settings mqtt5Settings;
+    private Mqtt5AsyncClient client;
+
+    public Mqtt5EmsInterface(Ini ini) {
+        super(ini);
+        mqtt5Settings = new Mqtt5Settings(ini);
+    }
+
+    @Override
+    protected String getSubscriptionTopicFilter(String topic) {
+        if (mqtt5Settings.shareGroup == null) {
+            return topic;
+        }
+        return "$share/" + mqtt5Settings.shareGroup + "/" + topic;
+    }
+
+    @Override
+    protected CompletableFuture<?> connect(Consumer<EmsMessage> onMessage) {
+        client = Mqtt5Client.builder()
+                .identifier(settings.getStableClientId())
+                .automaticReconnect()
+                .maxDelay(60, TimeUnit.SECONDS)
+                .applyAutomaticReconnect()
+                .serverHost(this.settings.host)
+                .serverPort(this.settings.port)
+                .buildAsync();
+        client.publishes(MqttGlobalPublishFilter.ALL, publish -> onMessage.accept(
+                new EmsMessage(publish.getTopic().toString(), publish.getPayload().orElse(EMPTY_PAYLOAD),
+                        publish.getResponseTopic().map(Object::toString).orElse(null),
+                        publish.getCorrelationData().orElse(null), settings.manualAck ? publish::acknowledge : null)),
+                settings.manualAck);
+
+        return client.connectWith()
+                .cleanStart(false)
+                .sessionExpiryInterval(mqtt5Settings.sessionExpirySeconds)
+                .restrictions()
+                .receiveMaximum(mqtt5Settings.getReceiveMaximum(settings))
+                .sendMaximum(mqtt5Settings.sendMaximum)
+                .applyRestrictions()
+                .simpleAuth()
+                .username(this.settings.user)
+                .password(this.settings.password.getBytes())
+                .applySimpleAuth()
+                .send();
+    }
+
+    @Override
+    protected CompletableFuture<?> subscribe(String topicFilter) {
+        return client.subscribeWith().topicFilter(topicFilter).qos(settings.qos).send();
+    }
+
+    @Override
+    protected CompletableFuture<?> publish(String topic, byte[] payload, ByteBuffer correlationData) {
+        return client.publishWith()
+                .topic(topic)
+                .payload(payload)
+                .qos(MqttQos.AT_LEAST_ONCE)
+                .contentType("application/json")
+                .correlationData(correlationData)
+                .send();
+    }
+
+    @Override
+    protected CompletableFuture<?> unsubscribe(String topicFilter) {
+        return client.unsubscribeWith().topicFilter(topicFilter).send();
+    }
+
+    @Override
+    protected CompletableFuture<?> disconnect() {
+        return client.disconnect();
+    }
+
+    @Override
+    protected boolean isStarted() {
+        return client != null;
+    }
+
+    @Override
+    protected boolean isSessionPersistent() {
+        return mqtt5Settings.sessionExpirySeconds > 0;
+    }
+
+    @Override
+    public String toString() {
+        return "Mqtt5EmsInterface{" + "settings=" + settings + ", " + mqtt5Settings + '}';
+    }
+
+    static class Mqtt5Settings {
+        static final long DEFAULT_SESSION_EXPIRY_SECONDS = 3600;
+        // the maximum of receive and send maximum in MQTT 5, i.e. no limit
+        static final int NO_LIMIT = 65535;
+
+        /**
+         * Null if the topics are not shared between replicas
+         */
+        final String shareGroup;
+        final long sessionExpirySeconds;
+        /**
+         * Null for the default, see {@link #getReceiveMaximum(MqttSettings)}
+         */
+        final Integer receiveMaximum;
+        /**
+         * QoS 1 and 2 status messages sent at most before they are acknowledged by the broker
+         */
+        final int sendMaximum;
+
+        Mqtt5Settings(Ini ini) {
+            shareGroup = ini.get("ems-interface", "shareGroup");
+            String sessionExpiry = ini.get("ems-interface", "sessionExpirySeconds");
+            sessionExpirySeconds = sessionExpiry == null ? DEFAULT_SESSION_EXPIRY_SECONDS : Long.parseLong(
+                    sessionExpiry);
+            String configuredReceiveMaximum = ini.get("ems-interface", "receiveMaximum");
+            receiveMaximum = configuredReceiveMaximum == null ? null : Integer.valueOf(configuredReceiveMaximum);
+            String configuredSendMaximum = ini.get("ems-interface", "sendMaximum");
+            sendMaximum = configuredSendMaximum == null ? NO_LIMIT : Integer.parseInt(
+                    configuredSendMaximum);
+            if (shareGroup != null && (shareGroup.isEmpty() || shareGroup.matches(".*[/+#].*"))) {
+                throw new RuntimeException("Invalid shareGroup '" + shareGroup + "': must not contain '/', '+' or '#'");
+            }
+        }
+
+        /**
+         * @return the configured receive maximum or, with manual acknowledgement, the number of requests the lanes
+         *         can hold
+         */
+        int getReceiveMaximum(MqttSettings settings) {
+            if (receiveMaximum != null) {
+                return receiveMaximum;
+            }
+            if (!settings.manualAck) {
+                return NO_LIMIT;
+            }
+            // every lane holds one request that is processed plus its waiting ones
+            int capacity = 0;
+            for (String topic : settings.topics) {
+                capacity += settings.getLaneCapacity(topic) + 1;
+            }
+            return Math.min(capacity, NO_LIMIT);
+        }
+
+        @Override
+        public String toString() {
+            return "Mqtt5Settings{" + "shareGroup='" + shareGroup + '\'' + ", sessionExpirySeconds="
+                    + sessionExpirySeconds + ", receiveMaximum=" + receiveMaximum + ", sendMaximum=" + sendMaximum
+                    + '}';
+        }
+    }
+}
@@ -1,25 +1,71 @@
 package de.fhg.ise.gateway.interfaces.ems;
 
+import com.google.gson.JsonObject;
+import com.hivemq.client.mqtt.MqttGlobalPublishFilter;
+import com.hivemq.client.mqtt.datatypes.MqttQos;
+import com.hivemq.client.mqtt.datatypes.MqttTopic;
+import com.hivemq.client.mqtt.datatypes.MqttTopicFilter;
 import com.hivemq.client.mqtt.mqtt3.Mqtt3AsyncClient;
 import com.hivemq.client.mqtt.mqtt3.Mqtt3Client;
+import de.fhg.ise.IEC61850.client.tracing.Span;
+import de.fhg.ise.IEC61850.client.tracing.Tracing;
+import de.fhg.ise.gateway.Context;
 import de.fhg.ise.gateway.configuration.Settings;
-import de.fhg.ise.gateway.interfaces.ems.DTO.ExtensionRequest;
+import de.fhg.ise.gateway.interfaces.ems.DTO.DecodedExtensionRequest;
+import de.fhg.ise.gateway.interfaces.ems.DTO.ExtensionRequestDecoder;
+import de.fhg.ise.gateway.interfaces.ems.DTO.MalformedRequestException;
 import de.fhg.ise.gateway.interfaces.hedera.HederaRefresh;
+import de.fhg.ise.gateway.metrics.GatewayMetrics;
 import org.ini4j.Ini;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 /**
  * An interface to the local Energy Management System to be controlled by HEDERA. Implemented using MQTT communication.
+ * <p>
+ * This class uses MQTT 3.1.1. The protocol specific parts (connecting, subscribing, publishing, disconnecting) are
+ * separated, see {@link Mqtt5EmsInterface}.
+ * <p>
+ * The progress of every request is published asynchronously as JSON (see {@link RequestStatus}) to the response topic
+ * of the request (MQTT 5 only) or else to the configured status topic. A status carries the correlation id chosen by
+ * the EMS ({@code correlationId} in the request) or, if there is none, the correlation id of the gateway logs.
+ * <p>
+ * With manual acknowledgement, a request is acknowledged at the broker only once it was journaled by
+ * {@link HederaRefresh} (see {@link RequestStatus#QUEUED}) or got its final status, e.g. was rejected or dropped. A
+ * request that could not be journaled is acknowledged with its final status. Requests still waiting in a lane are left
+ * unacknowledged on shutdown, so the broker delivers them again (to this gateway after its restart, or to another
+ * member of its share group). This needs a persistent session, so the client id is stable then. The subscriptions are
+ * kept in the session on shutdown, and received messages are handled by one callback registered before connecting, so
+ * requests the broker kept for the session are not missed before subscribing again.
  */
 public class MqttEmsInterface implements EmsInterface {
 
-    private final MqttSettings settings;
+    protected final MqttSettings settings;
+    private Mqtt3AsyncClient client;
+    private HederaRefresh hederaRefresh;
+    // by the topic filter of the settings, a request goes to the lane whose filter matches its topic
+    private final Map<MqttTopicFilter, EmsLane<EmsMessage>> lanes = new LinkedHashMap<>();
 
     private static final Logger log = LoggerFactory.getLogger(MqttEmsInterface.class);
+    protected static final ByteBuffer EMPTY_PAYLOAD = ByteBuffer.allocate(0).asReadOnlyBuffer();
 
     public MqttEmsInterface(Ini ini) {
         settings = new MqttSettings(ini);
@@ -27,70 +73,302 @@ public class MqttEmsInterface implements EmsInterface {
 
     @Override
     public void onNewRequestFromEms(HederaRefresh hederaApi, String message) {
+        onNewRequestFromEms(hederaApi, new EmsMessage(null, ByteBuffer.wrap(message.getBytes(StandardCharsets.UTF_8))),
+                new ExtensionRequestDecoder(), new DecodedExtensionRequest());
+    }
+
+    /**
+     * Forward a new request from the EMS to HEDERA, decoding it directly from the UTF-8 bytes of the MQTT payload
+     */
+    void onNewRequestFromEms(HederaRefresh hederaApi, EmsMessage message, ExtensionRequestDecoder decoder,
+            DecodedExtensionRequest decoded) {
         try {
-            ExtensionRequest extensionRequest = ExtensionRequest.fromJson(message);
-            hederaApi.newRequestFromEms(extensionRequest);
+            EmsRequestPipeline.Pending pending;
+            try (Span span = Tracing.span("json-parse")) {
+                pending = EmsRequestPipeline.decode(message.getPayload(), decoder, decoded,
+                        Tracing.currentCorrelationId(), (correlationId, status, detail) -> {
+                            if (status == RequestStatus.QUEUED || status.isFinal()) {
+                                message.acknowledge();
+                            }
+                            publishStatus(message, correlationId, status, detail);
+                        });
+            } catch (MalformedRequestException e) {
+                GatewayMetrics.MQTT_REJECTED.increment();
+                log.error("Rejected malformed request from the EMS: {}", e.getMessage());
+                message.acknowledge();
+                publishStatus(message, Tracing.currentCorrelationId(), RequestStatus.REJECTED, e.getMessage());
+                return;
+            }
+            // acknowledged by its status, a duplicate is told the status of the original request
+            pending.forward(hederaApi, "mqtt");
         } catch (Exception e) {
+            // left unacknowledged unless it was journaled already, the broker delivers it again
             log.error("Unable to forward new EMS request to HEDERA / error occured while processing", e);
         }
     }
 
     @Override
     public void start(HederaRefresh hederaApi) {
+        this.hederaRefresh = hederaApi;
+
+        log.info("Starting {}", this);
+
+        for (String topic : this.settings.topics) {
+            createLane(hederaApi, topic, this.settings.getLaneCapacity(topic));
+        }
+        // requests kept in a persistent session are delivered right after connecting, before subscribing again
+        connect(this::dispatch).whenComplete((ack, throwable) -> {
+            if (throwable != null) {
+                log.warn("Unable to connect", throwable);
+            }
+            else {
+                log.debug("Connected to broker {} at port {} with user {} successfully", this.settings.host,
+                        this.settings.port, this.settings.user);
+            }
+        });
+
+        for (String topic : this.settings.topics) {
+            String topicFilter = getSubscriptionTopicFilter(topic);
+            subscribe(topicFilter).whenComplete(((subAck, throwable) -> {
+                if (throwable != null) {
+                    log.warn("Unable to subscribe to topic '{}'", topicFilter, throwable);
+                }
+                else {
+                    log.info("Successfully subscribed to topic '{}' on host '{}'. Awaiting messages.", topicFilter,
+                            this.settings.host);
+                }
+            }));
+        }
+    }
+
+    private void createLane(HederaRefresh hederaApi, String topic, int laneCapacity) {
+        // every lane decodes with its own decoder, so lanes do not need to synchronize
+        ExtensionRequestDecoder decoder = new ExtensionRequestDecoder();
+        DecodedExtensionRequest decoded = new DecodedExtensionRequest();
+        EmsLane<EmsMessage> lane = new EmsLane<>(topic, laneCapacity, message -> {
+            // every message from the EMS gets its own correlation id, it is part of all logs until processing is done
+            try (Span trace = Tracing.startTrace("ems-request")) {
+                trace.setAttribute("topic", message.getTopic());
+                onNewRequestFromEms(hederaApi, message, decoder, decoded);
+            }
+        });
+        lanes.put(MqttTopicFilter.of(topic), lane);
+    }
+
+    /**
+     * Passes a message received by the client to the lane of its topic
+     */
+    private void dispatch(EmsMessage message) {
+        GatewayMetrics.MQTT_RECEIVED.increment();
+        if (log.isDebugEnabled()) {
+            log.debug("Received payload '{}' on topic '{}'",
+                    StandardCharsets.UTF_8.decode(message.getPayload().duplicate()), message.getTopic());
+        }
+        MqttTopic topic = MqttTopic.of(message.getTopic());
+        EmsLane<EmsMessage> lane = null;
+        for (Map.Entry<MqttTopicFilter, EmsLane<EmsMessage>> candidate : lanes.entrySet()) {
+            if (candidate.getKey().matches(topic)) {
+                lane = candidate.getValue();
+                break;
+            }
+        }
+        if (lane == null) {
+            // e.g. of a subscription removed from the settings, still in the persistent session
+            log.warn("Ignoring message on topic '{}', no topic configured matches it", message.getTopic());
+            message.acknowledge();
+            return;
+        }
+        if (!lane.offer(message)) {
+            // an unacknowledged message would block the receive window of the session until the next reconnect
+            message.acknowledge();
+            publishStatus(message, correlationIdOf(message), RequestStatus.DROPPED,
+                    "Too many requests waiting on this topic");
+        }
+    }
 
-        log.info("Starting MQTT EMS interface with settings {}", this.settings);
+    /**
+     * @return the correlation id chosen by the EMS, null if there is none or the request is malformed. Decodes with
+     *         decoders of its own, the lanes' ones are busy on other threads.
+     */
+    private static String correlationIdOf(EmsMessage message) {
+        try {
+            return EmsRequestPipeline.decode(message.getPayload().duplicate(), new ExtensionRequestDecoder(),
+                    new DecodedExtensionRequest(), null, (correlationId, status, detail) -> {
+                    }).correlationId;
+        } catch (MalformedRequestException e) {
+            return null;
+        }
+    }
 
-        Mqtt3AsyncClient client = Mqtt3Client.builder()
-                .identifier(UUID.randomUUID().toString())
+    /**
+     * Publishes the status of a request without waiting for the broker. Does nothing if there is neither a response
+     * topic nor a status topic.
+     */
+    void publishStatus(EmsMessage request, String correlationId, RequestStatus status, String detail) {
+        String topic = request.getResponseTopic() != null ? request.getResponseTopic() : this.settings.statusTopic;
+        if (topic == null || !isStarted()) {
+            return;
+        }
+        JsonObject event = EmsRequestPipeline.toJson(correlationId, status, detail);
+        event.addProperty("requestTopic", request.getTopic());
+        publish(topic, Context.GSON.toJson(event).getBytes(StandardCharsets.UTF_8),
+                request.getCorrelationData()).whenComplete((result, throwable) -> {
+            if (throwable != null) {
+                log.warn("Unable to publish status {} to topic '{}': {}", status, topic, throwable.getMessage());
+            }
+        });
+        log.debug("Published status {} ({}) to topic '{}'", status, detail, topic);
+    }
+
+    /**
+     * @return the topic filter to subscribe to for a topic filter from the settings
+     */
+    protected String getSubscriptionTopicFilter(String topic) {
+        return topic;
+    }
+
+    /**
+     * @param onMessage
+     *         called with every message received, registered before connecting
+     */
+    protected CompletableFuture<?> connect(Consumer<EmsMessage> onMessage) {
+        client = Mqtt3Client.builder()
+                .identifier(this.settings.manualAck ? this.settings.getStableClientId() : UUID.randomUUID().toString())
                 .automaticReconnect()
                 .maxDelay(60, TimeUnit.SECONDS)
                 .applyAutomaticReconnect()
                 .serverHost(this.settings.host)
                 .serverPort(this.settings.port)
                 .buildAsync();
+        client.publishes(MqttGlobalPublishFilter.ALL, publish -> onMessage.accept(
+                new EmsMessage(publish.getTopic().toString(), publish.getPayload().orElse(EMPTY_PAYLOAD), null, null,
+                        this.settings.manualAck ? publish::acknowledge : null)), this.settings.manualAck);
 
-        client.connectWith()
+        return client.connectWith()
+                .cleanSession(!this.settings.manualAck)
                 .simpleAuth()
                 .username(this.settings.user)
                 .password(this.settings.password.getBytes())
                 .applySimpleAuth()
-                .send()
-                .whenComplete((ack, throwable) -> {
-                    if (throwable != null) {
-                        log.warn("Unable to connect", throwable);
-                    }
-                    else {
-                        log.debug("Connected to broker {} at port {} with user {} successfully", this.settings.host,
-                                this.settings.port, this.settings.user);
-                    }
-                });
+                .send();
+    }
 
-        client.subscribeWith().topicFilter(this.settings.topic).callback(payload -> {
-            String payloadString = new String(payload.getPayloadAsBytes());
-            log.debug("Received payload '{}' on topic '{}'", payloadString, this.settings.topic);
-            onNewRequestFromEms(hederaApi, payloadString);
-        }).send().whenComplete(((mqtt3SubAck, throwable) -> {
-            if (throwable != null) {
-                log.warn("Unable to subscribe to topic '{}'", this.settings.topic, throwable);
+    /**
+     * Messages are passed to the callback registered by {@link #connect(Consumer)}
+     */
+    protected CompletableFuture<?> subscribe(String topicFilter) {
+        return client.subscribeWith().topicFilter(topicFilter).qos(this.settings.qos).send();
+    }
+
+    /**
+     * @param correlationData
+     *         ignored, MQTT 3 does not know correlation data
+     */
+    protected CompletableFuture<?> publish(String topic, byte[] payload, ByteBuffer correlationData) {
+        return client.publishWith().topic(topic).payload(payload).qos(MqttQos.AT_LEAST_ONCE).send();
+    }
+
+    protected CompletableFuture<?> unsubscribe(String topicFilter) {
+        return client.unsubscribeWith().topicFilter(topicFilter).send();
+    }
+
+    protected CompletableFuture<?> disconnect() {
+        return client.disconnect();
+    }
+
+    protected boolean isStarted() {
+        return client != null;
+    }
+
+    /**
+     * @return true if the broker keeps the subscriptions and unacknowledged requests while the gateway is gone
+     */
+    protected boolean isSessionPersistent() {
+        return this.settings.manualAck;
+    }
+
+    @Override
+    public void stop(Duration timeout) throws InterruptedException, ExecutionException, TimeoutException {
+        if (!isStarted()) {
+            return;
+        }
+        long deadline = System.nanoTime() + timeout.toNanos();
+        if (isSessionPersistent()) {
+            // the session keeps the subscriptions, so requests published until the restart are delivered then
+            log.debug("Keeping the subscriptions of the persistent session");
+        }
+        else {
+            for (String topic : this.settings.topics) {
+                String topicFilter = getSubscriptionTopicFilter(topic);
+                try {
+                    // unsubscribe first, so the broker sends no more messages while the client is disconnecting
+                    unsubscribe(topicFilter).get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                } catch (ExecutionException | TimeoutException e) {
+                    log.warn("Unable to unsubscribe from topic '{}': {}", topicFilter, e.getMessage());
+                }
             }
-            else {
-                log.info("Successfully subscribed to topic '{}' on host '{}'. Awaiting messages.", this.settings.topic,
-                        this.settings.host);
+        }
+
+        // requests still waiting in a lane are processed after the next start, by the broker delivering them again if
+        // they are not acknowledged
+        ExtensionRequestDecoder decoder = new ExtensionRequestDecoder();
+        DecodedExtensionRequest decoded = new DecodedExtensionRequest();
+        for (EmsLane<EmsMessage> lane : lanes.values()) {
+            List<EmsMessage> waiting = lane.stop();
+            if (this.settings.manualAck) {
+                log.info("Leaving {} waiting request(s) on topic '{}' to the broker", waiting.size(),
+                        lane.getTopicFilter());
+                continue;
             }
-        }));
+            for (EmsMessage message : waiting) {
+                try {
+                    EmsRequestPipeline.decode(message.getPayload(), decoder, decoded, null,
+                            (correlationId, status, detail) -> publishStatus(message, correlationId, status, detail))
+                            .defer(hederaRefresh);
+                } catch (MalformedRequestException e) {
+                    log.debug("Not deferring malformed request on topic '{}': {}", message.getTopic(),
+                            e.getMessage());
+                }
+            }
+        }
+
+        long remainingNanos = Math.max(0, deadline - System.nanoTime());
+        disconnect().get(remainingNanos, TimeUnit.NANOSECONDS);
+        log.info("Disconnected from broker {}", this.settings.host);
     }
 
     @Override
     public String toString() {
-        return "MqttEmsInterface{" + "settings=" + settings + '}';
+        return getClass().getSimpleName() + "{" + "settings=" + settings + '}';
     }
 
     static class MqttSettings {
+        static final int DEFAULT_LANE_CAPACITY = 16;
+        static final MqttQos DEFAULT_QOS = MqttQos.AT_LEAST_ONCE;
+
         final String host;
         final String user;
         final String password;
         final int port;
-        final String topic;
+        /**
+         * Topic filters, each one is processed in a {@link EmsLane} of its own
+         */
+        final List<String> topics;
+        /**
+         * Null if the status of requests is only published to their MQTT 5 response topic
+         */
+        final String statusTopic;
+        final MqttQos qos;
+        /**
+         * Acknowledge requests only after they were journaled instead of on receipt
+         */
+        final boolean manualAck;
+        /**
+         * Null if not configured, see {@link #getStableClientId()}
+         */
+        private final String clientId;
+        private final int defaultLaneCapacity;
+        private final Map<String, Integer> laneCapacities = new HashMap<>();
 
         public MqttSettings(Ini ini) {
             try {
@@ -98,16 +376,59 @@ public class MqttEmsInterface implements EmsInterface {
                 user = Settings.getNonNull(ini, "ems-interface", "user");
                 password = Settings.getNonNull(ini, "ems-interface", "password");
                 port = Integer.valueOf(Settings.getNonNull(ini, "ems-interface", "port"));
-                topic = Settings.getNonNull(ini, "ems-interface", "topic");
+                topics = Arrays.stream(Settings.getNonNull(ini, "ems-interface", "topic").split(","))
+                        .map(String::trim)
+                        .filter(topic -> !topic.isEmpty())
+                        .collect(Collectors.toList());
+                statusTopic = ini.get("ems-interface", "statusTopic");
+                String configuredQos = ini.get("ems-interface", "qos");
+                qos = configuredQos == null ? DEFAULT_QOS : MqttQos.fromCode(Integer.parseInt(configuredQos));
+                if (qos == null) {
+                    throw new IllegalArgumentException("Invalid qos '" + configuredQos + "': must be 0, 1 or 2");
+                }
+                manualAck = Boolean.parseBoolean(ini.get("ems-interface", "manualAck"));
+                if (manualAck && qos == MqttQos.AT_MOST_ONCE) {
+                    throw new IllegalArgumentException(
+                            "manualAck needs qos 1 or 2, QoS 0 messages are not acknowledged");
+                }
+                clientId = ini.get("ems-interface", "clientId");
+                String laneCapacity = ini.get("ems-interface", "laneCapacity");
+                defaultLaneCapacity = laneCapacity == null ? DEFAULT_LANE_CAPACITY : Integer.parseInt(laneCapacity);
+                for (String topic : topics) {
+                    String capacity = ini.get("ems-interface", "laneCapacity." + topic);
+                    if (capacity != null) {
+                        laneCapacities.put(topic, Integer.parseInt(capacity));
+                    }
+                }
             } catch (Exception e) {
                 throw new RuntimeException("Unable to parse settings", e);
             }
         }
 
+        int getLaneCapacity(String topic) {
+            return laneCapacities.getOrDefault(topic, defaultLaneCapacity);
+        }
+
+        /**
+         * Needs to be stable across restarts, otherwise a persistent session is lost. Defaults to the host name, which
+         * docker keeps stable per container.
+         */
+        String getStableClientId() {
+            if (clientId != null) {
+                return clientId;
+            }
+            try {
+                return "hedera-gateway-" + InetAddress.getLocalHost().getHostName();
+            } catch (UnknownHostException e) {
+                throw new RuntimeException("Unable to derive a client id from the host name, please set clientId", e);
+            }
+        }
+
         @Override
         public String toString() {
             return "MqttSettings{" + "host='" + host + '\'' + ", user='" + user + '\'' + ", port=" + port
-                    + ", password=***}";
+                    + ", topics=" + topics + ", statusTopic='" + statusTopic + '\'' + ", qos=" + qos + ", manualAck="
+                    + manualAck + ", clientId='" + clientId + '\'' + ", password=***}";
         }
     }
 }
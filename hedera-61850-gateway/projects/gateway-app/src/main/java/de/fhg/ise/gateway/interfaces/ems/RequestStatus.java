@@ -0,0 +1,58 @@
+package de.fhg.ise.gateway.interfaces.ems;
+
+/**
+ * Progress of a request from the EMS, as reported back to the EMS. Every request ends with exactly one final status.
+ */
+public enum RequestStatus {
+    /**
+     * The request was decoded and is processed now
+     */
+    RECEIVED(false),
+    /**
+     * The request was journaled, it is processed even if the gateway crashes now
+     */
+    QUEUED(false),
+    /**
+     * The request was malformed or the gateway is shutting down
+     */
+    REJECTED(true),
+    /**
+     * Too many requests from the same topic were waiting
+     */
+    DROPPED(true),
+    /**
+     * The request was not processed before shutdown, it is processed after the next start. No further status is
+     * reported for it: the way back to the EMS (response topic, HTTP poll, socket) does not survive the restart. Its
+     * outcome is logged under the correlation id of the request.
+     */
+    DEFERRED(true),
+    /**
+     * A schedule was created at HEDERA, its calculation is awaited now
+     */
+    HEDERA_REQUESTED(false),
+    HEDERA_ACCEPTED(false),
+    HEDERA_DECLINED(true),
+    HEDERA_TIMEOUT(true),
+    /**
+     * Communication with HEDERA failed
+     */
+    HEDERA_FAILED(true),
+    /**
+     * The schedule was written to the DER and is going to run at its start
+     */
+    DER_SCHEDULED(true),
+    DER_FAILED(true);
+
+    private final boolean isFinal;
+
+    RequestStatus(boolean isFinal) {
+        this.isFinal = isFinal;
+    }
+
+    /**
+     * @return true if no further status follows for the request
+     */
+    public boolean isFinal() {
+        return isFinal;
+    }
+}
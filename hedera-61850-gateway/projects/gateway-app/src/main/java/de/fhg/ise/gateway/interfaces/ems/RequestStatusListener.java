@@ -0,0 +1,19 @@
+package de.fhg.ise.gateway.interfaces.ems;
+
+/**
+ * Is told about the progress of a single request from the EMS, see {@link RequestStatus}
+ */
+@FunctionalInterface
+public interface RequestStatusListener {
+
+    RequestStatusListener NONE = (status, detail) -> {
+    };
+
+    /**
+     * Called on the thread processing the request. Must not block.
+     *
+     * @param detail
+     *         human readable detail, e.g. the mrid of the schedule at HEDERA or the reason of a failure. May be null.
+     */
+    void onStatus(RequestStatus status, String detail);
+}
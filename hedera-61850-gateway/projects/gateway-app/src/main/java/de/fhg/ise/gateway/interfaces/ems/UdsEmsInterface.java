@@ -0,0 +1,210 @@
+package de.fhg.ise.gateway.interfaces.ems;
+
+import de.fhg.ise.gateway.Context;
+import de.fhg.ise.gateway.interfaces.ems.DTO.DecodedExtensionRequest;
+import de.fhg.ise.gateway.interfaces.ems.DTO.ExtensionRequestDecoder;
+import de.fhg.ise.gateway.interfaces.ems.DTO.MalformedRequestException;
+import de.fhg.ise.gateway.interfaces.hedera.HederaRefresh;
+import org.ini4j.Ini;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An interface to an EMS running on the same host, via a Unix domain socket. Avoids the hop via the MQTT broker.
+ * <p>
+ * The EMS connects to the socket and writes one request (JSON as for MQTT) per line. The gateway writes the status of
+ * every request back on the same connection, one JSON object per line. Requests of all connections are processed in
+ * order of their arrival in one {@link EmsLane}.
+ */
+public class UdsEmsInterface implements EmsInterface {
+
+    private static final int INITIAL_BUFFER_BYTES = 64 * 1024;
+    private static final int MAX_LINE_BYTES = 1 << 20;
+    private static final byte[] NEWLINE = { '\n' };
+
+    private static final Logger log = LoggerFactory.getLogger(UdsEmsInterface.class);
+
+    private final UdsSettings settings;
+    private final Set<SocketChannel> connections = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger connectionCount = new AtomicInteger();
+    private ServerSocketChannel server;
+    private EmsLane<EmsRequestPipeline.Pending> lane;
+    private HederaRefresh hederaRefresh;
+
+    public UdsEmsInterface(Ini ini) {
+        settings = new UdsSettings(ini);
+    }
+
+    @Override
+    public void start(HederaRefresh hederaApi) {
+        this.hederaRefresh = hederaApi;
+        log.info("Starting {}", this);
+        lane = new EmsLane<>("uds", settings.laneCapacity, pending -> pending.process(hederaApi, "uds"));
+        try {
+            // a socket file left by a gateway that was killed would make binding fail
+            Files.deleteIfExists(settings.path);
+            server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+            server.bind(UnixDomainSocketAddress.of(settings.path));
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to accept EMS requests at " + settings.path, e);
+        }
+        new Thread(this::accept, "ems-uds-accept").start();
+        log.info("Accepting EMS requests at unix socket {}", settings.path.toAbsolutePath());
+    }
+
+    private void accept() {
+        while (server.isOpen()) {
+            try {
+                SocketChannel connection = server.accept();
+                connections.add(connection);
+                new Thread(() -> read(connection), "ems-uds-" + connectionCount.incrementAndGet()).start();
+            } catch (AsynchronousCloseException e) {
+                return;
+            } catch (IOException e) {
+                log.warn("Unable to accept connection from the EMS: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Reads requests until the EMS closes the connection. Every line is decoded directly from the read buffer.
+     */
+    private void read(SocketChannel connection) {
+        ExtensionRequestDecoder decoder = new ExtensionRequestDecoder();
+        DecodedExtensionRequest decoded = new DecodedExtensionRequest();
+        EmsRequestPipeline.StatusSink sink = (correlationId, status, detail) -> write(connection,
+                Context.GSON.toJson(EmsRequestPipeline.toJson(correlationId, status, detail)));
+        ByteBuffer buffer = ByteBuffer.allocate(INITIAL_BUFFER_BYTES);
+        try (connection) {
+            while (connection.read(buffer) >= 0) {
+                buffer.flip();
+                int lineStart = 0;
+                for (int i = 0; i < buffer.limit(); i++) {
+                    if (buffer.get(i) == '\n') {
+                        if (i > lineStart) {
+                            onLine(buffer.duplicate().limit(i).position(lineStart), decoder, decoded, sink);
+                        }
+                        lineStart = i + 1;
+                    }
+                }
+                buffer.position(lineStart);
+                buffer.compact();
+                if (!buffer.hasRemaining()) {
+                    if (buffer.capacity() >= MAX_LINE_BYTES) {
+                        log.error("Closing connection from the EMS: line longer than {} bytes", MAX_LINE_BYTES);
+                        return;
+                    }
+                    ByteBuffer larger = ByteBuffer.allocate(buffer.capacity() * 2);
+                    buffer.flip();
+                    larger.put(buffer);
+                    buffer = larger;
+                }
+            }
+        } catch (AsynchronousCloseException e) {
+            log.debug("Connection from the EMS closed on shutdown");
+        } catch (IOException e) {
+            log.warn("Connection from the EMS failed: {}", e.getMessage());
+        } finally {
+            connections.remove(connection);
+        }
+    }
+
+    private void onLine(ByteBuffer line, ExtensionRequestDecoder decoder, DecodedExtensionRequest decoded,
+            EmsRequestPipeline.StatusSink sink) {
+        EmsRequestPipeline.Pending pending;
+        try {
+            pending = EmsRequestPipeline.decode(line, decoder, decoded, UUID.randomUUID().toString(), sink);
+        } catch (MalformedRequestException e) {
+            log.error("Rejected malformed request from the EMS: {}", e.getMessage());
+            sink.send(null, RequestStatus.REJECTED, e.getMessage());
+            return;
+        }
+        if (!lane.offer(pending)) {
+            sink.send(pending.correlationId, RequestStatus.DROPPED, "Too many requests waiting");
+        }
+    }
+
+    private static void write(SocketChannel connection, String json) {
+        ByteBuffer line = ByteBuffer.wrap(json.getBytes(StandardCharsets.UTF_8));
+        // status is written from the reading thread and from the lane
+        synchronized (connection) {
+            try {
+                while (line.hasRemaining()) {
+                    connection.write(line);
+                }
+                connection.write(ByteBuffer.wrap(NEWLINE));
+            } catch (IOException e) {
+                log.debug("Unable to send status to the EMS, it closed the connection: {}", e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void stop(Duration timeout) throws IOException {
+        if (server == null) {
+            return;
+        }
+        server.close();
+        // requests still waiting are processed after the next start, the EMS learns that before its connection closes
+        for (EmsRequestPipeline.Pending pending : lane.stop()) {
+            pending.defer(hederaRefresh);
+        }
+        for (SocketChannel connection : connections) {
+            connection.close();
+        }
+        Files.deleteIfExists(settings.path);
+        log.info("Stopped accepting EMS requests at unix socket {}", settings.path);
+    }
+
+    @Override
+    public void onNewRequestFromEms(HederaRefresh hederaApi, String message) {
+        try {
+            EmsRequestPipeline.decode(ByteBuffer.wrap(message.getBytes(StandardCharsets.UTF_8)),
+                    new ExtensionRequestDecoder(), new DecodedExtensionRequest(), UUID.randomUUID().toString(),
+                    (correlationId, status, detail) -> log.info("Request {}: {} {}", correlationId, status, detail))
+                    .process(hederaApi, "uds");
+        } catch (MalformedRequestException e) {
+            log.error("Rejected malformed request from the EMS: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "UdsEmsInterface{" + "settings=" + settings + '}';
+    }
+
+    static class UdsSettings {
+        final Path path;
+        final int laneCapacity;
+
+        UdsSettings(Ini ini) {
+            String configuredPath = ini.get("ems-uds", "path");
+            path = Paths.get(configuredPath == null ? "state/ems.sock" : configuredPath);
+            String capacity = ini.get("ems-uds", "laneCapacity");
+            laneCapacity = capacity == null ? MqttEmsInterface.MqttSettings.DEFAULT_LANE_CAPACITY : Integer.parseInt(
+                    capacity);
+        }
+
+        @Override
+        public String toString() {
+            return "UdsSettings{" + "path=" + path + ", laneCapacity=" + laneCapacity + '}';
+        }
+    }
+}
@@ -4,17 +4,23 @@ import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.reflect.TypeToken;
 import com.hivemq.client.mqtt.mqtt3.Mqtt3AsyncClient;
+import de.fhg.ise.IEC61850.client.tracing.Span;
+import de.fhg.ise.IEC61850.client.tracing.Tracing;
 import de.fhg.ise.gateway.Context;
+import de.fhg.ise.gateway.HederaDeclinedException;
 import de.fhg.ise.gateway.HederaException;
+import de.fhg.ise.gateway.HederaTimeoutException;
 import de.fhg.ise.gateway.configuration.Settings;
+import de.fhg.ise.gateway.interfaces.ems.DTO.ExtensionRequest;
+import de.fhg.ise.gateway.metrics.GatewayMetrics;
 import io.swagger.client.ApiClient;
 import io.swagger.client.ApiException;
 import io.swagger.client.Configuration;
 import io.swagger.client.api.ScheduleApi;
 import io.swagger.client.auth.OAuth;
+import io.swagger.client.model.AggregatedNodes;
 import io.swagger.client.model.DateTimeInterval;
 import io.swagger.client.model.Period;
-import io.swagger.client.model.Point;
 import io.swagger.client.model.Quantity;
 import io.swagger.client.model.RegisteredInterTie;
 import io.swagger.client.model.Schedule.AtTypeEnum;
@@ -31,21 +37,25 @@ import org.threeten.bp.ZoneId;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStreamWriter;
 import java.lang.reflect.Type;
 import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
 import java.net.URL;
+import java.nio.channels.ClosedByInterruptException;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
 import java.util.Scanner;
 import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 /**
  * Wrapper class to conveniently access the HEDERA server using the autogenerated code and some custom written code for
@@ -54,6 +64,7 @@ import java.util.UUID;
 public class HederaApi {
 
     private static final String ACCEPT_HEADER = "application/vnd.hedera.v1+json";
+    private static final Duration CALCULATION_TIMEOUT = Duration.ofMinutes(5);
 
     private static final Logger log = LoggerFactory.getLogger(HederaApi.class);
     private final ScheduleApi api;
@@ -75,7 +86,14 @@ public class HederaApi {
         ApiClient defaultClient = Configuration.getDefaultApiClient();
         // Configure OAuth2 access token for authorization: oauth2
         OAuth oauth2 = (OAuth) defaultClient.getAuthentication("oauth2");
-        String accessToken = getOAuthAccessToken(clientId, clientSecret);
+        String accessToken;
+        long startNanos = System.nanoTime();
+        try {
+            accessToken = getOAuthAccessToken(clientId, clientSecret);
+        } finally {
+            GatewayMetrics.hederaLatency("login").recordSince(startNanos);
+        }
+        GatewayMetrics.HEDERA_TOKEN_REFRESHES.increment();
         lastLoginBearer = accessToken.replaceAll("\"", "");
         log.debug("BEARER token: {}", lastLoginBearer);
         oauth2.setAccessToken(lastLoginBearer);
@@ -86,6 +104,8 @@ public class HederaApi {
         apiClient.addDefaultHeader("accept", "application/vnd.hedera.v1+json");
         apiClient.addDefaultHeader("Authorization", auth);
         apiClient.setBasePath("https://api.hedera.alliander.com");
+        // schedules are polled every few seconds, decode their points without the reflective adapters
+        apiClient.getJSON().setGson(HederaJson.register(apiClient.getJSON().getGson().newBuilder()).create());
         ScheduleApi apiInstance = new ScheduleApi();
         apiInstance.setApiClient(apiClient);
 
@@ -125,25 +145,80 @@ public class HederaApi {
 
     public HederaSchedule requestExtensionAwaitCalculation(Instant start, HederaScheduleInterval interval,
             List<Double> values, HederaDirection direction, Settings settings) throws HederaException {
+        return requestExtensionAwaitCalculation(start, interval, values, direction, settings, scheduleId -> {
+        });
+    }
+
+    /**
+     * Creates a schedule at HEDERA and waits until its calculation is finished. If the calculation fails, the schedule
+     * is deleted at HEDERA. If the calling thread is interrupted, the schedule is kept such that its calculation can
+     * be awaited again later (see {@link #awaitScheduleCalculation(UUID)}).
+     *
+     * @param onScheduleCreated
+     *         called with the mrid of the schedule as soon as it was created at HEDERA
+     */
+    public HederaSchedule requestExtensionAwaitCalculation(Instant start, HederaScheduleInterval interval,
+            List<Double> values, HederaDirection direction, Settings settings, Consumer<UUID> onScheduleCreated)
+            throws HederaException {
+        return requestAwaitCalculation(
+                Collections.singletonList(getRegisteredInterTies(direction.getMRID(settings), start, interval, values,
+                        direction)), onScheduleCreated);
+    }
+
+    /**
+     * Requests the extensions in one schedule, see {@link #requestAwaitCalculation(List, Consumer)}
+     */
+    public HederaSchedule requestAwaitCalculation(List<ExtensionRequest> requests, Settings settings,
+            Consumer<UUID> onScheduleCreated) throws HederaException {
+        return requestAwaitCalculation(requests, settings, Collections.emptyList(), onScheduleCreated);
+    }
+
+    /**
+     * Requests the extensions in one schedule, each for the aggregated resource of the nodes, see
+     * {@link #requestAwaitCalculation(List, Consumer)}
+     */
+    public HederaSchedule requestAwaitCalculation(List<ExtensionRequest> requests, Settings settings,
+            List<UUID> aggregatedNodes, Consumer<UUID> onScheduleCreated) throws HederaException {
+        List<RegisteredInterTie> interTies = requests.stream()
+                .map(req -> getRegisteredInterTies(req.getMRID(settings), req.getStart(), req.getResolution(),
+                        req.getValues(), req.getDirection(), aggregatedNodes))
+                .collect(Collectors.toList());
+        return requestAwaitCalculation(interTies, onScheduleCreated);
+    }
+
+    /**
+     * Creates one schedule at HEDERA for all inter-ties, such that they are calculated and accepted or declined
+     * together, and waits until its calculation is finished. Failures are handled as by
+     * {@link #requestExtensionAwaitCalculation(Instant, HederaScheduleInterval, List, HederaDirection, Settings,
+     * Consumer)}.
+     *
+     * @param onScheduleCreated
+     *         called with the mrid of the schedule as soon as it was created at HEDERA
+     */
+    public HederaSchedule requestAwaitCalculation(List<RegisteredInterTie> interTies,
+            Consumer<UUID> onScheduleCreated) throws HederaException {
 
         // TODO: as setting!
-        final Duration durationUntilAbort = Duration.ofMinutes(5);
+        final Duration durationUntilAbort = CALCULATION_TIMEOUT;
         Optional<UUID> scheduleId = Optional.empty();
 
         try {
-            scheduleId = Optional.ofNullable(
-                    createSchedule(direction.getMRID(settings), start, interval, values, direction));
+            scheduleId = Optional.ofNullable(createSchedule(interTies));
 
             if (scheduleId.isPresent()) {
+                onScheduleCreated.accept(scheduleId.get());
                 log.info("created new schedule with mrid={}", scheduleId.get());
                 log.warn("Schedule can be watched at HEDERA @ {}{}",
                         "https://hedera-insight.apps.ocp-prd.alliander.com/capacity/", scheduleId.get());
             }
             else {
-                throw new HederaException("No scheduleId returned by HEDERA after schedule creation. Parameters:" + //
-                        " start=" + start + ",interval=" + interval + ",values=" + values + ",direction=" + direction);
+                throw new HederaException(
+                        "No scheduleId returned by HEDERA after schedule creation. Inter-ties: " + interTies);
+            }
+            for (RegisteredInterTie interTie : interTies) {
+                List<Double> values = PackedTimeSeries.quantitiesOf(interTie.getTimeSeries());
+                log.info("Requesting schedule in W for {} {}: {}", interTie.getDirection(), interTie.getMRID(), values);
             }
-            log.info("Requesting schedule in W: {}", values);
         } catch (HederaException e) {
             throw e;
         } catch (Exception e) {
@@ -152,9 +227,16 @@ public class HederaApi {
 
         try {
             HederaSchedule schedule = awaitScheduleCalculationAtHedera(scheduleId, durationUntilAbort);
-            log.info("Result schedule in kW:   {}", schedule.getValues());
+            for (int i = 0; i < schedule.getPartCount(); i++) {
+                log.info("Result schedule in kW:   {}", schedule.getPart(i).getValues());
+            }
             return schedule;
         } catch (Exception e) {
+            if (isInterrupt(e)) {
+                throw new HederaException(
+                        "Interrupted while awaiting calculation of schedule with mrid=" + scheduleId.get()
+                                + ". Keeping the schedule at HEDERA.", e);
+            }
             try {
                 log.info("Deleting corrupt schedule with mrid={}: {} - {}", scheduleId, e.getClass().getSimpleName(),
                         e.getMessage());
@@ -163,17 +245,44 @@ public class HederaApi {
                 log.warn("Unable to delete corrupt schedule with mrid={}. Reason {}:{}", scheduleId, ex.getClass(),
                         ex.getMessage());
             }
+            if (e instanceof HederaDeclinedException || e instanceof HederaTimeoutException) {
+                // keep the type, callers tell the EMS why its request failed
+                throw (HederaException) e;
+            }
             throw new HederaException(
                     "HEDERA was unable to calculate schedule. Stopped with " + e.getClass() + ": " + e.getMessage());
         }
     }
 
+    /**
+     * The HTTP stack may turn an interrupt into an exception and clear the interrupt flag, the flag is set again then.
+     * Timeouts are no interrupts.
+     */
+    private static boolean isInterrupt(Exception e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof InterruptedException || cause instanceof ClosedByInterruptException || (
+                    cause instanceof InterruptedIOException && !(cause instanceof SocketTimeoutException))) {
+                Thread.currentThread().interrupt();
+                return true;
+            }
+        }
+        return Thread.currentThread().isInterrupted();
+    }
+
+    /**
+     * Waits until the calculation of a schedule that was created earlier is finished at HEDERA
+     */
+    public HederaSchedule awaitScheduleCalculation(UUID scheduleId) throws HederaException {
+        return awaitScheduleCalculationAtHedera(Optional.of(scheduleId), CALCULATION_TIMEOUT);
+    }
+
     private HederaSchedule awaitScheduleCalculationAtHedera(Optional<UUID> scheduleId, Duration durationUntilAbort)
             throws HederaException {
         AtTypeEnum status;
         HederaSchedule schedule;
         int count = 0;
         Instant start = Instant.now();
+        long startNanos = System.nanoTime();
         final Instant end = start.plus(durationUntilAbort);
         final long pollrateMillis = 5_000;
         try {
@@ -184,33 +293,45 @@ public class HederaApi {
                 Thread.sleep(pollrateMillis);
 
                 //Reading the created schedule at HEDERA
-                schedule = readSchedule(scheduleId.get());
-                //   log.debug("read schedule result: " + schedule.getRawResponse());
-                status = schedule.getStatus();
+                try (Span span = Tracing.span("hedera-poll")) {
+                    schedule = readSchedule(scheduleId.get());
+                    //   log.debug("read schedule result: " + schedule.getRawResponse());
+                    status = schedule.getStatus();
+                    span.setAttribute("poll", count + 1).setAttribute("status", status);
+                }
                 log.debug("New schedule at HEDERA, is now in state {} with message {}", status,
                         schedule.getStatusMessage());
 
                 count++;
                 log.info("Read HEDERA API {} times. Schedule calculation is currently in state '{}'", count, status);
                 if (AtTypeEnum.DECLINED.equals(status)) {
-                    throw new HederaException("Schedule was rejected by HEDERA. Reason as provided by HEDERA: '"
+                    GatewayMetrics.HEDERA_CALCULATION_WAIT.recordSince(startNanos);
+                    GatewayMetrics.hederaResult("declined").increment();
+                    throw new HederaDeclinedException("Schedule was rejected by HEDERA. Reason as provided by HEDERA: '"
                             + schedule.getStatusMessage() + "'.");
                 }
             } while ((Instant.now().isBefore(end)) && (!AtTypeEnum.ACCEPTED.equals(status)));
 
+            GatewayMetrics.HEDERA_CALCULATION_WAIT.recordSince(startNanos);
             if (AtTypeEnum.ACCEPTED.equals(status)) {
+                GatewayMetrics.hederaResult("accepted").increment();
                 log.info("Calculation at HEDERA finished. Took {}s",
                         Duration.between(start, Instant.now()).toSeconds());
                 return schedule;
             }
             else {
-                throw new HederaException(
+                GatewayMetrics.hederaResult("timeout").increment();
+                throw new HederaTimeoutException(
                         "Schedule calculation at hedera took too long: more than " + durationUntilAbort.toSeconds()
                                 + " seconds.");
             }
         } catch (HederaException e) {
             throw e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new HederaException("Interrupted while polling HEDERA", e);
         } catch (Exception e) {
+            GatewayMetrics.hederaResult("failed").increment();
             throw new HederaException(e);
         }
     }
@@ -224,13 +345,26 @@ public class HederaApi {
      */
     public static RegisteredInterTie getRegisteredInterTies(UUID mrid, Instant start, HederaScheduleInterval interval,
             List<Double> values, HederaDirection direction) {
+        return getRegisteredInterTies(mrid, start, interval, values, direction, Collections.emptyList());
+    }
+
+    /**
+     * Values in W
+     *
+     * @param aggregatedNodes
+     *         the nodes of the aggregated resource behind the connection point, empty if it is no aggregate
+     */
+    public static RegisteredInterTie getRegisteredInterTies(UUID mrid, Instant start, HederaScheduleInterval interval,
+            List<Double> values, HederaDirection direction, List<UUID> aggregatedNodes) {
 
         RegisteredInterTie jsonBody = new RegisteredInterTie();
         jsonBody.setMRID(mrid);
         jsonBody.direction(direction.getDirectionAsHederaEnum());
-        jsonBody.isAggregatedRes(false);
-        jsonBody.aggregatedNodes(null);
-        TimeSeries timeSeries = new TimeSeries();
+        jsonBody.isAggregatedRes(!aggregatedNodes.isEmpty());
+        jsonBody.aggregatedNodes(aggregatedNodes.isEmpty() ? null : aggregatedNodes.stream()
+                .map(node -> new AggregatedNodes().mRID(node))
+                .collect(Collectors.toList()));
+        TimeSeries timeSeries = PackedTimeSeries.of(values);
         timeSeries.setMRID(jsonBody.getMRID());
         Period period = new Period();
         period.setResolution(interval.getAsResolutionEnum());
@@ -240,19 +374,6 @@ public class HederaApi {
         dateTimeInterval.setEnd(convertToThreetenTime(end));
         period.setTimeInterval(dateTimeInterval);
         timeSeries.period(period);
-        Map<Integer, Double> pointItemMap = new HashMap<>();
-        int index = 0;
-        for (Double value : values) {
-            pointItemMap.put(index, value);
-            index++;
-        }
-        for (Map.Entry<Integer, Double> point : pointItemMap.entrySet()) {
-            Point pointItems = new Point();
-            pointItems.setPosition(point.getKey());
-            pointItems.setQuantity(point.getValue());
-            timeSeries.addPointsItem(pointItems);
-
-        }
         Quantity quantity = new Quantity();
         quantity.setUnitMultiplier(UnitMultiplier.NONE);
         quantity.setUnitSymbol(UnitSymbol.W);
@@ -268,11 +389,31 @@ public class HederaApi {
      */
     public UUID createSchedule(UUID mrid, Instant start, HederaScheduleInterval interval, List<Double> values,
             HederaDirection direction) throws ApiException {
-        ScheduleRequest body = new ScheduleRequest().addRegisteredInterTiesItem(
-                getRegisteredInterTies(mrid, start, interval, values, direction)); // ScheduleRequest |
-        log.trace("JSON body sent to create Schedule:\n" + body.toString());
+        return createSchedule(
+                Collections.singletonList(getRegisteredInterTies(mrid, start, interval, values, direction)));
+    }
+
+    /**
+     * Creates one schedule with all inter-ties in a single request
+     *
+     * @returns the schedule mrid that can be used for further requests
+     */
+    public UUID createSchedule(List<RegisteredInterTie> interTies) throws ApiException {
+        ScheduleRequest body = new ScheduleRequest(); // ScheduleRequest |
+        interTies.forEach(body::addRegisteredInterTiesItem);
+        log.trace("JSON body sent to create Schedule:\n{}", body);
         log.debug("Trying to create a schedule at HEDERA...");
-        SchedulePostResponse result = api.schedulePost(ACCEPT_HEADER, body);
+        SchedulePostResponse result;
+        long startNanos = System.nanoTime();
+        try (Span span = Tracing.span("hedera-create")) {
+            int values = interTies.stream()
+                    .mapToInt(interTie -> PackedTimeSeries.sizeOf(interTie.getTimeSeries()))
+                    .sum();
+            span.setAttribute("interTies", interTies.size()).setAttribute("values", values);
+            result = api.schedulePost(ACCEPT_HEADER, body);
+        } finally {
+            GatewayMetrics.hederaLatency("create").recordSince(startNanos);
+        }
         log.info("Successfully created a schedule at HEDERA.");
         return result.getScheduleReference().getMRID();
     }
@@ -280,7 +421,13 @@ public class HederaApi {
     public HederaSchedule readSchedule(UUID result_mRID) throws ApiException {
         log.debug("Trying to read the created schedule at HEDERA...");
 
-        ScheduleGetResponse result = api.scheduleMRIDGet(result_mRID, ACCEPT_HEADER);
+        ScheduleGetResponse result;
+        long startNanos = System.nanoTime();
+        try {
+            result = api.scheduleMRIDGet(result_mRID, ACCEPT_HEADER);
+        } finally {
+            GatewayMetrics.hederaLatency("read").recordSince(startNanos);
+        }
         log.trace("Successfully read the schedule at HEDERA, got result {}", result);
 
         return new HederaSchedule(result);
@@ -289,7 +436,12 @@ public class HederaApi {
     public void deleteSchedule(UUID result_mRID) throws ApiException {
         log.debug("Trying to delete the schedule at HEDERA...");
 
-        api.scheduleMRIDDelete(result_mRID, ACCEPT_HEADER);
+        long startNanos = System.nanoTime();
+        try {
+            api.scheduleMRIDDelete(result_mRID, ACCEPT_HEADER);
+        } finally {
+            GatewayMetrics.hederaLatency("delete").recordSince(startNanos);
+        }
         log.debug("Successfully deleted a schedule at HEDERA");
     }
 
@@ -310,6 +462,7 @@ public class HederaApi {
     public Collection<MinimalSchedule> getScheduleMRIDsOfAllExistingSchedules(Collection<AtTypeEnum> withStatus)
             throws IOException {
         HttpURLConnection connection = null;
+        long startNanos = System.nanoTime();
         try {
             String statusFilter = "";
             for (AtTypeEnum status : withStatus) {
@@ -352,6 +505,7 @@ public class HederaApi {
             if (connection != null) {
                 connection.disconnect();
             }
+            GatewayMetrics.hederaLatency("list").recordSince(startNanos);
         }
     }
 
@@ -34,5 +34,14 @@ public enum HederaDirection {
         return direction;
     }
 
+    static HederaDirection from(RegisteredInterTie.DirectionEnum directionEnum) {
+        for (HederaDirection direction : values()) {
+            if (direction.direction == directionEnum) {
+                return direction;
+            }
+        }
+        throw new IllegalArgumentException("Unknown direction " + directionEnum);
+    }
+
     public abstract UUID getMRID(Settings settings);
 }
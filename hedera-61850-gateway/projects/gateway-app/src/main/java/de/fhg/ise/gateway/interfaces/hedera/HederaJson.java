@@ -0,0 +1,221 @@
+package de.fhg.ise.gateway.interfaces.hedera;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import io.swagger.client.model.Period;
+import io.swagger.client.model.Point;
+import io.swagger.client.model.Quantity;
+import io.swagger.client.model.TimeSeries;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Gson (de)serialization of the HEDERA models that is lighter than the reflective one of the autogenerated code.
+ * <p>
+ * Time series are streamed by hand: the points of a schedule are decoded straight into a {@link PackedTimeSeries}
+ * instead of one {@link Point} per value. {@code ScheduleGetResponse} and {@code ScheduleRequest} keep their
+ * reflective adapters, which stream as well and use this one for their time series.
+ */
+final class HederaJson {
+
+    private static final int INITIAL_POINTS = 96;
+
+    private HederaJson() {
+    }
+
+    /**
+     * @return the builder, with the adapters of this class registered
+     */
+    static GsonBuilder register(GsonBuilder builder) {
+        return builder.registerTypeAdapterFactory(new TypeAdapterFactory() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+                if (type.getRawType() != TimeSeries.class && type.getRawType() != PackedTimeSeries.class) {
+                    return null;
+                }
+                return (TypeAdapter<T>) new TimeSeriesAdapter(gson.getAdapter(Period.class),
+                        gson.getAdapter(Quantity.class)).nullSafe();
+            }
+        });
+    }
+
+    static class TimeSeriesAdapter extends TypeAdapter<TimeSeries> {
+        private final TypeAdapter<Period> periodAdapter;
+        private final TypeAdapter<Quantity> quantityAdapter;
+
+        TimeSeriesAdapter(TypeAdapter<Period> periodAdapter, TypeAdapter<Quantity> quantityAdapter) {
+            this.periodAdapter = periodAdapter;
+            this.quantityAdapter = quantityAdapter;
+        }
+
+        @Override
+        public void write(JsonWriter out, TimeSeries timeSeries) throws IOException {
+            out.beginObject();
+            if (timeSeries.getMRID() != null) {
+                out.name("mRID").value(timeSeries.getMRID().toString());
+            }
+            if (timeSeries.getPeriod() != null) {
+                out.name("period");
+                periodAdapter.write(out, timeSeries.getPeriod());
+            }
+            if (timeSeries.getQuantity() != null) {
+                out.name("quantity");
+                quantityAdapter.write(out, timeSeries.getQuantity());
+            }
+            out.name("points").beginArray();
+            if (timeSeries instanceof PackedTimeSeries) {
+                PackedTimeSeries packed = (PackedTimeSeries) timeSeries;
+                for (int i = 0; i < packed.size(); i++) {
+                    double quantity = packed.getQuantity(i);
+                    writePoint(out, packed.getPosition(i), Double.isNaN(quantity) ? null : quantity, null);
+                }
+            }
+            else if (timeSeries.getPoints() != null) {
+                for (Point point : timeSeries.getPoints()) {
+                    writePoint(out, point.getPosition(), point.getQuantity(), point.getReason());
+                }
+            }
+            out.endArray();
+            out.endObject();
+        }
+
+        private static void writePoint(JsonWriter out, Integer position, Double quantity, String reason)
+                throws IOException {
+            out.beginObject();
+            if (position != null) {
+                out.name("position").value(position);
+            }
+            if (reason != null) {
+                out.name("reason").value(reason);
+            }
+            if (quantity != null) {
+                out.name("quantity").value(quantity);
+            }
+            out.endObject();
+        }
+
+        @Override
+        public TimeSeries read(JsonReader in) throws IOException {
+            UUID mrid = null;
+            Period period = null;
+            Quantity quantity = null;
+            PackedTimeSeries timeSeries = null;
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "mRID":
+                        mrid = in.peek() == JsonToken.NULL ? skipNull(in) : UUID.fromString(in.nextString());
+                        break;
+                    case "period":
+                        period = periodAdapter.read(in);
+                        break;
+                    case "quantity":
+                        quantity = quantityAdapter.read(in);
+                        break;
+                    case "points":
+                        if (in.peek() == JsonToken.NULL) {
+                            in.nextNull();
+                        }
+                        else {
+                            timeSeries = readPoints(in);
+                        }
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            if (timeSeries == null) {
+                timeSeries = new PackedTimeSeries(new int[0], new double[0]);
+            }
+            timeSeries.setMRID(mrid);
+            timeSeries.setPeriod(period);
+            timeSeries.setQuantity(quantity);
+            return timeSeries;
+        }
+
+        private static <T> T skipNull(JsonReader in) throws IOException {
+            in.nextNull();
+            return null;
+        }
+
+        /**
+         * The reason of a point is dropped, the gateway does not use it
+         */
+        private static PackedTimeSeries readPoints(JsonReader in) throws IOException {
+            int[] positions = new int[INITIAL_POINTS];
+            double[] quantities = new double[INITIAL_POINTS];
+            int size = 0;
+            boolean ordered = true;
+            in.beginArray();
+            while (in.hasNext()) {
+                if (size == quantities.length) {
+                    positions = Arrays.copyOf(positions, size * 2);
+                    quantities = Arrays.copyOf(quantities, size * 2);
+                }
+                // points without position keep the place they were sent in
+                positions[size] = size;
+                quantities[size] = Double.NaN;
+                in.beginObject();
+                while (in.hasNext()) {
+                    String name = in.nextName();
+                    if (in.peek() == JsonToken.NULL) {
+                        in.nextNull();
+                    }
+                    else if ("position".equals(name)) {
+                        positions[size] = in.nextInt();
+                    }
+                    else if ("quantity".equals(name)) {
+                        quantities[size] = in.nextDouble();
+                    }
+                    else {
+                        in.skipValue();
+                    }
+                }
+                in.endObject();
+                ordered &= size == 0 || positions[size - 1] < positions[size];
+                size++;
+            }
+            in.endArray();
+            positions = Arrays.copyOf(positions, size);
+            quantities = Arrays.copyOf(quantities, size);
+            if (!ordered) {
+                sortByPosition(positions, quantities);
+            }
+            return new PackedTimeSeries(positions, quantities);
+        }
+
+        /**
+         * Insertion sort, HEDERA sends the points ordered or nearly so. Rejects two points at the same position.
+         */
+        private static void sortByPosition(int[] positions, double[] quantities) {
+            for (int i = 1; i < positions.length; i++) {
+                int position = positions[i];
+                double quantity = quantities[i];
+                int j = i - 1;
+                while (j >= 0 && positions[j] > position) {
+                    positions[j + 1] = positions[j];
+                    quantities[j + 1] = quantities[j];
+                    j--;
+                }
+                positions[j + 1] = position;
+                quantities[j + 1] = quantity;
+            }
+            for (int i = 1; i < positions.length; i++) {
+                if (positions[i - 1] == positions[i]) {
+                    throw new JsonParseException("Time series has two points at position " + positions[i]);
+                }
+            }
+        }
+    }
+}
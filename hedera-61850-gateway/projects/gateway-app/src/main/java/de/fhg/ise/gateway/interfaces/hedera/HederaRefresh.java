@@ -1,49 +1,379 @@
 package de.fhg.ise.gateway.interfaces.hedera;
 
 import de.fhg.ise.IEC61850.client.models.AllianderDER;
+import de.fhg.ise.IEC61850.client.scheduling.PriorityBand;
+import de.fhg.ise.IEC61850.client.tracing.Span;
+import de.fhg.ise.IEC61850.client.tracing.Tracing;
+import de.fhg.ise.gateway.HederaDeclinedException;
 import de.fhg.ise.gateway.HederaException;
+import de.fhg.ise.gateway.HederaTimeoutException;
 import de.fhg.ise.gateway.configuration.Settings;
+import de.fhg.ise.gateway.interfaces.der.DerScheduleWriter;
+import de.fhg.ise.gateway.interfaces.der.PriorityBands;
+import de.fhg.ise.gateway.interfaces.der.ScheduleTarget;
+import de.fhg.ise.gateway.interfaces.ems.DTO.BatchExtensionRequest;
 import de.fhg.ise.gateway.interfaces.ems.DTO.ExtensionRequest;
 import de.fhg.ise.gateway.interfaces.ems.DTO.Schedule;
+import de.fhg.ise.gateway.interfaces.ems.RequestStatus;
+import de.fhg.ise.gateway.interfaces.ems.RequestStatusListener;
+import de.fhg.ise.gateway.lifecycle.Checkpoint;
+import de.fhg.ise.gateway.metrics.GatewayMetrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.net.ConnectException;
-import java.net.UnknownHostException;
+import java.io.IOException;
+import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
 
 /**
  * Takes care of refreshing schedules at hedera.
+ * <p>
+ * Thread safe: requests from several EMS lanes may be processed in parallel. Writing to the DER is serialized, and old
+ * schedules at HEDERA are only cleaned up if they do not belong to a request that is processed currently.
+ * <p>
+ * After {@link #resume(Checkpoint)}, the requests in flight are journaled to the checkpoint whenever they change, so
+ * they are resumed after a crash as well.
  */
 public class HederaRefresh {
 
     private static final Logger log = LoggerFactory.getLogger(HederaRefresh.class);
+    // checkpointed requests are resumed in parallel, but by a few threads only
+    private static final int MAX_RESUMING_THREADS = 4;
     private final Settings settings;
-    private AllianderDER der;
+    private final ScheduleTarget target;
     private final HederaApi api;
-    // TODO: read scheduleNumber and prio from settings!
-    private final int scheduleNumber = 1;
-    private final int prio = 20;
+
+    private final Set<InFlight> inFlight = ConcurrentHashMap.newKeySet();
+    private final List<Checkpoint.Entry> deferred = Collections.synchronizedList(new ArrayList<>());
+    // requests of several EMS lanes are processed in parallel, but the DER has one association only
+    private final Object derLock = new Object();
+    // held from cleaning up old schedules until the new schedule is known, see requestAtHedera
+    private final ReentrantLock hederaCreationLock = new ReentrantLock();
+    private final RequestDeduplicator deduplicator;
+    // null until resume(), guarded by itself
+    private volatile Checkpoint journal;
+    private final Object journalLock = new Object();
+    private volatile boolean closed = false;
 
     public HederaRefresh(HederaApi api, AllianderDER der, Settings settings) {
+        this(api, new DerScheduleWriter(der), settings);
+    }
+
+    /**
+     * @param target
+     *         the DER or the portfolio of DERs to write the schedules to
+     */
+    public HederaRefresh(HederaApi api, ScheduleTarget target, Settings settings) {
         this.api = api;
         this.settings = settings;
-        this.der = der;
+        this.target = target;
+        this.deduplicator = new RequestDeduplicator(settings.dedupTtl, settings.dedupMaxEntries);
+    }
+
+    public ScheduleTarget getScheduleTarget() {
+        return target;
     }
 
-    // TODO: make non-blocking!
     public void newRequestFromEms(ExtensionRequest req) {
-        log.info("Got new request {}", req);
+        newRequestFromEms(req, null, RequestStatusListener.NONE);
+    }
+
+    /**
+     * Processes the request unless an equal request is in flight or was processed recently, see
+     * {@link RequestDeduplicator}
+     *
+     * @param source
+     *         the EMS transport the request was received by, selects the priorities of its DER schedules (see
+     *         {@link PriorityBands}). Null if unknown.
+     * @param listener
+     *         told about the progress of the request, ending with a final {@link RequestStatus}. Told
+     *         {@link RequestStatus#QUEUED} as soon as the request was journaled, not at all if it could not be
+     *         journaled.
+     *         <p>
+     *         Blocks until the request is processed. Called on the lane of the EMS the request came from (see
+     *         {@link de.fhg.ise.gateway.interfaces.ems.EmsRequestPipeline}), so only later requests of that EMS wait.
+     */
+    public void newRequestFromEms(ExtensionRequest req, String source, RequestStatusListener listener) {
+        if (closed) {
+            log.warn("Shutting down, not accepting new request {}", req);
+            listener.onStatus(RequestStatus.REJECTED, "Gateway is shutting down");
+            return;
+        }
+        try (RequestDeduplicator.Tracked tracked = deduplicator.track(req, listener)) {
+            if (tracked == null) {
+                GatewayMetrics.REQUESTS_DEDUPLICATED.increment();
+                log.info("Not processing duplicate request {}", req);
+                return;
+            }
+            processNew(new InFlight(req, source), tracked);
+        }
+    }
+
+    /**
+     * Processes the requests of the batch as one unit, see {@link BatchExtensionRequest}. Duplicates are handled as by
+     * {@link #newRequestFromEms(ExtensionRequest, String, RequestStatusListener)}.
+     *
+     * @param listener
+     *         told about the progress of the batch as a whole
+     */
+    public void newBatchFromEms(BatchExtensionRequest batch, String source, RequestStatusListener listener) {
+        if (closed) {
+            log.warn("Shutting down, not accepting new batch {}", batch);
+            listener.onStatus(RequestStatus.REJECTED, "Gateway is shutting down");
+            return;
+        }
+        if (!BatchExtensionRequest.hasOneDirection(batch.getRequests())) {
+            log.warn("Not accepting batch with requests of different directions {}", batch);
+            listener.onStatus(RequestStatus.REJECTED, "The requests of a batch must have the same direction");
+            return;
+        }
+        try (RequestDeduplicator.Tracked tracked = deduplicator.track(batch, listener)) {
+            if (tracked == null) {
+                GatewayMetrics.REQUESTS_DEDUPLICATED.increment();
+                log.info("Not processing duplicate batch {}", batch);
+                return;
+            }
+            processNew(new InFlight(batch.getRequests(), UUID.randomUUID().toString(), source), tracked);
+        }
+    }
+
+    private void processNew(InFlight current, RequestStatusListener listener) {
+        current.thread = Thread.currentThread();
+        inFlight.add(current);
+        try {
+            try {
+                writeJournalOrFail();
+                listener.onStatus(RequestStatus.QUEUED, null);
+            } catch (IOException e) {
+                // not QUEUED, so the EMS keeps the request until its final status (e.g. unacknowledged at the broker)
+                log.error("Unable to journal request {}, it is lost on a crash before it is done: {}", current,
+                        e.getMessage());
+            }
+            process(current, null, listener);
+        } finally {
+            current.finish();
+            inFlight.remove(current);
+            writeJournal();
+        }
+    }
+
+    /**
+     * Continues the requests that were in flight when the gateway was shut down or crashed. Schedules that were
+     * already created at HEDERA are not requested again, their calculation is awaited instead. From now on, the
+     * requests in flight are journaled to the checkpoint.
+     * <p>
+     * The status of resumed requests is not reported to the EMS (see {@link RequestStatus#DEFERRED}), they are
+     * processed in traces with their correlation id, so their outcome can be found in the logs.
+     * <p>
+     * Returns as soon as the resumed requests are in flight, so their schedules at HEDERA are not cleaned up by new
+     * requests. They are processed in parallel on threads of their own, without delaying new requests.
+     */
+    public void resume(Checkpoint checkpoint) throws IOException {
+        // the requests of a batch are resumed together
+        Map<Object, List<Checkpoint.Entry>> units = new LinkedHashMap<>();
+        for (Checkpoint.Entry entry : checkpoint.take()) {
+            Object unit = entry.getBatchId() != null ? entry.getBatchId() : entry;
+            units.computeIfAbsent(unit, u -> new ArrayList<>()).add(entry);
+        }
+        List<InFlight> resumed = new ArrayList<>();
+        Instant now = Instant.now();
+        for (List<Checkpoint.Entry> entries : units.values()) {
+            if (entries.stream().allMatch(entry -> entry.isExpired(now))) {
+                log.info("Dropping checkpointed request, its schedule has already ended: {}", entries);
+                continue;
+            }
+            List<ExtensionRequest> requests =
+                    entries.stream().map(Checkpoint.Entry::getRequest).collect(Collectors.toList());
+            if (!BatchExtensionRequest.hasOneDirection(requests)) {
+                log.error("Dropping checkpointed batch, its requests have different directions: {}", entries);
+                continue;
+            }
+            InFlight current = new InFlight(requests, entries.get(0).getBatchId(), PriorityBands.RESUMED);
+            current.hederaScheduleId = entries.get(0).getHederaScheduleId();
+            resumed.add(current);
+        }
+        // all of them are journaled again right away, a crash while resuming must not lose the ones not resumed yet
+        inFlight.addAll(resumed);
+        journal = checkpoint;
+        writeJournal();
+        if (resumed.isEmpty()) {
+            return;
+        }
+
+        AtomicInteger threads = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(resumed.size(), MAX_RESUMING_THREADS),
+                runnable -> new Thread(runnable, "resume-request-" + threads.incrementAndGet()));
+        for (InFlight current : resumed) {
+            executor.execute(() -> resume(current));
+        }
+        // the threads end when all requests are resumed
+        executor.shutdown();
+    }
+
+    private void resume(InFlight current) {
+        current.thread = Thread.currentThread();
+        if (current.isStopped()) {
+            // closed before it was resumed, checkpointed again
+            inFlight.remove(current);
+            return;
+        }
+        log.info("Resuming checkpointed request {} with mrid={}", current, current.hederaScheduleId);
+        String correlationId = current.requests.get(0).getCorrelationId();
+        try (Span trace = correlationId == null ? Tracing.startTrace("resumed-request")
+                : Tracing.startTrace("resumed-request", correlationId)) {
+            process(current, current.hederaScheduleId, RequestStatusListener.NONE);
+        } finally {
+            current.finish();
+            inFlight.remove(current);
+            writeJournal();
+        }
+    }
+
+    /**
+     * Keeps a request that was received but not processed before shutdown, to be checkpointed and processed after the
+     * next start
+     */
+    public void defer(ExtensionRequest req) {
+        deferred.add(new Checkpoint.Entry(req, null));
+        writeJournal();
+    }
+
+    /**
+     * As {@link #defer(ExtensionRequest)}, for a batch
+     */
+    public void defer(BatchExtensionRequest batch) {
+        String batchId = UUID.randomUUID().toString();
+        batch.getRequests().forEach(req -> deferred.add(new Checkpoint.Entry(req, null, batchId)));
+        writeJournal();
+    }
+
+    /**
+     * Replaces the journal by the requests in flight and the deferred ones. A failure is logged only, the requests are
+     * processed anyway.
+     */
+    private void writeJournal() {
+        try {
+            writeJournalOrFail();
+        } catch (IOException e) {
+            log.error("Unable to journal the requests in flight, they are lost on a crash: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Like {@link #writeJournal()}, but fails if the journal could not be written
+     */
+    private void writeJournalOrFail() throws IOException {
+        if (journal == null) {
+            return;
+        }
+        synchronized (journalLock) {
+            // close() writes the final checkpoint
+            if (closed) {
+                return;
+            }
+            journal.write(checkpointEntries(new ArrayList<>(inFlight)));
+        }
+    }
+
+    private List<Checkpoint.Entry> checkpointEntries(List<InFlight> requests) {
+        List<Checkpoint.Entry> entries = requests.stream()
+                .flatMap(f -> f.requests.stream().map(req -> new Checkpoint.Entry(req, f.hederaScheduleId, f.batchId)))
+                .collect(Collectors.toList());
+        synchronized (deferred) {
+            entries.addAll(deferred);
+        }
+        return entries;
+    }
+
+    /**
+     * Stops accepting requests and waits for the requests in flight to finish. Requests that are not finished in time
+     * and have not started writing to the DER yet are stopped, interrupted and written to the checkpoint; they never
+     * write to the DER anymore. Requests already writing to the DER are not checkpointed, they are waited for. A
+     * quarter of the timeout is left for the interrupted requests to stop. Schedules that were already created at
+     * HEDERA are not deleted, so their calculation can be awaited after the next start (see
+     * {@link #resume(Checkpoint)}).
+     */
+    public void close(Duration timeout, Checkpoint checkpoint) throws IOException, InterruptedException {
+        closed = true;
+        Instant deadline = Instant.now().plus(timeout);
+        Instant finishDeadline = deadline.minus(timeout.dividedBy(4));
+        awaitFinished(inFlight, finishDeadline);
+
+        List<InFlight> stopped = new ArrayList<>();
+        for (InFlight current : new ArrayList<>(inFlight)) {
+            if (current.stop()) {
+                stopped.add(current);
+                Thread thread = current.thread;
+                if (thread != null) {
+                    thread.interrupt();
+                }
+            }
+            else {
+                log.info("Waiting for request {}, it is being written to the DER", current);
+            }
+        }
+        // the DER is closed after this, none of the requests may still be writing to it
+        List<InFlight> running = awaitFinished(inFlight, deadline);
+        running.stream()
+                .filter(current -> !stopped.contains(current))
+                .forEach(current -> log.error("Request {} is still being written to the DER, it is not checkpointed",
+                        current));
+
+        List<Checkpoint.Entry> entries = checkpointEntries(stopped);
+        if (entries.isEmpty() && journal == null) {
+            log.debug("No requests in flight");
+            return;
+        }
+        synchronized (journalLock) {
+            // replaces the journal, also if it is empty now
+            checkpoint.write(entries);
+        }
+        log.info("Checkpointed {} request(s) that were not finished in time", entries.size());
+    }
+
+    /**
+     * @return the requests still in flight at the deadline
+     */
+    private static List<InFlight> awaitFinished(Collection<InFlight> requests, Instant deadline)
+            throws InterruptedException {
+        while (!requests.isEmpty() && Instant.now().isBefore(deadline)) {
+            Thread.sleep(50);
+        }
+        return new ArrayList<>(requests);
+    }
+
+    /**
+     * Gets the schedules of the request (or of all requests of the batch) accepted by HEDERA and writes each of them
+     * to a DER schedule of its own
+     */
+    private void process(InFlight current, UUID hederaScheduleId, RequestStatusListener listener) {
+        log.info("Got new request {}", current);
 
-        final Schedule schedule;
-        if (req.getSkipHedera()) {
+        final List<? extends Schedule> schedules;
+        ExtensionRequest req = current.requests.get(0);
+        if (hederaScheduleId != null) {
+            schedules = partsOf(awaitScheduleAtHedera(hederaScheduleId, current, listener), current, listener);
+        }
+        else if (current.batchId == null && req.getSkipHedera()) {
             log.warn("Skipping HEDERA. Directly transmitting schedule to DER");
-            schedule = new Schedule() {
+            schedules = Collections.singletonList(new Schedule() {
                 @Override
                 public List<Double> getValues() {
                     return req.getValues();
@@ -58,74 +388,179 @@ public class HederaRefresh {
                 public Instant getStart() {
                     return req.getStart();
                 }
-            };
+            });
         }
         else {
-            schedule = getScheduleConfirmationAtHedera(req);
+            schedules = partsOf(getScheduleConfirmationAtHedera(current, listener), current, listener);
         }
-        if (schedule == null) {
+        if (schedules == null) {
             log.debug("Skipping to connect to DER: schedule calculation failed at HEDERA");
         }
         else {
-
-            List<Number> values = schedule.getValues()
-                    .stream()
-                    .collect(Collectors.toList()); // List<Double> -> List<Number> seems to need that
-            try {
-                this.der.writeAndEnableSchedule(der.maxPowerSchedules.prepareSchedule(values, scheduleNumber,
-                        schedule.getInterval().getAsDuration(), schedule.getStart(), prio));
-                log.info("Transmitted schedule to DER. Schedule will start to run in @ {}", schedule.getStart());
-            } catch (Exception e) {
-                log.warn(
-                        "Unable to forward schedule to DER @ {}:{}. Reason: {}:{}. Trying to solve the problem by a reconnect.",
-                        der.host, der.port, e.getClass(), e.getMessage());
-
-                try {
-                    this.der = this.der.reconnect();
-                    log.info("Reconnected successfully.");
-                    this.der.writeAndEnableSchedule(der.maxPowerSchedules.prepareSchedule(values, scheduleNumber,
-                            schedule.getInterval().getAsDuration(), schedule.getStart(), prio));
-                    log.info("Transmitted schedule to DER. Schedule will start to run in @ {}", schedule.getStart());
-                } catch (UnknownHostException | ConnectException ex) {
-                    log.error("Unable to reconnect to host '{}': {}:{}. Giving up.", der.host, ex.getClass(),
-                            ex.getMessage());
-                } catch (Exception ex) {
-                    log.error("Unable to reconnect and forward schedule to DER @ {}:{}. Giving up.", der.host, der.port,
-                            ex);
+            List<String> details = new ArrayList<>();
+            PriorityBand band = settings.priorityBands.forSource(current.source);
+            synchronized (derLock) {
+                if (!current.startDerWrite()) {
+                    // stopped by close(), the request was checkpointed
+                    listener.onStatus(RequestStatus.DEFERRED, "Gateway is shutting down");
+                    return;
+                }
+                for (int i = 0; i < schedules.size(); i++) {
+                    try {
+                        details.add(target.write(schedules.get(i), band));
+                    } catch (Exception e) {
+                        listener.onStatus(RequestStatus.DER_FAILED, i == 0 ? e.getMessage()
+                                : e.getMessage() + " (" + i + " of " + schedules.size() + " schedules written)");
+                        return;
+                    }
                 }
             }
+            listener.onStatus(RequestStatus.DER_SCHEDULED, String.join("; ", details));
         }
 
         // TODO: start a refresh here
         // TODO make use of recommended refresh time (shall be in response for the requests)
     }
 
-    private HederaSchedule getScheduleConfirmationAtHedera(ExtensionRequest req) {
-        log.debug("Cleaning up old schedules at HEDERA");
-        AtomicInteger cnt = new AtomicInteger(0);
+    /**
+     * @return one part per request, in the order of the requests. Parts are matched to the requests by connection
+     *         point and direction. Null if HEDERA failed.
+     */
+    private List<HederaSchedule.Part> partsOf(HederaSchedule schedule, InFlight current,
+            RequestStatusListener listener) {
+        if (schedule == null) {
+            return null;
+        }
+        if (schedule.getPartCount() != current.requests.size()) {
+            log.error("HEDERA returned {} inter-ties for {} requests in schedule with mrid={}",
+                    schedule.getPartCount(), current.requests.size(), schedule.getScheduleUuid());
+            listener.onStatus(RequestStatus.HEDERA_FAILED,
+                    "HEDERA returned " + schedule.getPartCount() + " inter-ties for " + current.requests.size()
+                            + " requests");
+            return null;
+        }
+        List<HederaSchedule.Part> unmatched = new ArrayList<>();
+        for (int i = 0; i < schedule.getPartCount(); i++) {
+            unmatched.add(schedule.getPart(i));
+        }
+        List<HederaSchedule.Part> parts = new ArrayList<>();
+        for (ExtensionRequest req : current.requests) {
+            UUID mrid = req.getMRID(settings);
+            HederaSchedule.Part part = unmatched.stream()
+                    .filter(p -> mrid.equals(p.getMRID()) && p.getDirection() == req.getDirection())
+                    .findFirst()
+                    .orElse(null);
+            if (part == null) {
+                log.error("HEDERA returned no {} inter-tie with mrid={} in schedule with mrid={}", req.getDirection(),
+                        mrid, schedule.getScheduleUuid());
+                listener.onStatus(RequestStatus.HEDERA_FAILED,
+                        "HEDERA returned no " + req.getDirection() + " inter-tie with mrid=" + mrid);
+                return null;
+            }
+            unmatched.remove(part);
+            parts.add(part);
+        }
+        return parts;
+    }
 
-        cleanUpAllExistingSchedulesAtHedera(cnt);
+    private HederaSchedule awaitScheduleAtHedera(UUID hederaScheduleId, InFlight current,
+            RequestStatusListener listener) {
+        try {
+            HederaSchedule hederaSchedule = api.awaitScheduleCalculation(hederaScheduleId);
+            listener.onStatus(RequestStatus.HEDERA_ACCEPTED, "mrid=" + hederaScheduleId);
+            return hederaSchedule;
+        } catch (HederaException e) {
+            log.error("Error in resumed schedule with mrid={}. Error message by HEDERA: {}", hederaScheduleId,
+                    e.getMessage());
+            reportHederaFailure(e, current, listener);
+            return null;
+        }
+    }
 
+    private HederaSchedule getScheduleConfirmationAtHedera(InFlight current, RequestStatusListener listener) {
         HederaSchedule hederaSchedule = null;
         try {
-            hederaSchedule = req.requestExtensionAwaitCalculation(this.api, this.settings);
+            hederaSchedule = requestAtHedera(current, listener);
         } catch (HederaException e) {
-            log.error("Error in schedule {}. Error message by HEDERA: {}", req, e.getMessage());
+            log.error("Error in schedule {}. Error message by HEDERA: {}", current, e.getMessage());
+            reportHederaFailure(e, current, listener);
         } catch (Exception e) {
             log.warn("Unable to create schedule at HEDERA. Retrying. Reason: {}:{}", e.getClass(), e.getMessage());
             try {
-                hederaSchedule = req.requestExtensionAwaitCalculation(this.api, this.settings);
+                hederaSchedule = requestAtHedera(current, listener);
+            } catch (HederaException e2) {
+                log.error("Again unable to create schedule at HEDERA. Input extension request: '{}'. Giving up.",
+                        current, e2);
+                reportHederaFailure(e2, current, listener);
             } catch (Exception e2) {
-                log.error("Again unable to create schedule at HEDERA. Input extension request: '{}'. Giving up.", req,
-                        e2);
+                log.error("Again unable to create schedule at HEDERA. Input extension request: '{}'. Giving up.",
+                        current, e2);
+                listener.onStatus(RequestStatus.HEDERA_FAILED, e2.getClass().getSimpleName() + ": " + e2.getMessage());
             }
         }
+        if (hederaSchedule != null) {
+            listener.onStatus(RequestStatus.HEDERA_ACCEPTED, "mrid=" + current.hederaScheduleId);
+        }
         return hederaSchedule;
     }
 
+    private void reportHederaFailure(HederaException e, InFlight current, RequestStatusListener listener) {
+        if (e instanceof HederaDeclinedException) {
+            listener.onStatus(RequestStatus.HEDERA_DECLINED, e.getMessage());
+        }
+        else if (e instanceof HederaTimeoutException) {
+            listener.onStatus(RequestStatus.HEDERA_TIMEOUT, e.getMessage());
+        }
+        else if (current.isStopped()) {
+            // stopped by close(), the request was checkpointed
+            listener.onStatus(RequestStatus.DEFERRED, "Gateway is shutting down");
+        }
+        else {
+            listener.onStatus(RequestStatus.HEDERA_FAILED, e.getMessage());
+        }
+    }
+
+    /**
+     * Cleans up old schedules and creates the new one while holding {@link #hederaCreationLock}, such that a parallel
+     * request never deletes a schedule whose mrid is not yet known to be in flight.
+     */
+    private HederaSchedule requestAtHedera(InFlight current, RequestStatusListener listener) throws HederaException {
+        hederaCreationLock.lock();
+        try {
+            log.debug("Cleaning up old schedules at HEDERA");
+            AtomicInteger cnt = new AtomicInteger(0);
+
+            try (Span span = Tracing.span("hedera-cleanup")) {
+                cleanUpAllExistingSchedulesAtHedera(cnt);
+                span.setAttribute("deleted", cnt.get());
+            }
+
+            return api.requestAwaitCalculation(current.requests, this.settings, target.getAggregatedNodes(),
+                    scheduleId -> {
+                        current.hederaScheduleId = scheduleId;
+                        hederaCreationLock.unlock();
+                        // after a crash, the calculation of this schedule is awaited instead of creating another one
+                        writeJournal();
+                        listener.onStatus(RequestStatus.HEDERA_REQUESTED, "mrid=" + scheduleId);
+                    });
+        } finally {
+            if (hederaCreationLock.isHeldByCurrentThread()) {
+                hederaCreationLock.unlock();
+            }
+        }
+    }
+
     private void cleanUpAllExistingSchedulesAtHedera(AtomicInteger cnt) {
+        Set<UUID> schedulesInFlight = inFlight.stream()
+                .map(f -> f.hederaScheduleId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
         try {
             api.getScheduleMRIDsOfAllExistingSchedulesThatMayInterfereWithNewSchedules().forEach(schedule -> {
+                if (schedulesInFlight.contains(schedule.mRID)) {
+                    log.debug("Not cleaning up schedule with mrid={}, it belongs to another request", schedule.mRID);
+                    return;
+                }
                 try {
                     api.deleteSchedule(schedule.mRID);
                     cnt.incrementAndGet();
@@ -139,4 +574,68 @@ public class HederaRefresh {
         }
         log.info("Cleaned up {} old schedules at HEDERA", cnt.get());
     }
+
+    /**
+     * A request or the requests of a batch that are currently processed, to be checkpointed if they are not finished
+     * on shutdown
+     */
+    private static class InFlight {
+        final List<ExtensionRequest> requests;
+        // null for a single request
+        final String batchId;
+        // see PriorityBands, null if unknown
+        final String source;
+        // processing the request, null if it was not started yet
+        volatile Thread thread;
+        volatile UUID hederaScheduleId;
+        // PROCESSING until the request either starts writing to the DER or is stopped by close()
+        private final AtomicReference<Stage> stage = new AtomicReference<>(Stage.PROCESSING);
+
+        InFlight(ExtensionRequest request, String source) {
+            this(Collections.singletonList(request), null, source);
+        }
+
+        InFlight(List<ExtensionRequest> requests, String batchId, String source) {
+            this.requests = requests;
+            this.batchId = batchId;
+            this.source = source;
+        }
+
+        /**
+         * @return false if the request was stopped, it must not write to the DER then
+         */
+        boolean startDerWrite() {
+            return stage.compareAndSet(Stage.PROCESSING, Stage.WRITING_TO_DER);
+        }
+
+        /**
+         * @return false if the request is already writing to the DER, it cannot be stopped then
+         */
+        boolean stop() {
+            return stage.compareAndSet(Stage.PROCESSING, Stage.STOPPED);
+        }
+
+        boolean isStopped() {
+            return stage.get() == Stage.STOPPED;
+        }
+
+        /**
+         * Called when the request is done, such that close() does not stop it anymore
+         */
+        void finish() {
+            stage.compareAndSet(Stage.PROCESSING, Stage.FINISHED);
+        }
+
+        @Override
+        public String toString() {
+            return batchId == null ? requests.get(0).toString() : "batch " + requests;
+        }
+    }
+
+    private enum Stage {
+        PROCESSING,
+        WRITING_TO_DER,
+        STOPPED,
+        FINISHED
+    }
 }
@@ -1,7 +1,7 @@
 package de.fhg.ise.gateway.interfaces.hedera;
 
 import de.fhg.ise.gateway.interfaces.ems.DTO.Schedule;
-import io.swagger.client.model.Point;
+import io.swagger.client.model.RegisteredInterTie;
 import io.swagger.client.model.ScheduleGetResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -10,12 +10,14 @@ import org.threeten.bp.OffsetDateTime;
 import java.time.Instant;
 import java.util.List;
 import java.util.UUID;
-import java.util.stream.Collectors;
 
 /**
  * Wraps the Schedule object in the autogenerated code.
  * <p>
  * The idea is that once new code is autogenerated, only this class needs to be modified.
+ * <p>
+ * A schedule holds one part per registered inter-tie it was requested for. As {@link Schedule}, it is its first part,
+ * which is the only one unless it was requested by a batch.
  */
 public class HederaSchedule implements Schedule {
 
@@ -29,14 +31,7 @@ public class HederaSchedule implements Schedule {
 
     @Override
     public List<Double> getValues() {
-        return response.getSchedule()
-                .getRegisteredInterTies()
-                .get(0)
-                .getTimeSeries()
-                .getPoints()
-                .stream()
-                .map(Point::getQuantity)
-                .collect(Collectors.toUnmodifiableList());
+        return getPart(0).getValues();
     }
 
     public io.swagger.client.model.Schedule.AtTypeEnum getStatus() {
@@ -45,8 +40,7 @@ public class HederaSchedule implements Schedule {
 
     @Override
     public HederaScheduleInterval getInterval() {
-        return HederaScheduleInterval.from(
-                response.getSchedule().getRegisteredInterTies().get(0).getTimeSeries().getPeriod().getResolution());
+        return getPart(0).getInterval();
     }
 
     public String getStatusMessage() {
@@ -55,23 +49,59 @@ public class HederaSchedule implements Schedule {
 
     @Override
     public Instant getStart() {
-        OffsetDateTime start = response.getSchedule()
-                .getRegisteredInterTies()
-                .get(0)
-                .getTimeSeries()
-                .getPeriod()
-                .getTimeInterval()
-                .getStart();
-        long epochSecond = start.toEpochSecond();
-        long nanos = start.getNano();
-        long epochMillis = epochSecond * 1000 + nanos / 1000 / 1000;
-        Instant startInstant = Instant.ofEpochMilli(epochMillis);
-        log.trace("Transformed {} into {}", start, startInstant);
-        return startInstant;
+        return getPart(0).getStart();
     }
 
     public UUID getScheduleUuid() {
         // respose.getMRID() holds some other MRID, we do not to go for .getSchedule().getMRID() here!
         return response.getSchedule().getMRID();
     }
+
+    public int getPartCount() {
+        return response.getSchedule().getRegisteredInterTies().size();
+    }
+
+    public Part getPart(int index) {
+        return new Part(response.getSchedule().getRegisteredInterTies().get(index));
+    }
+
+    /**
+     * The schedule at one connection point in one direction
+     */
+    public static class Part implements Schedule {
+        private final RegisteredInterTie interTie;
+
+        private Part(RegisteredInterTie interTie) {
+            this.interTie = interTie;
+        }
+
+        public UUID getMRID() {
+            return interTie.getMRID();
+        }
+
+        public HederaDirection getDirection() {
+            return HederaDirection.from(interTie.getDirection());
+        }
+
+        @Override
+        public List<Double> getValues() {
+            return PackedTimeSeries.quantitiesOf(interTie.getTimeSeries());
+        }
+
+        @Override
+        public HederaScheduleInterval getInterval() {
+            return HederaScheduleInterval.from(interTie.getTimeSeries().getPeriod().getResolution());
+        }
+
+        @Override
+        public Instant getStart() {
+            OffsetDateTime start = interTie.getTimeSeries().getPeriod().getTimeInterval().getStart();
+            long epochSecond = start.toEpochSecond();
+            long nanos = start.getNano();
+            long epochMillis = epochSecond * 1000 + nanos / 1000 / 1000;
+            Instant startInstant = Instant.ofEpochMilli(epochMillis);
+            log.trace("Transformed {} into {}", start, startInstant);
+            return startInstant;
+        }
+    }
 }
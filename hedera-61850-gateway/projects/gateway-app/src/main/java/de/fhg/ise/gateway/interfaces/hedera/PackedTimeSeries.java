@@ -0,0 +1,148 @@
+package de.fhg.ise.gateway.interfaces.hedera;
+
+import io.swagger.client.model.Point;
+import io.swagger.client.model.TimeSeries;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.stream.Collectors;
+
+/**
+ * A time series that keeps its points in primitive arrays, ordered by position. Used for all time series created by
+ * the gateway or decoded by {@link HederaJson}.
+ * <p>
+ * The {@link Point} objects of the autogenerated model are only created if {@link #getPoints()} is called. Use
+ * {@link #quantitiesOf(TimeSeries)} and {@link #sizeOf(TimeSeries)} to avoid that. The points cannot be modified.
+ */
+final class PackedTimeSeries extends TimeSeries {
+
+    private final int[] positions;
+    // NaN for points without quantity
+    private final double[] quantities;
+    private boolean pointsCreated;
+
+    /**
+     * @param positions
+     *         in ascending order, same length as quantities
+     */
+    PackedTimeSeries(int[] positions, double[] quantities) {
+        if (positions.length != quantities.length) {
+            throw new IllegalArgumentException(
+                    "Got " + positions.length + " positions for " + quantities.length + " quantities");
+        }
+        this.positions = positions;
+        this.quantities = quantities;
+    }
+
+    /**
+     * Points at positions 0, 1, ...
+     */
+    static PackedTimeSeries of(List<Double> values) {
+        int[] positions = new int[values.size()];
+        double[] quantities = new double[values.size()];
+        for (int i = 0; i < quantities.length; i++) {
+            positions[i] = i;
+            Double value = values.get(i);
+            quantities[i] = value == null ? Double.NaN : value;
+        }
+        return new PackedTimeSeries(positions, quantities);
+    }
+
+    int size() {
+        return quantities.length;
+    }
+
+    int getPosition(int index) {
+        return positions[index];
+    }
+
+    double getQuantity(int index) {
+        return quantities[index];
+    }
+
+    /**
+     * @return the quantities of the points, ordered by position
+     */
+    static List<Double> quantitiesOf(TimeSeries timeSeries) {
+        if (timeSeries instanceof PackedTimeSeries) {
+            return ((PackedTimeSeries) timeSeries).new Quantities();
+        }
+        return timeSeries.getPoints().stream().map(Point::getQuantity).collect(Collectors.toUnmodifiableList());
+    }
+
+    static int sizeOf(TimeSeries timeSeries) {
+        if (timeSeries instanceof PackedTimeSeries) {
+            return ((PackedTimeSeries) timeSeries).size();
+        }
+        return timeSeries.getPoints().size();
+    }
+
+    @Override
+    public synchronized List<Point> getPoints() {
+        if (!pointsCreated) {
+            List<Point> points = new ArrayList<>(quantities.length);
+            for (int i = 0; i < quantities.length; i++) {
+                points.add(new Point().position(positions[i])
+                        .quantity(Double.isNaN(quantities[i]) ? null : quantities[i]));
+            }
+            super.setPoints(List.copyOf(points));
+            pointsCreated = true;
+        }
+        return super.getPoints();
+    }
+
+    @Override
+    public TimeSeries points(List<Point> points) {
+        throw new UnsupportedOperationException("The points of a packed time series cannot be modified");
+    }
+
+    @Override
+    public TimeSeries addPointsItem(Point pointsItem) {
+        throw new UnsupportedOperationException("The points of a packed time series cannot be modified");
+    }
+
+    @Override
+    public void setPoints(List<Point> points) {
+        throw new UnsupportedOperationException("The points of a packed time series cannot be modified");
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        // the inherited implementations compare the points field
+        getPoints();
+        if (o instanceof PackedTimeSeries) {
+            ((PackedTimeSeries) o).getPoints();
+        }
+        return super.equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+        getPoints();
+        return super.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        getPoints();
+        return super.toString();
+    }
+
+    /**
+     * A read-only view, boxes only the value that is asked for
+     */
+    private class Quantities extends AbstractList<Double> implements RandomAccess {
+        @Override
+        public Double get(int index) {
+            double quantity = quantities[index];
+            return Double.isNaN(quantity) ? null : quantity;
+        }
+
+        @Override
+        public int size() {
+            return quantities.length;
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package de.fhg.ise.gateway.interfaces.hedera;
+
+import de.fhg.ise.gateway.interfaces.ems.DTO.BatchExtensionRequest;
+import de.fhg.ise.gateway.interfaces.ems.DTO.ExtensionRequest;
+import de.fhg.ise.gateway.interfaces.ems.RequestStatus;
+import de.fhg.ise.gateway.interfaces.ems.RequestStatusListener;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Recognizes requests that are delivered more than once (retained messages, redelivery after reconnects, retries of
+ * the EMS), such that they do not trigger another HEDERA calculation and DER write.
+ * <p>
+ * Requests are equal if they have the same correlation id or, without a correlation id, the same direction, start,
+ * resolution, values, connection point and skipHedera. Batches are equal if they have the same correlation id or
+ * consist of equal requests. A duplicate of a request in flight is told the status of the original request
+ * from now on. A duplicate of a request whose schedule was written to the DER is told that status again, until
+ * {@code ttl} after completion. Requests that failed are forgotten, so a retry is processed again.
+ * <p>
+ * At most {@code maxEntries} requests are remembered, the least recently requested completed ones are forgotten first.
+ * Thread safe.
+ */
+public class RequestDeduplicator {
+
+    private final long ttlNanos;
+    private final int maxEntries;
+    // access order, such that the least recently requested entry comes first
+    private final LinkedHashMap<Object, Tracked> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    public RequestDeduplicator(Duration ttl, int maxEntries) {
+        this.ttlNanos = ttl.toNanos();
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * @return the listener to process the request with, it has to be closed after processing. Null if the request is
+     *         a duplicate: it must not be processed, the listener is told the status of the original request instead.
+     */
+    public Tracked track(ExtensionRequest req, RequestStatusListener listener) {
+        return track(keyOf(req), listener);
+    }
+
+    /**
+     * As {@link #track(ExtensionRequest, RequestStatusListener)}, for a batch
+     */
+    public Tracked track(BatchExtensionRequest batch, RequestStatusListener listener) {
+        if (batch.getCorrelationId() != null) {
+            return track(batch.getCorrelationId(), listener);
+        }
+        return track(batch.getRequests().stream().map(RequestDeduplicator::keyOf).collect(Collectors.toList()),
+                listener);
+    }
+
+    private Tracked track(Object key, RequestStatusListener listener) {
+        synchronized (entries) {
+            long now = System.nanoTime();
+            Tracked original = entries.get(key);
+            if (original != null && !original.isExpired(now)) {
+                original.join(listener);
+                return null;
+            }
+            Tracked tracked = new Tracked(key, listener);
+            entries.put(key, tracked);
+            evict(now);
+            return tracked;
+        }
+    }
+
+    int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private void evict(long now) {
+        int excess = entries.size() - maxEntries;
+        for (Iterator<Tracked> it = entries.values().iterator(); it.hasNext(); ) {
+            Tracked tracked = it.next();
+            if (tracked.isExpired(now) || (excess > 0 && tracked.isDone())) {
+                it.remove();
+                excess--;
+            }
+        }
+    }
+
+    private void forget(Tracked tracked) {
+        synchronized (entries) {
+            entries.remove(tracked.key, tracked);
+        }
+    }
+
+    private static Object keyOf(ExtensionRequest req) {
+        if (req.getCorrelationId() != null) {
+            return req.getCorrelationId();
+        }
+        // the default start differs on every delivery
+        return Arrays.asList(req.getDirection(), req.getReceivedStart(), req.getResolution(), req.getValues(),
+                req.getMrid(), req.getSkipHedera());
+    }
+
+    /**
+     * A request that is processed or was processed successfully. Forwards its status to all listeners of the request
+     * and its duplicates.
+     */
+    public class Tracked implements RequestStatusListener, AutoCloseable {
+        private final Object key;
+        private final List<RequestStatusListener> listeners = new ArrayList<>();
+        private RequestStatus status;
+        private String detail;
+        private long completedNanos;
+
+        private Tracked(Object key, RequestStatusListener listener) {
+            this.key = key;
+            this.listeners.add(listener);
+        }
+
+        @Override
+        public synchronized void onStatus(RequestStatus status, String detail) {
+            this.status = status;
+            this.detail = detail;
+            if (status.isFinal()) {
+                completedNanos = System.nanoTime();
+            }
+            for (RequestStatusListener listener : listeners) {
+                listener.onStatus(status, detail);
+            }
+            if (status.isFinal()) {
+                listeners.clear();
+            }
+        }
+
+        private synchronized void join(RequestStatusListener listener) {
+            if (status != null) {
+                listener.onStatus(status, detail);
+            }
+            if (!isDone()) {
+                listeners.add(listener);
+            }
+        }
+
+        private synchronized boolean isDone() {
+            return status != null && status.isFinal();
+        }
+
+        private synchronized boolean isExpired(long now) {
+            return isDone() && now - completedNanos >= ttlNanos;
+        }
+
+        /**
+         * Forgets the request unless its schedule was written to the DER
+         */
+        @Override
+        public void close() {
+            boolean keep;
+            synchronized (this) {
+                keep = status == RequestStatus.DER_SCHEDULED;
+                if (!isDone()) {
+                    // processing ended without a final status, duplicates waiting for it must not wait forever
+                    onStatus(RequestStatus.HEDERA_FAILED, "Processing ended unexpectedly");
+                }
+            }
+            if (!keep) {
+                forget(this);
+            }
+        }
+    }
+}
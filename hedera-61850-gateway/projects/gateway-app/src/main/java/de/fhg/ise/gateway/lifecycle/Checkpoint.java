@@ -0,0 +1,152 @@
+package de.fhg.ise.gateway.lifecycle;
+
+import com.google.gson.reflect.TypeToken;
+import de.fhg.ise.gateway.Context;
+import de.fhg.ise.gateway.interfaces.ems.DTO.ExtensionRequest;
+import de.fhg.ise.gateway.interfaces.hedera.HederaDirection;
+import de.fhg.ise.gateway.interfaces.hedera.HederaScheduleInterval;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Requests from the EMS that were still being processed when the gateway was shut down. Written to a file on shutdown
+ * (and while running, as journal of the requests in flight) and picked up again on the next start, such that a restart
+ * neither loses a request nor makes HEDERA calculate a schedule twice.
+ */
+public class Checkpoint {
+
+    private static final Logger log = LoggerFactory.getLogger(Checkpoint.class);
+    private static final Type ENTRY_LIST = new TypeToken<ArrayList<Entry>>() {
+    }.getType();
+
+    private final File file;
+
+    public Checkpoint(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Replaces the content of the checkpoint file. The content is synced to disk and the file is replaced
+     * atomically, so a crash while writing leaves the previous checkpoint intact.
+     */
+    public void write(Collection<Entry> entries) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null) {
+            Files.createDirectories(parent.toPath());
+        }
+        File tmp = new File(file.getPath() + ".tmp");
+        ByteBuffer content = ByteBuffer.wrap(Context.GSON.toJson(entries, ENTRY_LIST).getBytes(StandardCharsets.UTF_8));
+        try (FileChannel channel = FileChannel.open(tmp.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (content.hasRemaining()) {
+                channel.write(content);
+            }
+            channel.force(true);
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        log.debug("Checkpointed {} in-flight request(s) to {}", entries.size(), file.getAbsolutePath());
+    }
+
+    /**
+     * Reads and removes the checkpoint. Returns an empty list if there is none.
+     */
+    public List<Entry> take() throws IOException {
+        if (!file.exists()) {
+            return Collections.emptyList();
+        }
+        List<Entry> entries = Context.GSON.fromJson(Files.readString(file.toPath()), ENTRY_LIST);
+        Files.delete(file.toPath());
+        log.info("Read {} in-flight request(s) from checkpoint {}", entries.size(), file.getAbsolutePath());
+        return entries;
+    }
+
+    /**
+     * A request from the EMS and, if already known, the mrid of the schedule created at HEDERA for it. The requests of
+     * a batch are entries with the same batch id, in the order of the batch.
+     */
+    public static class Entry {
+        HederaDirection direction;
+        long startEpochMillis;
+        HederaScheduleInterval resolution;
+        List<Double> values;
+        boolean skipHedera;
+        UUID mrid;
+        UUID hederaScheduleId;
+        String batchId;
+        // null if the EMS chose none
+        String correlationId;
+
+        public Entry(ExtensionRequest request, UUID hederaScheduleId) {
+            this(request, hederaScheduleId, null);
+        }
+
+        public Entry(ExtensionRequest request, UUID hederaScheduleId, String batchId) {
+            this.direction = request.getDirection();
+            this.startEpochMillis = request.getStart().toEpochMilli();
+            this.resolution = request.getResolution();
+            this.values = request.getValues();
+            this.skipHedera = request.getSkipHedera();
+            this.mrid = request.getMrid();
+            this.hederaScheduleId = hederaScheduleId;
+            this.batchId = batchId;
+            this.correlationId = request.getCorrelationId();
+        }
+
+        public ExtensionRequest getRequest() {
+            ExtensionRequest request = new ExtensionRequest();
+            request.setDirection(direction);
+            request.setStart(Instant.ofEpochMilli(startEpochMillis));
+            request.setResolution(resolution);
+            request.setValues(values);
+            request.setSkipHedera(skipHedera);
+            request.setMrid(mrid);
+            request.setCorrelationId(correlationId);
+            return request;
+        }
+
+        /**
+         * @return null if the request is not part of a batch
+         */
+        public String getBatchId() {
+            return batchId;
+        }
+
+        /**
+         * @return null if the request was interrupted before a schedule was created at HEDERA
+         */
+        public UUID getHederaScheduleId() {
+            return hederaScheduleId;
+        }
+
+        /**
+         * @return true if the schedule of the request would already have run completely
+         */
+        public boolean isExpired(Instant now) {
+            Instant end = Instant.ofEpochMilli(startEpochMillis)
+                    .plus(resolution.getAsDuration().multipliedBy(values.size()));
+            return end.isBefore(now);
+        }
+
+        @Override
+        public String toString() {
+            return "Entry{" + "request=" + getRequest() + ", hederaScheduleId=" + hederaScheduleId
+                    + (batchId == null ? "" : ", batchId=" + batchId) + '}';
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package de.fhg.ise.gateway.lifecycle;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Keeps track of the started components of the gateway and stops them in reverse order of their start, i.e. a
+ * component is stopped before the components it depends on.
+ * <p>
+ * The whole shutdown has to be done within a deadline. Each component is told how much of it is left, such that it
+ * can drain its work and checkpoint what could not be completed in time.
+ */
+public class GatewayLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(GatewayLifecycle.class);
+
+    private final Duration shutdownTimeout;
+    private final Deque<Component> started = new ArrayDeque<>();
+    private final CountDownLatch stopped = new CountDownLatch(1);
+    private volatile boolean ready = false;
+    private boolean stopping = false;
+
+    public GatewayLifecycle(Duration shutdownTimeout) {
+        this.shutdownTimeout = shutdownTimeout;
+    }
+
+    /**
+     * A started component that can be stopped
+     */
+    @FunctionalInterface
+    public interface Stoppable {
+        /**
+         * @param remaining
+         *         time that is left until the shutdown deadline
+         */
+        void stop(Duration remaining) throws Exception;
+    }
+
+    /**
+     * Registers a component that was started successfully. Throws an {@link IllegalStateException} if the gateway is
+     * already shutting down, the component then needs to be stopped by the caller.
+     */
+    public synchronized void started(String name, Stoppable stoppable) {
+        if (stopping) {
+            throw new IllegalStateException("Unable to register " + name + ": gateway is shutting down");
+        }
+        started.push(new Component(name, stoppable));
+        log.debug("Started {}", name);
+    }
+
+    /**
+     * Called once all components are started and the gateway accepts requests from the EMS
+     */
+    public void setReady() {
+        ready = true;
+        log.info("Gateway is ready");
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Registers {@link #shutdown()} as shutdown hook of the JVM, i.e. to be run on SIGTERM / SIGINT
+     */
+    public void stopOnJvmShutdown() {
+        Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown, "gateway-shutdown"));
+    }
+
+    /**
+     * Blocks until {@link #shutdown()} is done
+     */
+    public void awaitShutdown() throws InterruptedException {
+        stopped.await();
+    }
+
+    /**
+     * Stops all components in reverse order of their start. Components that fail to stop are logged and skipped.
+     * Only the first call has an effect.
+     */
+    public void shutdown() {
+        synchronized (this) {
+            if (stopping) {
+                return;
+            }
+            stopping = true;
+        }
+        ready = false;
+        Instant deadline = Instant.now().plus(shutdownTimeout);
+        log.info("Shutting down gateway within {}s", shutdownTimeout.toSeconds());
+        try {
+            Component component;
+            while ((component = started.poll()) != null) {
+                Duration remaining = Duration.between(Instant.now(), deadline);
+                if (remaining.isNegative()) {
+                    remaining = Duration.ZERO;
+                }
+                try {
+                    log.debug("Stopping {}", component.name);
+                    component.stoppable.stop(remaining);
+                    log.info("Stopped {}", component.name);
+                } catch (Exception e) {
+                    log.warn("Unable to stop {} cleanly: {}:{}", component.name, e.getClass(), e.getMessage());
+                }
+            }
+            log.info("Gateway stopped");
+        } finally {
+            stopped.countDown();
+        }
+    }
+
+    private static class Component {
+        final String name;
+        final Stoppable stoppable;
+
+        Component(String name, Stoppable stoppable) {
+            this.name = name;
+            this.stoppable = stoppable;
+        }
+    }
+}
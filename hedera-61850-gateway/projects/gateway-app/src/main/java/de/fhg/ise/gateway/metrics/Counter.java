@@ -0,0 +1,31 @@
+package de.fhg.ise.gateway.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A monotonically increasing count of events
+ */
+public class Counter implements Metric {
+
+    private final LongAdder count = new LongAdder();
+
+    Counter() {
+    }
+
+    public void increment() {
+        count.increment();
+    }
+
+    public void add(long events) {
+        count.add(events);
+    }
+
+    public long get() {
+        return count.sum();
+    }
+
+    @Override
+    public void writeTo(StringBuilder out, String name, String labels) {
+        Metric.writeSample(out, name, labels, count.sum());
+    }
+}
@@ -0,0 +1,109 @@
+package de.fhg.ise.gateway.metrics;
+
+import de.fhg.ise.IEC61850.client.scheduling.ScheduleEnablingErrorKind;
+import de.fhg.ise.IEC61850.client.scheduling.ScheduleState;
+import de.fhg.ise.IEC61850.client.tracing.Span;
+import de.fhg.ise.IEC61850.client.tracing.SpanExporter;
+
+/**
+ * The metrics of the gateway. Exposed via {@link MetricsHttpServer}.
+ */
+public class GatewayMetrics {
+
+    public static final MetricsRegistry REGISTRY = new MetricsRegistry();
+
+    public static final Counter MQTT_RECEIVED = REGISTRY.counter("gateway_mqtt_messages_received_total",
+            "Messages received from the EMS via MQTT");
+    public static final Counter MQTT_REJECTED = REGISTRY.counter("gateway_mqtt_messages_rejected_total",
+            "Messages from the EMS that could not be parsed");
+    public static final Counter REQUESTS_DEDUPLICATED = REGISTRY.counter("gateway_requests_deduplicated_total",
+            "Requests from the EMS not processed because an equal request was in flight or processed recently");
+
+    public static final Counter HEDERA_TOKEN_REFRESHES = REGISTRY.counter("gateway_hedera_token_refreshes_total",
+            "OAuth tokens fetched for the HEDERA API");
+    public static final Histogram HEDERA_CALCULATION_WAIT = REGISTRY.histogram(
+            "gateway_hedera_calculation_wait_seconds",
+            "Time from creating a schedule at HEDERA until it was accepted, declined or timed out");
+
+    public static final Histogram DER_WRITE = REGISTRY.histogram("gateway_der_write_seconds",
+            "Time to write and enable a schedule at the DER");
+    public static final Counter DER_RECONNECTS = REGISTRY.counter("gateway_der_reconnects_total",
+            "Reconnects to the DER after failed writes");
+
+    static {
+        REGISTRY.gauge("gateway_uptime_seconds", "Time since the gateway was started",
+                () -> (System.nanoTime() - Holder.START_NANO_TIME) / 1e9);
+    }
+
+    private GatewayMetrics() {
+    }
+
+    /**
+     * Latency of HEDERA API calls
+     *
+     * @param operation
+     *         one of login, create, read, delete, list
+     */
+    public static Histogram hederaLatency(String operation) {
+        return REGISTRY.histogram("gateway_hedera_request_seconds", "Latency of HEDERA API calls", "operation",
+                operation);
+    }
+
+    /**
+     * Final outcome of schedule requests at HEDERA. The decline rate is the rate of result="declined" over the rate of
+     * all results.
+     *
+     * @param result
+     *         one of accepted, declined, timeout, failed
+     */
+    public static Counter hederaResult(String result) {
+        return REGISTRY.counter("gateway_hedera_schedules_total", "Schedule requests at HEDERA by final outcome",
+                "result", result);
+    }
+
+    /**
+     * States that were read back from the DER after enabling a schedule
+     */
+    public static Counter scheduleState(ScheduleState state) {
+        return REGISTRY.counter("gateway_der_schedule_states_total",
+                "Schedule states read from the DER after enabling a schedule", "state", state.name());
+    }
+
+    /**
+     * Schedules that differed from what was written when read back from the DER
+     *
+     * @param kind
+     *         the SchdEnaErr reported by the DER, otherwise the kind of the mismatch
+     */
+    public static Counter verificationFailure(ScheduleEnablingErrorKind kind) {
+        return REGISTRY.counter("gateway_der_verification_failures_total",
+                "Schedules read back from the DER that differed from what was written", "kind", kind.name());
+    }
+
+    /**
+     * Duration of every traced processing stage, see {@link de.fhg.ise.IEC61850.client.tracing.Tracing}
+     */
+    public static Histogram stageLatency(String stage) {
+        return REGISTRY.histogram("gateway_stage_seconds", "Duration of the processing stages of EMS requests",
+                "stage", stage);
+    }
+
+    /**
+     * Records the duration of all finished spans in {@link #stageLatency(String)}
+     */
+    public static final SpanExporter STAGE_LATENCY_EXPORTER = new SpanExporter() {
+        @Override
+        public void export(Span span) {
+            stageLatency(span.getName()).recordNanos(span.getDurationNanos());
+        }
+
+        @Override
+        public String toString() {
+            return "StageLatencyExporter";
+        }
+    };
+
+    private static class Holder {
+        static final long START_NANO_TIME = System.nanoTime();
+    }
+}
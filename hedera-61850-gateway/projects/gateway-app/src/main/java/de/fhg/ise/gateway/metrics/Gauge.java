@@ -0,0 +1,20 @@
+package de.fhg.ise.gateway.metrics;
+
+import java.util.function.DoubleSupplier;
+
+/**
+ * A value that is sampled when the metrics are scraped
+ */
+class Gauge implements Metric {
+
+    private final DoubleSupplier value;
+
+    Gauge(DoubleSupplier value) {
+        this.value = value;
+    }
+
+    @Override
+    public void writeTo(StringBuilder out, String name, String labels) {
+        Metric.writeSample(out, name, labels, value.getAsDouble());
+    }
+}
@@ -0,0 +1,113 @@
+package de.fhg.ise.gateway.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histogram with log-linear buckets in the style of HdrHistogram: every power of two is split into {@value
+ * #SUB_BUCKETS} linear sub buckets, so any recorded value is represented with a relative error below 4%. Recording
+ * is lock free and does not allocate.
+ * <p>
+ * Values are recorded in nanoseconds and exported in seconds as Prometheus summary with the quantiles {@link
+ * #QUANTILES}.
+ */
+public class Histogram implements Metric {
+
+    static final double[] QUANTILES = { 0.5, 0.9, 0.99, 0.999 };
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+
+    Histogram() {
+    }
+
+    public void recordNanos(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(indexOf(value));
+        count.increment();
+        sum.add(value);
+    }
+
+    /**
+     * Records the time passed since startNanoTime, which is a value of {@link System#nanoTime()}
+     */
+    public void recordSince(long startNanoTime) {
+        recordNanos(System.nanoTime() - startNanoTime);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * The value in nanoseconds below or at which the given quantile of the recorded values lies. Returns 0 if nothing
+     * was recorded yet.
+     */
+    public long getQuantileNanos(double quantile) {
+        long[] snapshot = new long[BUCKET_COUNT];
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        return quantileOf(snapshot, total, quantile);
+    }
+
+    @Override
+    public void writeTo(StringBuilder out, String name, String labels) {
+        long[] snapshot = new long[BUCKET_COUNT];
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        String separator = labels.isEmpty() ? "" : ",";
+        for (double quantile : QUANTILES) {
+            Metric.writeSample(out, name, labels + separator + "quantile=\"" + quantile + "\"",
+                    quantileOf(snapshot, total, quantile) / 1e9);
+        }
+        Metric.writeSample(out, name + "_sum", labels, sum.sum() / 1e9);
+        Metric.writeSample(out, name + "_count", labels, total);
+    }
+
+    private static long quantileOf(long[] snapshot, long total, double quantile) {
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return highestValueOf(i);
+            }
+        }
+        return highestValueOf(snapshot.length - 1);
+    }
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int highestBit = 63 - Long.numberOfLeadingZeros(value);
+        int shift = highestBit - SUB_BUCKET_BITS;
+        // the SUB_BUCKET_BITS + 1 most significant bits select the sub bucket
+        long mantissa = value >>> shift;
+        return ((shift + 1) << SUB_BUCKET_BITS) + (int) (mantissa - SUB_BUCKETS);
+    }
+
+    static long highestValueOf(int index) {
+        int bucket = index >>> SUB_BUCKET_BITS;
+        if (bucket == 0) {
+            return index;
+        }
+        int shift = bucket - 1;
+        long lowest = (long) (SUB_BUCKETS + (index & (SUB_BUCKETS - 1))) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
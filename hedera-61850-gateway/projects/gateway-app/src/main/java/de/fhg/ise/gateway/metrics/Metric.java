@@ -0,0 +1,30 @@
+package de.fhg.ise.gateway.metrics;
+
+/**
+ * A single time series (or for {@link Histogram} a set of time series) within a {@link MetricsRegistry}
+ */
+interface Metric {
+
+    /**
+     * Appends the current value(s) in the Prometheus text exposition format
+     *
+     * @param labels
+     *         labels of this metric, formatted as <code>key="value",...</code> or empty
+     */
+    void writeTo(StringBuilder out, String name, String labels);
+
+    static void writeSample(StringBuilder out, String name, String labels, double value) {
+        out.append(name);
+        if (!labels.isEmpty()) {
+            out.append('{').append(labels).append('}');
+        }
+        out.append(' ');
+        if (value == Math.rint(value) && !Double.isInfinite(value)) {
+            out.append((long) value);
+        }
+        else {
+            out.append(value);
+        }
+        out.append('\n');
+    }
+}
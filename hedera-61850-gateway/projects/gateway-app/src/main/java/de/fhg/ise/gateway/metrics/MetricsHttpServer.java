@@ -0,0 +1,80 @@
+package de.fhg.ise.gateway.metrics;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Serves the metrics of a {@link MetricsRegistry} at {@value #PATH} in the Prometheus text format
+ */
+public class MetricsHttpServer implements Closeable {
+
+    public static final String PATH = "/metrics";
+    public static final String READINESS_PATH = "/ready";
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private static final Logger log = LoggerFactory.getLogger(MetricsHttpServer.class);
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    public MetricsHttpServer(MetricsRegistry registry, int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(port), 0);
+        executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-http");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext(PATH, exchange -> respond(exchange, registry));
+        server.start();
+        log.info("Serving metrics at http://0.0.0.0:{}{}", port, PATH);
+    }
+
+    private static void respond(HttpExchange exchange, MetricsRegistry registry) throws IOException {
+        try (exchange) {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body = registry.toPrometheusText().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    /**
+     * Answers {@value #READINESS_PATH} with 200 if the gateway is ready and 503 otherwise, e.g. for a docker health
+     * check
+     */
+    public void addReadinessCheck(BooleanSupplier isReady) {
+        server.createContext(READINESS_PATH, exchange -> {
+            try (exchange) {
+                exchange.sendResponseHeaders(isReady.getAsBoolean() ? 200 : 503, -1);
+            }
+        });
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,96 @@
+package de.fhg.ise.gateway.metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.DoubleSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Holds all metrics of the application and renders them in the Prometheus text exposition format.
+ * <p>
+ * Metrics are identified by their name and labels. Labels are given as alternating key and value, e.g. {@code
+ * counter("requests_total", "Requests", "result", "accepted")}. Asking for an existing metric again returns the same
+ * instance, so metrics with dynamic labels can be looked up when needed.
+ */
+public class MetricsRegistry {
+
+    private final Map<String, Family> families = new ConcurrentSkipListMap<>();
+
+    public Counter counter(String name, String help, String... labels) {
+        return register(name, help, "counter", labels, Counter::new, Counter.class);
+    }
+
+    /**
+     * A latency histogram, exported as summary
+     */
+    public Histogram histogram(String name, String help, String... labels) {
+        return register(name, help, "summary", labels, Histogram::new, Histogram.class);
+    }
+
+    public void gauge(String name, String help, DoubleSupplier value, String... labels) {
+        register(name, help, "gauge", labels, () -> new Gauge(value), Gauge.class);
+    }
+
+    private <M extends Metric> M register(String name, String help, String type, String[] labels,
+            Supplier<M> factory, Class<M> metricClass) {
+        Family family = families.computeIfAbsent(name, n -> new Family(help, type));
+        if (!family.type.equals(type)) {
+            throw new IllegalArgumentException(
+                    "Metric '" + name + "' is already registered as " + family.type + ", not as " + type);
+        }
+        Metric metric = family.metrics.computeIfAbsent(formatLabels(labels), l -> factory.get());
+        return metricClass.cast(metric);
+    }
+
+    /**
+     * All metrics in the Prometheus text exposition format, version 0.0.4
+     */
+    public String toPrometheusText() {
+        StringBuilder out = new StringBuilder(4096);
+        families.forEach((name, family) -> {
+            out.append("# HELP ").append(name).append(' ').append(family.help).append('\n');
+            out.append("# TYPE ").append(name).append(' ').append(family.type).append('\n');
+            family.metrics.forEach((labels, metric) -> metric.writeTo(out, name, labels));
+        });
+        return out.toString();
+    }
+
+    static String formatLabels(String... labels) {
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("Labels need to be given as key value pairs");
+        }
+        StringBuilder formatted = new StringBuilder();
+        for (int i = 0; i < labels.length; i += 2) {
+            if (i > 0) {
+                formatted.append(',');
+            }
+            formatted.append(labels[i]).append("=\"");
+            String value = labels[i + 1];
+            for (int c = 0; c < value.length(); c++) {
+                char character = value.charAt(c);
+                if (character == '"' || character == '\\') {
+                    formatted.append('\\').append(character);
+                }
+                else if (character == '\n') {
+                    formatted.append("\\n");
+                }
+                else {
+                    formatted.append(character);
+                }
+            }
+            formatted.append('"');
+        }
+        return formatted.toString();
+    }
+
+    private static class Family {
+        final String help;
+        final String type;
+        final Map<String, Metric> metrics = new ConcurrentSkipListMap<>();
+
+        Family(String help, String type) {
+            this.help = help;
+            this.type = type;
+        }
+    }
+}
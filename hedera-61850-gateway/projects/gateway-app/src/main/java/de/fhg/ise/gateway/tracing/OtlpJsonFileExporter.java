@@ -0,0 +1,151 @@
+package de.fhg.ise.gateway.tracing;
+
+import com.google.gson.stream.JsonWriter;
+import de.fhg.ise.IEC61850.client.tracing.Span;
+import de.fhg.ise.IEC61850.client.tracing.SpanExporter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Appends finished traces to a file in the OTLP/JSON format, one ExportTraceServiceRequest per line and trace. The
+ * file can be read by OpenTelemetry tooling, e.g. the 'otlpjsonfile' receiver of the OpenTelemetry collector.
+ * <p>
+ * The spans of a trace are collected by their root span, also if they were closed on other threads, and written when
+ * the root span is closed. Spans closed after their root are written on a line of their own.
+ */
+public class OtlpJsonFileExporter implements SpanExporter, Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(OtlpJsonFileExporter.class);
+
+    private static final String SERVICE_NAME = "hedera-61850-gateway";
+    private static final int SPAN_KIND_INTERNAL = 1;
+    private static final int STATUS_CODE_ERROR = 2;
+
+    private final File file;
+    private final Writer writer;
+    // by root span, the lists are only changed within compute, atomically with respect to removing them
+    private final Map<Span, List<Span>> openTraces = new ConcurrentHashMap<>();
+
+    public OtlpJsonFileExporter(File file) throws IOException {
+        this.file = file;
+        this.writer = new BufferedWriter(
+                new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8));
+        log.info("Exporting traces to {}", file.getAbsolutePath());
+    }
+
+    @Override
+    public void export(Span span) {
+        Span root = span.getRoot();
+        boolean[] late = new boolean[1];
+        openTraces.compute(root, (key, spans) -> {
+            if (spans == null && span != root && root.isClosed()) {
+                // the trace was written already
+                late[0] = true;
+                return null;
+            }
+            List<Span> open = spans == null ? new ArrayList<>() : spans;
+            open.add(span);
+            return open;
+        });
+        if (late[0]) {
+            write(Collections.singletonList(span));
+        }
+        else if (span == root) {
+            write(openTraces.remove(root));
+        }
+    }
+
+    private synchronized void write(List<Span> spans) {
+        try {
+            JsonWriter json = new JsonWriter(writer);
+            json.beginObject().name("resourceSpans").beginArray().beginObject();
+            json.name("resource").beginObject().name("attributes").beginArray();
+            writeAttribute(json, "service.name", SERVICE_NAME);
+            json.endArray().endObject();
+            json.name("scopeSpans").beginArray().beginObject();
+            json.name("scope").beginObject().name("name").value(Span.class.getPackage().getName()).endObject();
+            json.name("spans").beginArray();
+            for (Span span : spans) {
+                writeSpan(json, span);
+            }
+            json.endArray().endObject().endArray().endObject().endArray().endObject();
+            json.flush();
+            writer.write('\n');
+            writer.flush();
+        } catch (IOException e) {
+            log.warn("Unable to write trace to {}", file, e);
+        }
+    }
+
+    private static void writeSpan(JsonWriter json, Span span) throws IOException {
+        json.beginObject();
+        json.name("traceId").value(toTraceId(span.getCorrelationId()));
+        json.name("spanId").value(span.getSpanId());
+        if (span.getParentSpanId() != null) {
+            json.name("parentSpanId").value(span.getParentSpanId());
+        }
+        json.name("name").value(span.getName());
+        json.name("kind").value(SPAN_KIND_INTERNAL);
+        // 64 bit integers are encoded as strings in OTLP/JSON
+        json.name("startTimeUnixNano").value(Long.toString(span.getStartEpochNanos()));
+        json.name("endTimeUnixNano").value(Long.toString(span.getStartEpochNanos() + span.getDurationNanos()));
+        json.name("attributes").beginArray();
+        writeAttribute(json, "correlation.id", span.getCorrelationId());
+        for (Map.Entry<String, String> attribute : span.getAttributes().entrySet()) {
+            writeAttribute(json, attribute.getKey(), attribute.getValue());
+        }
+        json.endArray();
+        if (span.getError() != null) {
+            json.name("status").beginObject();
+            json.name("code").value(STATUS_CODE_ERROR);
+            json.name("message").value(span.getError());
+            json.endObject();
+        }
+        json.endObject();
+    }
+
+    private static void writeAttribute(JsonWriter json, String key, String value) throws IOException {
+        json.beginObject();
+        json.name("key").value(key);
+        json.name("value").beginObject().name("stringValue").value(value).endObject();
+        json.endObject();
+    }
+
+    /**
+     * OTLP requires 16 byte trace ids. Correlation ids that are UUIDs are used as they are, all others are hashed.
+     */
+    static String toTraceId(String correlationId) {
+        UUID uuid;
+        try {
+            uuid = UUID.fromString(correlationId);
+        } catch (IllegalArgumentException e) {
+            uuid = UUID.nameUUIDFromBytes(correlationId.getBytes(StandardCharsets.UTF_8));
+        }
+        return String.format("%016x%016x", uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        writer.close();
+    }
+
+    @Override
+    public String toString() {
+        return "OtlpJsonFileExporter{" + "file=" + file + '}';
+    }
+}
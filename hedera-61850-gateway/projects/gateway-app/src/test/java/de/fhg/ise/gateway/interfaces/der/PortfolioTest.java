@@ -0,0 +1,133 @@
+package de.fhg.ise.gateway.interfaces.der;
+
+import de.fhg.ise.IEC61850.client.scheduling.PriorityBand;
+import de.fhg.ise.gateway.interfaces.ems.DTO.Schedule;
+import de.fhg.ise.gateway.interfaces.hedera.HederaScheduleInterval;
+import org.ini4j.Ini;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
+
+class PortfolioTest {
+
+    private final List<PortfolioMember> members = Arrays.asList(member("pv", 3, 1000), member("battery", 1, 500));
+
+    @Test
+    void proportionalAllocationFollowsWeights() {
+        List<List<Double>> allocated = AllocationStrategies.PROPORTIONAL.allocate(Arrays.asList(400d, 800d), members);
+        Assertions.assertEquals(Arrays.asList(300d, 600d), allocated.get(0));
+        Assertions.assertEquals(Arrays.asList(100d, 200d), allocated.get(1));
+    }
+
+    @Test
+    void inOrderAllocationFillsMembersUpToTheirMaximum() {
+        List<List<Double>> allocated = AllocationStrategies.IN_ORDER.allocate(Arrays.asList(400d, 1200d), members);
+        Assertions.assertEquals(Arrays.asList(400d, 1000d), allocated.get(0));
+        Assertions.assertEquals(Arrays.asList(0d, 200d), allocated.get(1));
+        Assertions.assertSame(AllocationStrategies.IN_ORDER, AllocationStrategies.byName("inOrder"));
+    }
+
+    @Test
+    void allocationKeepsSignsAndMissingQuantities() {
+        List<List<Double>> allocated = AllocationStrategies.IN_ORDER.allocate(Arrays.asList(-1200d, null), members);
+        Assertions.assertEquals(Arrays.asList(-1000d, null), allocated.get(0));
+        Assertions.assertEquals(Arrays.asList(-200d, null), allocated.get(1));
+        allocated = AllocationStrategies.PROPORTIONAL.allocate(Arrays.asList(null, -400d), members);
+        Assertions.assertEquals(Arrays.asList(null, -300d), allocated.get(0));
+    }
+
+    @Test
+    void zeroWeightsAreRejected() {
+        Ini ini = new Ini();
+        ini.put("portfolio", "members", "pv");
+        ini.put("portfolio-pv", "mrid", UUID.randomUUID().toString());
+        ini.put("portfolio-pv", "host", "localhost");
+        ini.put("portfolio-pv", "port", "102");
+        ini.put("portfolio-pv", "weight", "0");
+        Assertions.assertThrows(RuntimeException.class, () -> Portfolio.PortfolioSettings.parse(ini));
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> AllocationStrategies.PROPORTIONAL.allocate(Arrays.asList(1d), Arrays.asList(member("pv", 0, 1))));
+    }
+
+    @Test
+    void sharesAreWrittenToAllMembers() throws Exception {
+        ConcurrentMap<String, List<Double>> written = new ConcurrentHashMap<>();
+        Portfolio portfolio = new Portfolio(members,
+                Arrays.asList(writer("pv", written, false), writer("battery", written, false)),
+                AllocationStrategies.PROPORTIONAL);
+        try {
+            String detail = portfolio.write(schedule(400d), PriorityBands.DEFAULT_BAND);
+            Assertions.assertEquals("pv: ok; battery: ok", detail);
+            Assertions.assertEquals(Arrays.asList(300d), written.get("pv"));
+            Assertions.assertEquals(Arrays.asList(100d), written.get("battery"));
+            Assertions.assertEquals(Arrays.asList(members.get(0).getNodeMrid(), members.get(1).getNodeMrid()),
+                    portfolio.getAggregatedNodes());
+        } finally {
+            portfolio.close();
+        }
+    }
+
+    @Test
+    void failuresOfMembersAreReportedTogether() {
+        ConcurrentMap<String, List<Double>> written = new ConcurrentHashMap<>();
+        Portfolio portfolio = new Portfolio(members,
+                Arrays.asList(writer("pv", written, false), writer("battery", written, true)),
+                AllocationStrategies.PROPORTIONAL);
+        try {
+            IOException e = Assertions.assertThrows(IOException.class, () -> portfolio.write(schedule(400d),
+                    PriorityBands.DEFAULT_BAND));
+            Assertions.assertTrue(e.getMessage().contains("1 of 2 DERs: battery: unreachable"), e.getMessage());
+            Assertions.assertTrue(written.containsKey("pv"), "other members are written anyway");
+        } finally {
+            portfolio.close();
+        }
+    }
+
+    private static PortfolioMember member(String name, double weight, double maxWatts) {
+        return new PortfolioMember(name, UUID.randomUUID(), "localhost", 102, weight, maxWatts);
+    }
+
+    private static ScheduleTarget writer(String name, ConcurrentMap<String, List<Double>> written, boolean fail) {
+        return new ScheduleTarget() {
+            @Override
+            public String write(Schedule schedule, PriorityBand band) throws IOException {
+                if (fail) {
+                    throw new IOException("unreachable");
+                }
+                written.put(name, schedule.getValues());
+                return "ok";
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    private static Schedule schedule(double... values) {
+        return new Schedule() {
+            @Override
+            public List<Double> getValues() {
+                return Arrays.stream(values).boxed().collect(Collectors.toList());
+            }
+
+            @Override
+            public HederaScheduleInterval getInterval() {
+                return HederaScheduleInterval.FIVE_MINUTES;
+            }
+
+            @Override
+            public Instant getStart() {
+                return Instant.ofEpochSecond(1704721020);
+            }
+        };
+    }
+}
@@ -0,0 +1,25 @@
+package de.fhg.ise.gateway.interfaces.der;
+
+import de.fhg.ise.IEC61850.client.scheduling.PriorityBand;
+import org.ini4j.Ini;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class PriorityBandsTest {
+
+    @Test
+    void sourcesWithoutBandUseTheDefault() {
+        Ini ini = new Ini();
+        ini.put("schedule-priority", "default", "10");
+        ini.put("schedule-priority", "http", "30 - 39");
+        PriorityBands bands = PriorityBands.parse(ini);
+
+        Assertions.assertEquals(new PriorityBand(30, 39), bands.forSource("http"));
+        Assertions.assertEquals(new PriorityBand(10, 10), bands.forSource("mqtt"));
+        Assertions.assertEquals(new PriorityBand(10, 10), bands.forSource(null));
+        Assertions.assertEquals(PriorityBands.DEFAULT_BAND, PriorityBands.parse(new Ini()).forSource("uds"));
+
+        ini.put("schedule-priority", "uds", "39-30");
+        Assertions.assertThrows(RuntimeException.class, () -> PriorityBands.parse(ini));
+    }
+}
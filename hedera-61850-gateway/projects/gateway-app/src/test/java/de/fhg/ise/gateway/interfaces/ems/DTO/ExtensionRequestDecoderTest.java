@@ -0,0 +1,111 @@
+package de.fhg.ise.gateway.interfaces.ems.DTO;
+
+import de.fhg.ise.gateway.interfaces.hedera.HederaDirection;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.UUID;
+
+import static de.fhg.ise.gateway.interfaces.hedera.HederaScheduleInterval.FIVE_MINUTES;
+
+class ExtensionRequestDecoderTest {
+
+    private final ExtensionRequestDecoder decoder = new ExtensionRequestDecoder();
+    private final DecodedExtensionRequest decoded = new DecodedExtensionRequest();
+
+    @Test
+    void decodesLikeGson() throws MalformedRequestException {
+        final String json = "{\"skipHedera\":true,\"direction\":\"EXPORT\",\"start\":{\"seconds\":1704721020,\"nanos\":1337},\"resolution\":\"FIVE_MINUTES\",\"values\":[13.37, -42, 1e3]}";
+
+        ExtensionRequest actual = decoder.decode(utf8(json), decoded).toExtensionRequest();
+        Assertions.assertEquals(HederaDirection.EXPORT, actual.getDirection());
+        Assertions.assertEquals(FIVE_MINUTES, actual.getResolution());
+        Assertions.assertEquals(Instant.ofEpochSecond(1704721020, 1337), actual.getStart());
+        Assertions.assertIterableEquals(Arrays.asList(13.37, -42d, 1000d), actual.getValues());
+        Assertions.assertEquals(true, actual.getSkipHedera());
+    }
+
+    @Test
+    void correlationIdIsKeptUntilNextRequest() throws MalformedRequestException {
+        final String json = "{\"correlationId\":\"ems-42\",\"direction\":\"IMPORT\",\"resolution\":\"FIVE_MINUTES\",\"values\":[1]}";
+        decoder.decode(utf8(json), decoded);
+        Assertions.assertEquals("ems-42", decoded.toExtensionRequest().getCorrelationId());
+
+        decoder.decode(utf8("{\"direction\":\"IMPORT\",\"resolution\":\"FIVE_MINUTES\",\"values\":[1]}"), decoded);
+        Assertions.assertNull(decoded.getCorrelationId());
+        assertRejected("{\"correlationId\":\"a\\\"b\",\"direction\":\"IMPORT\",\"values\":[1]}", "escape");
+    }
+
+    @Test
+    void numbersAreParsedExactly() throws MalformedRequestException {
+        Random random = new Random(42);
+        double[] expected = new double[1000];
+        StringBuilder values = new StringBuilder();
+        for (int i = 0; i < expected.length; i++) {
+            expected[i] = i % 2 == 0 ? random.nextDouble() * 1e6 : Math.round(random.nextDouble() * 1e5) / 100d;
+            values.append(i == 0 ? "" : ",").append(expected[i]);
+        }
+        decoder.decode(utf8("{\"direction\":\"IMPORT\",\"resolution\":\"FIVE_MINUTES\",\"values\":[" + values + "]}"),
+                decoded);
+
+        Assertions.assertEquals(expected.length, decoded.size());
+        for (int i = 0; i < expected.length; i++) {
+            Assertions.assertEquals(expected[i], decoded.getValue(i));
+        }
+        Assertions.assertFalse(decoded.hasStart());
+    }
+
+    @Test
+    void rejectsInvalidRequests() {
+        assertRejected("{\"direction\":\"IMPORT\",\"resolution\":\"FIVE_MINUTES\",\"values\":[]}", "at least one value");
+        assertRejected("{\"direction\":\"SIDEWAYS\",\"resolution\":\"FIVE_MINUTES\",\"values\":[1]}", "SIDEWAYS");
+        assertRejected("{\"resolution\":\"FIVE_MINUTES\",\"values\":[1]}", "'direction'");
+        assertRejected("{\"direction\":\"IMPORT\",\"resolution\":\"FIVE_MINUTES\",\"values\":[1,]}", "number");
+        assertRejected("{\"direction\":\"IMPORT\",\"resolution\":\"FIVE_MINUTES\",\"values\":[1]} x", "after");
+        assertRejected("{\"direction\":\"IMPORT\",\"resolution\":\"FIVE_MINUTES\",\"values\":[1e999]}", "range");
+        assertRejected("{\"direction\":\"IMPORT\",\"start\":{\"nanos\":1},\"resolution\":\"FIVE_MINUTES\"", "seconds");
+        assertRejected("", "end of request");
+    }
+
+    @Test
+    void decodesBatches() throws MalformedRequestException {
+        final String json = "{\"correlationId\":\"cycle-7\",\"requests\":[{\"direction\":\"IMPORT\",\"resolution\":\"FIVE_MINUTES\",\"values\":[1,2]},{\"direction\":\"IMPORT\",\"mrid\":\"6f7c1a62-52e4-4b7e-9f0a-3d2c2b1e0a11\",\"resolution\":\"FIVE_MINUTES\",\"values\":[3]}]}";
+
+        Assertions.assertTrue(decoder.isBatch(utf8(json)));
+        Assertions.assertFalse(decoder.isBatch(utf8("{\"direction\":\"IMPORT\",\"values\":[1]}")));
+        BatchExtensionRequest batch = decoder.decodeBatch(utf8(json), decoded);
+        Assertions.assertEquals("cycle-7", batch.getCorrelationId());
+        Assertions.assertEquals(2, batch.getRequests().size());
+        Assertions.assertIterableEquals(Arrays.asList(1d, 2d), batch.getRequests().get(0).getValues());
+        Assertions.assertNull(batch.getRequests().get(0).getMrid());
+        Assertions.assertEquals(HederaDirection.IMPORT, batch.getRequests().get(1).getDirection());
+        Assertions.assertEquals(UUID.fromString("6f7c1a62-52e4-4b7e-9f0a-3d2c2b1e0a11"),
+                batch.getRequests().get(1).getMrid());
+
+        MalformedRequestException e = Assertions.assertThrows(MalformedRequestException.class,
+                () -> decoder.decodeBatch(utf8("{\"requests\":[{\"skipHedera\":true,\"direction\":\"IMPORT\","
+                        + "\"resolution\":\"FIVE_MINUTES\",\"values\":[1]}]}"), decoded));
+        Assertions.assertTrue(e.getMessage().contains("skip HEDERA"), e.getMessage());
+
+        e = Assertions.assertThrows(MalformedRequestException.class, () -> decoder.decodeBatch(utf8(
+                "{\"requests\":[{\"direction\":\"IMPORT\",\"resolution\":\"FIVE_MINUTES\",\"values\":[1]},"
+                        + "{\"direction\":\"EXPORT\",\"resolution\":\"FIVE_MINUTES\",\"values\":[1]}]}"),
+                decoded));
+        Assertions.assertTrue(e.getMessage().contains("same direction"), e.getMessage());
+    }
+
+    private void assertRejected(String json, String messagePart) {
+        MalformedRequestException e = Assertions.assertThrows(MalformedRequestException.class,
+                () -> decoder.decode(utf8(json), decoded));
+        Assertions.assertTrue(e.getMessage().contains(messagePart), e.getMessage());
+    }
+
+    private static ByteBuffer utf8(String json) {
+        return ByteBuffer.wrap(json.getBytes(StandardCharsets.UTF_8)).asReadOnlyBuffer();
+    }
+}
@@ -0,0 +1,51 @@
+package de.fhg.ise.gateway.interfaces.ems;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+class EmsLaneTest {
+
+    @Test
+    void fullLaneDropsAndStoppedLaneReturnsWaitingMessages() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> processed = new CopyOnWriteArrayList<>();
+        EmsLane<EmsMessage> lane = new EmsLane<>("test/lane", 2, message -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            processed.add(message.getPayload().get(0) & 0xFF);
+        });
+
+        Assertions.assertTrue(lane.offer(payload(1)));
+        Assertions.assertTrue(started.await(5, TimeUnit.SECONDS));
+        Assertions.assertTrue(lane.offer(payload(2)));
+        Assertions.assertTrue(lane.offer(payload(3)));
+        Assertions.assertFalse(lane.offer(payload(4)), "lane holds 2 waiting messages at most");
+
+        List<EmsMessage> waiting = lane.stop();
+        release.countDown();
+
+        Assertions.assertEquals(2, waiting.size());
+        Assertions.assertEquals(2, waiting.get(0).getPayload().get(0));
+        Assertions.assertEquals(3, waiting.get(1).getPayload().get(0));
+        Assertions.assertFalse(lane.offer(payload(5)), "stopped lane accepts no messages");
+        for (int i = 0; i < 50 && processed.isEmpty(); i++) {
+            Thread.sleep(10);
+        }
+        Assertions.assertEquals(List.of(1), processed);
+    }
+
+    private static EmsMessage payload(int id) {
+        return new EmsMessage("test/lane", ByteBuffer.wrap(new byte[] { (byte) id }));
+    }
+}
@@ -0,0 +1,48 @@
+package de.fhg.ise.gateway.interfaces.ems;
+
+import org.ini4j.Ini;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+class HttpEmsInterfaceTest {
+
+    @Test
+    void malformedRequestsAreRejected() throws Exception {
+        Ini ini = new Ini();
+        ini.put("ems-http", "port", 0);
+        HttpEmsInterface http = new HttpEmsInterface(ini);
+        http.start(null);
+        try {
+            HttpURLConnection post = open(http, HttpEmsInterface.PATH);
+            post.setRequestMethod("POST");
+            post.setDoOutput(true);
+            try (OutputStream out = post.getOutputStream()) {
+                out.write("{\"direction\":\"SIDEWAYS\"}".getBytes(StandardCharsets.UTF_8));
+            }
+            Assertions.assertEquals(400, post.getResponseCode());
+            Assertions.assertTrue(read(post.getErrorStream()).contains("\"status\":\"REJECTED\""));
+
+            Assertions.assertEquals(404, open(http, HttpEmsInterface.PATH + "/unknown").getResponseCode());
+        } finally {
+            http.stop(Duration.ofSeconds(1));
+        }
+    }
+
+    private static HttpURLConnection open(HttpEmsInterface http, String path) throws IOException {
+        return (HttpURLConnection) new URL("http://127.0.0.1:" + http.getPort() + path).openConnection();
+    }
+
+    private static String read(InputStream in) throws IOException {
+        try (in) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
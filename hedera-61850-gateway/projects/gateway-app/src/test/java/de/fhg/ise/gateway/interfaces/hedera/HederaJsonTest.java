@@ -0,0 +1,44 @@
+package de.fhg.ise.gateway.interfaces.hedera;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import io.swagger.client.model.ScheduleGetResponse;
+import io.swagger.client.model.TimeSeries;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+class HederaJsonTest {
+
+    private final Gson gson = HederaJson.register(new GsonBuilder()).create();
+
+    @Test
+    void pointsAreOrderedByPosition() {
+        final String json = "{\"mRID\":\"6f7c1a62-52e4-4b7e-9f0a-3d2c2b1e0a11\",\"requestDirectives\":[],\"schedule\":{\"mRID\":\"12345678-1234-1234-1234-123456789012\",\"registeredInterTies\":[{\"mRID\":\"12345678-1234-1234-1234-123456789012\",\"timeSeries\":{\"points\":[{\"position\":2,\"reason\":\"2001\",\"quantity\":30.5},{\"position\":0,\"quantity\":10},{\"position\":1,\"quantity\":null}]}}]}}";
+
+        HederaSchedule schedule = new HederaSchedule(gson.fromJson(json, ScheduleGetResponse.class));
+        Assertions.assertEquals(1, schedule.getPartCount());
+        Assertions.assertEquals(Arrays.asList(10d, null, 30.5), schedule.getValues());
+        TimeSeries timeSeries = gson.fromJson(json, ScheduleGetResponse.class)
+                .getSchedule()
+                .getRegisteredInterTies()
+                .get(0)
+                .getTimeSeries();
+        Assertions.assertEquals(Integer.valueOf(2), timeSeries.getPoints().get(2).getPosition());
+
+        Assertions.assertThrows(JsonParseException.class, () -> gson.fromJson(
+                "{\"points\":[{\"position\":1,\"quantity\":1},{\"position\":1,\"quantity\":2}]}", TimeSeries.class));
+    }
+
+    @Test
+    void packedTimeSeriesAreWrittenLikePoints() {
+        TimeSeries written = PackedTimeSeries.of(Arrays.asList(1000d, -2.5));
+
+        Assertions.assertEquals(
+                "{\"points\":[{\"position\":0,\"quantity\":1000.0},{\"position\":1,\"quantity\":-2.5}]}",
+                gson.toJson(written, TimeSeries.class));
+        Assertions.assertEquals(written, gson.fromJson(gson.toJson(written), TimeSeries.class));
+    }
+}
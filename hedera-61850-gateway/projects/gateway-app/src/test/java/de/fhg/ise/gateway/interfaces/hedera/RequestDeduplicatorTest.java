@@ -0,0 +1,85 @@
+package de.fhg.ise.gateway.interfaces.hedera;
+
+import de.fhg.ise.gateway.interfaces.ems.DTO.ExtensionRequest;
+import de.fhg.ise.gateway.interfaces.ems.RequestStatus;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+class RequestDeduplicatorTest {
+
+    private final RequestDeduplicator deduplicator = new RequestDeduplicator(Duration.ofHours(1), 2);
+
+    @Test
+    void duplicatesFollowTheOriginalRequest() {
+        List<RequestStatus> original = new ArrayList<>();
+        List<RequestStatus> duplicate = new ArrayList<>();
+
+        RequestDeduplicator.Tracked tracked = deduplicator.track(request(1), (status, detail) -> original.add(status));
+        tracked.onStatus(RequestStatus.HEDERA_REQUESTED, "mrid=1");
+        Assertions.assertNull(deduplicator.track(request(1), (status, detail) -> duplicate.add(status)));
+        tracked.onStatus(RequestStatus.DER_SCHEDULED, null);
+        tracked.close();
+
+        Assertions.assertEquals(Arrays.asList(RequestStatus.HEDERA_REQUESTED, RequestStatus.DER_SCHEDULED), original);
+        Assertions.assertEquals(original, duplicate);
+
+        List<RequestStatus> late = new ArrayList<>();
+        Assertions.assertNull(deduplicator.track(request(1), (status, detail) -> late.add(status)));
+        Assertions.assertEquals(Arrays.asList(RequestStatus.DER_SCHEDULED), late);
+        Assertions.assertNotNull(deduplicator.track(request(2), (status, detail) -> {
+        }), "different values");
+    }
+
+    @Test
+    void requestsWithoutStartAreDuplicates() throws InterruptedException {
+        ExtensionRequest original = request(1);
+        original.setStart(null);
+        Assertions.assertNotNull(deduplicator.track(original, (status, detail) -> {
+        }));
+        Thread.sleep(5);
+        ExtensionRequest redelivered = request(1);
+        redelivered.setStart(null);
+        Assertions.assertNotEquals(original.getStart(), redelivered.getStart(), "default start");
+        Assertions.assertNull(deduplicator.track(redelivered, (status, detail) -> {
+        }));
+    }
+
+    @Test
+    void failedRequestsAreProcessedAgain() {
+        RequestDeduplicator.Tracked tracked = deduplicator.track(request(1), (status, detail) -> {
+        });
+        tracked.onStatus(RequestStatus.HEDERA_TIMEOUT, null);
+        tracked.close();
+
+        Assertions.assertNotNull(deduplicator.track(request(1), (status, detail) -> {
+        }));
+    }
+
+    @Test
+    void completedRequestsAreEvictedFirst() {
+        for (int i = 0; i < 3; i++) {
+            RequestDeduplicator.Tracked tracked = deduplicator.track(request(i), (status, detail) -> {
+            });
+            tracked.onStatus(RequestStatus.DER_SCHEDULED, null);
+            tracked.close();
+        }
+        Assertions.assertEquals(2, deduplicator.size());
+        Assertions.assertNotNull(deduplicator.track(request(0), (status, detail) -> {
+        }), "least recently requested entry was evicted");
+    }
+
+    private static ExtensionRequest request(double value) {
+        ExtensionRequest request = new ExtensionRequest();
+        request.setDirection(HederaDirection.IMPORT);
+        request.setStart(Instant.ofEpochSecond(1704721020));
+        request.setResolution(HederaScheduleInterval.FIVE_MINUTES);
+        request.setValues(Arrays.asList(value, 2d));
+        return request;
+    }
+}
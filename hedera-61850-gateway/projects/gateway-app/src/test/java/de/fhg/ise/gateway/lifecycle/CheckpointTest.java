@@ -0,0 +1,46 @@
+package de.fhg.ise.gateway.lifecycle;
+
+import de.fhg.ise.gateway.interfaces.ems.DTO.ExtensionRequest;
+import de.fhg.ise.gateway.interfaces.hedera.HederaDirection;
+import de.fhg.ise.gateway.interfaces.hedera.HederaScheduleInterval;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+class CheckpointTest {
+
+    @Test
+    void inFlightRequestsSurviveRestart() throws IOException {
+        File file = new File(Files.createTempDirectory("checkpoint").toFile(), "state/checkpoint.json");
+        Checkpoint checkpoint = new Checkpoint(file);
+        Assertions.assertTrue(checkpoint.take().isEmpty());
+
+        ExtensionRequest request = new ExtensionRequest();
+        request.setDirection(HederaDirection.values()[0]);
+        request.setStart(Instant.parse("2023-06-01T12:00:00Z"));
+        request.setResolution(HederaScheduleInterval.values()[0]);
+        request.setValues(Arrays.asList(1.0, 2.5));
+        UUID scheduleId = UUID.randomUUID();
+
+        checkpoint.write(Arrays.asList(new Checkpoint.Entry(request, scheduleId), new Checkpoint.Entry(request, null)));
+        List<Checkpoint.Entry> entries = new Checkpoint(file).take();
+
+        Assertions.assertFalse(file.exists(), "a checkpoint is only resumed once");
+        Assertions.assertEquals(2, entries.size());
+        Assertions.assertEquals(scheduleId, entries.get(0).getHederaScheduleId());
+        Assertions.assertNull(entries.get(1).getHederaScheduleId());
+        ExtensionRequest restored = entries.get(0).getRequest();
+        Assertions.assertEquals(request.getStart(), restored.getStart());
+        Assertions.assertEquals(request.getValues(), restored.getValues());
+        Assertions.assertEquals(request.getDirection(), restored.getDirection());
+        Assertions.assertTrue(entries.get(0).isExpired(Instant.parse("2023-06-02T00:00:00Z")));
+        Assertions.assertFalse(entries.get(0).isExpired(Instant.parse("2023-06-01T12:00:00Z")));
+    }
+}
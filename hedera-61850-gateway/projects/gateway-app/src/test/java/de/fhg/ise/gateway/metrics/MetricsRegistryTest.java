@@ -0,0 +1,39 @@
+package de.fhg.ise.gateway.metrics;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class MetricsRegistryTest {
+
+    @Test
+    void histogramQuantilesAreWithinBucketPrecision() {
+        Histogram histogram = new Histogram();
+        for (long millis = 1; millis <= 1000; millis++) {
+            histogram.recordNanos(millis * 1_000_000);
+        }
+        Assertions.assertEquals(1000, histogram.getCount());
+        assertWithinPercent(500_000_000, histogram.getQuantileNanos(0.5), 4);
+        assertWithinPercent(990_000_000, histogram.getQuantileNanos(0.99), 4);
+    }
+
+    @Test
+    void prometheusTextFormat() {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.counter("test_total", "A counter", "result", "ok").add(3);
+        registry.counter("test_total", "A counter", "result", "fail\"ed").increment();
+        registry.histogram("test_seconds", "A histogram").recordNanos(2_000_000_000L);
+
+        String text = registry.toPrometheusText();
+        Assertions.assertTrue(text.contains("# TYPE test_total counter\n"), text);
+        Assertions.assertTrue(text.contains("test_total{result=\"ok\"} 3\n"), text);
+        Assertions.assertTrue(text.contains("test_total{result=\"fail\\\"ed\"} 1\n"), text);
+        Assertions.assertTrue(text.contains("# TYPE test_seconds summary\n"), text);
+        Assertions.assertTrue(text.contains("test_seconds_count 1\n"), text);
+        Assertions.assertEquals(1, text.split("# TYPE test_total").length - 1, "one TYPE line per family");
+    }
+
+    private static void assertWithinPercent(long expected, long actual, double percent) {
+        Assertions.assertTrue(Math.abs(actual - expected) <= expected * percent / 100,
+                "expected " + expected + " +-" + percent + "% but was " + actual);
+    }
+}
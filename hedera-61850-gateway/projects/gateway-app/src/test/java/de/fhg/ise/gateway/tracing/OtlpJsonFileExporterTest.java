@@ -0,0 +1,138 @@
+package de.fhg.ise.gateway.tracing;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import de.fhg.ise.IEC61850.client.tracing.Span;
+import de.fhg.ise.IEC61850.client.tracing.Tracing;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+class OtlpJsonFileExporterTest {
+
+    @Test
+    void oneLinePerTraceWithAllSpans() throws IOException {
+        File file = File.createTempFile("traces", ".jsonl");
+        file.deleteOnExit();
+        String correlationId = "0b5f5e4c-56b1-4f6b-9a8c-2f3a1e0d9c71";
+
+        OtlpJsonFileExporter exporter = new OtlpJsonFileExporter(file);
+        Tracing.addExporter(exporter);
+        try (Span trace = Tracing.startTrace("ems-request", correlationId)) {
+            Assertions.assertEquals(correlationId, Tracing.currentCorrelationId());
+            try (Span parse = Tracing.span("json-parse")) {
+                parse.setAttribute("values", 2);
+            }
+            try (Span write = Tracing.span("der-write-schedule")) {
+                Tracing.span("der-operate").setError(new IOException("timeout")).close();
+            }
+        } finally {
+            Tracing.removeExporter(exporter);
+            exporter.close();
+        }
+        Assertions.assertNull(Tracing.currentCorrelationId());
+
+        List<String> lines = Files.readAllLines(file.toPath());
+        Assertions.assertEquals(1, lines.size());
+        JsonArray spans = JsonParser.parseString(lines.get(0))
+                .getAsJsonObject()
+                .getAsJsonArray("resourceSpans")
+                .get(0)
+                .getAsJsonObject()
+                .getAsJsonArray("scopeSpans")
+                .get(0)
+                .getAsJsonObject()
+                .getAsJsonArray("spans");
+        Assertions.assertEquals(4, spans.size());
+
+        JsonObject root = spans.get(3).getAsJsonObject();
+        Assertions.assertEquals("ems-request", root.get("name").getAsString());
+        Assertions.assertEquals("0b5f5e4c56b14f6b9a8c2f3a1e0d9c71", root.get("traceId").getAsString());
+        Assertions.assertNull(root.get("parentSpanId"));
+
+        JsonObject operate = spans.get(1).getAsJsonObject();
+        Assertions.assertEquals("der-operate", operate.get("name").getAsString());
+        Assertions.assertEquals(spans.get(2).getAsJsonObject().get("spanId"), operate.get("parentSpanId"));
+        Assertions.assertEquals(2, operate.getAsJsonObject("status").get("code").getAsInt());
+    }
+
+    @Test
+    void spansOfOtherThreadsJoinTheTraceOfTheirParent() throws Exception {
+        File file = File.createTempFile("traces", ".jsonl");
+        file.deleteOnExit();
+        String correlationId = "request-7";
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        OtlpJsonFileExporter exporter = new OtlpJsonFileExporter(file);
+        Tracing.addExporter(exporter);
+        CountDownLatch requestClosed = new CountDownLatch(1);
+        Future<?> late;
+        try {
+            try (Span trace = Tracing.startTrace("ems-request", correlationId)) {
+                List<Future<?>> members = new ArrayList<>();
+                for (int i = 0; i < 8; i++) {
+                    members.add(executor.submit(() -> {
+                        try (Span member = Tracing.span("der-write", trace)) {
+                            Assertions.assertEquals(correlationId, Tracing.currentCorrelationId());
+                            Tracing.span("der-verify").close();
+                        }
+                        Assertions.assertNull(Tracing.currentSpan(), "nothing left open on the worker");
+                    }));
+                }
+                for (Future<?> member : members) {
+                    member.get();
+                }
+                // another request starting its own trace while this one is open
+                Tracing.startTrace("resumed-request", correlationId).close();
+                Assertions.assertSame(trace, Tracing.currentSpan());
+                late = executor.submit(() -> {
+                    try (Span span = Tracing.span("late", trace)) {
+                        requestClosed.await();
+                    }
+                    return null;
+                });
+            }
+            requestClosed.countDown();
+            late.get();
+        } finally {
+            executor.shutdownNow();
+            Tracing.removeExporter(exporter);
+            exporter.close();
+        }
+
+        List<String> lines = Files.readAllLines(file.toPath());
+        Assertions.assertEquals(3, lines.size(), "nested trace, request and late span");
+        Assertions.assertEquals(Collections.singletonList("resumed-request"), namesOf(lines.get(0)));
+        List<String> request = namesOf(lines.get(1));
+        Assertions.assertEquals(1 + 8 * 2, request.size());
+        Assertions.assertEquals("ems-request", request.get(request.size() - 1));
+        Assertions.assertEquals(8, Collections.frequency(request, "der-write"));
+        Assertions.assertEquals(Collections.singletonList("late"), namesOf(lines.get(2)));
+    }
+
+    private static List<String> namesOf(String line) {
+        JsonArray spans = JsonParser.parseString(line)
+                .getAsJsonObject()
+                .getAsJsonArray("resourceSpans")
+                .get(0)
+                .getAsJsonObject()
+                .getAsJsonArray("scopeSpans")
+                .get(0)
+                .getAsJsonObject()
+                .getAsJsonArray("spans");
+        List<String> names = new ArrayList<>();
+        spans.forEach(span -> names.add(span.getAsJsonObject().get("name").getAsString()));
+        return names;
+    }
+}